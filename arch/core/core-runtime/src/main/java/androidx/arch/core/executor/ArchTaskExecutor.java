@@ -46,6 +46,10 @@ public class ArchTaskExecutor extends TaskExecutor {
     private static final Executor sIOThreadExecutor =
             command -> getInstance().executeOnDiskIO(command);
 
+    @NonNull
+    private static final Executor sUiBlockingIOThreadExecutor =
+            command -> getInstance().executeOnDiskIO(command, PRIORITY_UI_BLOCKING);
+
     private ArchTaskExecutor() {
         mDefaultTaskExecutor = new DefaultTaskExecutor();
         mDelegate = mDefaultTaskExecutor;
@@ -88,6 +92,11 @@ public class ArchTaskExecutor extends TaskExecutor {
         mDelegate.executeOnDiskIO(runnable);
     }
 
+    @Override
+    public void executeOnDiskIO(@NonNull Runnable runnable, int priority) {
+        mDelegate.executeOnDiskIO(runnable, priority);
+    }
+
     @Override
     public void postToMainThread(@NonNull Runnable runnable) {
         mDelegate.postToMainThread(runnable);
@@ -103,6 +112,15 @@ public class ArchTaskExecutor extends TaskExecutor {
         return sIOThreadExecutor;
     }
 
+    /**
+     * Returns an executor running its tasks in the disk IO thread pool with
+     * {@link #PRIORITY_UI_BLOCKING}, for the work the UI is waiting for.
+     */
+    @NonNull
+    public static Executor getUiBlockingIOThreadExecutor() {
+        return sUiBlockingIOThreadExecutor;
+    }
+
     @Override
     public boolean isMainThread() {
         return mDelegate.isMainThread();
@@ -26,10 +26,7 @@ import androidx.annotation.RequiresApi;
 import androidx.annotation.RestrictTo;
 
 import java.lang.reflect.InvocationTargetException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.Executor;
 
 /**
  * @hide
@@ -39,27 +36,55 @@ public class DefaultTaskExecutor extends TaskExecutor {
 
     private final Object mLock = new Object();
 
-    private final ExecutorService mDiskIO = Executors.newFixedThreadPool(4, new ThreadFactory() {
-        private static final String THREAD_NAME_STEM = "arch_disk_io_";
+    private static final int DEFAULT_DISK_IO_THREAD_COUNT = 4;
 
-        private final AtomicInteger mThreadId = new AtomicInteger(0);
-
-        @Override
-        public Thread newThread(Runnable r) {
-            Thread t = new Thread(r);
-            t.setName(THREAD_NAME_STEM + mThreadId.getAndIncrement());
-            return t;
-        }
-    });
+    @NonNull
+    private final Executor mDiskIO;
 
     @Nullable
     private volatile Handler mMainHandler;
 
+    /**
+     * Creates a task executor running the disk IO tasks on a {@link DiskIOExecutor} with 4
+     * threads.
+     */
+    public DefaultTaskExecutor() {
+        this(DiskIOExecutor.create(DEFAULT_DISK_IO_THREAD_COUNT));
+    }
+
+    /**
+     * Creates a task executor running the disk IO tasks on the given executor. Priorities are
+     * only honored by a {@link DiskIOExecutor}.
+     *
+     * @param diskIO The executor of the disk IO tasks.
+     */
+    public DefaultTaskExecutor(@NonNull Executor diskIO) {
+        mDiskIO = diskIO;
+    }
+
+    /**
+     * Returns the executor of the disk IO tasks, e.g. to read the statistics of a
+     * {@link DiskIOExecutor}.
+     */
+    @NonNull
+    public Executor getDiskIOExecutor() {
+        return mDiskIO;
+    }
+
     @Override
     public void executeOnDiskIO(@NonNull Runnable runnable) {
         mDiskIO.execute(runnable);
     }
 
+    @Override
+    public void executeOnDiskIO(@NonNull Runnable runnable, int priority) {
+        if (mDiskIO instanceof DiskIOExecutor) {
+            ((DiskIOExecutor) mDiskIO).execute(runnable, priority);
+        } else {
+            mDiskIO.execute(runnable);
+        }
+    }
+
     @Override
     public void postToMainThread(@NonNull Runnable runnable) {
         if (mMainHandler == null) {
@@ -0,0 +1,324 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package androidx.arch.core.executor;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The executor running the disk IO tasks of {@link DefaultTaskExecutor}.
+ * <p>
+ * Tasks are queued in two lanes, {@link TaskExecutor#PRIORITY_UI_BLOCKING} tasks always run
+ * before {@link TaskExecutor#PRIORITY_BACKGROUND} ones, and at most {@code maxConcurrency} tasks
+ * run at the same time on the underlying worker executor. Unless {@code maxConcurrency} is 1,
+ * background tasks only use up to {@code maxConcurrency - 1} of them, so that a UI blocking task
+ * never waits for long running background tasks to finish. The executor keeps track of how long
+ * tasks wait in the queue and run, see {@link #getStats()}.
+ *
+ * @hide
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP_PREFIX)
+public final class DiskIOExecutor implements Executor {
+    private static final String THREAD_NAME_STEM = "arch_disk_io_";
+
+    @NonNull
+    private final Executor mWorkers;
+
+    private final int mMaxConcurrency;
+
+    // One slot is reserved for the UI blocking lane, unless there is only one.
+    private final int mMaxBackgroundConcurrency;
+
+    private final Object mLock = new Object();
+
+    // Guarded by mLock.
+    private final ArrayDeque<Task> mUiBlockingQueue = new ArrayDeque<>();
+    private final ArrayDeque<Task> mBackgroundQueue = new ArrayDeque<>();
+    private int mRunning;
+    private int mRunningBackground;
+    private int mMaxQueueDepth;
+    private long mSubmittedCount;
+    private long mCompletedCount;
+    private long mTotalWaitNanos;
+    private long mMaxWaitNanos;
+    private long mTotalRunNanos;
+
+    /**
+     * @param workers        The executor running the tasks, it must be able to run
+     *                       {@code maxConcurrency} tasks concurrently.
+     * @param maxConcurrency The maximum number of tasks running at the same time.
+     */
+    public DiskIOExecutor(@NonNull Executor workers, int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be at least 1");
+        }
+        mWorkers = workers;
+        mMaxConcurrency = maxConcurrency;
+        mMaxBackgroundConcurrency = Math.max(1, maxConcurrency - 1);
+    }
+
+    /**
+     * Creates an executor running the tasks on {@code threadCount} platform threads.
+     */
+    @NonNull
+    public static DiskIOExecutor create(int threadCount) {
+        ExecutorService workers = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+            private final AtomicInteger mThreadId = new AtomicInteger(0);
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r);
+                t.setName(THREAD_NAME_STEM + mThreadId.getAndIncrement());
+                return t;
+            }
+        });
+        return new DiskIOExecutor(workers, threadCount);
+    }
+
+    /**
+     * Creates an executor running each task on a new virtual thread, for JVM tests and host
+     * tools running on a JDK that supports them.
+     *
+     * @param maxConcurrency The maximum number of tasks running at the same time.
+     * @return The executor, or {@code null} if virtual threads are not available, e.g. on
+     * Android.
+     */
+    @Nullable
+    public static DiskIOExecutor createWithVirtualThreads(int maxConcurrency) {
+        try {
+            Object workers = Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+            return new DiskIOExecutor((Executor) workers, maxConcurrency);
+        } catch (NoSuchMethodException ignored) {
+            // JDK without virtual threads, or Android.
+        } catch (IllegalAccessException ignored) {
+            // Not expected for a public static method, treated as unavailable all the same.
+        } catch (InvocationTargetException ignored) {
+            // Virtual threads are a preview feature of this JDK that isn't enabled.
+        }
+        return null;
+    }
+
+    @Override
+    public void execute(@NonNull Runnable command) {
+        execute(command, TaskExecutor.PRIORITY_BACKGROUND);
+    }
+
+    /**
+     * Executes the given task in the lane of the given priority.
+     * <p>
+     * If the worker executor rejects the task, it stays queued and is submitted again the next
+     * time a task is executed or finishes.
+     *
+     * @param command  The task to run.
+     * @param priority {@link TaskExecutor#PRIORITY_UI_BLOCKING} or
+     *                 {@link TaskExecutor#PRIORITY_BACKGROUND}.
+     */
+    public void execute(@NonNull Runnable command, int priority) {
+        Task task = new Task(command, priority == TaskExecutor.PRIORITY_UI_BLOCKING,
+                System.nanoTime());
+        synchronized (mLock) {
+            if (task.mUiBlocking) {
+                mUiBlockingQueue.add(task);
+            } else {
+                mBackgroundQueue.add(task);
+            }
+            mSubmittedCount++;
+            mMaxQueueDepth = Math.max(mMaxQueueDepth, getQueueDepthLocked());
+        }
+        scheduleNext();
+    }
+
+    /**
+     * Returns the number of tasks waiting to run.
+     */
+    public int getQueueDepth() {
+        synchronized (mLock) {
+            return getQueueDepthLocked();
+        }
+    }
+
+    /**
+     * Returns a snapshot of the statistics of this executor.
+     */
+    @NonNull
+    public Stats getStats() {
+        synchronized (mLock) {
+            return new Stats(getQueueDepthLocked(), mMaxQueueDepth, mRunning, mSubmittedCount,
+                    mCompletedCount, mTotalWaitNanos, mMaxWaitNanos, mTotalRunNanos);
+        }
+    }
+
+    private int getQueueDepthLocked() {
+        return mUiBlockingQueue.size() + mBackgroundQueue.size();
+    }
+
+    @SuppressWarnings("WeakerAccess") /* synthetic access */
+    void scheduleNext() {
+        while (true) {
+            Task task;
+            synchronized (mLock) {
+                if (mRunning >= mMaxConcurrency) {
+                    return;
+                }
+                task = mUiBlockingQueue.poll();
+                if (task == null && mRunningBackground < mMaxBackgroundConcurrency) {
+                    task = mBackgroundQueue.poll();
+                }
+                if (task == null) {
+                    return;
+                }
+                updateRunningLocked(task, 1);
+            }
+            try {
+                mWorkers.execute(task);
+            } catch (RuntimeException e) {
+                // Put the task back at the head of its lane, it runs once the workers accept
+                // tasks again. The rejection isn't rethrown since the task is still going to
+                // run, and this can be called from a worker thread when a task finishes.
+                synchronized (mLock) {
+                    updateRunningLocked(task, -1);
+                    if (task.mUiBlocking) {
+                        mUiBlockingQueue.addFirst(task);
+                    } else {
+                        mBackgroundQueue.addFirst(task);
+                    }
+                }
+                return;
+            }
+        }
+    }
+
+    private void updateRunningLocked(@NonNull Task task, int delta) {
+        mRunning += delta;
+        if (!task.mUiBlocking) {
+            mRunningBackground += delta;
+        }
+    }
+
+    @SuppressWarnings("WeakerAccess") /* synthetic access */
+    void onTaskFinished(@NonNull Task task, long waitNanos, long runNanos) {
+        synchronized (mLock) {
+            updateRunningLocked(task, -1);
+            mCompletedCount++;
+            mTotalWaitNanos += waitNanos;
+            mMaxWaitNanos = Math.max(mMaxWaitNanos, waitNanos);
+            mTotalRunNanos += runNanos;
+        }
+        scheduleNext();
+    }
+
+    private final class Task implements Runnable {
+        private final Runnable mCommand;
+        final boolean mUiBlocking;
+        private final long mEnqueueTimeNanos;
+
+        Task(Runnable command, boolean uiBlocking, long enqueueTimeNanos) {
+            mCommand = command;
+            mUiBlocking = uiBlocking;
+            mEnqueueTimeNanos = enqueueTimeNanos;
+        }
+
+        @Override
+        public void run() {
+            long startNanos = System.nanoTime();
+            try {
+                mCommand.run();
+            } finally {
+                onTaskFinished(this, startNanos - mEnqueueTimeNanos,
+                        System.nanoTime() - startNanos);
+            }
+        }
+    }
+
+    /**
+     * Statistics of a {@link DiskIOExecutor}, the times are in nanoseconds.
+     */
+    public static final class Stats {
+        private final int mQueueDepth;
+        private final int mMaxQueueDepth;
+        private final int mRunningCount;
+        private final long mSubmittedCount;
+        private final long mCompletedCount;
+        private final long mTotalWaitNanos;
+        private final long mMaxWaitNanos;
+        private final long mTotalRunNanos;
+
+        Stats(int queueDepth, int maxQueueDepth, int runningCount, long submittedCount,
+                long completedCount, long totalWaitNanos, long maxWaitNanos,
+                long totalRunNanos) {
+            mQueueDepth = queueDepth;
+            mMaxQueueDepth = maxQueueDepth;
+            mRunningCount = runningCount;
+            mSubmittedCount = submittedCount;
+            mCompletedCount = completedCount;
+            mTotalWaitNanos = totalWaitNanos;
+            mMaxWaitNanos = maxWaitNanos;
+            mTotalRunNanos = totalRunNanos;
+        }
+
+        /** Returns the number of tasks waiting to run. */
+        public int getQueueDepth() {
+            return mQueueDepth;
+        }
+
+        /** Returns the highest number of tasks that were waiting to run at the same time. */
+        public int getMaxQueueDepth() {
+            return mMaxQueueDepth;
+        }
+
+        /** Returns the number of tasks running. */
+        public int getRunningCount() {
+            return mRunningCount;
+        }
+
+        /** Returns the number of tasks submitted. */
+        public long getSubmittedCount() {
+            return mSubmittedCount;
+        }
+
+        /** Returns the number of tasks that finished running, successfully or not. */
+        public long getCompletedCount() {
+            return mCompletedCount;
+        }
+
+        /** Returns the total time the completed tasks waited in the queue. */
+        public long getTotalWaitNanos() {
+            return mTotalWaitNanos;
+        }
+
+        /** Returns the longest time a completed task waited in the queue. */
+        public long getMaxWaitNanos() {
+            return mMaxWaitNanos;
+        }
+
+        /** Returns the total time the completed tasks took to run. */
+        public long getTotalRunNanos() {
+            return mTotalRunNanos;
+        }
+    }
+}
@@ -29,6 +29,17 @@ import androidx.annotation.RestrictTo;
  */
 @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP_PREFIX)
 public abstract class TaskExecutor {
+    /**
+     * Priority of the disk IO tasks that nothing waits for.
+     */
+    public static final int PRIORITY_BACKGROUND = 0;
+
+    /**
+     * Priority of the disk IO tasks the UI is waiting for, which run before all the
+     * {@link #PRIORITY_BACKGROUND} tasks.
+     */
+    public static final int PRIORITY_UI_BLOCKING = 1;
+
     /**
      * Executes the given task in the disk IO thread pool.
      *
@@ -36,6 +47,18 @@ public abstract class TaskExecutor {
      */
     public abstract void executeOnDiskIO(@NonNull Runnable runnable);
 
+    /**
+     * Executes the given task in the disk IO thread pool, with the given priority.
+     * <p>
+     * Implementations without priorities run the task like {@link #executeOnDiskIO(Runnable)}.
+     *
+     * @param runnable The runnable to run in the disk IO thread pool.
+     * @param priority {@link #PRIORITY_UI_BLOCKING} or {@link #PRIORITY_BACKGROUND}.
+     */
+    public void executeOnDiskIO(@NonNull Runnable runnable, int priority) {
+        executeOnDiskIO(runnable);
+    }
+
     /**
      * Posts the given task to the main thread.
      *
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package androidx.arch.core.executor;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import androidx.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+@RunWith(JUnit4.class)
+public class DiskIOExecutorTest {
+
+    private final ManualExecutor mWorkers = new ManualExecutor();
+    private final List<String> mRan = new ArrayList<>();
+
+    @After
+    public void resetDelegate() {
+        ArchTaskExecutor.getInstance().setDelegate(null);
+    }
+
+    @Test
+    public void uiBlockingTasksRunFirst() {
+        DiskIOExecutor executor = new DiskIOExecutor(mWorkers, 1);
+        executor.execute(task("background1"));
+        executor.execute(task("background2"));
+        executor.execute(task("uiBlocking"), TaskExecutor.PRIORITY_UI_BLOCKING);
+
+        mWorkers.runAll();
+        assertThat(mRan, is(Arrays.asList("background1", "uiBlocking", "background2")));
+    }
+
+    @Test
+    public void backgroundTasksLeaveSlotForUiBlocking() {
+        DiskIOExecutor executor = new DiskIOExecutor(mWorkers, 2);
+        executor.execute(task("background1"));
+        executor.execute(task("background2"));
+        assertThat(mWorkers.mTasks.size(), is(1));
+        assertThat(executor.getQueueDepth(), is(1));
+
+        executor.execute(task("uiBlocking"), TaskExecutor.PRIORITY_UI_BLOCKING);
+        assertThat(mWorkers.mTasks.size(), is(2));
+        assertThat(executor.getStats().getRunningCount(), is(2));
+    }
+
+    @Test
+    public void singleSlotRunsBackgroundTasks() {
+        DiskIOExecutor executor = new DiskIOExecutor(mWorkers, 1);
+        executor.execute(task("background"));
+        assertThat(mWorkers.mTasks.size(), is(1));
+    }
+
+    @Test
+    public void rejectedTaskIsRequeued() {
+        DiskIOExecutor executor = new DiskIOExecutor(mWorkers, 1);
+        mWorkers.mRejecting = true;
+        executor.execute(task("rejected"));
+        assertThat(executor.getQueueDepth(), is(1));
+        assertThat(executor.getStats().getRunningCount(), is(0));
+
+        mWorkers.mRejecting = false;
+        executor.execute(task("next"));
+        mWorkers.runAll();
+        assertThat(mRan, is(Arrays.asList("rejected", "next")));
+    }
+
+    @Test
+    public void stats() {
+        DiskIOExecutor executor = new DiskIOExecutor(mWorkers, 1);
+        executor.execute(task("first"));
+        executor.execute(task("second"));
+        executor.execute(task("third"));
+
+        DiskIOExecutor.Stats stats = executor.getStats();
+        assertThat(stats.getQueueDepth(), is(2));
+        assertThat(stats.getMaxQueueDepth(), is(2));
+        assertThat(stats.getRunningCount(), is(1));
+        assertThat(stats.getSubmittedCount(), is(3L));
+        assertThat(stats.getCompletedCount(), is(0L));
+
+        mWorkers.runAll();
+        stats = executor.getStats();
+        assertThat(stats.getQueueDepth(), is(0));
+        assertThat(stats.getMaxQueueDepth(), is(2));
+        assertThat(stats.getRunningCount(), is(0));
+        assertThat(stats.getCompletedCount(), is(3L));
+        assertTrue(stats.getMaxWaitNanos() > 0);
+        assertTrue(stats.getTotalWaitNanos() >= stats.getMaxWaitNanos());
+        assertTrue(stats.getTotalRunNanos() >= 0);
+    }
+
+    @Test
+    public void failingTaskIsCompleted() {
+        DiskIOExecutor executor = new DiskIOExecutor(mWorkers, 1);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                throw new UnsupportedOperationException();
+            }
+        });
+        executor.execute(task("next"));
+        try {
+            mWorkers.runNext();
+            fail("the exception of the task should be thrown");
+        } catch (UnsupportedOperationException expected) {
+        }
+        mWorkers.runAll();
+        assertThat(mRan, is(Arrays.asList("next")));
+        assertThat(executor.getStats().getCompletedCount(), is(2L));
+    }
+
+    @Test
+    public void executeOnDiskIOWithPriority() {
+        DiskIOExecutor executor = new DiskIOExecutor(mWorkers, 1);
+        DefaultTaskExecutor taskExecutor = new DefaultTaskExecutor(executor);
+        taskExecutor.executeOnDiskIO(task("background1"));
+        taskExecutor.executeOnDiskIO(task("background2"), TaskExecutor.PRIORITY_BACKGROUND);
+        taskExecutor.executeOnDiskIO(task("uiBlocking"), TaskExecutor.PRIORITY_UI_BLOCKING);
+
+        mWorkers.runAll();
+        assertThat(mRan, is(Arrays.asList("background1", "uiBlocking", "background2")));
+    }
+
+    @Test
+    public void executeOnDiskIOWithPriorityWithoutDiskIOExecutor() {
+        DefaultTaskExecutor taskExecutor = new DefaultTaskExecutor(mWorkers);
+        taskExecutor.executeOnDiskIO(task("background"));
+        taskExecutor.executeOnDiskIO(task("uiBlocking"), TaskExecutor.PRIORITY_UI_BLOCKING);
+
+        // the priority is ignored
+        mWorkers.runAll();
+        assertThat(mRan, is(Arrays.asList("background", "uiBlocking")));
+    }
+
+    @Test
+    public void uiBlockingIOThreadExecutor() {
+        DiskIOExecutor executor = new DiskIOExecutor(mWorkers, 1);
+        ArchTaskExecutor.getInstance().setDelegate(new DefaultTaskExecutor(executor));
+        ArchTaskExecutor.getIOThreadExecutor().execute(task("background1"));
+        ArchTaskExecutor.getIOThreadExecutor().execute(task("background2"));
+        ArchTaskExecutor.getUiBlockingIOThreadExecutor().execute(task("uiBlocking"));
+
+        mWorkers.runAll();
+        assertThat(mRan, is(Arrays.asList("background1", "uiBlocking", "background2")));
+    }
+
+    private Runnable task(final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                mRan.add(name);
+            }
+        };
+    }
+
+    /**
+     * Runs its tasks only when asked to, on the test thread.
+     */
+    private static class ManualExecutor implements Executor {
+        final List<Runnable> mTasks = new ArrayList<>();
+        boolean mRejecting;
+
+        @Override
+        public void execute(@NonNull Runnable command) {
+            if (mRejecting) {
+                throw new RejectedExecutionException();
+            }
+            mTasks.add(command);
+        }
+
+        void runNext() {
+            mTasks.remove(0).run();
+        }
+
+        void runAll() {
+            while (!mTasks.isEmpty()) {
+                runNext();
+            }
+        }
+    }
+}
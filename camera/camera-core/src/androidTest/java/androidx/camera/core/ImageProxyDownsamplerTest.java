@@ -129,6 +129,15 @@ public final class ImageProxyDownsamplerTest {
 
     private static void checkOutputIsAveragingDownsampledInput(
             ImageProxy inputImage, ImageProxy outputImage, int downsamplingFactor) {
+        checkOutputIsAveragingDownsampledInput(
+                inputImage, outputImage, downsamplingFactor, /*rounded=*/ false);
+    }
+
+    private static void checkOutputIsAveragingDownsampledInput(
+            ImageProxy inputImage,
+            ImageProxy outputImage,
+            int downsamplingFactor,
+            boolean rounded) {
         ImageProxy.PlaneProxy[] inputPlanes = inputImage.getPlanes();
         ImageProxy.PlaneProxy[] outputPlanes = outputImage.getPlanes();
         for (int c = 0; c < 3; ++c) {
@@ -164,7 +173,8 @@ public final class ImageProxyDownsamplerTest {
                                     ((((inputPixelA & 0xFF)
                                             + (inputPixelB & 0xFF)
                                             + (inputPixelC & 0xFF)
-                                            + (inputPixelD & 0xFF))
+                                            + (inputPixelD & 0xFF)
+                                            + (rounded ? 2 : 0))
                                             / 4)
                                             & 0xFF);
                     byte outputPixel =
@@ -230,4 +240,86 @@ public final class ImageProxyDownsamplerTest {
 
         checkOutputIsAveragingDownsampledInput(inputImage, outputImage, downsamplingFactor);
     }
+
+    @Test
+    public void boxDownsamplingBy2X_isRoundedAverage() {
+        ImageProxy inputImage = createYuv420Image(/*uvPixelStride=*/ 2);
+        int downsamplingFactor = 2;
+        ImageProxy outputImage =
+                ImageProxyDownsampler.downsample(
+                        inputImage,
+                        WIDTH / downsamplingFactor,
+                        HEIGHT / downsamplingFactor,
+                        ImageProxyDownsampler.DownsamplingMethod.BOX);
+
+        checkOutputIsAveragingDownsampledInput(
+                inputImage, outputImage, downsamplingFactor, /*rounded=*/ true);
+    }
+
+    @Test
+    public void bilinearDownsamplingBy2X_isRoundedAverage() {
+        ImageProxy inputImage = createYuv420Image(/*uvPixelStride=*/ 1);
+        int downsamplingFactor = 2;
+        ImageProxy outputImage =
+                ImageProxyDownsampler.downsample(
+                        inputImage,
+                        WIDTH / downsamplingFactor,
+                        HEIGHT / downsamplingFactor,
+                        ImageProxyDownsampler.DownsamplingMethod.BILINEAR);
+
+        checkOutputIsAveragingDownsampledInput(
+                inputImage, outputImage, downsamplingFactor, /*rounded=*/ true);
+    }
+
+    @Test
+    public void downsamplingIntoProvidedBuffer_writesPlanesIntoBuffer() {
+        ImageProxy inputImage = createYuv420Image(/*uvPixelStride=*/ 2);
+        int downsamplingFactor = 2;
+        int outputWidth = WIDTH / downsamplingFactor;
+        int outputHeight = HEIGHT / downsamplingFactor;
+        ByteBuffer output = ByteBuffer.allocateDirect(
+                ImageProxyDownsampler.getOutputBufferSize(outputWidth, outputHeight));
+        ImageProxy outputImage =
+                ImageProxyDownsampler.downsample(
+                        inputImage,
+                        outputWidth,
+                        outputHeight,
+                        ImageProxyDownsampler.DownsamplingMethod.NEAREST_NEIGHBOR,
+                        output);
+
+        checkOutputIsNearestNeighborDownsampledInput(inputImage, outputImage, downsamplingFactor);
+        // The V plane is the last one in the provided buffer.
+        ByteBuffer vPlane = outputImage.getPlanes()[2].getBuffer();
+        assertThat(vPlane.isDirect()).isTrue();
+        assertThat(vPlane.get(0)).isEqualTo(
+                output.get(outputWidth * outputHeight + (outputWidth / 2) * (outputHeight / 2)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void downsamplingIntoTooSmallBuffer_throwsException() {
+        ImageProxy inputImage = createYuv420Image(/*uvPixelStride=*/ 1);
+        ImageProxyDownsampler.downsample(
+                inputImage,
+                WIDTH / 2,
+                HEIGHT / 2,
+                ImageProxyDownsampler.DownsamplingMethod.NEAREST_NEIGHBOR,
+                ByteBuffer.allocateDirect(WIDTH / 2 * HEIGHT / 2));
+    }
+
+    @Test
+    public void samplingTableIsReusedForSameSizes() {
+        ImageProxyDownsampler.SamplingTable samplingTable =
+                ImageProxyDownsampler.getSamplingTable(
+                        ImageProxyDownsampler.DownsamplingMethod.BILINEAR,
+                        WIDTH, HEIGHT, /*inputPixelStride=*/ 1, WIDTH / 2, HEIGHT / 2);
+
+        assertThat(ImageProxyDownsampler.getSamplingTable(
+                ImageProxyDownsampler.DownsamplingMethod.BILINEAR,
+                WIDTH, HEIGHT, /*inputPixelStride=*/ 1, WIDTH / 2, HEIGHT / 2))
+                .isSameInstanceAs(samplingTable);
+        assertThat(ImageProxyDownsampler.getSamplingTable(
+                ImageProxyDownsampler.DownsamplingMethod.BOX,
+                WIDTH, HEIGHT, /*inputPixelStride=*/ 1, WIDTH / 2, HEIGHT / 2))
+                .isNotSameInstanceAs(samplingTable);
+    }
 }
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.camera.core.internal.utils
+
+import androidx.testutils.assertThrows
+import com.google.common.truth.Truth
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.JUnit4
+import org.mockito.ArgumentMatchers.any
+import org.mockito.Mockito
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.concurrent.thread
+
+@RunWith(JUnit4::class)
+class LockFreeRingBufferTest {
+
+    @Test
+    fun testEnqueue() {
+        val testBuffer: RingBuffer<Int> = LockFreeRingBuffer(3)
+        testBuffer.enqueue(1)
+        testBuffer.enqueue(2)
+        testBuffer.enqueue(3)
+        testBuffer.enqueue(4)
+        Truth.assertThat(testBuffer.dequeue()).isEqualTo(2)
+    }
+
+    @Test
+    fun testDequeue_correctValueIsDequeued() {
+        @Suppress("UNCHECKED_CAST")
+        val mockCallback: RingBuffer.OnRemoveCallback<Int> = Mockito.mock(
+            RingBuffer.OnRemoveCallback::class.java
+        ) as RingBuffer.OnRemoveCallback<Int>
+
+        val testBuffer: RingBuffer<Int> = LockFreeRingBuffer(3, mockCallback)
+        testBuffer.enqueue(1)
+        testBuffer.enqueue(2)
+        testBuffer.enqueue(3)
+        Truth.assertThat(testBuffer.dequeue()).isEqualTo(1)
+        Mockito.verify(mockCallback, Mockito.times(0)).onRemove(any())
+    }
+
+    @Test
+    fun testDequeue_OnRemoveCallbackCalledOnlyWhenDiscardingItemsDueToCapacity() {
+        @Suppress("UNCHECKED_CAST")
+        val mockCallback: RingBuffer.OnRemoveCallback<Int> = Mockito.mock(
+            RingBuffer.OnRemoveCallback::class.java
+        ) as RingBuffer.OnRemoveCallback<Int>
+
+        val testBuffer: RingBuffer<Int> = LockFreeRingBuffer(3, mockCallback)
+        testBuffer.enqueue(1)
+        testBuffer.enqueue(2)
+        testBuffer.enqueue(3)
+        testBuffer.enqueue(4)
+        Mockito.verify(mockCallback).onRemove(1)
+        Truth.assertThat(testBuffer.dequeue()).isEqualTo(2)
+        Mockito.verify(mockCallback, Mockito.times(1)).onRemove(any())
+    }
+
+    @Test
+    fun testDequeue_exceptionThrownWhenBufferEmpty() {
+        val testBuffer: RingBuffer<Int> = LockFreeRingBuffer(5)
+        assertThrows(NoSuchElementException::class.java, testBuffer::dequeue)
+    }
+
+    @Test
+    fun testIsEmpty_afterWrappingAround() {
+        val testBuffer: RingBuffer<Int> = LockFreeRingBuffer(2)
+        for (i in 1..5) {
+            testBuffer.enqueue(i)
+        }
+        Truth.assertThat(testBuffer.dequeue()).isEqualTo(4)
+        Truth.assertThat(testBuffer.dequeue()).isEqualTo(5)
+        Truth.assertThat(testBuffer.isEmpty).isTrue()
+    }
+
+    @Test
+    fun testConcurrentDequeue_eachElementIsDequeuedOrRemovedOnce() {
+        val elementCount = 100_000L
+        val removedSum = AtomicLong()
+        val dequeuedSum = AtomicLong()
+        val handledCount = AtomicLong()
+        val testBuffer: RingBuffer<Long> = LockFreeRingBuffer(3) {
+            removedSum.addAndGet(it)
+            handledCount.incrementAndGet()
+        }
+        val producerDone = AtomicBoolean(false)
+
+        val consumers = List(2) {
+            thread {
+                while (true) {
+                    val done = producerDone.get()
+                    try {
+                        dequeuedSum.addAndGet(testBuffer.dequeue())
+                        handledCount.incrementAndGet()
+                    } catch (e: NoSuchElementException) {
+                        if (done) {
+                            break
+                        }
+                    }
+                }
+            }
+        }
+        for (i in 1..elementCount) {
+            testBuffer.enqueue(i)
+        }
+        producerDone.set(true)
+        consumers.forEach { it.join() }
+
+        Truth.assertThat(handledCount.get()).isEqualTo(elementCount)
+        Truth.assertThat(removedSum.get() + dequeuedSum.get())
+            .isEqualTo(elementCount * (elementCount + 1) / 2)
+    }
+}
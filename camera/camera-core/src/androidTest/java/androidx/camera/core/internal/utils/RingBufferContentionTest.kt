@@ -0,0 +1,99 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.camera.core.internal.utils
+
+import android.util.Log
+import androidx.test.filters.LargeTest
+import com.google.common.truth.Truth
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.JUnit4
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.concurrent.thread
+
+/**
+ * Microbenchmark of the [RingBuffer] implementations, with a producer thread delivering frames
+ * while another thread keeps polling for them, as ZSL capture does.
+ *
+ * The timings are logged for comparison, and only the element accounting is asserted, since
+ * timings are too noisy to gate on.
+ */
+@LargeTest
+@RunWith(JUnit4::class)
+class RingBufferContentionTest {
+
+    @Test
+    fun arrayRingBuffer_underContention() {
+        measure("ArrayRingBuffer") { onRemove -> ArrayRingBuffer(RING_BUFFER_CAPACITY, onRemove) }
+    }
+
+    @Test
+    fun lockFreeRingBuffer_underContention() {
+        measure("LockFreeRingBuffer") { onRemove ->
+            LockFreeRingBuffer(RING_BUFFER_CAPACITY, onRemove)
+        }
+    }
+
+    private fun measure(
+        name: String,
+        createRingBuffer: (RingBuffer.OnRemoveCallback<Long>) -> RingBuffer<Long>
+    ) {
+        val handledCount = AtomicLong()
+        val ringBuffer = createRingBuffer(
+            RingBuffer.OnRemoveCallback { handledCount.incrementAndGet() }
+        )
+        val producerDone = AtomicBoolean(false)
+        val started = CountDownLatch(1)
+
+        val consumer = thread {
+            started.countDown()
+            while (true) {
+                val done = producerDone.get()
+                if (!ringBuffer.isEmpty) {
+                    try {
+                        ringBuffer.dequeue()
+                        handledCount.incrementAndGet()
+                    } catch (e: NoSuchElementException) {
+                        // The last element was dropped by the producer in the meantime.
+                    }
+                } else if (done) {
+                    break
+                }
+            }
+        }
+        started.await()
+
+        val startNanos = System.nanoTime()
+        for (i in 1..ELEMENT_COUNT) {
+            ringBuffer.enqueue(i)
+        }
+        val enqueueNanos = System.nanoTime() - startNanos
+        producerDone.set(true)
+        consumer.join()
+
+        Log.d(TAG, "$name: ${enqueueNanos / ELEMENT_COUNT} ns per enqueue under contention")
+        Truth.assertThat(handledCount.get()).isEqualTo(ELEMENT_COUNT)
+    }
+
+    companion object {
+        private const val TAG = "RingBufferContention"
+        private const val RING_BUFFER_CAPACITY = 3
+        private const val ELEMENT_COUNT = 1_000_000L
+    }
+}
@@ -206,6 +206,27 @@ JNIEXPORT jint Java_androidx_camera_core_ImageProcessingUtil_nativeWriteJpegToSu
     return 0;
 }
 
+/**
+ * Returns the distance in bytes from the U buffer to the V buffer, or 0 if either buffer is not a
+ * direct buffer or they are too far apart.
+ */
+JNIEXPORT jint Java_androidx_camera_core_ImageProcessingUtil_nativeGetYUVImageVUOff(
+        JNIEnv* env,
+        jclass,
+        jobject src_u,
+        jobject src_v) {
+    uint8_t *src_u_ptr = static_cast<uint8_t *>(env->GetDirectBufferAddress(src_u));
+    uint8_t *src_v_ptr = static_cast<uint8_t *>(env->GetDirectBufferAddress(src_v));
+    if (src_u_ptr == nullptr || src_v_ptr == nullptr) {
+        return 0;
+    }
+    const ptrdiff_t vu_off = src_v_ptr - src_u_ptr;
+    if (vu_off != static_cast<jint>(vu_off)) {
+        return 0;
+    }
+    return static_cast<jint>(vu_off);
+}
+
 JNIEXPORT jint Java_androidx_camera_core_ImageProcessingUtil_nativeConvertAndroid420ToABGR(
         JNIEnv* env,
         jclass,
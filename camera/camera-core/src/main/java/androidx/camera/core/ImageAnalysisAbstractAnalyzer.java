@@ -387,28 +387,27 @@ abstract class ImageAnalysisAbstractAnalyzer implements ImageReaderProxy.OnImage
 
     @GuardedBy("mAnalyzerLock")
     private void createHelperBuffer(@NonNull ImageProxy imageProxy) {
+        // The buffers are reused across frames and only reallocated when the image gets bigger,
+        // e.g. after the resolution changed.
+        int pixelCount = imageProxy.getWidth() * imageProxy.getHeight();
         if (mOutputImageFormat == ImageAnalysis.OUTPUT_IMAGE_FORMAT_YUV_420_888) {
-            if (mYRotatedBuffer == null) {
-                mYRotatedBuffer = ByteBuffer.allocateDirect(
-                        imageProxy.getWidth() * imageProxy.getHeight());
+            if (mYRotatedBuffer == null || mYRotatedBuffer.capacity() < pixelCount) {
+                mYRotatedBuffer = ByteBuffer.allocateDirect(pixelCount);
             }
             mYRotatedBuffer.position(0);
 
-            if (mURotatedBuffer == null) {
-                mURotatedBuffer = ByteBuffer.allocateDirect(
-                        imageProxy.getWidth() * imageProxy.getHeight() / 4);
+            if (mURotatedBuffer == null || mURotatedBuffer.capacity() < pixelCount / 4) {
+                mURotatedBuffer = ByteBuffer.allocateDirect(pixelCount / 4);
             }
             mURotatedBuffer.position(0);
 
-            if (mVRotatedBuffer == null) {
-                mVRotatedBuffer = ByteBuffer.allocateDirect(
-                        imageProxy.getWidth() * imageProxy.getHeight() / 4);
+            if (mVRotatedBuffer == null || mVRotatedBuffer.capacity() < pixelCount / 4) {
+                mVRotatedBuffer = ByteBuffer.allocateDirect(pixelCount / 4);
             }
             mVRotatedBuffer.position(0);
         } else if (mOutputImageFormat == OUTPUT_IMAGE_FORMAT_RGBA_8888) {
-            if (mRGBConvertedBuffer == null) {
-                mRGBConvertedBuffer = ByteBuffer.allocateDirect(
-                        imageProxy.getWidth() * imageProxy.getHeight() * 4);
+            if (mRGBConvertedBuffer == null || mRGBConvertedBuffer.capacity() < pixelCount * 4) {
+                mRGBConvertedBuffer = ByteBuffer.allocateDirect(pixelCount * 4);
             }
         }
     }
@@ -1579,6 +1579,9 @@ public final class ImageCapture extends UseCase {
         abortImageCaptureRequests();
         clearPipeline();
         mUseSoftwareJpeg = false;
+        // The software JPEG encoding pools full resolution NV21 buffers, don't keep them around
+        // once the use case is unbound.
+        ImageUtil.clearNv21Pool();
 
         // Shutdowns the executor after mImageReader is closed. This can avoid
         // RejectedExecutionException if a ProcessingImageReader is used to processing the
@@ -436,6 +436,20 @@ public final class ImageProcessingUtil {
         return SUCCESS;
     }
 
+    /**
+     * Returns the distance in bytes from the start of the U buffer to the start of the V buffer
+     * in memory. For example, it is -1 when the chroma planes of a YUV_420_888 image with a pixel
+     * stride of 2 are views of the same VUVU... memory, i.e. NV21.
+     *
+     * @return the distance, or 0 if either buffer is not a direct buffer.
+     */
+    public static int getVUOffset(@NonNull ByteBuffer uBuffer, @NonNull ByteBuffer vBuffer) {
+        return nativeGetYUVImageVUOff(uBuffer, vBuffer);
+    }
+
+    private static native int nativeGetYUVImageVUOff(@NonNull ByteBuffer srcByteBufferU,
+            @NonNull ByteBuffer srcByteBufferV);
+
     private static native int nativeWriteJpegToSurface(@NonNull byte[] jpegArray,
             @NonNull Surface surface);
 
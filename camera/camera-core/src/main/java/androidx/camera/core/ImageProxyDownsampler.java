@@ -19,21 +19,54 @@ package androidx.camera.core;
 import android.graphics.ImageFormat;
 import android.util.Size;
 
+import androidx.annotation.GuardedBy;
 import androidx.annotation.NonNull;
 import androidx.annotation.RequiresApi;
+import androidx.annotation.VisibleForTesting;
+import androidx.camera.core.internal.utils.ByteArrayPool;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 
-/** Utility functions for downsampling an {@link ImageProxy}. */
+/**
+ * Utility functions for downsampling an {@link ImageProxy}.
+ *
+ * <p>The sampling positions and weights only depend on the input and output sizes, so they are
+ * computed once per size pair and cached, and repeated frames of a stream don't pay for them
+ * again. The downsampled planes are written as a contiguous I420 buffer, either into a pooled
+ * array which is recycled when the returned image is closed, or into a buffer provided by the
+ * caller.
+ */
 @RequiresApi(21) // TODO(b/200306659): Remove and replace with annotation on package-info.java
 final class ImageProxyDownsampler {
 
+    private static final int MAX_CACHED_SAMPLING_TABLES = 8;
+    private static final int MAX_POOLED_OUTPUTS = 4;
+    // Input and output rows of the luma and chroma planes.
+    private static final int MAX_POOLED_ROWS = 8;
+
+    // Fixed point precision of the bilinear weights.
+    private static final int WEIGHT_BITS = 8;
+    private static final int WEIGHT_ONE = 1 << WEIGHT_BITS;
+
+    private static final Object sSamplingTablesLock = new Object();
+    // Most recently used last.
+    @GuardedBy("sSamplingTablesLock")
+    private static final ArrayList<SamplingTable> sSamplingTables =
+            new ArrayList<>(MAX_CACHED_SAMPLING_TABLES);
+
+    private static final ByteArrayPool sOutputPool = new ByteArrayPool(MAX_POOLED_OUTPUTS);
+    private static final ByteArrayPool sRowPool = new ByteArrayPool(MAX_POOLED_ROWS);
+
     private ImageProxyDownsampler() {
     }
 
     /**
      * Downsamples an {@link ImageProxy}.
      *
+     * <p>The downsampled planes are backed by a pooled array, which is returned to the pool when
+     * the downsampled image is closed.
+     *
      * @param image              to downsample
      * @param downsampledWidth   width of the downsampled image
      * @param downsampledHeight  height of the dowsampled image
@@ -45,6 +78,68 @@ final class ImageProxyDownsampler {
             int downsampledWidth,
             int downsampledHeight,
             DownsamplingMethod downsamplingMethod) {
+        checkDownsampleArguments(image, downsampledWidth, downsampledHeight);
+
+        if (image.getWidth() == downsampledWidth && image.getHeight() == downsampledHeight) {
+            return new ForwardingImageProxyImpl(
+                    image, image.getPlanes(), downsampledWidth, downsampledHeight);
+        }
+
+        final byte[] output =
+                sOutputPool.acquire(getOutputBufferSize(downsampledWidth, downsampledHeight));
+        ForwardingImageProxy downsampledImage = downsampleInto(
+                image,
+                downsampledWidth,
+                downsampledHeight,
+                downsamplingMethod,
+                ByteBuffer.wrap(output));
+        downsampledImage.addOnImageCloseListener(closedImage -> sOutputPool.release(output));
+        return downsampledImage;
+    }
+
+    /**
+     * Downsamples an {@link ImageProxy} into a buffer provided by the caller.
+     *
+     * <p>The Y, U and V planes are written one after the other from index 0 of the output
+     * buffer, which may be a direct buffer, and the planes of the returned image are views of
+     * it. The output buffer must not be reused while the returned image is in use.
+     *
+     * @param image              to downsample
+     * @param downsampledWidth   width of the downsampled image
+     * @param downsampledHeight  height of the dowsampled image
+     * @param downsamplingMethod the downsampling method
+     * @param output             buffer with a capacity of at least
+     *                           {@link #getOutputBufferSize(int, int)} bytes
+     * @return the downsampled image
+     */
+    static ForwardingImageProxy downsample(
+            ImageProxy image,
+            int downsampledWidth,
+            int downsampledHeight,
+            DownsamplingMethod downsamplingMethod,
+            @NonNull ByteBuffer output) {
+        checkDownsampleArguments(image, downsampledWidth, downsampledHeight);
+        int outputSize = getOutputBufferSize(downsampledWidth, downsampledHeight);
+        if (output.capacity() < outputSize) {
+            throw new IllegalArgumentException(
+                    "Output buffer capacity " + output.capacity() + " is smaller than "
+                            + outputSize + ".");
+        }
+        return downsampleInto(
+                image, downsampledWidth, downsampledHeight, downsamplingMethod, output);
+    }
+
+    /**
+     * Returns the size in bytes of the I420 buffer holding an image downsampled to the given
+     * dimension.
+     */
+    static int getOutputBufferSize(int downsampledWidth, int downsampledHeight) {
+        return downsampledWidth * downsampledHeight
+                + 2 * (downsampledWidth / 2) * (downsampledHeight / 2);
+    }
+
+    private static void checkDownsampleArguments(
+            ImageProxy image, int downsampledWidth, int downsampledHeight) {
         if (image.getFormat() != ImageFormat.YUV_420_888) {
             throw new UnsupportedOperationException(
                     "Only YUV_420_888 format is currently supported.");
@@ -57,143 +152,85 @@ final class ImageProxyDownsampler {
                             + new Size(image.getWidth(), image.getHeight())
                             + ".");
         }
+    }
 
-        if (image.getWidth() == downsampledWidth && image.getHeight() == downsampledHeight) {
-            return new ForwardingImageProxyImpl(
-                    image, image.getPlanes(), downsampledWidth, downsampledHeight);
-        }
-
-        int[] inputWidths = {image.getWidth(), image.getWidth() / 2, image.getWidth() / 2};
-        int[] inputHeights = {image.getHeight(), image.getHeight() / 2, image.getHeight() / 2};
-        int[] outputWidths = {downsampledWidth, downsampledWidth / 2, downsampledWidth / 2};
-        int[] outputHeights = {downsampledHeight, downsampledHeight / 2, downsampledHeight / 2};
-
+    private static ForwardingImageProxy downsampleInto(
+            ImageProxy image,
+            int downsampledWidth,
+            int downsampledHeight,
+            DownsamplingMethod downsamplingMethod,
+            ByteBuffer output) {
+        ImageProxy.PlaneProxy[] inputPlanes = image.getPlanes();
         ImageProxy.PlaneProxy[] outputPlanes = new ImageProxy.PlaneProxy[3];
+        int outputOffset = 0;
         for (int i = 0; i < 3; ++i) {
-            ImageProxy.PlaneProxy inputPlane = image.getPlanes()[i];
-            ByteBuffer inputBuffer = inputPlane.getBuffer();
-            byte[] output = new byte[outputWidths[i] * outputHeights[i]];
-            switch (downsamplingMethod) {
-                case NEAREST_NEIGHBOR:
-                    resizeNearestNeighbor(
-                            inputBuffer,
-                            inputWidths[i],
-                            inputPlane.getPixelStride(),
-                            inputPlane.getRowStride(),
-                            inputHeights[i],
-                            output,
-                            outputWidths[i],
-                            outputHeights[i]);
-                    break;
-                case AVERAGING:
-                    resizeAveraging(
-                            inputBuffer,
-                            inputWidths[i],
-                            inputPlane.getPixelStride(),
-                            inputPlane.getRowStride(),
-                            inputHeights[i],
-                            output,
-                            outputWidths[i],
-                            outputHeights[i]);
-                    break;
-            }
-            outputPlanes[i] = createPlaneProxy(outputWidths[i], 1, output);
+            // The chroma planes are subsampled by 2 in both directions.
+            int divisor = (i == 0) ? 1 : 2;
+            int outputWidth = downsampledWidth / divisor;
+            int outputHeight = downsampledHeight / divisor;
+            ImageProxy.PlaneProxy inputPlane = inputPlanes[i];
+            SamplingTable samplingTable = getSamplingTable(
+                    downsamplingMethod,
+                    image.getWidth() / divisor,
+                    image.getHeight() / divisor,
+                    inputPlane.getPixelStride(),
+                    outputWidth,
+                    outputHeight);
+            samplingTable.resample(
+                    inputPlane.getBuffer(), inputPlane.getRowStride(), output, outputOffset);
+
+            int outputPlaneSize = outputWidth * outputHeight;
+            ByteBuffer outputPlane = output.duplicate();
+            outputPlane.clear();
+            outputPlane.position(outputOffset);
+            outputPlane.limit(outputOffset + outputPlaneSize);
+            outputPlanes[i] = createPlaneProxy(outputWidth, 1, outputPlane.slice());
+            outputOffset += outputPlaneSize;
         }
         return new ForwardingImageProxyImpl(
                 image, outputPlanes, downsampledWidth, downsampledHeight);
     }
 
-    private static void resizeNearestNeighbor(
-            ByteBuffer input,
+    /**
+     * Returns the cached {@link SamplingTable} for the given parameters, creating it if needed.
+     */
+    @VisibleForTesting
+    @NonNull
+    static SamplingTable getSamplingTable(
+            @NonNull DownsamplingMethod downsamplingMethod,
             int inputWidth,
-            int inputPixelStride,
-            int inputRowStride,
             int inputHeight,
-            byte[] output,
+            int inputPixelStride,
             int outputWidth,
             int outputHeight) {
-        float scaleX = (float) inputWidth / outputWidth;
-        float scaleY = (float) inputHeight / outputHeight;
-
-        byte[] row = new byte[inputRowStride];
-        int[] sourceIndices = new int[outputWidth];
-        for (int ix = 0; ix < outputWidth; ++ix) {
-            float sourceX = ix * scaleX;
-            int floorSourceX = (int) sourceX;
-            sourceIndices[ix] = floorSourceX * inputPixelStride;
-        }
-
-        synchronized (input) {
-            input.rewind();
-            for (int iy = 0; iy < outputHeight; ++iy) {
-                float sourceY = iy * scaleY;
-                int floorSourceY = (int) sourceY;
-                int rowOffsetSource = Math.min(floorSourceY, inputHeight - 1) * inputRowStride;
-                int rowOffsetTarget = iy * outputWidth;
-
-                input.position(rowOffsetSource);
-                input.get(row, 0, Math.min(inputRowStride, input.remaining()));
-
-                for (int ix = 0; ix < outputWidth; ++ix) {
-                    output[rowOffsetTarget + ix] = row[sourceIndices[ix]];
+        synchronized (sSamplingTablesLock) {
+            for (int i = sSamplingTables.size() - 1; i >= 0; --i) {
+                SamplingTable samplingTable = sSamplingTables.get(i);
+                if (samplingTable.matches(downsamplingMethod, inputWidth, inputHeight,
+                        inputPixelStride, outputWidth, outputHeight)) {
+                    if (i != sSamplingTables.size() - 1) {
+                        sSamplingTables.remove(i);
+                        sSamplingTables.add(samplingTable);
+                    }
+                    return samplingTable;
                 }
             }
         }
-    }
-
-    private static void resizeAveraging(
-            ByteBuffer input,
-            int inputWidth,
-            int inputPixelStride,
-            int inputRowStride,
-            int inputHeight,
-            byte[] output,
-            int outputWidth,
-            int outputHeight) {
-        float scaleX = (float) inputWidth / outputWidth;
-        float scaleY = (float) inputHeight / outputHeight;
-
-        byte[] row0 = new byte[inputRowStride];
-        byte[] row1 = new byte[inputRowStride];
-        int[] sourceIndices = new int[outputWidth];
-        for (int ix = 0; ix < outputWidth; ++ix) {
-            float sourceX = ix * scaleX;
-            int floorSourceX = (int) sourceX;
-            sourceIndices[ix] = floorSourceX * inputPixelStride;
-        }
-
-        synchronized (input) {
-            input.rewind();
-            for (int iy = 0; iy < outputHeight; ++iy) {
-                float sourceY = iy * scaleY;
-                int floorSourceY = (int) sourceY;
-                int rowOffsetSource0 = Math.min(floorSourceY, inputHeight - 1) * inputRowStride;
-                int rowOffsetSource1 = Math.min(floorSourceY + 1, inputHeight - 1) * inputRowStride;
-                int rowOffsetTarget = iy * outputWidth;
-
-                input.position(rowOffsetSource0);
-                input.get(row0, 0, Math.min(inputRowStride, input.remaining()));
-                input.position(rowOffsetSource1);
-                input.get(row1, 0, Math.min(inputRowStride, input.remaining()));
-
-                for (int ix = 0; ix < outputWidth; ++ix) {
-                    int sampleA = row0[sourceIndices[ix]] & 0xFF;
-                    int sampleB = row0[sourceIndices[ix] + inputPixelStride] & 0xFF;
-                    int sampleC = row1[sourceIndices[ix]] & 0xFF;
-                    int sampleD = row1[sourceIndices[ix] + inputPixelStride] & 0xFF;
-                    int mixed = (sampleA + sampleB + sampleC + sampleD) / 4;
-                    output[rowOffsetTarget + ix] = (byte) (mixed & 0xFF);
-                }
+        SamplingTable samplingTable = new SamplingTable(downsamplingMethod, inputWidth,
+                inputHeight, inputPixelStride, outputWidth, outputHeight);
+        synchronized (sSamplingTablesLock) {
+            if (sSamplingTables.size() == MAX_CACHED_SAMPLING_TABLES) {
+                sSamplingTables.remove(0);
             }
+            sSamplingTables.add(samplingTable);
         }
+        return samplingTable;
     }
 
     @SuppressWarnings("SameParameterValue")
     private static ImageProxy.PlaneProxy createPlaneProxy(
-            final int rowStride, final int pixelStride, final byte[] data) {
+            final int rowStride, final int pixelStride, final ByteBuffer buffer) {
         return new ImageProxy.PlaneProxy() {
-            final ByteBuffer mBuffer = ByteBuffer.wrap(data);
-
             @Override
             public int getRowStride() {
                 return rowStride;
@@ -207,7 +244,7 @@ final class ImageProxyDownsampler {
             @Override
             @NonNull
             public ByteBuffer getBuffer() {
-                return mBuffer;
+                return buffer;
             }
         };
     }
@@ -217,6 +254,231 @@ final class ImageProxyDownsampler {
         NEAREST_NEIGHBOR,
         // Uses average of 4 nearest samples.
         AVERAGING,
+        // Uses average of all the samples covered by the output sample. Doesn't alias at any
+        // downsampling factor.
+        BOX,
+        // Uses bilinear interpolation of the 4 samples around the center of the output sample.
+        BILINEAR,
+    }
+
+    /**
+     * Source positions and weights used to downsample a plane of a given size to another size.
+     *
+     * <p>Horizontal positions are stored as byte offsets within a row, vertical positions as row
+     * indices, so that resampling a frame only reads the tables. Instances are immutable.
+     */
+    @VisibleForTesting
+    static final class SamplingTable {
+        private final DownsamplingMethod mDownsamplingMethod;
+        private final int mInputWidth;
+        private final int mInputHeight;
+        private final int mInputPixelStride;
+        private final int mOutputWidth;
+        private final int mOutputHeight;
+
+        // First and second source column of each output column. For BOX, the first column and
+        // the number of columns instead.
+        private final int[] mX0;
+        private final int[] mX1;
+        // Same as above for the rows.
+        private final int[] mY0;
+        private final int[] mY1;
+        // Weights of the second column and row, for BILINEAR.
+        private final int[] mXWeights;
+        private final int[] mYWeights;
+        // Number of bytes of the last input row which are read, and maximum number of input rows
+        // read for an output row.
+        private final int mInputRowLength;
+        private final int mMaxInputRows;
+
+        SamplingTable(
+                @NonNull DownsamplingMethod downsamplingMethod,
+                int inputWidth,
+                int inputHeight,
+                int inputPixelStride,
+                int outputWidth,
+                int outputHeight) {
+            mDownsamplingMethod = downsamplingMethod;
+            mInputWidth = inputWidth;
+            mInputHeight = inputHeight;
+            mInputPixelStride = inputPixelStride;
+            mOutputWidth = outputWidth;
+            mOutputHeight = outputHeight;
+
+            mX0 = new int[outputWidth];
+            mY0 = new int[outputHeight];
+            boolean twoSamples = downsamplingMethod != DownsamplingMethod.NEAREST_NEIGHBOR;
+            mX1 = twoSamples ? new int[outputWidth] : null;
+            mY1 = twoSamples ? new int[outputHeight] : null;
+            boolean bilinear = downsamplingMethod == DownsamplingMethod.BILINEAR;
+            mXWeights = bilinear ? new int[outputWidth] : null;
+            mYWeights = bilinear ? new int[outputHeight] : null;
+
+            fillAxis(inputWidth, outputWidth, mX0, mX1, mXWeights);
+            fillAxis(inputHeight, outputHeight, mY0, mY1, mYWeights);
+            for (int x = 0; x < outputWidth; ++x) {
+                mX0[x] *= inputPixelStride;
+                if (mX1 != null && downsamplingMethod != DownsamplingMethod.BOX) {
+                    mX1[x] *= inputPixelStride;
+                }
+            }
+            mInputRowLength = (inputWidth - 1) * inputPixelStride + 1;
+            int maxInputRows = 1;
+            for (int y = 0; y < outputHeight; ++y) {
+                maxInputRows = Math.max(maxInputRows, getInputRows(y));
+            }
+            mMaxInputRows = maxInputRows;
+        }
+
+        /** Returns the number of consecutive input rows, from {@code mY0[y]}, read for a row. */
+        private int getInputRows(int y) {
+            switch (mDownsamplingMethod) {
+                case NEAREST_NEIGHBOR:
+                    return 1;
+                case BOX:
+                    return mY1[y];
+                default:
+                    return mY1[y] - mY0[y] + 1;
+            }
+        }
+
+        private void fillAxis(int inputSize, int outputSize, int[] first, int[] second,
+                int[] weights) {
+            float scale = (float) inputSize / outputSize;
+            for (int i = 0; i < outputSize; ++i) {
+                switch (mDownsamplingMethod) {
+                    case NEAREST_NEIGHBOR:
+                        first[i] = Math.min((int) (i * scale), inputSize - 1);
+                        break;
+                    case AVERAGING:
+                        first[i] = Math.min((int) (i * scale), inputSize - 1);
+                        second[i] = Math.min(first[i] + 1, inputSize - 1);
+                        break;
+                    case BOX:
+                        int start = (int) ((long) i * inputSize / outputSize);
+                        int end = (int) ((long) (i + 1) * inputSize / outputSize);
+                        first[i] = start;
+                        second[i] = Math.max(end - start, 1);
+                        break;
+                    case BILINEAR:
+                        float center = Math.max((i + 0.5f) * scale - 0.5f, 0f);
+                        int floor = Math.min((int) center, inputSize - 1);
+                        first[i] = floor;
+                        second[i] = Math.min(floor + 1, inputSize - 1);
+                        weights[i] = Math.round((center - floor) * WEIGHT_ONE);
+                        break;
+                }
+            }
+        }
+
+        boolean matches(
+                DownsamplingMethod downsamplingMethod,
+                int inputWidth,
+                int inputHeight,
+                int inputPixelStride,
+                int outputWidth,
+                int outputHeight) {
+            return mDownsamplingMethod == downsamplingMethod
+                    && mInputWidth == inputWidth
+                    && mInputHeight == inputHeight
+                    && mInputPixelStride == inputPixelStride
+                    && mOutputWidth == outputWidth
+                    && mOutputHeight == outputHeight;
+        }
+
+        /**
+         * Resamples a plane into {@code output}, starting at {@code outputOffset} with a row
+         * stride equal to the output width and a pixel stride of 1.
+         *
+         * <p>The input rows needed for an output row are copied with a single bulk read, and
+         * each output row is written with a single bulk write, since per sample accesses to
+         * direct buffers are slow. The positions of both buffers are left untouched.
+         */
+        void resample(@NonNull ByteBuffer input, int inputRowStride, @NonNull ByteBuffer output,
+                int outputOffset) {
+            ByteBuffer in = input.duplicate();
+            in.clear();
+            ByteBuffer out = output.duplicate();
+            out.clear();
+            out.position(outputOffset);
+            byte[] rows = sRowPool.acquire((mMaxInputRows - 1) * inputRowStride + mInputRowLength);
+            byte[] outputRow = sRowPool.acquire(mOutputWidth);
+            try {
+                int loadedRow = -1;
+                int loadedRowCount = 0;
+                for (int y = 0; y < mOutputHeight; ++y) {
+                    int rowCount = getInputRows(y);
+                    if (mY0[y] != loadedRow || rowCount != loadedRowCount) {
+                        in.position(mY0[y] * inputRowStride);
+                        in.get(rows, 0, (rowCount - 1) * inputRowStride + mInputRowLength);
+                        loadedRow = mY0[y];
+                        loadedRowCount = rowCount;
+                    }
+                    resampleRow(y, rows, inputRowStride, outputRow);
+                    out.put(outputRow, 0, mOutputWidth);
+                }
+            } finally {
+                sRowPool.release(rows);
+                sRowPool.release(outputRow);
+            }
+        }
+
+        /**
+         * Computes the output row {@code y} from the input rows starting at {@code mY0[y]},
+         * copied at the start of {@code rows}.
+         */
+        private void resampleRow(int y, byte[] rows, int inputRowStride, byte[] outputRow) {
+            switch (mDownsamplingMethod) {
+                case NEAREST_NEIGHBOR:
+                    for (int x = 0; x < mOutputWidth; ++x) {
+                        outputRow[x] = rows[mX0[x]];
+                    }
+                    break;
+                case AVERAGING: {
+                    int row1 = (mY1[y] - mY0[y]) * inputRowStride;
+                    for (int x = 0; x < mOutputWidth; ++x) {
+                        int sum = (rows[mX0[x]] & 0xFF)
+                                + (rows[mX1[x]] & 0xFF)
+                                + (rows[row1 + mX0[x]] & 0xFF)
+                                + (rows[row1 + mX1[x]] & 0xFF);
+                        outputRow[x] = (byte) (sum / 4);
+                    }
+                    break;
+                }
+                case BOX: {
+                    int rowCount = mY1[y];
+                    for (int x = 0; x < mOutputWidth; ++x) {
+                        int columns = mX1[x];
+                        int sum = 0;
+                        for (int row = 0; row < rowCount; ++row) {
+                            int index = row * inputRowStride + mX0[x];
+                            for (int column = 0; column < columns; ++column) {
+                                sum += rows[index] & 0xFF;
+                                index += mInputPixelStride;
+                            }
+                        }
+                        int count = rowCount * columns;
+                        outputRow[x] = (byte) ((sum + count / 2) / count);
+                    }
+                    break;
+                }
+                case BILINEAR: {
+                    int row1 = (mY1[y] - mY0[y]) * inputRowStride;
+                    int yWeight = mYWeights[y];
+                    for (int x = 0; x < mOutputWidth; ++x) {
+                        int xWeight = mXWeights[x];
+                        int top = (rows[mX0[x]] & 0xFF) * (WEIGHT_ONE - xWeight)
+                                + (rows[mX1[x]] & 0xFF) * xWeight;
+                        int bottom = (rows[row1 + mX0[x]] & 0xFF) * (WEIGHT_ONE - xWeight)
+                                + (rows[row1 + mX1[x]] & 0xFF) * xWeight;
+                        int value = top * (WEIGHT_ONE - yWeight) + bottom * yWeight;
+                        outputRow[x] = (byte) ((value + (1 << (2 * WEIGHT_BITS - 1)))
+                                >> (2 * WEIGHT_BITS));
+                    }
+                    break;
+                }
+            }
+        }
     }
 
     private static final class ForwardingImageProxyImpl extends ForwardingImageProxy {
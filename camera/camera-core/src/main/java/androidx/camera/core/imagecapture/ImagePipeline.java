@@ -144,6 +144,14 @@ public class ImagePipeline {
         return mCaptureNode.getCapacity();
     }
 
+    /**
+     * Returns the latency metrics of the post-processing stages of this pipeline.
+     */
+    @NonNull
+    public ProcessingMetrics getProcessingMetrics() {
+        return mProcessingNode.getMetrics();
+    }
+
     /**
      * Sets a listener for close calls on this image.
      *
@@ -29,6 +29,7 @@ import android.provider.MediaStore;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.RequiresApi;
+import androidx.annotation.VisibleForTesting;
 import androidx.camera.core.ImageCapture;
 import androidx.camera.core.ImageCaptureException;
 import androidx.camera.core.impl.utils.Exif;
@@ -38,39 +39,131 @@ import androidx.camera.core.processing.Packet;
 import com.google.auto.value.AutoValue;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.util.UUID;
 
 /**
  * Saves JPEG bytes to disk.
+ *
+ * <p>Only the JPEG header, which holds the Exif data, is written to a temporary file to be
+ * updated with {@link Exif}. The updated header and the image data are then written to the
+ * target in a single pass, so the image data is never copied or rewritten.
  */
 @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
 class JpegBytes2Disk implements Operation<JpegBytes2Disk.In, ImageCapture.OutputFileResults> {
 
     private static final String TEMP_FILE_PREFIX = "CameraX";
     private static final String TEMP_FILE_SUFFIX = ".tmp";
-    private static final int COPY_BUFFER_SIZE = 1024;
     private static final int PENDING = 1;
     private static final int NOT_PENDING = 0;
 
+    private static final int MARKER_SOI = 0xD8;
+    private static final int MARKER_EOI = 0xD9;
+    private static final int MARKER_SOS = 0xDA;
+    private static final int MARKER_TEM = 0x01;
+    private static final int MARKER_RST0 = 0xD0;
+    private static final int MARKER_RST7 = 0xD7;
+
     @NonNull
     @Override
     public ImageCapture.OutputFileResults apply(@NonNull In in) throws ImageCaptureException {
         Packet<byte[]> packet = in.getPacket();
         ImageCapture.OutputFileOptions options = in.getOutputFileOptions();
-        File tempFile = createTempFile(options);
-        writeBytesToFile(tempFile, packet.getData());
-        updateFileExif(tempFile, requireNonNull(packet.getExif()), options,
-                packet.getRotationDegrees());
-        Uri uri = copyFileToTarget(tempFile, options);
+        byte[] jpegBytes = packet.getData();
+        int imageDataOffset = findImageDataOffset(jpegBytes);
+        if (imageDataOffset == -1) {
+            // Not a JPEG we can split. Handle the whole image as the header.
+            imageDataOffset = jpegBytes.length;
+        }
+        byte[] header = createUpdatedHeader(jpegBytes, imageDataOffset,
+                requireNonNull(packet.getExif()), options, packet.getRotationDegrees());
+        Uri uri = writeToTarget(header, jpegBytes, imageDataOffset, options);
         return new ImageCapture.OutputFileResults(uri);
     }
 
+    /**
+     * Returns the offset of the start of scan or end of image marker, where the header of the
+     * JPEG ends, or -1 if the segments cannot be parsed.
+     */
+    @VisibleForTesting
+    static int findImageDataOffset(@NonNull byte[] jpegBytes) {
+        if (jpegBytes.length < 2 || (jpegBytes[0] & 0xFF) != 0xFF
+                || (jpegBytes[1] & 0xFF) != MARKER_SOI) {
+            return -1;
+        }
+        int offset = 2;
+        while (offset + 1 < jpegBytes.length) {
+            if ((jpegBytes[offset] & 0xFF) != 0xFF) {
+                return -1;
+            }
+            int marker = jpegBytes[offset + 1] & 0xFF;
+            if (marker == 0xFF) {
+                // Fill byte.
+                offset++;
+                continue;
+            }
+            if (marker == MARKER_SOS || marker == MARKER_EOI) {
+                return offset;
+            }
+            if (marker == MARKER_TEM || (marker >= MARKER_RST0 && marker <= MARKER_RST7)) {
+                // Markers without a segment.
+                offset += 2;
+                continue;
+            }
+            if (offset + 3 >= jpegBytes.length) {
+                return -1;
+            }
+            int length = ((jpegBytes[offset + 2] & 0xFF) << 8) | (jpegBytes[offset + 3] & 0xFF);
+            if (length < 2) {
+                return -1;
+            }
+            offset += 2 + length;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the JPEG header with the updated Exif data.
+     *
+     * <p>The header is terminated with an end of image marker, so it can be parsed and updated
+     * on its own, and the marker is dropped from the result.
+     */
+    @NonNull
+    private static byte[] createUpdatedHeader(
+            @NonNull byte[] jpegBytes,
+            int imageDataOffset,
+            @NonNull Exif originalExif,
+            @NonNull ImageCapture.OutputFileOptions options,
+            int rotationDegrees) throws ImageCaptureException {
+        boolean terminate = imageDataOffset < jpegBytes.length;
+        File headerFile = createTempFile(options);
+        try {
+            try (FileOutputStream output = new FileOutputStream(headerFile)) {
+                output.write(jpegBytes, 0, imageDataOffset);
+                if (terminate) {
+                    output.write(0xFF);
+                    output.write(MARKER_EOI);
+                }
+            } catch (IOException e) {
+                throw new ImageCaptureException(ERROR_FILE_IO, "Failed to write to temp file", e);
+            }
+            updateFileExif(headerFile, originalExif, options, rotationDegrees);
+            try (RandomAccessFile input = new RandomAccessFile(headerFile, "r")) {
+                byte[] header = new byte[(int) input.length() - (terminate ? 2 : 0)];
+                input.readFully(header);
+                return header;
+            } catch (IOException e) {
+                throw new ImageCaptureException(ERROR_FILE_IO, "Failed to read temp file", e);
+            }
+        } finally {
+            headerFile.delete();
+        }
+    }
+
     /**
      * Creates a temporary JPEG file.
      */
@@ -92,18 +185,6 @@ class JpegBytes2Disk implements Operation<JpegBytes2Disk.In, ImageCapture.Output
         }
     }
 
-    /**
-     * Writes byte array to the given {@link File}.
-     */
-    private static void writeBytesToFile(
-            @NonNull File tempFile, @NonNull byte[] bytes) throws ImageCaptureException {
-        try (FileOutputStream output = new FileOutputStream(tempFile)) {
-            output.write(bytes);
-        } catch (IOException e) {
-            throw new ImageCaptureException(ERROR_FILE_IO, "Failed to write to temp file", e);
-        }
-    }
-
     private static void updateFileExif(
             @NonNull File tempFile,
             @NonNull Exif originalExif,
@@ -140,33 +221,40 @@ class JpegBytes2Disk implements Operation<JpegBytes2Disk.In, ImageCapture.Output
     }
 
     /**
-     * Copies the file to target and returns the {@link Uri}.
+     * Writes the header and the image data to the target and returns the {@link Uri}.
      *
      * @return null if the target is {@link OutputStream}.
      */
     @Nullable
-    private static Uri copyFileToTarget(
-            @NonNull File file, @NonNull ImageCapture.OutputFileOptions options)
+    private static Uri writeToTarget(
+            @NonNull byte[] header,
+            @NonNull byte[] jpegBytes,
+            int imageDataOffset,
+            @NonNull ImageCapture.OutputFileOptions options)
             throws ImageCaptureException {
         if (isSaveToMediaStore(options)) {
-            return copyFileToMediaStore(file, options);
+            return writeToMediaStore(header, jpegBytes, imageDataOffset, options);
         } else if (isSaveToOutputStream(options)) {
             try {
-                copyFileToOutputStream(file, requireNonNull(options.getOutputStream()));
+                writeJpeg(requireNonNull(options.getOutputStream()), header, jpegBytes,
+                        imageDataOffset);
                 return null;
             } catch (IOException e) {
                 throw new ImageCaptureException(
                         ERROR_FILE_IO, "Failed to write to OutputStream.", null);
             }
         } else if (isSaveToFile(options)) {
-            return copyFileToFile(file, requireNonNull(options.getFile()));
+            return writeToFile(header, jpegBytes, imageDataOffset,
+                    requireNonNull(options.getFile()), options);
         } else {
             throw new ImageCaptureException(ERROR_UNKNOWN, "Invalid OutputFileOptions", null);
         }
     }
 
-    private static Uri copyFileToMediaStore(
-            @NonNull File file,
+    private static Uri writeToMediaStore(
+            @NonNull byte[] header,
+            @NonNull byte[] jpegBytes,
+            int imageDataOffset,
             @NonNull ImageCapture.OutputFileOptions options)
             throws ImageCaptureException {
         ContentResolver contentResolver = requireNonNull(options.getContentResolver());
@@ -181,7 +269,12 @@ class JpegBytes2Disk implements Operation<JpegBytes2Disk.In, ImageCapture.Output
                 throw new ImageCaptureException(
                         ERROR_FILE_IO, "Failed to insert a MediaStore URI.", null);
             }
-            copyTempFileToUri(file, uri, contentResolver);
+            try (OutputStream outputStream = contentResolver.openOutputStream(uri)) {
+                if (outputStream == null) {
+                    throw new FileNotFoundException(uri + " cannot be resolved.");
+                }
+                writeJpeg(outputStream, header, jpegBytes, imageDataOffset);
+            }
         } catch (IOException | SecurityException e) {
             throw new ImageCaptureException(
                     ERROR_FILE_IO, "Failed to write to MediaStore URI: " + uri, e);
@@ -191,15 +284,30 @@ class JpegBytes2Disk implements Operation<JpegBytes2Disk.In, ImageCapture.Output
         return uri;
     }
 
-    private static Uri copyFileToFile(@NonNull File source, @NonNull File target)
+    private static Uri writeToFile(
+            @NonNull byte[] header,
+            @NonNull byte[] jpegBytes,
+            int imageDataOffset,
+            @NonNull File target,
+            @NonNull ImageCapture.OutputFileOptions options)
             throws ImageCaptureException {
+        // Write to a temp file in the target folder and rename, so the target is never left
+        // partially written.
+        File tempFile = createTempFile(options);
+        try (FileOutputStream output = new FileOutputStream(tempFile)) {
+            writeJpeg(output, header, jpegBytes, imageDataOffset);
+        } catch (IOException e) {
+            tempFile.delete();
+            throw new ImageCaptureException(ERROR_FILE_IO, "Failed to write to temp file", e);
+        }
         // Normally File#renameTo will overwrite the targetFile even if it already exists.
         // Just in case of unexpected behavior on certain platforms or devices, delete the
         // target file before renaming.
         if (target.exists()) {
             target.delete();
         }
-        if (!source.renameTo(target)) {
+        if (!tempFile.renameTo(target)) {
+            tempFile.delete();
             throw new ImageCaptureException(
                     ERROR_FILE_IO,
                     "Failed to overwrite the file: " + target.getAbsolutePath(),
@@ -209,31 +317,15 @@ class JpegBytes2Disk implements Operation<JpegBytes2Disk.In, ImageCapture.Output
     }
 
     /**
-     * Copies temp file to {@link Uri}.
+     * Writes the updated header followed by the image data of the original JPEG.
      */
-    private static void copyTempFileToUri(
-            @NonNull File tempFile,
-            @NonNull Uri uri,
-            @NonNull ContentResolver contentResolver) throws IOException {
-        try (OutputStream outputStream = contentResolver.openOutputStream(uri)) {
-            if (outputStream == null) {
-                throw new FileNotFoundException(uri + " cannot be resolved.");
-            }
-            copyFileToOutputStream(tempFile, outputStream);
-        }
-    }
-
-    @SuppressWarnings("IOStreamConstructor")
-    private static void copyFileToOutputStream(@NonNull File file,
-            @NonNull OutputStream outputStream)
-            throws IOException {
-        try (InputStream in = new FileInputStream(file)) {
-            byte[] buf = new byte[COPY_BUFFER_SIZE];
-            int len;
-            while ((len = in.read(buf)) > 0) {
-                outputStream.write(buf, 0, len);
-            }
-        }
+    private static void writeJpeg(
+            @NonNull OutputStream outputStream,
+            @NonNull byte[] header,
+            @NonNull byte[] jpegBytes,
+            int imageDataOffset) throws IOException {
+        outputStream.write(header);
+        outputStream.write(jpegBytes, imageDataOffset, jpegBytes.length - imageDataOffset);
     }
 
     /**
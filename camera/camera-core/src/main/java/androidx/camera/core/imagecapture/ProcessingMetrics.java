@@ -0,0 +1,118 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.camera.core.imagecapture;
+
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RequiresApi;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency metrics of the {@link ProcessingNode} stages.
+ *
+ * <p>The metrics are cumulative since the creation of the {@link ImagePipeline} or the last
+ * {@link #reset()}. They may be read from any thread while requests are being processed.
+ */
+@RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
+public final class ProcessingMetrics {
+
+    /**
+     * The stages of the post-processing of a capture.
+     */
+    public enum Stage {
+        // Time between the arrival of the image and the start of its processing.
+        QUEUE,
+        INPUT_TO_PACKET,
+        IMAGE_TO_JPEG_BYTES,
+        JPEG_BYTES_TO_CROPPED_BITMAP,
+        BITMAP_EFFECT,
+        BITMAP_TO_JPEG_BYTES,
+        JPEG_BYTES_TO_IMAGE,
+        JPEG_IMAGE_TO_RESULT,
+        // Time between the end of the encoding and the start of the disk write.
+        DISK_QUEUE,
+        JPEG_BYTES_TO_DISK,
+    }
+
+    private static final int STAGE_COUNT = Stage.values().length;
+
+    private final AtomicLongArray mCounts = new AtomicLongArray(STAGE_COUNT);
+    private final AtomicLongArray mTotalNanos = new AtomicLongArray(STAGE_COUNT);
+    private final AtomicLongArray mMaxNanos = new AtomicLongArray(STAGE_COUNT);
+
+    void record(@NonNull Stage stage, long latencyNanos) {
+        int index = stage.ordinal();
+        mCounts.incrementAndGet(index);
+        mTotalNanos.addAndGet(index, latencyNanos);
+        long max;
+        do {
+            max = mMaxNanos.get(index);
+        } while (latencyNanos > max && !mMaxNanos.compareAndSet(index, max, latencyNanos));
+    }
+
+    /**
+     * Returns the number of times the stage ran.
+     */
+    public long getCount(@NonNull Stage stage) {
+        return mCounts.get(stage.ordinal());
+    }
+
+    /**
+     * Returns the average latency of the stage in nanoseconds, or 0 if it never ran.
+     */
+    public long getAverageLatencyNanos(@NonNull Stage stage) {
+        long count = getCount(stage);
+        return count == 0 ? 0 : mTotalNanos.get(stage.ordinal()) / count;
+    }
+
+    /**
+     * Returns the maximum latency of the stage in nanoseconds, or 0 if it never ran.
+     */
+    public long getMaxLatencyNanos(@NonNull Stage stage) {
+        return mMaxNanos.get(stage.ordinal());
+    }
+
+    /**
+     * Clears all the metrics.
+     */
+    public void reset() {
+        for (int i = 0; i < STAGE_COUNT; i++) {
+            mCounts.set(i, 0);
+            mTotalNanos.set(i, 0);
+            mMaxNanos.set(i, 0);
+        }
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("ProcessingMetrics{");
+        for (Stage stage : Stage.values()) {
+            if (getCount(stage) == 0) {
+                continue;
+            }
+            builder.append(stage)
+                    .append(": count=").append(getCount(stage))
+                    .append(", avgNs=").append(getAverageLatencyNanos(stage))
+                    .append(", maxNs=").append(getMaxLatencyNanos(stage))
+                    .append("; ");
+        }
+        return builder.append('}').toString();
+    }
+}
@@ -27,7 +27,9 @@ import static java.util.Objects.requireNonNull;
 import android.graphics.Bitmap;
 import android.graphics.ImageFormat;
 import android.os.Build;
+import android.os.SystemClock;
 
+import androidx.annotation.GuardedBy;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.RequiresApi;
@@ -36,6 +38,7 @@ import androidx.annotation.WorkerThread;
 import androidx.camera.core.ImageCapture;
 import androidx.camera.core.ImageCaptureException;
 import androidx.camera.core.ImageProxy;
+import androidx.camera.core.imagecapture.ProcessingMetrics.Stage;
 import androidx.camera.core.impl.utils.executor.CameraXExecutors;
 import androidx.camera.core.internal.compat.quirk.DeviceQuirks;
 import androidx.camera.core.internal.compat.quirk.LowMemoryQuirk;
@@ -47,6 +50,8 @@ import androidx.camera.core.processing.Packet;
 
 import com.google.auto.value.AutoValue;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.concurrent.Executor;
 
 /**
@@ -54,15 +59,39 @@ import java.util.concurrent.Executor;
  *
  * <p>This node performs operations that runs on a single image, such as cropping, format
  * conversion, effects and/or saving to disk.
+ *
+ * <p>Requests go through two stages, each running one request at a time: encoding, which
+ * covers everything up to the final JPEG bytes or in-memory result, and saving to disk. The
+ * stages are pipelined, so a burst can save a request while encoding the next one. To bound the
+ * memory used by decoded and encoded images, at most {@link #MAX_IN_FLIGHT_REQUESTS} requests
+ * are processed at the same time, and the other input packets wait in the order they arrived.
  */
 @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
 public class ProcessingNode implements Node<ProcessingNode.In, Void> {
 
+    // One request being saved while the next one is encoded.
+    @VisibleForTesting
+    static final int MAX_IN_FLIGHT_REQUESTS = 2;
+
     @NonNull
     final Executor mBlockingExecutor;
     @Nullable
     final InternalImageProcessor mImageProcessor;
 
+    @NonNull
+    private final Executor mEncodingExecutor;
+    @NonNull
+    private final Executor mDiskExecutor;
+    private final int mMaxInFlightRequests;
+    @NonNull
+    private final ProcessingMetrics mMetrics = new ProcessingMetrics();
+
+    private final Object mLock = new Object();
+    @GuardedBy("mLock")
+    private int mInFlightRequests = 0;
+    @GuardedBy("mLock")
+    private final Deque<PendingInput> mPendingInputs = new ArrayDeque<>();
+
     private Operation<InputPacket, Packet<ImageProxy>> mInput2Packet;
     private Operation<Image2JpegBytes.In, Packet<byte[]>> mImage2JpegBytes;
     private Operation<Bitmap2JpegBytes.In, Packet<byte[]>> mBitmap2JpegBytes;
@@ -90,9 +119,16 @@ public class ProcessingNode implements Node<ProcessingNode.In, Void> {
             @Nullable InternalImageProcessor imageProcessor) {
         boolean isLowMemoryDevice = DeviceQuirks.get(LowMemoryQuirk.class) != null;
         if (isLowMemoryDevice) {
+            // A single request at a time, without overlapping the stages.
             mBlockingExecutor = CameraXExecutors.newSequentialExecutor(blockingExecutor);
+            mEncodingExecutor = mBlockingExecutor;
+            mDiskExecutor = mBlockingExecutor;
+            mMaxInFlightRequests = 1;
         } else {
             mBlockingExecutor = blockingExecutor;
+            mEncodingExecutor = CameraXExecutors.newSequentialExecutor(blockingExecutor);
+            mDiskExecutor = CameraXExecutors.newSequentialExecutor(blockingExecutor);
+            mMaxInFlightRequests = MAX_IN_FLIGHT_REQUESTS;
         }
         mImageProcessor = imageProcessor;
     }
@@ -107,7 +143,7 @@ public class ProcessingNode implements Node<ProcessingNode.In, Void> {
                         // No-ops if the request is aborted.
                         return;
                     }
-                    mBlockingExecutor.execute(() -> processInputPacket(inputPacket));
+                    onInputPacket(inputPacket);
                 });
 
         mInput2Packet = new ProcessingInput2Packet();
@@ -133,19 +169,82 @@ public class ProcessingNode implements Node<ProcessingNode.In, Void> {
     public void release() {
     }
 
+    /**
+     * Returns the latency metrics of the processing stages.
+     */
+    @NonNull
+    ProcessingMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * Starts processing an {@link InputPacket}, or queues it if too many requests are in flight.
+     */
+    private void onInputPacket(@NonNull InputPacket inputPacket) {
+        PendingInput pendingInput =
+                new PendingInput(inputPacket, SystemClock.elapsedRealtimeNanos());
+        synchronized (mLock) {
+            if (mInFlightRequests >= mMaxInFlightRequests) {
+                mPendingInputs.add(pendingInput);
+                return;
+            }
+            mInFlightRequests++;
+        }
+        encode(pendingInput);
+    }
+
+    /**
+     * Called when a request leaves the pipeline, to start processing the next pending one.
+     */
+    private void onRequestDone() {
+        while (true) {
+            PendingInput next;
+            synchronized (mLock) {
+                next = mPendingInputs.poll();
+                if (next == null) {
+                    mInFlightRequests--;
+                    return;
+                }
+            }
+            if (!next.mInputPacket.getProcessingRequest().isAborted()) {
+                encode(next);
+                return;
+            }
+            // The request was aborted while waiting. Give its slot to the next one.
+        }
+    }
+
+    private void encode(@NonNull PendingInput pendingInput) {
+        mEncodingExecutor.execute(() -> {
+            mMetrics.record(Stage.QUEUE,
+                    SystemClock.elapsedRealtimeNanos() - pendingInput.mArrivalNanos);
+            processInputPacket(pendingInput.mInputPacket);
+        });
+    }
+
     /**
      * Processes an {@link InputPacket} and delivers the result to {@link TakePictureManager}.
+     *
+     * <p>For on-disk captures, this only encodes the image and hands the JPEG bytes over to the
+     * disk stage.
      */
     @WorkerThread
     void processInputPacket(@NonNull InputPacket inputPacket) {
         ProcessingRequest request = inputPacket.getProcessingRequest();
+        boolean done = true;
         try {
             if (inputPacket.getProcessingRequest().isInMemoryCapture()) {
                 ImageProxy result = processInMemoryCapture(inputPacket);
                 mainThreadExecutor().execute(() -> request.onFinalResult(result));
             } else {
-                ImageCapture.OutputFileResults result = processOnDiskCapture(inputPacket);
-                mainThreadExecutor().execute(() -> request.onFinalResult(result));
+                Packet<byte[]> jpegBytes = encodeOnDiskCapture(inputPacket);
+                long encodedNanos = SystemClock.elapsedRealtimeNanos();
+                mDiskExecutor.execute(() -> {
+                    mMetrics.record(Stage.DISK_QUEUE,
+                            SystemClock.elapsedRealtimeNanos() - encodedNanos);
+                    saveOnDiskCapture(request, jpegBytes);
+                });
+                done = false;
             }
         } catch (ImageCaptureException e) {
             sendError(request, e);
@@ -155,22 +254,51 @@ public class ProcessingNode implements Node<ProcessingNode.In, Void> {
         } catch (RuntimeException e) {
             // For unexpected exceptions, throw an ERROR_UNKNOWN ImageCaptureException.
             sendError(request, new ImageCaptureException(ERROR_UNKNOWN, "Processing failed.", e));
+        } finally {
+            if (done) {
+                onRequestDone();
+            }
+        }
+    }
+
+    /**
+     * Saves the encoded JPEG bytes of an on-disk capture and delivers the result to
+     * {@link TakePictureManager}.
+     */
+    @WorkerThread
+    private void saveOnDiskCapture(@NonNull ProcessingRequest request,
+            @NonNull Packet<byte[]> jpegBytes) {
+        try {
+            ImageCapture.OutputFileResults result = apply(Stage.JPEG_BYTES_TO_DISK,
+                    mJpegBytes2Disk, JpegBytes2Disk.In.of(jpegBytes,
+                            requireNonNull(request.getOutputFileOptions())));
+            mainThreadExecutor().execute(() -> request.onFinalResult(result));
+        } catch (ImageCaptureException e) {
+            sendError(request, e);
+        } catch (OutOfMemoryError e) {
+            sendError(request, new ImageCaptureException(
+                    ERROR_UNKNOWN, "Processing failed due to low memory.", e));
+        } catch (RuntimeException e) {
+            // For unexpected exceptions, throw an ERROR_UNKNOWN ImageCaptureException.
+            sendError(request, new ImageCaptureException(ERROR_UNKNOWN, "Processing failed.", e));
+        } finally {
+            onRequestDone();
         }
     }
 
     @NonNull
     @WorkerThread
-    ImageCapture.OutputFileResults processOnDiskCapture(@NonNull InputPacket inputPacket)
+    private Packet<byte[]> encodeOnDiskCapture(@NonNull InputPacket inputPacket)
             throws ImageCaptureException {
         ProcessingRequest request = inputPacket.getProcessingRequest();
-        Packet<ImageProxy> originalImage = mInput2Packet.apply(inputPacket);
-        Packet<byte[]> jpegBytes = mImage2JpegBytes.apply(
+        Packet<ImageProxy> originalImage = apply(Stage.INPUT_TO_PACKET, mInput2Packet,
+                inputPacket);
+        Packet<byte[]> jpegBytes = apply(Stage.IMAGE_TO_JPEG_BYTES, mImage2JpegBytes,
                 Image2JpegBytes.In.of(originalImage, request.getJpegQuality()));
         if (jpegBytes.hasCropping() || mBitmapEffect != null) {
             jpegBytes = cropAndMaybeApplyEffect(jpegBytes, request.getJpegQuality());
         }
-        return mJpegBytes2Disk.apply(
-                JpegBytes2Disk.In.of(jpegBytes, requireNonNull(request.getOutputFileOptions())));
+        return jpegBytes;
     }
 
     @NonNull
@@ -178,16 +306,31 @@ public class ProcessingNode implements Node<ProcessingNode.In, Void> {
     ImageProxy processInMemoryCapture(@NonNull InputPacket inputPacket)
             throws ImageCaptureException {
         ProcessingRequest request = inputPacket.getProcessingRequest();
-        Packet<ImageProxy> image = mInput2Packet.apply(inputPacket);
+        Packet<ImageProxy> image = apply(Stage.INPUT_TO_PACKET, mInput2Packet, inputPacket);
         if (image.getFormat() == YUV_420_888 || mBitmapEffect != null) {
-            Packet<byte[]> jpegBytes = mImage2JpegBytes.apply(
+            Packet<byte[]> jpegBytes = apply(Stage.IMAGE_TO_JPEG_BYTES, mImage2JpegBytes,
                     Image2JpegBytes.In.of(image, request.getJpegQuality()));
             if (mBitmapEffect != null) {
                 jpegBytes = cropAndMaybeApplyEffect(jpegBytes, request.getJpegQuality());
             }
-            image = mJpegBytes2Image.apply(jpegBytes);
+            image = apply(Stage.JPEG_BYTES_TO_IMAGE, mJpegBytes2Image, jpegBytes);
+        }
+        return apply(Stage.JPEG_IMAGE_TO_RESULT, mJpegImage2Result, image);
+    }
+
+    /**
+     * Applies an {@link Operation} and records its latency.
+     */
+    @NonNull
+    @WorkerThread
+    private <I, O> O apply(@NonNull Stage stage, @NonNull Operation<I, O> operation,
+            @NonNull I input) throws ImageCaptureException {
+        long startNanos = SystemClock.elapsedRealtimeNanos();
+        try {
+            return operation.apply(input);
+        } finally {
+            mMetrics.record(stage, SystemClock.elapsedRealtimeNanos() - startNanos);
         }
-        return mJpegImage2Result.apply(image);
     }
 
     /**
@@ -196,12 +339,13 @@ public class ProcessingNode implements Node<ProcessingNode.In, Void> {
     private Packet<byte[]> cropAndMaybeApplyEffect(Packet<byte[]> jpegPacket, int jpegQuality)
             throws ImageCaptureException {
         checkState(jpegPacket.getFormat() == ImageFormat.JPEG);
-        Packet<Bitmap> bitmapPacket = mJpegBytes2CroppedBitmap.apply(jpegPacket);
+        Packet<Bitmap> bitmapPacket = apply(Stage.JPEG_BYTES_TO_CROPPED_BITMAP,
+                mJpegBytes2CroppedBitmap, jpegPacket);
         if (mBitmapEffect != null) {
             // Apply effect if present.
-            bitmapPacket = mBitmapEffect.apply(bitmapPacket);
+            bitmapPacket = apply(Stage.BITMAP_EFFECT, mBitmapEffect, bitmapPacket);
         }
-        return mBitmap2JpegBytes.apply(
+        return apply(Stage.BITMAP_TO_JPEG_BYTES, mBitmap2JpegBytes,
                 Bitmap2JpegBytes.In.of(bitmapPacket, jpegQuality));
     }
 
@@ -213,6 +357,20 @@ public class ProcessingNode implements Node<ProcessingNode.In, Void> {
         mainThreadExecutor().execute(() -> request.onProcessFailure(e));
     }
 
+    /**
+     * An {@link InputPacket} waiting to be encoded, with the time it arrived.
+     */
+    private static final class PendingInput {
+        @NonNull
+        final InputPacket mInputPacket;
+        final long mArrivalNanos;
+
+        PendingInput(@NonNull InputPacket inputPacket, long arrivalNanos) {
+            mInputPacket = inputPacket;
+            mArrivalNanos = arrivalNanos;
+        }
+    }
+
     /**
      * Input packet which is a combination of camera frame and processing request.
      */
@@ -266,6 +266,20 @@ public class TakePictureManager implements OnImageCloseListener, TakePictureRequ
         return captureRequestFuture;
     }
 
+    /**
+     * Returns the latency metrics of the post-processing stages of the current
+     * {@link ImagePipeline}.
+     *
+     * <p>A new pipeline is created when the camera configuration changes, which starts the
+     * metrics over.
+     */
+    @MainThread
+    @NonNull
+    public ProcessingMetrics getProcessingMetrics() {
+        checkMainThread();
+        return mImagePipeline.getProcessingMetrics();
+    }
+
     @VisibleForTesting
     boolean hasCapturingRequest() {
         return mCapturingRequest != null;
@@ -163,7 +163,7 @@ public class YuvToJpegProcessor implements CaptureProcessor {
             imageProxy = imageProxyListenableFuture.get();
             Preconditions.checkState(imageProxy.getFormat() == ImageFormat.YUV_420_888,
                     "Input image is not expected YUV_420_888 image format");
-            byte[] yuvBytes = ImageUtil.yuv_420_888toNv21(imageProxy);
+            byte[] yuvBytes = ImageUtil.acquireNv21(imageProxy);
 
             YuvImage yuvImage = new YuvImage(yuvBytes, ImageFormat.NV21, imageProxy.getWidth(),
                     imageProxy.getHeight(), null);
@@ -172,7 +172,11 @@ public class YuvToJpegProcessor implements CaptureProcessor {
             int initialPos = jpegBuf.position();
             OutputStream os = new ExifOutputStream(new ByteBufferOutputStream(jpegBuf),
                     ExifData.create(imageProxy, rotationDegrees));
-            yuvImage.compressToJpeg(imageRect, quality, os);
+            try {
+                yuvImage.compressToJpeg(imageRect, quality, os);
+            } finally {
+                ImageUtil.releaseNv21(yuvBytes);
+            }
 
             // Input can now be closed.
             imageProxy.close();
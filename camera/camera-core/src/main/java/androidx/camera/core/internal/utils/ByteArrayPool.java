@@ -0,0 +1,84 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.camera.core.internal.utils;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.NonNull;
+import androidx.annotation.RequiresApi;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * A small pool of byte arrays, used to avoid allocating per frame buffers for every image.
+ *
+ * <p>Arrays are pooled by exact size, since the buffers of a stream all have the same size as
+ * long as its resolution doesn't change. When the pool is full, the least recently released
+ * array is dropped.
+ */
+@RequiresApi(21) // TODO(b/200306659): Remove and replace with annotation on package-info.java
+public final class ByteArrayPool {
+    private final int mMaxArrays;
+    private final Object mLock = new Object();
+    @GuardedBy("mLock")
+    private final ArrayDeque<byte[]> mArrays = new ArrayDeque<>();
+
+    /**
+     * @param maxArrays the maximum number of arrays kept in the pool.
+     */
+    public ByteArrayPool(int maxArrays) {
+        mMaxArrays = maxArrays;
+    }
+
+    /**
+     * Returns an array of the given size, from the pool if it has one.
+     */
+    @NonNull
+    public byte[] acquire(int size) {
+        synchronized (mLock) {
+            for (Iterator<byte[]> iterator = mArrays.descendingIterator(); iterator.hasNext(); ) {
+                byte[] array = iterator.next();
+                if (array.length == size) {
+                    iterator.remove();
+                    return array;
+                }
+            }
+        }
+        return new byte[size];
+    }
+
+    /**
+     * Returns an array to the pool. The array must not be used by the caller anymore.
+     */
+    public void release(@NonNull byte[] array) {
+        synchronized (mLock) {
+            if (mArrays.size() == mMaxArrays) {
+                mArrays.removeFirst();
+            }
+            mArrays.addLast(array);
+        }
+    }
+
+    /**
+     * Drops all the pooled arrays.
+     */
+    public void clear() {
+        synchronized (mLock) {
+            mArrays.clear();
+        }
+    }
+}
@@ -35,6 +35,7 @@ import androidx.annotation.IntRange;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.RequiresApi;
+import androidx.camera.core.ImageProcessingUtil;
 import androidx.camera.core.ImageProxy;
 import androidx.camera.core.Logger;
 import androidx.camera.core.impl.utils.ExifData;
@@ -180,7 +181,7 @@ public final class ImageUtil {
                     "Incorrect image format of the input image proxy: " + image.getFormat());
         }
 
-        byte[] yuvBytes = yuv_420_888toNv21(image);
+        byte[] yuvBytes = acquireNv21(image);
         YuvImage yuv = new YuvImage(yuvBytes, ImageFormat.NV21, image.getWidth(), image.getHeight(),
                 null);
 
@@ -190,8 +191,12 @@ public final class ImageUtil {
         if (cropRect == null) {
             cropRect = new Rect(0, 0, image.getWidth(), image.getHeight());
         }
-        boolean success =
-                yuv.compressToJpeg(cropRect, jpegQuality, out);
+        boolean success;
+        try {
+            success = yuv.compressToJpeg(cropRect, jpegQuality, out);
+        } finally {
+            releaseNv21(yuvBytes);
+        }
         if (!success) {
             throw new CodecFailedException("YuvImage failed to encode jpeg.",
                     CodecFailedException.FailureType.ENCODE_FAILED);
@@ -199,9 +204,72 @@ public final class ImageUtil {
         return byteArrayOutputStream.toByteArray();
     }
 
+    /**
+     * Pool of the NV21 buffers and line buffers used by {@link #yuv_420_888toNv21}. A couple of
+     * arrays is enough to cover the images being converted at the same time. It is cleared with
+     * {@link #clearNv21Pool()} when the use case converting the images is detached, so that the
+     * full resolution buffers aren't held for the lifetime of the process.
+     */
+    private static final ByteArrayPool sNv21Pool = new ByteArrayPool(4);
+
+    /**
+     * Set once the native image processing library failed to load, to not try again for every
+     * image.
+     */
+    private static volatile boolean sNativeVuOffsetUnavailable;
+
+    /**
+     * Returns the size of the NV21 byte array of the given YUV_420_888 {@link ImageProxy}.
+     */
+    public static int getNv21Size(@NonNull ImageProxy image) {
+        return image.getWidth() * image.getHeight() + 2 * chromaSize(image);
+    }
+
+    private static int chromaSize(@NonNull ImageProxy image) {
+        return (image.getWidth() / 2) * (image.getHeight() / 2);
+    }
+
     /** {@link android.media.Image} to NV21 byte array. */
     @NonNull
     public static byte[] yuv_420_888toNv21(@NonNull ImageProxy image) {
+        return yuv_420_888toNv21(image, new byte[getNv21Size(image)]);
+    }
+
+    /**
+     * Converts a YUV_420_888 {@link ImageProxy} to NV21 into a pooled byte array, which must be
+     * given back with {@link #releaseNv21(byte[])} once it is not used anymore.
+     */
+    @NonNull
+    public static byte[] acquireNv21(@NonNull ImageProxy image) {
+        return yuv_420_888toNv21(image, sNv21Pool.acquire(getNv21Size(image)));
+    }
+
+    /**
+     * Gives back a byte array returned by {@link #acquireNv21(ImageProxy)} to the pool.
+     */
+    public static void releaseNv21(@NonNull byte[] nv21) {
+        sNv21Pool.release(nv21);
+    }
+
+    /**
+     * Drops the byte arrays pooled by {@link #acquireNv21(ImageProxy)}. Arrays acquired before
+     * and released afterwards are pooled again.
+     */
+    public static void clearNv21Pool() {
+        sNv21Pool.clear();
+    }
+
+    /**
+     * Converts a YUV_420_888 {@link ImageProxy} to NV21 into the given byte array.
+     *
+     * @param nv21 the output array, of at least {@link #getNv21Size(ImageProxy)} bytes.
+     * @return the given output array.
+     */
+    @NonNull
+    public static byte[] yuv_420_888toNv21(@NonNull ImageProxy image, @NonNull byte[] nv21) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        checkArgument(nv21.length >= getNv21Size(image), "NV21 buffer is too small");
         ImageProxy.PlaneProxy yPlane = image.getPlanes()[0];
         ImageProxy.PlaneProxy uPlane = image.getPlanes()[1];
         ImageProxy.PlaneProxy vPlane = image.getPlanes()[2];
@@ -214,46 +282,88 @@ public final class ImageUtil {
         vBuffer.rewind();
 
         int ySize = yBuffer.remaining();
-
+        int yRowStride = yPlane.getRowStride();
         int position = 0;
-        // TODO(b/115743986): Pull these bytes from a pool instead of allocating for every image.
-        byte[] nv21 = new byte[ySize + (image.getWidth() * image.getHeight() / 2)];
-
-        // Add the full y buffer to the array. If rowStride > 1, some padding may be skipped.
-        for (int row = 0; row < image.getHeight(); row++) {
-            yBuffer.get(nv21, position, image.getWidth());
-            position += image.getWidth();
-            yBuffer.position(
-                    Math.min(ySize, yBuffer.position() - image.getWidth() + yPlane.getRowStride()));
+
+        // Add the full y buffer to the array. If rowStride > width, the padding is skipped.
+        if (yRowStride == width && ySize >= width * height) {
+            yBuffer.get(nv21, 0, width * height);
+            position = width * height;
+        } else {
+            for (int row = 0; row < height; row++) {
+                yBuffer.position(Math.min(ySize, row * yRowStride));
+                yBuffer.get(nv21, position, width);
+                position += width;
+            }
         }
 
-        int chromaHeight = image.getHeight() / 2;
-        int chromaWidth = image.getWidth() / 2;
+        int chromaHeight = height / 2;
+        int chromaWidth = width / 2;
         int vRowStride = vPlane.getRowStride();
         int uRowStride = uPlane.getRowStride();
         int vPixelStride = vPlane.getPixelStride();
         int uPixelStride = uPlane.getPixelStride();
 
+        if (vPixelStride == 2 && uPixelStride == 2 && vRowStride == uRowStride
+                && isVuInterleaved(uBuffer, vBuffer)) {
+            // The chroma planes are views of the same VUVU... memory, which is already NV21:
+            // copy the V plane rows in bulk, they contain the U samples too except for the last
+            // one of each row.
+            int rowLength = 2 * chromaWidth - 1;
+            for (int row = 0; row < chromaHeight; row++) {
+                vBuffer.position(row * vRowStride);
+                vBuffer.get(nv21, position, rowLength);
+                position += rowLength;
+                nv21[position++] = uBuffer.get(row * uRowStride + rowLength - 1);
+            }
+            return nv21;
+        }
+
         // Interleave the u and v frames, filling up the rest of the buffer. Use two line buffers to
         // perform faster bulk gets from the byte buffers.
-        byte[] vLineBuffer = new byte[vRowStride];
-        byte[] uLineBuffer = new byte[uRowStride];
-        for (int row = 0; row < chromaHeight; row++) {
-            vBuffer.get(vLineBuffer, 0, Math.min(vRowStride, vBuffer.remaining()));
-            uBuffer.get(uLineBuffer, 0, Math.min(uRowStride, uBuffer.remaining()));
-            int vLineBufferPosition = 0;
-            int uLineBufferPosition = 0;
-            for (int col = 0; col < chromaWidth; col++) {
-                nv21[position++] = vLineBuffer[vLineBufferPosition];
-                nv21[position++] = uLineBuffer[uLineBufferPosition];
-                vLineBufferPosition += vPixelStride;
-                uLineBufferPosition += uPixelStride;
+        byte[] vLineBuffer = sNv21Pool.acquire(vRowStride);
+        byte[] uLineBuffer = sNv21Pool.acquire(uRowStride);
+        try {
+            for (int row = 0; row < chromaHeight; row++) {
+                vBuffer.get(vLineBuffer, 0, Math.min(vRowStride, vBuffer.remaining()));
+                uBuffer.get(uLineBuffer, 0, Math.min(uRowStride, uBuffer.remaining()));
+                int vLineBufferPosition = 0;
+                int uLineBufferPosition = 0;
+                for (int col = 0; col < chromaWidth; col++) {
+                    nv21[position++] = vLineBuffer[vLineBufferPosition];
+                    nv21[position++] = uLineBuffer[uLineBufferPosition];
+                    vLineBufferPosition += vPixelStride;
+                    uLineBufferPosition += uPixelStride;
+                }
             }
+        } finally {
+            sNv21Pool.release(vLineBuffer);
+            sNv21Pool.release(uLineBuffer);
         }
 
         return nv21;
     }
 
+    /**
+     * Returns true if the U buffer starts one byte after the V buffer in the same memory, i.e.
+     * the chroma samples are stored in the NV21 order.
+     *
+     * <p>The addresses of the buffers are compared through the native image processing library.
+     * Without it, e.g. in host side tests, this always returns false.
+     */
+    private static boolean isVuInterleaved(@NonNull ByteBuffer uBuffer,
+            @NonNull ByteBuffer vBuffer) {
+        if (sNativeVuOffsetUnavailable || !uBuffer.isDirect() || !vBuffer.isDirect()) {
+            return false;
+        }
+        try {
+            return ImageProcessingUtil.getVUOffset(uBuffer, vBuffer) == -1;
+        } catch (LinkageError e) {
+            sNativeVuOffsetUnavailable = true;
+            return false;
+        }
+    }
+
     /** Crops JPEG byte array with given {@link android.graphics.Rect}. */
     @NonNull
     @SuppressWarnings("deprecation")
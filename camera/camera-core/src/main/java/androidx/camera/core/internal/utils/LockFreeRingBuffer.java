@@ -0,0 +1,125 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.camera.core.internal.utils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Implements {@link RingBuffer} without locks, for a single producer thread.
+ *
+ * <p>Only one thread may call {@link #enqueue(Object)} at a time, while {@link #dequeue()} and
+ * {@link #isEmpty()} may be called from any thread. When the buffer is full, the producer drops
+ * the oldest element and reports it to the {@link OnRemoveCallback}, as
+ * {@link ArrayRingBuffer} does.
+ *
+ * <p>The producer and the consumers only meet on the read index: both the eviction of the oldest
+ * element and {@link #dequeue()} claim an element by advancing it with a compare-and-set, so an
+ * element is either dequeued or reported as removed, never both.
+ *
+ * @param <T> the type of elements stored in the RingBuffer.
+ */
+public class LockFreeRingBuffer<T> implements RingBuffer<T> {
+
+    private final int mRingBufferCapacity;
+
+    private final AtomicReferenceArray<T> mBuffer;
+
+    // Index of the oldest element. Advanced by the consumers, and by the producer when the
+    // buffer is full.
+    private final AtomicLong mReadIndex = new AtomicLong();
+
+    // Index of the next element to be enqueued. Only written by the producer.
+    private final AtomicLong mWriteIndex = new AtomicLong();
+
+    @Nullable final OnRemoveCallback<T> mOnRemoveCallback;
+
+    public LockFreeRingBuffer(int ringBufferCapacity) {
+        this(ringBufferCapacity, null);
+    }
+
+    public LockFreeRingBuffer(int ringBufferCapacity,
+            @Nullable OnRemoveCallback<T> onRemoveCallback) {
+        if (ringBufferCapacity <= 0) {
+            throw new IllegalArgumentException(
+                    "Invalid ring buffer capacity: " + ringBufferCapacity);
+        }
+        mRingBufferCapacity = ringBufferCapacity;
+        mBuffer = new AtomicReferenceArray<>(ringBufferCapacity);
+        mOnRemoveCallback = onRemoveCallback;
+    }
+
+    @Override
+    public void enqueue(@NonNull T element) {
+        long writeIndex = mWriteIndex.get();
+        T removedItem = null;
+        long readIndex = mReadIndex.get();
+        // A consumer may free a slot concurrently, in which case nothing needs to be removed.
+        while (writeIndex - readIndex >= mRingBufferCapacity) {
+            T oldest = mBuffer.get(slotOf(readIndex));
+            if (mReadIndex.compareAndSet(readIndex, readIndex + 1)) {
+                removedItem = oldest;
+                break;
+            }
+            readIndex = mReadIndex.get();
+        }
+
+        mBuffer.set(slotOf(writeIndex), element);
+        // Publishes the element to the consumers.
+        mWriteIndex.set(writeIndex + 1);
+
+        if (mOnRemoveCallback != null && removedItem != null) {
+            mOnRemoveCallback.onRemove(removedItem);
+        }
+    }
+
+    @Override
+    public @NonNull T dequeue() {
+        while (true) {
+            long readIndex = mReadIndex.get();
+            if (readIndex >= mWriteIndex.get()) {
+                throw new NoSuchElementException();
+            }
+            T element = mBuffer.get(slotOf(readIndex));
+            // Fails if the element was dequeued by another consumer or dropped by the producer,
+            // which may also have replaced it in the slot. Either way, retry with the next one.
+            // The slot isn't cleared on success since the producer may already be reusing it, so
+            // it keeps a reference to the element until it is overwritten.
+            if (mReadIndex.compareAndSet(readIndex, readIndex + 1)) {
+                return element;
+            }
+        }
+    }
+
+    @Override
+    public int getMaxCapacity() {
+        return mRingBufferCapacity;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return mReadIndex.get() >= mWriteIndex.get();
+    }
+
+    private int slotOf(long index) {
+        return (int) (index % mRingBufferCapacity);
+    }
+}
@@ -38,7 +38,7 @@ import androidx.camera.core.impl.CameraCaptureResults;
  * </p>
  */
 @RequiresApi(21)
-public final class ZslRingBuffer extends ArrayRingBuffer<ImageProxy> {
+public final class ZslRingBuffer extends LockFreeRingBuffer<ImageProxy> {
 
     public ZslRingBuffer(int ringBufferCapacity,
             @NonNull OnRemoveCallback<ImageProxy> onRemoveCallback) {
@@ -42,6 +42,9 @@ import org.junit.runner.RunWith
 import org.robolectric.RobolectricTestRunner
 import org.robolectric.annotation.Config
 import org.robolectric.annotation.internal.DoNotInstrument
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.File
 
 /**
  * Unit tests for [JpegBytes2Disk]
@@ -98,6 +101,51 @@ class JpegBytes2DiskTest {
         assertThat(createFromFileString(path).location!!.altitude).isEqualTo(ALTITUDE)
     }
 
+    @Test
+    fun saveToFile_imageDataIsWrittenUnchanged() {
+        // Arrange.
+        val jpegBytes = createJpegBytes(WIDTH, HEIGHT)
+        val exif = createExif(jpegBytes)
+        exif.description = EXIF_DESCRIPTION
+        // Act.
+        val options = OutputFileOptions.Builder(TEMP_FILE).build()
+        val result = operation.apply(JpegBytes2Disk.In.of(createPacket(jpegBytes, exif), options))
+        val savedBytes = File(result.savedUri!!.path!!).readBytes()
+        // Assert: only the header differs, and the image data is copied as is.
+        val inputOffset = JpegBytes2Disk.findImageDataOffset(jpegBytes)
+        val savedOffset = JpegBytes2Disk.findImageDataOffset(savedBytes)
+        assertThat(inputOffset).isGreaterThan(0)
+        assertThat(savedOffset).isGreaterThan(0)
+        assertThat(savedBytes.copyOfRange(savedOffset, savedBytes.size))
+            .isEqualTo(jpegBytes.copyOfRange(inputOffset, jpegBytes.size))
+    }
+
+    @Test
+    fun saveToOutputStream_verifyExif() {
+        // Arrange.
+        val jpegBytes = createJpegBytes(WIDTH, HEIGHT)
+        val exif = createExif(jpegBytes)
+        exif.description = EXIF_DESCRIPTION
+        val outputStream = ByteArrayOutputStream()
+        val options = OutputFileOptions.Builder(outputStream)
+            .setMetadata(ImageCapture.Metadata().apply { this.isReversedVertical = true })
+            .build()
+        // Act.
+        val result = operation.apply(JpegBytes2Disk.In.of(createPacket(jpegBytes, exif), options))
+        // Assert.
+        assertThat(result.savedUri).isNull()
+        val restoredExif = Exif.createFromInputStream(
+            ByteArrayInputStream(outputStream.toByteArray())
+        )
+        assertThat(restoredExif.description).isEqualTo(EXIF_DESCRIPTION)
+        assertThat(restoredExif.isFlippedVertically).isTrue()
+    }
+
+    @Test
+    fun findImageDataOffset_returnsMinusOneForNonJpeg() {
+        assertThat(JpegBytes2Disk.findImageDataOffset(byteArrayOf(1, 2, 3))).isEqualTo(-1)
+    }
+
     private fun saveFileAndGetPath(metadata: ImageCapture.Metadata): String {
         return saveFileAndGetPath(createExif(createJpegBytes(WIDTH, HEIGHT)), metadata, 0)
     }
@@ -107,8 +155,18 @@ class JpegBytes2DiskTest {
         metadata: ImageCapture.Metadata = ImageCapture.Metadata(),
         rotation: Int = ROTATION_DEGREES
     ): String {
-        val jpegBytes = createJpegBytes(WIDTH, HEIGHT)
-        val inputPacket = Packet.of(
+        val inputPacket = createPacket(createJpegBytes(WIDTH, HEIGHT), exif, rotation)
+        val options = OutputFileOptions.Builder(TEMP_FILE).setMetadata(metadata).build()
+        val input = JpegBytes2Disk.In.of(inputPacket, options)
+        return operation.apply(input).savedUri!!.path!!
+    }
+
+    private fun createPacket(
+        jpegBytes: ByteArray,
+        exif: Exif,
+        rotation: Int = ROTATION_DEGREES
+    ): Packet<ByteArray> {
+        return Packet.of(
             jpegBytes,
             exif,
             ImageFormat.JPEG,
@@ -118,8 +176,5 @@ class JpegBytes2DiskTest {
             Matrix(),
             CAMERA_CAPTURE_RESULT
         )
-        val options = OutputFileOptions.Builder(TEMP_FILE).setMetadata(metadata).build()
-        val input = JpegBytes2Disk.In.of(inputPacket, options)
-        return operation.apply(input).savedUri!!.path!!
     }
 }
\ No newline at end of file
@@ -103,6 +103,89 @@ class ProcessingNodeTest {
             .isInstanceOf(ImageCaptureException::class.java)
     }
 
+    @Test
+    fun processRequest_stageLatenciesAreRecorded() {
+        // Arrange.
+        val callback = FakeTakePictureCallback()
+        val request = createFullFrameProcessingRequest(callback)
+        val image = createJpegFakeImageProxy(createJpegBytes(WIDTH, HEIGHT))
+
+        // Act: process the request.
+        processingNodeIn.edge.accept(ProcessingNode.InputPacket.of(request, image))
+        shadowOf(getMainLooper()).idle()
+
+        // Assert: the image is saved and every stage it went through is recorded.
+        assertThat(callback.onDiskResult).isNotNull()
+        val metrics = node.metrics
+        assertThat(metrics.getCount(ProcessingMetrics.Stage.QUEUE)).isEqualTo(1)
+        assertThat(metrics.getCount(ProcessingMetrics.Stage.INPUT_TO_PACKET)).isEqualTo(1)
+        assertThat(metrics.getCount(ProcessingMetrics.Stage.IMAGE_TO_JPEG_BYTES)).isEqualTo(1)
+        assertThat(metrics.getCount(ProcessingMetrics.Stage.DISK_QUEUE)).isEqualTo(1)
+        assertThat(metrics.getCount(ProcessingMetrics.Stage.JPEG_BYTES_TO_DISK)).isEqualTo(1)
+        assertThat(metrics.getCount(ProcessingMetrics.Stage.BITMAP_EFFECT)).isEqualTo(0)
+    }
+
+    @Test
+    fun processBurstLargerThanInFlightLimit_allRequestsAreSaved() {
+        // Arrange: more requests than the node processes at the same time.
+        val requestCount = ProcessingNode.MAX_IN_FLIGHT_REQUESTS + 2
+        val callbacks = List(requestCount) { FakeTakePictureCallback() }
+
+        // Act: send the whole burst before the executors get to run.
+        callbacks.forEach { callback ->
+            val image = createJpegFakeImageProxy(createJpegBytes(WIDTH, HEIGHT))
+            processingNodeIn.edge.accept(
+                ProcessingNode.InputPacket.of(createFullFrameProcessingRequest(callback), image)
+            )
+        }
+        shadowOf(getMainLooper()).idle()
+
+        // Assert: the requests waiting for a slot are processed too.
+        callbacks.forEach { assertThat(it.onDiskResult).isNotNull() }
+        assertThat(node.metrics.getCount(ProcessingMetrics.Stage.JPEG_BYTES_TO_DISK))
+            .isEqualTo(requestCount)
+    }
+
+    @Test
+    fun requestAbortedWhileWaiting_isNotProcessed() {
+        // Arrange: fill the in-flight slots and queue one more request.
+        repeat(ProcessingNode.MAX_IN_FLIGHT_REQUESTS) {
+            processingNodeIn.edge.accept(
+                ProcessingNode.InputPacket.of(
+                    createFullFrameProcessingRequest(FakeTakePictureCallback()),
+                    createJpegFakeImageProxy(createJpegBytes(WIDTH, HEIGHT))
+                )
+            )
+        }
+        val callback = FakeTakePictureCallback()
+        processingNodeIn.edge.accept(
+            ProcessingNode.InputPacket.of(
+                createFullFrameProcessingRequest(callback),
+                createJpegFakeImageProxy(createJpegBytes(WIDTH, HEIGHT))
+            )
+        )
+
+        // Act: abort the waiting request.
+        callback.aborted = true
+        shadowOf(getMainLooper()).idle()
+
+        // Assert: only the requests in flight are saved.
+        assertThat(callback.onDiskResult).isNull()
+        assertThat(node.metrics.getCount(ProcessingMetrics.Stage.JPEG_BYTES_TO_DISK))
+            .isEqualTo(ProcessingNode.MAX_IN_FLIGHT_REQUESTS)
+    }
+
+    private fun createFullFrameProcessingRequest(callback: TakePictureCallback) =
+        ProcessingRequest(
+            { listOf() },
+            OUTPUT_FILE_OPTIONS,
+            Rect(0, 0, WIDTH, HEIGHT),
+            ROTATION_DEGREES,
+            /*jpegQuality=*/100,
+            SENSOR_TO_BUFFER,
+            callback
+        )
+
     @Test
     fun singleExecutorForLowMemoryQuirkEnabled() {
         listOf("sm-a520w", "motog3").forEach { model ->
@@ -67,6 +67,9 @@ public class ImageUtilTest {
     private static final int CROP_WIDTH = 100;
     private static final int CROP_HEIGHT = 100;
     private static final int DEFAULT_JPEG_QUALITY = 100;
+    private static final int YUV_WIDTH = 8;
+    private static final int YUV_HEIGHT = 6;
+    private static final int YUV_ROW_STRIDE = 12;
     private static final String JPEG_IMAGE_DATA_BASE_64 =
             "/9j/4AAQSkZJRgABAQAAAQABAAD/2wBDAAEBAQEBAQEBAQEBAQEBAQEBAQEBAQEBAQEBAQEBAQEB"
                     + "AQEBAQEBAQEBAQEBAQEBAQEBAQEBAQEBAQEBAQEBAQH/2wBDAQEBAQEBAQEBAQEBAQEBAQEBAQEB"
@@ -242,6 +245,165 @@ public class ImageUtilTest {
         assertComputeCropRectFromDispatchInfo(0, new Size(6, 4), new Rect(0, 0, 1, 1));
     }
 
+    @Test
+    public void yuv420888ToNv21_planar() {
+        // Arrange: chroma planes with a pixel stride of 1 and padded rows.
+        int chromaRowStride = YUV_ROW_STRIDE / 2;
+        ByteBuffer uBuffer = ByteBuffer.allocateDirect(chromaRowStride * YUV_HEIGHT / 2);
+        ByteBuffer vBuffer = ByteBuffer.allocateDirect(chromaRowStride * YUV_HEIGHT / 2);
+        for (int row = 0; row < YUV_HEIGHT / 2; row++) {
+            for (int col = 0; col < YUV_WIDTH / 2; col++) {
+                uBuffer.put(row * chromaRowStride + col, expectedU(row, col));
+                vBuffer.put(row * chromaRowStride + col, expectedV(row, col));
+            }
+        }
+        ImageProxy image = createYuvImage(new FakePlaneProxy(uBuffer, chromaRowStride, 1),
+                new FakePlaneProxy(vBuffer, chromaRowStride, 1));
+
+        // Act & Assert.
+        assertThat(ImageUtil.yuv_420_888toNv21(image)).isEqualTo(expectedNv21());
+    }
+
+    @Test
+    public void yuv420888ToNv21_semiPlanarVu() {
+        // Arrange: chroma planes sharing the same VUVU... memory.
+        ByteBuffer chroma = ByteBuffer.allocateDirect(YUV_ROW_STRIDE * (YUV_HEIGHT / 2));
+        for (int row = 0; row < YUV_HEIGHT / 2; row++) {
+            for (int col = 0; col < YUV_WIDTH / 2; col++) {
+                chroma.put(row * YUV_ROW_STRIDE + 2 * col, expectedV(row, col));
+                chroma.put(row * YUV_ROW_STRIDE + 2 * col + 1, expectedU(row, col));
+            }
+        }
+        ByteBuffer vBuffer = chroma.slice();
+        chroma.position(1);
+        ByteBuffer uBuffer = chroma.slice();
+        ImageProxy image = createYuvImage(new FakePlaneProxy(uBuffer, YUV_ROW_STRIDE, 2),
+                new FakePlaneProxy(vBuffer, YUV_ROW_STRIDE, 2));
+
+        // Act & Assert.
+        assertThat(ImageUtil.yuv_420_888toNv21(image)).isEqualTo(expectedNv21());
+        // The chroma memory is left untouched.
+        assertThat(vBuffer.get(1)).isEqualTo(expectedU(0, 0));
+    }
+
+    @Test
+    public void yuv420888ToNv21_semiPlanarUv() {
+        // Arrange: chroma planes sharing the same UVUV... memory, i.e. NV12.
+        ByteBuffer chroma = ByteBuffer.allocateDirect(YUV_ROW_STRIDE * (YUV_HEIGHT / 2));
+        for (int row = 0; row < YUV_HEIGHT / 2; row++) {
+            for (int col = 0; col < YUV_WIDTH / 2; col++) {
+                chroma.put(row * YUV_ROW_STRIDE + 2 * col, expectedU(row, col));
+                chroma.put(row * YUV_ROW_STRIDE + 2 * col + 1, expectedV(row, col));
+            }
+        }
+        ByteBuffer uBuffer = chroma.slice();
+        chroma.position(1);
+        ByteBuffer vBuffer = chroma.slice();
+        ImageProxy image = createYuvImage(new FakePlaneProxy(uBuffer, YUV_ROW_STRIDE, 2),
+                new FakePlaneProxy(vBuffer, YUV_ROW_STRIDE, 2));
+
+        // Act & Assert.
+        assertThat(ImageUtil.yuv_420_888toNv21(image)).isEqualTo(expectedNv21());
+    }
+
+    @Test
+    public void yuv420888ToNv21_unpaddedY() {
+        // Arrange: a Y plane without row padding, copied in one bulk get.
+        int chromaRowStride = YUV_WIDTH / 2;
+        ByteBuffer uBuffer = ByteBuffer.allocateDirect(chromaRowStride * YUV_HEIGHT / 2);
+        ByteBuffer vBuffer = ByteBuffer.allocateDirect(chromaRowStride * YUV_HEIGHT / 2);
+        for (int row = 0; row < YUV_HEIGHT / 2; row++) {
+            for (int col = 0; col < YUV_WIDTH / 2; col++) {
+                uBuffer.put(row * chromaRowStride + col, expectedU(row, col));
+                vBuffer.put(row * chromaRowStride + col, expectedV(row, col));
+            }
+        }
+        ImageProxy image = createYuvImage(YUV_WIDTH,
+                new FakePlaneProxy(uBuffer, chromaRowStride, 1),
+                new FakePlaneProxy(vBuffer, chromaRowStride, 1));
+
+        // Act & Assert.
+        assertThat(ImageUtil.yuv_420_888toNv21(image)).isEqualTo(expectedNv21());
+    }
+
+    @Test
+    public void byteArrayPool_reusesReleasedArrays() {
+        ByteArrayPool pool = new ByteArrayPool(1);
+        byte[] array = pool.acquire(16);
+        pool.release(array);
+
+        assertThat(pool.acquire(8)).isNotSameInstanceAs(array);
+        assertThat(pool.acquire(16)).isSameInstanceAs(array);
+        assertThat(pool.acquire(16)).isNotSameInstanceAs(array);
+    }
+
+    @Test
+    public void clearNv21Pool_dropsPooledArrays() {
+        int chromaRowStride = YUV_WIDTH / 2;
+        ImageProxy image = createYuvImage(YUV_WIDTH,
+                new FakePlaneProxy(ByteBuffer.allocateDirect(chromaRowStride * YUV_HEIGHT / 2),
+                        chromaRowStride, 1),
+                new FakePlaneProxy(ByteBuffer.allocateDirect(chromaRowStride * YUV_HEIGHT / 2),
+                        chromaRowStride, 1));
+        byte[] nv21 = ImageUtil.acquireNv21(image);
+        ImageUtil.releaseNv21(nv21);
+
+        ImageUtil.clearNv21Pool();
+
+        assertThat(ImageUtil.acquireNv21(image)).isNotSameInstanceAs(nv21);
+    }
+
+    private static ImageProxy createYuvImage(ImageProxy.PlaneProxy uPlane,
+            ImageProxy.PlaneProxy vPlane) {
+        return createYuvImage(YUV_ROW_STRIDE, uPlane, vPlane);
+    }
+
+    private static ImageProxy createYuvImage(int yRowStride, ImageProxy.PlaneProxy uPlane,
+            ImageProxy.PlaneProxy vPlane) {
+        ByteBuffer yBuffer = ByteBuffer.allocateDirect(yRowStride * YUV_HEIGHT);
+        for (int row = 0; row < YUV_HEIGHT; row++) {
+            for (int col = 0; col < YUV_WIDTH; col++) {
+                yBuffer.put(row * yRowStride + col, expectedY(row, col));
+            }
+        }
+        FakeImageProxy image = new FakeImageProxy(new FakeImageInfo());
+        image.setFormat(ImageFormat.YUV_420_888);
+        image.setWidth(YUV_WIDTH);
+        image.setHeight(YUV_HEIGHT);
+        image.setPlanes(new ImageProxy.PlaneProxy[]{
+                new FakePlaneProxy(yBuffer, yRowStride, 1), uPlane, vPlane});
+        return image;
+    }
+
+    private static byte[] expectedNv21() {
+        byte[] nv21 = new byte[YUV_WIDTH * YUV_HEIGHT * 3 / 2];
+        int position = 0;
+        for (int row = 0; row < YUV_HEIGHT; row++) {
+            for (int col = 0; col < YUV_WIDTH; col++) {
+                nv21[position++] = expectedY(row, col);
+            }
+        }
+        for (int row = 0; row < YUV_HEIGHT / 2; row++) {
+            for (int col = 0; col < YUV_WIDTH / 2; col++) {
+                nv21[position++] = expectedV(row, col);
+                nv21[position++] = expectedU(row, col);
+            }
+        }
+        return nv21;
+    }
+
+    private static byte expectedY(int row, int col) {
+        return (byte) (row * YUV_WIDTH + col);
+    }
+
+    private static byte expectedU(int row, int col) {
+        return (byte) (50 + row * 11 + col * 13);
+    }
+
+    private static byte expectedV(int row, int col) {
+        return (byte) (100 + row * 3 + col * 5);
+    }
+
     private void assertComputeCropRectFromDispatchInfo(int outputDegrees, Size dispatchResolution,
             Rect dispatchRect) {
         // Arrange:
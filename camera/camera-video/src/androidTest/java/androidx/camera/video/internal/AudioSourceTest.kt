@@ -33,6 +33,7 @@ import org.junit.Before
 import org.junit.Rule
 import org.junit.Test
 import org.junit.runner.RunWith
+import org.mockito.ArgumentMatchers.anyDouble
 import org.mockito.Mockito.mock
 import org.mockito.Mockito.timeout
 import org.mockito.Mockito.verify
@@ -166,4 +167,52 @@ class AudioSourceTest {
         // It should continuously send audio data by invoking BufferProvider#acquireBuffer
         verify(localBufferFactoryInvocations, timeout(10000L).atLeast(3)).call()
     }
+
+    @Test
+    fun canRestartAudioSource_withRingBuffer() {
+        // Arrange.
+        audioSource.release()
+        audioSource = createAudioSource(ringBufferChunkCount = 4)
+        audioSource.setBufferProvider(fakeBufferProvider)
+
+        for (i in 0..2) {
+            // Act.
+            audioSource.start()
+
+            // Assert.
+            // It should continuously send audio data by invoking BufferProvider#acquireBuffer
+            verify(bufferFactoryInvocations, timeout(10000L).atLeast(3)).call()
+
+            // Act.
+            audioSource.stop()
+
+            // Assert.
+            verify(bufferFactoryInvocations, noInvocation(3000L, 6000L)).call()
+        }
+    }
+
+    @Test
+    fun amplitudeIsSentToListener() {
+        // Arrange.
+        val listener = mock(AudioSource.AmplitudeListener::class.java)
+        audioSource.setAmplitudeListener(CameraXExecutors.directExecutor(), listener)
+
+        // Act.
+        audioSource.start()
+
+        // Assert.
+        verify(listener, timeout(10000L).atLeast(3)).onAmplitudeValue(anyDouble())
+    }
+
+    private fun createAudioSource(ringBufferChunkCount: Int) = AudioSource(
+        AudioSource.Settings.builder()
+            .setAudioSource(AUDIO_SOURCE)
+            .setSampleRate(SAMPLE_RATE)
+            .setChannelCount(CHANNEL_COUNT)
+            .setAudioFormat(AUDIO_FORMAT)
+            .build(),
+        CameraXExecutors.ioExecutor(),
+        /*attributionContext=*/null,
+        ringBufferChunkCount
+    )
 }
@@ -74,7 +74,6 @@ import androidx.camera.core.internal.utils.RingBuffer;
 import androidx.camera.video.StreamInfo.StreamState;
 import androidx.camera.video.internal.AudioSource;
 import androidx.camera.video.internal.AudioSourceAccessException;
-import androidx.camera.video.internal.compat.Api26Impl;
 import androidx.camera.video.internal.compat.quirk.DeactivateEncoderSurfaceBeforeStopEncoderQuirk;
 import androidx.camera.video.internal.compat.quirk.DeviceQuirks;
 import androidx.camera.video.internal.compat.quirk.EncoderNotUsePersistentInputSurfaceQuirk;
@@ -90,6 +89,9 @@ import androidx.camera.video.internal.encoder.EncoderImpl;
 import androidx.camera.video.internal.encoder.InvalidConfigException;
 import androidx.camera.video.internal.encoder.OutputConfig;
 import androidx.camera.video.internal.encoder.VideoEncoderConfig;
+import androidx.camera.video.internal.muxer.MediaMuxerWrapper;
+import androidx.camera.video.internal.muxer.Muxer;
+import androidx.camera.video.internal.muxer.MuxerFactory;
 import androidx.camera.video.internal.utils.OutputUtil;
 import androidx.camera.video.internal.workaround.CorrectNegativeLatLongForMediaMuxer;
 import androidx.concurrent.futures.CallbackToFutureAdapter;
@@ -287,8 +289,13 @@ public final class Recorder implements VideoOutput {
     // The audio data is expected to be less than 1 kB, the value of the cache size is used to limit
     // the memory used within an acceptable range.
     private static final int AUDIO_CACHE_SIZE = 60;
+    // The number of chunks of audio, each of the AudioRecord minimum buffer size, that can be read
+    // ahead of the audio encoder input buffers when the encoder is late.
+    private static final int AUDIO_RING_BUFFER_CHUNK_COUNT = 8;
     @VisibleForTesting
     static final EncoderFactory DEFAULT_ENCODER_FACTORY = EncoderImpl::new;
+    @VisibleForTesting
+    static final MuxerFactory DEFAULT_MUXER_FACTORY = MediaMuxerWrapper.FACTORY;
     private static final Executor AUDIO_EXECUTOR =
             CameraXExecutors.newSequentialExecutor(CameraXExecutors.ioExecutor());
 
@@ -302,6 +309,7 @@ public final class Recorder implements VideoOutput {
     final Executor mSequentialExecutor;
     private final EncoderFactory mVideoEncoderFactory;
     private final EncoderFactory mAudioEncoderFactory;
+    private final MuxerFactory mMuxerFactory;
     private final Object mLock = new Object();
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
@@ -352,7 +360,7 @@ public final class Recorder implements VideoOutput {
     @SuppressWarnings("WeakerAccess") /* synthetic accessor */
     Surface mActiveSurface = null;
     @SuppressWarnings("WeakerAccess") /* synthetic accessor */
-    MediaMuxer mMediaMuxer = null;
+    Muxer mMuxer = null;
     @SuppressWarnings("WeakerAccess") /* synthetic accessor */
     final MutableStateObservable<MediaSpec> mMediaSpec;
     @SuppressWarnings("WeakerAccess") /* synthetic accessor */
@@ -412,7 +420,8 @@ public final class Recorder implements VideoOutput {
 
     Recorder(@Nullable Executor executor, @NonNull MediaSpec mediaSpec,
             @NonNull EncoderFactory videoEncoderFactory,
-            @NonNull EncoderFactory audioEncoderFactory) {
+            @NonNull EncoderFactory audioEncoderFactory,
+            @NonNull MuxerFactory muxerFactory) {
         mUserProvidedExecutor = executor;
         mExecutor = executor != null ? executor : CameraXExecutors.ioExecutor();
         mSequentialExecutor = CameraXExecutors.newSequentialExecutor(mExecutor);
@@ -422,6 +431,7 @@ public final class Recorder implements VideoOutput {
                 StreamInfo.of(mStreamId, internalStateToStreamState(mState)));
         mVideoEncoderFactory = videoEncoderFactory;
         mAudioEncoderFactory = audioEncoderFactory;
+        mMuxerFactory = muxerFactory;
     }
 
     @Override
@@ -1348,7 +1358,7 @@ public final class Recorder implements VideoOutput {
     @ExecutedBy("mSequentialExecutor")
     @SuppressWarnings("WeakerAccess") /* synthetic accessor */
     void setupAndStartMediaMuxer(@NonNull RecordingRecord recordingToStart) {
-        if (mMediaMuxer != null) {
+        if (mMuxer != null) {
             throw new AssertionError("Unable to set up media muxer when one already exists.");
         }
 
@@ -1383,7 +1393,7 @@ public final class Recorder implements VideoOutput {
                 return;
             }
 
-            MediaMuxer mediaMuxer;
+            Muxer mediaMuxer;
             try {
                 MediaSpec mediaSpec = getObservableData(mMediaSpec);
                 int muxerOutputFormat =
@@ -1392,8 +1402,8 @@ public final class Recorder implements VideoOutput {
                                 MediaSpec.outputFormatToMuxerFormat(
                                         MEDIA_SPEC_DEFAULT.getOutputFormat()))
                                 : MediaSpec.outputFormatToMuxerFormat(mediaSpec.getOutputFormat());
-                mediaMuxer = recordingToStart.performOneTimeMediaMuxerCreation(muxerOutputFormat,
-                        uri -> mOutputUri = uri);
+                mediaMuxer = recordingToStart.performOneTimeMediaMuxerCreation(mMuxerFactory,
+                        muxerOutputFormat, uri -> mOutputUri = uri);
             } catch (IOException e) {
                 onInProgressRecordingInternalError(recordingToStart, ERROR_INVALID_OUTPUT_OPTIONS,
                         e);
@@ -1419,14 +1429,21 @@ public final class Recorder implements VideoOutput {
                 }
             }
 
-            mVideoTrackIndex = mediaMuxer.addTrack(mVideoOutputConfig.getMediaFormat());
-            if (isAudioEnabled()) {
-                mAudioTrackIndex = mediaMuxer.addTrack(mAudioOutputConfig.getMediaFormat());
+            try {
+                mVideoTrackIndex = mediaMuxer.addTrack(mVideoOutputConfig.getMediaFormat());
+                if (isAudioEnabled()) {
+                    mAudioTrackIndex = mediaMuxer.addTrack(mAudioOutputConfig.getMediaFormat());
+                }
+                mediaMuxer.start();
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                // The muxer may not support the track formats, e.g. a custom muxer.
+                mediaMuxer.release();
+                onInProgressRecordingInternalError(recordingToStart, ERROR_ENCODING_FAILED, e);
+                return;
             }
-            mediaMuxer.start();
 
-            // MediaMuxer is successfully initialized, transfer the ownership to Recorder.
-            mMediaMuxer = mediaMuxer;
+            // Muxer is successfully initialized, transfer the ownership to Recorder.
+            mMuxer = mediaMuxer;
 
             // Write first data to ensure tracks are not empty
             writeVideoData(videoDataToWrite, recordingToStart);
@@ -1561,7 +1578,7 @@ public final class Recorder implements VideoOutput {
                         public void onEncodedData(@NonNull EncodedData encodedData) {
                             // If the media muxer doesn't yet exist, we may need to create and
                             // start it. Otherwise we can write the data.
-                            if (mMediaMuxer == null) {
+                            if (mMuxer == null) {
                                 if (!mInProgressRecordingStopping) {
                                     // Clear any previously pending video data since we now
                                     // have newer data.
@@ -1706,7 +1723,7 @@ public final class Recorder implements VideoOutput {
 
                                 // If the media muxer doesn't yet exist, we may need to create and
                                 // start it. Otherwise we can write the data.
-                                if (mMediaMuxer == null) {
+                                if (mMuxer == null) {
                                     if (!mInProgressRecordingStopping) {
                                         // BufferCopiedEncodedData is used to copy the content of
                                         // the encoded data, preventing byte buffers of the media
@@ -1816,7 +1833,7 @@ public final class Recorder implements VideoOutput {
             }
         }
 
-        mMediaMuxer.writeSampleData(mVideoTrackIndex, encodedData.getByteBuffer(),
+        mMuxer.writeSampleData(mVideoTrackIndex, encodedData.getByteBuffer(),
                 encodedData.getBufferInfo());
 
         mRecordingBytes = newRecordingBytes;
@@ -1870,7 +1887,7 @@ public final class Recorder implements VideoOutput {
             }
         }
 
-        mMediaMuxer.writeSampleData(mAudioTrackIndex,
+        mMuxer.writeSampleData(mAudioTrackIndex,
                 encodedData.getByteBuffer(),
                 encodedData.getBufferInfo());
 
@@ -2058,17 +2075,17 @@ public final class Recorder implements VideoOutput {
         }
 
         @VideoRecordError int errorToSend = error;
-        if (mMediaMuxer != null) {
+        if (mMuxer != null) {
             try {
-                mMediaMuxer.stop();
-                mMediaMuxer.release();
+                mMuxer.stop();
+                mMuxer.release();
             } catch (IllegalStateException e) {
                 Logger.e(TAG, "MediaMuxer failed to stop or release with error: " + e.getMessage());
                 if (errorToSend == ERROR_NONE) {
                     errorToSend = ERROR_UNKNOWN;
                 }
             }
-            mMediaMuxer = null;
+            mMuxer = null;
         } else if (errorToSend == ERROR_NONE) {
             // Muxer was never started, so recording has no data.
             errorToSend = ERROR_NO_VALID_DATA;
@@ -2539,7 +2556,7 @@ public final class Recorder implements VideoOutput {
 
         private final AtomicBoolean mInitialized = new AtomicBoolean(false);
 
-        private final AtomicReference<MediaMuxerSupplier> mMediaMuxerSupplier =
+        private final AtomicReference<MuxerSupplier> mMuxerSupplier =
                 new AtomicReference<>(null);
 
         private final AtomicReference<AudioSourceSupplier> mAudioSourceSupplier =
@@ -2600,9 +2617,9 @@ public final class Recorder implements VideoOutput {
 
             mCloseGuard.open("finalizeRecording");
 
-            MediaMuxerSupplier mediaMuxerSupplier =
-                    (muxerOutputFormat, outputUriCreatedCallback) -> {
-                        MediaMuxer mediaMuxer;
+            MuxerSupplier muxerSupplier =
+                    (muxerFactory, muxerOutputFormat, outputUriCreatedCallback) -> {
+                        Muxer mediaMuxer;
                         Uri outputUri = Uri.EMPTY;
                         if (outputOptions instanceof FileOutputOptions) {
                             FileOutputOptions fileOutputOptions = (FileOutputOptions) outputOptions;
@@ -2611,13 +2628,14 @@ public final class Recorder implements VideoOutput {
                                 Logger.w(TAG,
                                         "Failed to create folder for " + file.getAbsolutePath());
                             }
-                            mediaMuxer = new MediaMuxer(file.getAbsolutePath(), muxerOutputFormat);
+                            mediaMuxer = muxerFactory.create(file.getAbsolutePath(),
+                                    muxerOutputFormat);
                             outputUri = Uri.fromFile(file);
                         } else if (outputOptions instanceof FileDescriptorOutputOptions) {
                             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
                                 // Use dup'd ParcelFileDescriptor to prevent the descriptor in
                                 // OutputOptions from being closed.
-                                mediaMuxer = Api26Impl.createMediaMuxer(
+                                mediaMuxer = muxerFactory.create(
                                         dupedParcelFileDescriptor.getFileDescriptor(),
                                         muxerOutputFormat);
                             } else {
@@ -2652,12 +2670,12 @@ public final class Recorder implements VideoOutput {
                                 if (!OutputUtil.createParentFolder(new File(path))) {
                                     Logger.w(TAG, "Failed to create folder for " + path);
                                 }
-                                mediaMuxer = new MediaMuxer(path, muxerOutputFormat);
+                                mediaMuxer = muxerFactory.create(path, muxerOutputFormat);
                             } else {
                                 ParcelFileDescriptor fileDescriptor =
                                         mediaStoreOutputOptions.getContentResolver()
                                                 .openFileDescriptor(outputUri, "rw");
-                                mediaMuxer = Api26Impl.createMediaMuxer(
+                                mediaMuxer = muxerFactory.create(
                                         fileDescriptor.getFileDescriptor(),
                                         muxerOutputFormat);
                                 fileDescriptor.close();
@@ -2670,7 +2688,7 @@ public final class Recorder implements VideoOutput {
                         outputUriCreatedCallback.accept(outputUri);
                         return mediaMuxer;
                     };
-            mMediaMuxerSupplier.set(mediaMuxerSupplier);
+            mMuxerSupplier.set(muxerSupplier);
 
             Consumer<Uri> recordingFinalizer = null;
             if (hasAudioEnabled()) {
@@ -2687,7 +2705,8 @@ public final class Recorder implements VideoOutput {
                                 throws AudioSourceAccessException {
                             // Context will only be held in local scope of the supplier so it will
                             // not be retained after performOneTimeAudioSourceCreation() is called.
-                            return new AudioSource(settings, executor, context);
+                            return new AudioSource(settings, executor, context,
+                                    AUDIO_RING_BUFFER_CHUNK_COUNT);
                         }
                     };
                     mAudioSourceSupplier.set(audioSourceSupplier);
@@ -2703,7 +2722,8 @@ public final class Recorder implements VideoOutput {
                                 @NonNull Executor executor)
                                 throws AudioSourceAccessException {
                             // Do not set (or retain) context on other API levels
-                            return new AudioSource(settings, executor, null);
+                            return new AudioSource(settings, executor, null,
+                                    AUDIO_RING_BUFFER_CHUNK_COUNT);
                         }
                     };
                     mAudioSourceSupplier.set(audioSourceSupplier);
@@ -2831,11 +2851,12 @@ public final class Recorder implements VideoOutput {
         }
 
         /**
-         * Creates a {@link MediaMuxer} for this recording.
+         * Creates a {@link Muxer} for this recording.
          *
          * <p>A media muxer can only be created once per recording, so subsequent calls to this
          * method will throw an {@link AssertionError}.
          *
+         * @param muxerFactory the factory creating the muxer.
          * @param muxerOutputFormat the output file format.
          * @param outputUriCreatedCallback A callback that will send the returned media muxer's
          *                                 output {@link Uri}. It will be {@link Uri#EMPTY} if the
@@ -2848,17 +2869,18 @@ public final class Recorder implements VideoOutput {
          * method.
          */
         @NonNull
-        MediaMuxer performOneTimeMediaMuxerCreation(int muxerOutputFormat,
-                @NonNull Consumer<Uri> outputUriCreatedCallback) throws IOException {
+        Muxer performOneTimeMediaMuxerCreation(@NonNull MuxerFactory muxerFactory,
+                int muxerOutputFormat, @NonNull Consumer<Uri> outputUriCreatedCallback)
+                throws IOException {
             if (!mInitialized.get()) {
                 throw new AssertionError("Recording " + this + " has not been initialized");
             }
-            MediaMuxerSupplier mediaMuxerSupplier = mMediaMuxerSupplier.getAndSet(null);
-            if (mediaMuxerSupplier == null) {
+            MuxerSupplier muxerSupplier = mMuxerSupplier.getAndSet(null);
+            if (muxerSupplier == null) {
                 throw new AssertionError("One-time media muxer creation has already occurred for"
                         + " recording " + this);
             }
-            return mediaMuxerSupplier.get(muxerOutputFormat, outputUriCreatedCallback);
+            return muxerSupplier.get(muxerFactory, muxerOutputFormat, outputUriCreatedCallback);
         }
 
         /**
@@ -2919,10 +2941,10 @@ public final class Recorder implements VideoOutput {
             finalizer.accept(uri);
         }
 
-        private interface MediaMuxerSupplier {
+        private interface MuxerSupplier {
             @NonNull
-            MediaMuxer get(int muxerOutputFormat, @NonNull Consumer<Uri> outputUriCreatedCallback)
-                    throws IOException;
+            Muxer get(@NonNull MuxerFactory muxerFactory, int muxerOutputFormat,
+                    @NonNull Consumer<Uri> outputUriCreatedCallback) throws IOException;
         }
 
         private interface AudioSourceSupplier {
@@ -2943,6 +2965,7 @@ public final class Recorder implements VideoOutput {
         private Executor mExecutor = null;
         private EncoderFactory mVideoEncoderFactory = DEFAULT_ENCODER_FACTORY;
         private EncoderFactory mAudioEncoderFactory = DEFAULT_ENCODER_FACTORY;
+        private MuxerFactory mMuxerFactory = DEFAULT_MUXER_FACTORY;
 
         /**
          * Constructor for {@code Recorder.Builder}.
@@ -3036,6 +3059,22 @@ public final class Recorder implements VideoOutput {
             return this;
         }
 
+        /**
+         * Sets the factory of the muxer writing the encoded data to the output.
+         *
+         * <p>{@link androidx.camera.video.internal.muxer.FragmentedMp4Muxer#FACTORY} writes
+         * fragmented MP4 files without copying the encoded data. By default, a
+         * {@link MediaMuxer} is used.
+         *
+         * @hide
+         */
+        @RestrictTo(RestrictTo.Scope.LIBRARY)
+        @NonNull
+        Builder setMuxerFactory(@NonNull MuxerFactory muxerFactory) {
+            mMuxerFactory = muxerFactory;
+            return this;
+        }
+
         /**
          * Builds the {@link Recorder} instance.
          *
@@ -3046,7 +3085,7 @@ public final class Recorder implements VideoOutput {
         @NonNull
         public Recorder build() {
             return new Recorder(mExecutor, mMediaSpecBuilder.build(), mVideoEncoderFactory,
-                    mAudioEncoderFactory);
+                    mAudioEncoderFactory, mMuxerFactory);
         }
     }
 }
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.camera.video.internal;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RequiresApi;
+import androidx.core.util.Preconditions;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A ring of preallocated direct buffers holding the audio read from the audio record until the
+ * encoder provides input buffers.
+ *
+ * <p>Audio is read into the buffer returned by {@link #obtainChunk()} and committed with
+ * {@link #commitChunk(int, long)}. {@link #drainTo(ByteBuffer)} then copies as many
+ * consecutive chunks as fit into an input buffer, so one input buffer can carry several chunks.
+ * When the ring is full, the oldest chunk is overwritten.
+ *
+ * <p>The chunks are slices of a single direct buffer allocated up front, so no memory is
+ * allocated while recording. This class is not thread safe.
+ */
+@RequiresApi(21) // TODO(b/200306659): Remove and replace with annotation on package-info.java
+final class AudioChunkRingBuffer {
+
+    private final ByteBuffer[] mChunks;
+    private final long[] mTimestampsUs;
+    private final int mChunkSize;
+    private final int mBytesPerFrame;
+    private final int mSampleRate;
+    private int mReadIndex = 0;
+    private int mCount = 0;
+    private long mDroppedChunkCount = 0;
+
+    /**
+     * @param chunkCount    the number of chunks.
+     * @param chunkSize     the size of a chunk in bytes, a multiple of {@code bytesPerFrame}.
+     * @param bytesPerFrame the size of an audio frame in bytes.
+     * @param sampleRate    the sample rate, used to compute the timestamp of partially drained
+     *                      chunks.
+     */
+    AudioChunkRingBuffer(int chunkCount, int chunkSize, int bytesPerFrame, int sampleRate) {
+        Preconditions.checkArgument(chunkCount > 0, "Invalid chunk count: " + chunkCount);
+        Preconditions.checkArgument(chunkSize > 0 && chunkSize % bytesPerFrame == 0,
+                "Invalid chunk size: " + chunkSize);
+        mChunks = new ByteBuffer[chunkCount];
+        mTimestampsUs = new long[chunkCount];
+        mChunkSize = chunkSize;
+        mBytesPerFrame = bytesPerFrame;
+        mSampleRate = sampleRate;
+        ByteBuffer storage = ByteBuffer.allocateDirect(chunkCount * chunkSize);
+        for (int i = 0; i < chunkCount; i++) {
+            storage.limit((i + 1) * chunkSize);
+            storage.position(i * chunkSize);
+            // PCM samples are in native byte order.
+            mChunks[i] = storage.slice().order(ByteOrder.nativeOrder());
+        }
+    }
+
+    /** Returns the size of a chunk in bytes. */
+    int getChunkSize() {
+        return mChunkSize;
+    }
+
+    /** Returns whether there is no chunk to drain. */
+    boolean isEmpty() {
+        return mCount == 0;
+    }
+
+    /** Returns the number of chunks overwritten before being drained. */
+    long getDroppedChunkCount() {
+        return mDroppedChunkCount;
+    }
+
+    /**
+     * Returns the buffer to read the next chunk into, from position 0 to the chunk size.
+     *
+     * <p>If the ring is full, the oldest chunk is dropped.
+     */
+    @NonNull
+    ByteBuffer obtainChunk() {
+        if (mCount == mChunks.length) {
+            mReadIndex = (mReadIndex + 1) % mChunks.length;
+            mCount--;
+            mDroppedChunkCount++;
+        }
+        ByteBuffer chunk = mChunks[(mReadIndex + mCount) % mChunks.length];
+        chunk.clear();
+        return chunk;
+    }
+
+    /**
+     * Commits the chunk returned by the last call to {@link #obtainChunk()}.
+     *
+     * @param length      the number of bytes read into the chunk.
+     * @param timestampUs the presentation time of the first frame of the chunk.
+     */
+    void commitChunk(int length, long timestampUs) {
+        int index = (mReadIndex + mCount) % mChunks.length;
+        ByteBuffer chunk = mChunks[index];
+        chunk.position(0);
+        chunk.limit(length - length % mBytesPerFrame);
+        mTimestampsUs[index] = timestampUs;
+        mCount++;
+    }
+
+    /**
+     * Returns the presentation time of the next frame to drain.
+     *
+     * @throws IllegalStateException if the ring is empty.
+     */
+    long getTimestampUs() {
+        Preconditions.checkState(mCount > 0, "No audio to drain.");
+        return mTimestampsUs[mReadIndex];
+    }
+
+    /**
+     * Copies the oldest chunks into {@code destination}, from its position, until it is full or
+     * the next chunk is not contiguous in time.
+     *
+     * <p>Only whole frames are copied. A chunk that doesn't fit is partially copied and its
+     * remaining frames stay in the ring.
+     *
+     * @return the number of bytes copied.
+     */
+    int drainTo(@NonNull ByteBuffer destination) {
+        int copied = 0;
+        long expectedTimestampUs = 0;
+        while (mCount > 0) {
+            ByteBuffer chunk = mChunks[mReadIndex];
+            long timestampUs = mTimestampsUs[mReadIndex];
+            if (copied > 0 && Math.abs(timestampUs - expectedTimestampUs)
+                    > framesToUs(mChunkSize / mBytesPerFrame) / 2) {
+                // Frames were lost in between, the chunk needs its own timestamp.
+                break;
+            }
+            int length = Math.min(chunk.remaining(), destination.remaining());
+            length -= length % mBytesPerFrame;
+            if (length == 0) {
+                break;
+            }
+            int limit = chunk.limit();
+            chunk.limit(chunk.position() + length);
+            destination.put(chunk);
+            chunk.limit(limit);
+            copied += length;
+            long durationUs = framesToUs(length / mBytesPerFrame);
+            expectedTimestampUs = timestampUs + durationUs;
+            if (chunk.hasRemaining()) {
+                mTimestampsUs[mReadIndex] = expectedTimestampUs;
+                break;
+            }
+            mReadIndex = (mReadIndex + 1) % mChunks.length;
+            mCount--;
+        }
+        return copied;
+    }
+
+    /** Drops all the chunks. */
+    void clear() {
+        mReadIndex = 0;
+        mCount = 0;
+    }
+
+    private long framesToUs(long frames) {
+        return TimeUnit.SECONDS.toMicros(frames) / mSampleRate;
+    }
+}
@@ -41,6 +41,7 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.RequiresApi;
 import androidx.annotation.RequiresPermission;
+import androidx.annotation.VisibleForTesting;
 import androidx.camera.core.Logger;
 import androidx.camera.core.impl.Observable;
 import androidx.camera.core.impl.annotation.ExecutedBy;
@@ -61,6 +62,7 @@ import com.google.auto.value.AutoValue;
 import com.google.common.util.concurrent.ListenableFuture;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -119,8 +121,20 @@ public final class AudioSource {
 
     final int mBytesPerFrame;
 
+    final int mAudioFormat;
+
     long mTotalFramesRead = 0;
 
+    // Reused for each chunk of audio, only accessed by mExecutor.
+    private final AudioTimestamp mAudioTimestamp = new AudioTimestamp();
+
+    // The audio read ahead of the encoder input buffers, or null to read audio directly into the
+    // input buffers.
+    @Nullable
+    private final AudioChunkRingBuffer mRingBuffer;
+
+    private final Runnable mReadAudioRunnable = this::readAudioToRingBuffer;
+
     @SuppressWarnings("WeakerAccess") /* synthetic accessor */
     InternalState mState = CONFIGURED;
 
@@ -136,12 +150,20 @@ public final class AudioSource {
     @SuppressWarnings("WeakerAccess") /* synthetic accessor */
     AudioSourceCallback mAudioSourceCallback;
 
+    // The amplitude of the audio is only computed when a listener is set.
+    private Executor mAmplitudeListenerExecutor;
+    private AmplitudeListener mAmplitudeListener;
+
     // The following should only be accessed by mExecutor
     @SuppressWarnings("WeakerAccess") /* synthetic accessor */
     BufferProvider<InputBuffer> mBufferProvider;
     private FutureCallback<InputBuffer> mAcquireBufferCallback;
     private Observable.Observer<BufferProvider.State> mStateObserver;
-
+    private boolean mIsAcquiringBuffer;
+    private boolean mIsReadAudioScheduled;
+    // Whether the chunks left in the ring buffer are still being sent after audio stopped being
+    // read.
+    private boolean mIsDrainingRingBuffer;
 
     /**
      * Creates an AudioSource for the given settings.
@@ -171,6 +193,38 @@ public final class AudioSource {
     public AudioSource(@NonNull Settings settings, @NonNull Executor executor,
             @Nullable Context attributionContext)
             throws AudioSourceAccessException {
+        this(settings, executor, attributionContext, /*ringBufferChunkCount=*/0);
+    }
+
+    /**
+     * Creates an AudioSource for the given settings, optionally reading audio continuously into
+     * a ring buffer.
+     *
+     * <p>By default, each chunk of audio is read directly into an input buffer of the
+     * {@link BufferProvider}, so audio is only read while an input buffer is available. With a
+     * ring buffer, audio is read continuously into preallocated direct buffers, and copied into
+     * the input buffers as they become available, several chunks at a time. This keeps reading
+     * from the audio record when the encoder is late to return input buffers.
+     *
+     * @param settings             The settings that will be used to configure the audio source.
+     * @param executor             An executor that will be used to read audio samples in the
+     *                             background.
+     * @param attributionContext   A {@link Context} object that will be used to attribute the
+     *                             audio. See {@link #AudioSource(Settings, Executor, Context)}.
+     * @param ringBufferChunkCount The number of chunks of audio the ring buffer can hold, or 0 to
+     *                             read audio directly into the input buffers.
+     * @throws UnsupportedOperationException if the combination of sample rate, channel count,
+     *                                       and audio format in the provided settings is
+     *                                       unsupported.
+     * @throws AudioSourceAccessException    if the audio device is not available or cannot be
+     *                                       initialized with the given settings.
+     */
+    @RequiresPermission(Manifest.permission.RECORD_AUDIO)
+    public AudioSource(@NonNull Settings settings, @NonNull Executor executor,
+            @Nullable Context attributionContext, @IntRange(from = 0) int ringBufferChunkCount)
+            throws AudioSourceAccessException {
+        Preconditions.checkArgument(ringBufferChunkCount >= 0,
+                "Invalid ring buffer chunk count: " + ringBufferChunkCount);
         if (!isSettingsSupported(settings.getSampleRate(), settings.getChannelCount(),
                 settings.getAudioFormat())) {
             throw new UnsupportedOperationException(String.format(
@@ -189,6 +243,7 @@ public final class AudioSource {
         mExecutor = CameraXExecutors.newSequentialExecutor(executor);
         mBufferSize = minBufferSize * 2;
         mSampleRate = settings.getSampleRate();
+        mAudioFormat = settings.getAudioFormat();
         try {
             mBytesPerFrame = getBytesPerFrame(settings.getAudioFormat(),
                     settings.getChannelCount());
@@ -222,6 +277,16 @@ public final class AudioSource {
             throw new AudioSourceAccessException("Unable to initialize AudioRecord");
         }
 
+        if (ringBufferChunkCount > 0) {
+            // Read chunks of half the audio record buffer, so reading keeps up with recording.
+            int chunkSize = Math.max(minBufferSize - minBufferSize % mBytesPerFrame,
+                    mBytesPerFrame);
+            mRingBuffer = new AudioChunkRingBuffer(ringBufferChunkCount, chunkSize,
+                    mBytesPerFrame, mSampleRate);
+        } else {
+            mRingBuffer = null;
+        }
+
         if (Build.VERSION.SDK_INT >= 29) {
             mAudioRecordingCallback = new AudioRecordingApi29Callback();
             Api29Impl.registerAudioRecordingCallback(mAudioRecord, mExecutor,
@@ -305,7 +370,9 @@ public final class AudioSource {
     /**
      * Stops the AudioSource.
      *
-     * <p>Audio data will stop being sent to the {@link BufferProvider}.
+     * <p>Audio data will stop being sent to the {@link BufferProvider}. With a ring buffer, the
+     * audio already read into it is still sent while the {@link BufferProvider} stays
+     * {@link BufferProvider.State#ACTIVE}, so it reaches the encoder before its end of stream.
      */
     public void stop() {
         mExecutor.execute(() -> {
@@ -361,6 +428,22 @@ public final class AudioSource {
         });
     }
 
+    /**
+     * Sets the listener receiving the maximum amplitude of each chunk of audio.
+     *
+     * <p>The amplitude is only computed while a listener is set, and only for 16 bit PCM audio.
+     *
+     * @param executor the listener executor
+     * @param listener the amplitude listener, or {@code null} to stop computing the amplitude
+     */
+    public void setAmplitudeListener(@NonNull Executor executor,
+            @Nullable AmplitudeListener listener) {
+        mExecutor.execute(() -> {
+            mAmplitudeListenerExecutor = listener != null ? executor : null;
+            mAmplitudeListener = listener;
+        });
+    }
+
     /**
      * Sets callback to receive configuration status.
      *
@@ -393,8 +476,10 @@ public final class AudioSource {
             mBufferProvider = null;
             mStateObserver = null;
             mAcquireBufferCallback = null;
+            mIsAcquiringBuffer = false;
         }
         mBufferProviderState = BufferProvider.State.INACTIVE;
+        stopDrainingRingBuffer();
         updateSendingAudio();
         if (bufferProvider != null) {
             mBufferProvider = bufferProvider;
@@ -423,32 +508,33 @@ public final class AudioSource {
                 @ExecutedBy("mExecutor")
                 @Override
                 public void onSuccess(InputBuffer inputBuffer) {
-                    if (!mIsSendingAudio || mBufferProvider != bufferProvider) {
+                    if (mBufferProvider == bufferProvider) {
+                        mIsAcquiringBuffer = false;
+                    }
+                    if (!(mIsSendingAudio || mIsDrainingRingBuffer)
+                            || mBufferProvider != bufferProvider) {
                         inputBuffer.cancel();
                         return;
                     }
-                    ByteBuffer byteBuffer = inputBuffer.getByteBuffer();
-
-                    int length = mAudioRecord.read(byteBuffer, mBufferSize);
-                    if (length > 0) {
-                        byteBuffer.limit(length);
-                        inputBuffer.setPresentationTimeUs(generatePresentationTimeUs());
-                        inputBuffer.submit();
-                        mTotalFramesRead += length / mBytesPerFrame;
+                    if (mRingBuffer != null) {
+                        writeRingBufferToInputBuffer(mRingBuffer, inputBuffer);
                     } else {
-                        Logger.w(TAG, "Unable to read data from AudioRecord.");
-                        inputBuffer.cancel();
+                        readAudioToInputBuffer(inputBuffer);
                     }
-                    sendNextAudio();
                 }
 
                 @ExecutedBy("mExecutor")
                 @Override
                 public void onFailure(@NonNull Throwable throwable) {
+                    if (mBufferProvider == bufferProvider) {
+                        mIsAcquiringBuffer = false;
+                    }
                     if (mBufferProvider != bufferProvider) {
                         Logger.d(TAG, "Unable to get input buffer, the BufferProvider "
                                 + "could be transitioning to INACTIVE state.");
                         notifyError(throwable);
+                    } else if (!mIsSendingAudio) {
+                        stopDrainingRingBuffer();
                     }
                 }
             };
@@ -470,6 +556,9 @@ public final class AudioSource {
             startSendingAudio();
         } else {
             stopSendingAudio();
+            if (mBufferProviderState != BufferProvider.State.ACTIVE) {
+                stopDrainingRingBuffer();
+            }
         }
     }
 
@@ -494,7 +583,17 @@ public final class AudioSource {
         }
         mTotalFramesRead = 0;
         mIsSendingAudio = true;
-        sendNextAudio();
+        if (mRingBuffer != null) {
+            // The chunks still being drained from the previous start are kept, they are before
+            // the new ones.
+            if (!mIsDrainingRingBuffer) {
+                mRingBuffer.clear();
+            }
+            mIsDrainingRingBuffer = false;
+            scheduleReadAudio();
+        } else {
+            sendNextAudio();
+        }
     }
 
     @ExecutedBy("mExecutor")
@@ -515,14 +614,156 @@ public final class AudioSource {
             Logger.w(TAG, "Failed to stop AudioRecord", e);
             notifyError(e);
         }
+        // Send the audio already read, unless the buffer provider can't take it anymore.
+        if (mRingBuffer != null && !mRingBuffer.isEmpty() && mBufferProvider != null
+                && mBufferProviderState == BufferProvider.State.ACTIVE) {
+            mIsDrainingRingBuffer = true;
+            if (!mIsAcquiringBuffer) {
+                sendNextAudio();
+            }
+        }
+    }
+
+    /**
+     * Drops the chunks left in the ring buffer, when they can't be sent anymore.
+     */
+    @SuppressWarnings("WeakerAccess") /* synthetic accessor */
+    @ExecutedBy("mExecutor")
+    void stopDrainingRingBuffer() {
+        if (!mIsDrainingRingBuffer) {
+            return;
+        }
+        mIsDrainingRingBuffer = false;
+        if (mRingBuffer != null && !mRingBuffer.isEmpty()) {
+            Logger.w(TAG, "The buffer provider is inactive, the audio left in the ring buffer"
+                    + " is dropped.");
+            mRingBuffer.clear();
+        }
     }
 
     @SuppressWarnings("WeakerAccess") /* synthetic accessor */
     @ExecutedBy("mExecutor")
     void sendNextAudio() {
+        mIsAcquiringBuffer = true;
         Futures.addCallback(mBufferProvider.acquireBuffer(), mAcquireBufferCallback, mExecutor);
     }
 
+    @SuppressWarnings("WeakerAccess") /* synthetic accessor */
+    @ExecutedBy("mExecutor")
+    void readAudioToInputBuffer(@NonNull InputBuffer inputBuffer) {
+        ByteBuffer byteBuffer = inputBuffer.getByteBuffer();
+
+        int length = mAudioRecord.read(byteBuffer, mBufferSize);
+        if (length > 0) {
+            byteBuffer.limit(length);
+            inputBuffer.setPresentationTimeUs(generatePresentationTimeUs());
+            notifyAmplitude(byteBuffer, length);
+            inputBuffer.submit();
+            mTotalFramesRead += length / mBytesPerFrame;
+        } else {
+            Logger.w(TAG, "Unable to read data from AudioRecord.");
+            inputBuffer.cancel();
+        }
+        sendNextAudio();
+    }
+
+    @ExecutedBy("mExecutor")
+    private void scheduleReadAudio() {
+        // A read may still be scheduled if the audio source was stopped and restarted.
+        if (!mIsReadAudioScheduled) {
+            mIsReadAudioScheduled = true;
+            mExecutor.execute(mReadAudioRunnable);
+        }
+    }
+
+    /**
+     * Reads a chunk of audio into the ring buffer, then schedules the next read.
+     *
+     * <p>Each read is a separate task so that the input buffers acquired in the meantime are
+     * filled in between reads.
+     */
+    @SuppressWarnings("WeakerAccess") /* synthetic accessor */
+    @ExecutedBy("mExecutor")
+    void readAudioToRingBuffer() {
+        mIsReadAudioScheduled = false;
+        if (!mIsSendingAudio || mRingBuffer == null) {
+            return;
+        }
+        long droppedChunkCount = mRingBuffer.getDroppedChunkCount();
+        ByteBuffer chunk = mRingBuffer.obtainChunk();
+        if (mRingBuffer.getDroppedChunkCount() != droppedChunkCount) {
+            Logger.w(TAG, "Audio ring buffer is full, the oldest audio is dropped.");
+        }
+        int length = mAudioRecord.read(chunk, mRingBuffer.getChunkSize());
+        if (length > 0) {
+            mRingBuffer.commitChunk(length, generatePresentationTimeUs());
+            mTotalFramesRead += length / mBytesPerFrame;
+            notifyAmplitude(chunk, length);
+            if (!mIsAcquiringBuffer) {
+                sendNextAudio();
+            }
+        } else {
+            Logger.w(TAG, "Unable to read data from AudioRecord.");
+        }
+        scheduleReadAudio();
+    }
+
+    @ExecutedBy("mExecutor")
+    private void writeRingBufferToInputBuffer(@NonNull AudioChunkRingBuffer ringBuffer,
+            @NonNull InputBuffer inputBuffer) {
+        if (ringBuffer.isEmpty()) {
+            inputBuffer.cancel();
+            mIsDrainingRingBuffer = false;
+            return;
+        }
+        ByteBuffer byteBuffer = inputBuffer.getByteBuffer();
+        long presentationTimeUs = ringBuffer.getTimestampUs();
+        if (ringBuffer.drainTo(byteBuffer) > 0) {
+            byteBuffer.flip();
+            inputBuffer.setPresentationTimeUs(presentationTimeUs);
+            inputBuffer.submit();
+        } else {
+            inputBuffer.cancel();
+        }
+        if (!ringBuffer.isEmpty()) {
+            sendNextAudio();
+        } else {
+            mIsDrainingRingBuffer = false;
+        }
+    }
+
+    /**
+     * Computes the amplitude of a chunk of audio from the buffer it was read into, and sends it
+     * to the amplitude listener, if any.
+     */
+    @ExecutedBy("mExecutor")
+    private void notifyAmplitude(@NonNull ByteBuffer audioData, int length) {
+        if (mAmplitudeListener == null || mAudioFormat != ENCODING_PCM_16BIT) {
+            return;
+        }
+        double amplitude = computeMaxAmplitude(audioData, length);
+        AmplitudeListener listener = mAmplitudeListener;
+        mAmplitudeListenerExecutor.execute(() -> listener.onAmplitudeValue(amplitude));
+    }
+
+    /**
+     * Returns the maximum amplitude of the 16 bit PCM samples from position 0 to {@code length},
+     * between 0 and 1.
+     */
+    @VisibleForTesting
+    static double computeMaxAmplitude(@NonNull ByteBuffer audioData, int length) {
+        boolean swapBytes = audioData.order() != ByteOrder.nativeOrder();
+        int maxAbsValue = 0;
+        for (int i = 0; i + 1 < length; i += 2) {
+            short sample = audioData.getShort(i);
+            if (swapBytes) {
+                sample = Short.reverseBytes(sample);
+            }
+            maxAbsValue = Math.max(maxAbsValue, Math.abs((int) sample));
+        }
+        return maxAbsValue / (double) -Short.MIN_VALUE;
+    }
+
     @SuppressWarnings("WeakerAccess") /* synthetic accessor */
     @ExecutedBy("mExecutor")
     void setState(InternalState state) {
@@ -534,7 +775,7 @@ public final class AudioSource {
     long generatePresentationTimeUs() {
         long presentationTimeUs = -1;
         if (Build.VERSION.SDK_INT >= 24 && !hasAudioTimestampQuirk()) {
-            AudioTimestamp audioTimestamp = new AudioTimestamp();
+            AudioTimestamp audioTimestamp = mAudioTimestamp;
             if (Api24Impl.getTimestamp(mAudioRecord, audioTimestamp,
                     AudioTimestamp.TIMEBASE_MONOTONIC) == AudioRecord.SUCCESS) {
                 presentationTimeUs = computeInterpolatedTimeUs(mSampleRate, mTotalFramesRead,
@@ -753,4 +994,19 @@ public final class AudioSource {
          */
         void onError(@NonNull Throwable t);
     }
+
+    /**
+     * The listener for receiving the amplitude of the audio.
+     *
+     * @see #setAmplitudeListener(Executor, AmplitudeListener)
+     */
+    public interface AmplitudeListener {
+        /**
+         * The method called for each chunk of audio read, with its maximum amplitude.
+         *
+         * <p>The amplitude is between 0 and 1, 0 being a silent chunk. It is computed from the
+         * buffer the audio was read into, and only for 16 bit PCM audio.
+         */
+        void onAmplitudeValue(double maxAmplitude);
+    }
 }
@@ -0,0 +1,981 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.camera.video.internal.muxer;
+
+import static androidx.core.util.Preconditions.checkArgument;
+import static androidx.core.util.Preconditions.checkState;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import android.os.ParcelFileDescriptor;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+import androidx.annotation.VisibleForTesting;
+import androidx.camera.core.Logger;
+
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A {@link Muxer} writing fragmented MP4 files, for AVC video and AAC audio.
+ *
+ * <p>The {@code moov} box is written by {@link #start()} and only describes the tracks. The
+ * samples are then written in fragments of about {@link #DEFAULT_FRAGMENT_DURATION_US}, each
+ * made of a {@code moof} box followed by a {@code mdat} box, starting on a video key frame.
+ *
+ * <p>Sample data is written to the {@link FileChannel} straight from the buffer passed to
+ * {@link #writeSampleData}, without being copied. To do so, space for the {@code moof} box is
+ * reserved when a fragment starts, and filled in once all its samples are known, with a
+ * {@code free} box covering the unused space. Only the sample sizes and timestamps of the
+ * current fragment are kept in memory, and their number is bounded by
+ * {@link #MAX_SAMPLES_PER_FRAGMENT}.
+ *
+ * <p>The reserved space starts out as a {@code free} box extending to the end of the file, so if
+ * the recording is interrupted, the file holds all the complete fragments and players skip the
+ * incomplete one.
+ *
+ * <p>Samples are expected in decoding order with increasing timestamps, i.e. without B-frames,
+ * which is what the CameraX encoders produce.
+ *
+ * <p>The muxer is only used when set with the restricted
+ * {@link androidx.camera.video.Recorder.Builder#setMuxerFactory}, recordings use a
+ * {@link android.media.MediaMuxer} otherwise.
+ */
+@RequiresApi(21) // TODO(b/200306659): Remove and replace with annotation on package-info.java
+public final class FragmentedMp4Muxer implements Muxer {
+
+    private static final String TAG = "FragmentedMp4Muxer";
+
+    /**
+     * Creates {@link FragmentedMp4Muxer} instances for the MPEG-4 output format, and falls back
+     * to {@link MediaMuxerWrapper} for other formats.
+     */
+    public static final MuxerFactory FACTORY = new MuxerFactory() {
+        @NonNull
+        @Override
+        public Muxer create(@NonNull String path, int muxerOutputFormat) throws IOException {
+            if (muxerOutputFormat != MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4) {
+                return MediaMuxerWrapper.FACTORY.create(path, muxerOutputFormat);
+            }
+            RandomAccessFile file = new RandomAccessFile(path, "rw");
+            FileChannel channel = file.getChannel();
+            channel.truncate(0);
+            return new FragmentedMp4Muxer(channel);
+        }
+
+        @RequiresApi(26)
+        @NonNull
+        @Override
+        public Muxer create(@NonNull FileDescriptor fileDescriptor, int muxerOutputFormat)
+                throws IOException {
+            if (muxerOutputFormat != MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4) {
+                return MediaMuxerWrapper.FACTORY.create(fileDescriptor, muxerOutputFormat);
+            }
+            // Dup the file descriptor so the caller can close it. It is closed with the channel.
+            ParcelFileDescriptor parcelFileDescriptor = ParcelFileDescriptor.dup(fileDescriptor);
+            FileChannel channel =
+                    new ParcelFileDescriptor.AutoCloseOutputStream(parcelFileDescriptor)
+                            .getChannel();
+            channel.truncate(0);
+            return new FragmentedMp4Muxer(channel);
+        }
+    };
+
+    @VisibleForTesting
+    static final long DEFAULT_FRAGMENT_DURATION_US = 1_000_000;
+    @VisibleForTesting
+    static final int MAX_SAMPLES_PER_FRAGMENT = 128;
+    private static final int MAX_TRACKS = 2;
+
+    private static final int STATE_INITIALIZED = 0;
+    private static final int STATE_STARTED = 1;
+    private static final int STATE_STOPPED = 2;
+    private static final int STATE_RELEASED = 3;
+
+    private static final int BOX_HEADER_SIZE = 8;
+    // traf, tfhd and tfdt boxes of a track.
+    private static final int TRAF_HEADER_SIZE = BOX_HEADER_SIZE + 16 + 20;
+    private static final int TRUN_HEADER_SIZE = 20;
+    private static final int TRUN_SAMPLE_SIZE = 12;
+    // Enough for the moof box when every sample is in its own run, and a free box header.
+    @VisibleForTesting
+    static final int FRAGMENT_HEADER_RESERVED_SIZE = BOX_HEADER_SIZE + 16
+            + MAX_TRACKS * TRAF_HEADER_SIZE
+            + MAX_SAMPLES_PER_FRAGMENT * (TRUN_HEADER_SIZE + TRUN_SAMPLE_SIZE)
+            + BOX_HEADER_SIZE;
+    // Keeps the mdat size within 32 bits, with room for the AVC start code conversion.
+    private static final long MAX_FRAGMENT_PAYLOAD_SIZE = Integer.MAX_VALUE / 2;
+
+    private static final int MOVIE_TIMESCALE = 1000;
+    private static final int VIDEO_TIMESCALE = 90000;
+    private static final int DEFAULT_VIDEO_FRAME_RATE = 30;
+    private static final int AAC_SAMPLES_PER_FRAME = 1024;
+
+    // tfhd flag: the data offsets are relative to the moof box.
+    private static final int TFHD_DEFAULT_BASE_IS_MOOF = 0x020000;
+    // trun flags: data offset, sample duration, sample size and sample flags present.
+    private static final int TRUN_FLAGS = 0x000001 | 0x000100 | 0x000200 | 0x000400;
+    private static final int SAMPLE_FLAGS_SYNC = 0x02000000;
+    private static final int SAMPLE_FLAGS_NON_SYNC = 0x01010000;
+
+    private static final int NAL_TYPE_SPS = 7;
+    private static final int NAL_TYPE_PPS = 8;
+
+    private final FileChannel mChannel;
+    private final long mFragmentDurationUs;
+    private final List<Track> mTracks = new ArrayList<>();
+    private int mState = STATE_INITIALIZED;
+    private int mOrientationDegrees = 0;
+    @Nullable
+    private String mLocation;
+
+    // Position of the next sample data in the file.
+    private long mPosition;
+    // Offsets of the durations patched on stop, in the moov box.
+    private long mMvhdDurationPosition;
+    private long mMehdDurationPosition;
+    private long mStartTimeUs = -1;
+
+    // The current fragment. mFragmentPosition is -1 when no fragment is open.
+    private long mFragmentPosition = -1;
+    private long mFragmentStartTimeUs;
+    private long mFragmentPayloadSize;
+    private int mFragmentSequenceNumber = 1;
+    private int mSampleCount;
+    private final int[] mSampleTracks = new int[MAX_SAMPLES_PER_FRAGMENT];
+    private final int[] mSampleSizes = new int[MAX_SAMPLES_PER_FRAGMENT];
+    private final int[] mSampleDurations = new int[MAX_SAMPLES_PER_FRAGMENT];
+    private final boolean[] mSampleIsSync = new boolean[MAX_SAMPLES_PER_FRAGMENT];
+    private final long[] mSampleOffsets = new long[MAX_SAMPLES_PER_FRAGMENT];
+    private final ByteBuffer mFragmentHeader = ByteBuffer.allocate(FRAGMENT_HEADER_RESERVED_SIZE);
+    private final List<ByteBuffer> mNalBuffers = new ArrayList<>();
+
+    /**
+     * @param channel the output channel. It is closed by {@link #release()}.
+     */
+    public FragmentedMp4Muxer(@NonNull FileChannel channel) {
+        this(channel, DEFAULT_FRAGMENT_DURATION_US);
+    }
+
+    @VisibleForTesting
+    FragmentedMp4Muxer(@NonNull FileChannel channel, long fragmentDurationUs) {
+        mChannel = channel;
+        mFragmentDurationUs = fragmentDurationUs;
+    }
+
+    @Override
+    public int addTrack(@NonNull MediaFormat format) {
+        checkState(mState == STATE_INITIALIZED, "Tracks must be added before start.");
+        checkState(mTracks.size() < MAX_TRACKS, "Too many tracks.");
+        String mime = format.getString(MediaFormat.KEY_MIME);
+        Track track;
+        if (MediaFormat.MIMETYPE_VIDEO_AVC.equals(mime)) {
+            track = new Track(mTracks.size() + 1, format, /*isVideo=*/true, VIDEO_TIMESCALE,
+                    VIDEO_TIMESCALE / DEFAULT_VIDEO_FRAME_RATE);
+        } else if (MediaFormat.MIMETYPE_AUDIO_AAC.equals(mime)) {
+            int sampleRate = format.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+            track = new Track(mTracks.size() + 1, format, /*isVideo=*/false, sampleRate,
+                    AAC_SAMPLES_PER_FRAME);
+        } else {
+            throw new IllegalArgumentException("Unsupported mime type: " + mime);
+        }
+        checkArgument(format.containsKey("csd-0"), "Missing codec specific data.");
+        mTracks.add(track);
+        return mTracks.size() - 1;
+    }
+
+    @Override
+    public void setOrientationHint(int degrees) {
+        checkState(mState == STATE_INITIALIZED, "Orientation must be set before start.");
+        checkArgument(degrees == 0 || degrees == 90 || degrees == 180 || degrees == 270,
+                "Unsupported orientation: " + degrees);
+        mOrientationDegrees = degrees;
+    }
+
+    @Override
+    public void setLocation(float latitude, float longitude) {
+        checkState(mState == STATE_INITIALIZED, "Location must be set before start.");
+        checkArgument(latitude >= -90 && latitude <= 90, "Invalid latitude: " + latitude);
+        checkArgument(longitude >= -180 && longitude <= 180, "Invalid longitude: " + longitude);
+        // Same ISO 6709 format as MediaMuxer.
+        mLocation = String.format(Locale.US, "%+08.4f%+09.4f/", latitude, longitude);
+    }
+
+    @Override
+    public void start() {
+        checkState(mState == STATE_INITIALIZED, "Muxer is already started.");
+        checkState(!mTracks.isEmpty(), "No track is added.");
+        BoxWriter writer = new BoxWriter(1024);
+        writeFileTypeBox(writer);
+        writeMovieBox(writer);
+        try {
+            writeFully(writer.toByteBuffer(), 0);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to write the movie header.", e);
+        }
+        mPosition = writer.position();
+        mState = STATE_STARTED;
+    }
+
+    @Override
+    public void writeSampleData(int trackIndex, @NonNull ByteBuffer byteBuffer,
+            @NonNull MediaCodec.BufferInfo bufferInfo) {
+        checkState(mState == STATE_STARTED, "Muxer is not started.");
+        checkArgument(trackIndex >= 0 && trackIndex < mTracks.size(),
+                "Invalid track index: " + trackIndex);
+        if ((bufferInfo.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0
+                || bufferInfo.size <= 0) {
+            return;
+        }
+        Track track = mTracks.get(trackIndex);
+        long timeUs = bufferInfo.presentationTimeUs;
+        if (mStartTimeUs < 0) {
+            mStartTimeUs = timeUs;
+        }
+        long ticks = Math.max(timeUs - mStartTimeUs, 0) * track.mTimescale / 1_000_000;
+        boolean isSync = !track.mIsVideo
+                || (bufferInfo.flags & MediaCodec.BUFFER_FLAG_KEY_FRAME) != 0;
+
+        ByteBuffer data = byteBuffer.duplicate();
+        data.limit(bufferInfo.offset + bufferInfo.size);
+        data.position(bufferInfo.offset);
+        try {
+            if (mFragmentPosition >= 0
+                    && shouldCloseFragment(track, isSync, timeUs, bufferInfo.size)) {
+                closeFragment(track, ticks);
+            }
+            if (mFragmentPosition < 0) {
+                openFragment(timeUs);
+            }
+            long offset = mPosition - getFragmentPayloadPosition();
+            int size = track.mIsVideo ? writeAvcSample(data) : writeSample(data);
+            addSample(track, ticks, size, isSync, offset);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to write sample data.", e);
+        }
+    }
+
+    @Override
+    public void stop() {
+        checkState(mState == STATE_STARTED, "Muxer is not started.");
+        mState = STATE_STOPPED;
+        try {
+            if (mFragmentPosition >= 0) {
+                closeFragment(null, 0);
+            }
+            long durationMs = 0;
+            for (Track track : mTracks) {
+                durationMs = Math.max(durationMs,
+                        track.mEndTicks * MOVIE_TIMESCALE / track.mTimescale);
+            }
+            ByteBuffer mvhdDuration = ByteBuffer.allocate(4);
+            mvhdDuration.putInt(0, (int) durationMs);
+            writeFully(mvhdDuration, mMvhdDurationPosition);
+            ByteBuffer mehdDuration = ByteBuffer.allocate(8);
+            mehdDuration.putLong(0, durationMs);
+            writeFully(mehdDuration, mMehdDurationPosition);
+            mChannel.force(false);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to finalize the file.", e);
+        }
+    }
+
+    @Override
+    public void release() {
+        if (mState == STATE_RELEASED) {
+            return;
+        }
+        mState = STATE_RELEASED;
+        try {
+            mChannel.close();
+        } catch (IOException e) {
+            Logger.w(TAG, "Failed to close the output.", e);
+        }
+    }
+
+    // ===== Fragments =====
+
+    private boolean shouldCloseFragment(@NonNull Track track, boolean isSync, long timeUs,
+            int size) {
+        if (mSampleCount == MAX_SAMPLES_PER_FRAGMENT
+                || mFragmentPayloadSize + size > MAX_FRAGMENT_PAYLOAD_SIZE) {
+            return true;
+        }
+        // Start fragments on video key frames so that each one can be decoded on its own.
+        boolean canStartFragment = hasVideoTrack() ? track.mIsVideo && isSync : true;
+        return canStartFragment && timeUs - mFragmentStartTimeUs >= mFragmentDurationUs;
+    }
+
+    private void openFragment(long timeUs) throws IOException {
+        mFragmentPosition = mPosition;
+        mFragmentStartTimeUs = timeUs;
+        mFragmentPayloadSize = 0;
+        mSampleCount = 0;
+        for (Track track : mTracks) {
+            track.mLastSampleIndex = -1;
+        }
+        // Until the fragment is complete, the reserved space is a free box extending to the end
+        // of the file, so the incomplete fragment is skipped if the recording is interrupted.
+        ByteBuffer freeBox = ByteBuffer.allocate(BOX_HEADER_SIZE);
+        freeBox.putInt(0).put(fourCc("free")).flip();
+        writeFully(freeBox, mFragmentPosition);
+        mPosition = getFragmentPayloadPosition();
+    }
+
+    private long getFragmentPayloadPosition() {
+        return mFragmentPosition + FRAGMENT_HEADER_RESERVED_SIZE + BOX_HEADER_SIZE;
+    }
+
+    private void addSample(@NonNull Track track, long ticks, int size, boolean isSync,
+            long offset) {
+        if (track.mLastSampleIndex >= 0) {
+            mSampleDurations[track.mLastSampleIndex] =
+                    setLastDuration(track, ticks - track.mLastTicks);
+        }
+        int index = mSampleCount++;
+        mSampleTracks[index] = mTracks.indexOf(track);
+        mSampleSizes[index] = size;
+        mSampleIsSync[index] = isSync;
+        mSampleOffsets[index] = offset;
+        if (track.mLastSampleIndex < 0) {
+            track.mFragmentStartTicks = ticks;
+        }
+        track.mLastSampleIndex = index;
+        track.mLastTicks = ticks;
+        mFragmentPayloadSize += size;
+    }
+
+    private int setLastDuration(@NonNull Track track, long duration) {
+        track.mLastDuration = (int) Math.max(duration, 1);
+        return track.mLastDuration;
+    }
+
+    /**
+     * Writes the header of the current fragment.
+     *
+     * @param nextTrack the track of the sample starting the next fragment, if any, whose time
+     *                  gives the duration of the last sample of that track.
+     */
+    private void closeFragment(@Nullable Track nextTrack, long nextTicks) throws IOException {
+        for (Track track : mTracks) {
+            if (track.mLastSampleIndex < 0) {
+                continue;
+            }
+            // Other tracks don't know the time of their next sample yet, assume the duration
+            // didn't change.
+            mSampleDurations[track.mLastSampleIndex] = track == nextTrack
+                    ? setLastDuration(track, nextTicks - track.mLastTicks)
+                    : track.mLastDuration;
+            track.mEndTicks = track.mLastTicks + track.mLastDuration;
+        }
+
+        ByteBuffer mdatHeader = ByteBuffer.allocate(BOX_HEADER_SIZE);
+        mdatHeader.putInt((int) (BOX_HEADER_SIZE + mFragmentPayloadSize))
+                .put(fourCc("mdat")).flip();
+        writeFully(mdatHeader, mFragmentPosition + FRAGMENT_HEADER_RESERVED_SIZE);
+
+        ByteBuffer header = mFragmentHeader;
+        header.clear();
+        writeMovieFragmentBox(header);
+        int freeSize = FRAGMENT_HEADER_RESERVED_SIZE - header.position();
+        header.putInt(freeSize).put(fourCc("free"));
+        header.flip();
+        // Replaces the free box covering the fragment, now that it is complete.
+        writeFully(header, mFragmentPosition);
+
+        mFragmentPosition = -1;
+        mFragmentSequenceNumber++;
+    }
+
+    private void writeMovieFragmentBox(@NonNull ByteBuffer header) {
+        int moof = startBox(header, "moof");
+        int mfhd = startBox(header, "mfhd");
+        header.putInt(0);
+        header.putInt(mFragmentSequenceNumber);
+        endBox(header, mfhd);
+        for (int trackIndex = 0; trackIndex < mTracks.size(); trackIndex++) {
+            Track track = mTracks.get(trackIndex);
+            if (track.mLastSampleIndex < 0) {
+                continue;
+            }
+            int traf = startBox(header, "traf");
+            int tfhd = startBox(header, "tfhd");
+            header.putInt(TFHD_DEFAULT_BASE_IS_MOOF);
+            header.putInt(track.mTrackId);
+            endBox(header, tfhd);
+            int tfdt = startBox(header, "tfdt");
+            header.putInt(1 << 24); // Version 1, 64 bit decode time.
+            header.putLong(track.mFragmentStartTicks);
+            endBox(header, tfdt);
+            // One run for each sequence of consecutive samples of the track.
+            int sample = 0;
+            while (sample < mSampleCount) {
+                if (mSampleTracks[sample] != trackIndex) {
+                    sample++;
+                    continue;
+                }
+                int runEnd = sample;
+                while (runEnd < mSampleCount && mSampleTracks[runEnd] == trackIndex) {
+                    runEnd++;
+                }
+                int trun = startBox(header, "trun");
+                header.putInt(TRUN_FLAGS);
+                header.putInt(runEnd - sample);
+                header.putInt((int) (FRAGMENT_HEADER_RESERVED_SIZE + BOX_HEADER_SIZE
+                        + mSampleOffsets[sample]));
+                for (int i = sample; i < runEnd; i++) {
+                    header.putInt(mSampleDurations[i]);
+                    header.putInt(mSampleSizes[i]);
+                    header.putInt(mSampleIsSync[i] ? SAMPLE_FLAGS_SYNC : SAMPLE_FLAGS_NON_SYNC);
+                }
+                endBox(header, trun);
+                sample = runEnd;
+            }
+            endBox(header, traf);
+        }
+        endBox(header, moof);
+    }
+
+    private boolean hasVideoTrack() {
+        for (Track track : mTracks) {
+            if (track.mIsVideo) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // ===== Sample data =====
+
+    private int writeSample(@NonNull ByteBuffer data) throws IOException {
+        int size = data.remaining();
+        mPosition += writeFully(data, mPosition);
+        return size;
+    }
+
+    /**
+     * Writes an AVC sample, replacing the Annex B start codes output by the encoder with NAL
+     * unit lengths. The NAL units are written from views of the buffer.
+     */
+    private int writeAvcSample(@NonNull ByteBuffer data) throws IOException {
+        int end = data.limit();
+        int startCode = findStartCode(data, data.position(), end);
+        if (startCode != data.position()) {
+            // Already in length prefixed format.
+            return writeSample(data);
+        }
+        mNalBuffers.clear();
+        int size = 0;
+        int nalStart = startCode + getStartCodeLength(data, startCode);
+        while (nalStart < end) {
+            int nalEnd = findStartCode(data, nalStart, end);
+            ByteBuffer length = ByteBuffer.allocate(4);
+            length.putInt(0, nalEnd - nalStart);
+            ByteBuffer nal = data.duplicate();
+            nal.limit(nalEnd);
+            nal.position(nalStart);
+            mNalBuffers.add(length);
+            mNalBuffers.add(nal);
+            size += 4 + nalEnd - nalStart;
+            nalStart = nalEnd + (nalEnd < end ? getStartCodeLength(data, nalEnd) : 0);
+        }
+        ByteBuffer[] buffers = mNalBuffers.toArray(new ByteBuffer[0]);
+        mChannel.position(mPosition);
+        long written = 0;
+        while (written < size) {
+            written += mChannel.write(buffers);
+        }
+        mPosition += size;
+        return size;
+    }
+
+    /**
+     * Returns the position of the next start code in {@code [from, end)}, or {@code end}.
+     */
+    private static int findStartCode(@NonNull ByteBuffer data, int from, int end) {
+        for (int i = from; i + 2 < end; i++) {
+            if ((data.get(i + 2) & 0xFF) > 1) {
+                // Fast path: no start code can end before i + 3.
+                i += 2;
+            } else if (data.get(i) == 0 && data.get(i + 1) == 0 && data.get(i + 2) == 1) {
+                return i > from && data.get(i - 1) == 0 ? i - 1 : i;
+            }
+        }
+        return end;
+    }
+
+    private static int getStartCodeLength(@NonNull ByteBuffer data, int startCode) {
+        return data.get(startCode + 2) == 1 ? 3 : 4;
+    }
+
+    private long writeFully(@NonNull ByteBuffer buffer, long position) throws IOException {
+        long written = 0;
+        while (buffer.hasRemaining()) {
+            written += mChannel.write(buffer, position + written);
+        }
+        return written;
+    }
+
+    // ===== Movie header =====
+
+    private void writeFileTypeBox(@NonNull BoxWriter writer) {
+        int ftyp = writer.startBox("ftyp");
+        writer.putFourCc("isom");
+        writer.putInt(0x200);
+        writer.putFourCc("isom");
+        writer.putFourCc("iso6");
+        writer.putFourCc("avc1");
+        writer.putFourCc("mp41");
+        writer.endBox(ftyp);
+    }
+
+    private void writeMovieBox(@NonNull BoxWriter writer) {
+        int moov = writer.startBox("moov");
+
+        int mvhd = writer.startBox("mvhd");
+        writer.putInt(0); // Version and flags.
+        writer.putInt(0); // Creation time.
+        writer.putInt(0); // Modification time.
+        writer.putInt(MOVIE_TIMESCALE);
+        mMvhdDurationPosition = writer.position();
+        writer.putInt(0); // Duration, set on stop.
+        writer.putInt(0x00010000); // Rate 1.0.
+        writer.putShort(0x0100); // Volume 1.0.
+        writer.putZeros(10);
+        writeMatrix(writer, 0);
+        writer.putZeros(24);
+        writer.putInt(mTracks.size() + 1); // Next track id.
+        writer.endBox(mvhd);
+
+        for (Track track : mTracks) {
+            writeTrackBox(writer, track);
+        }
+
+        int mvex = writer.startBox("mvex");
+        int mehd = writer.startBox("mehd");
+        writer.putInt(1 << 24); // Version 1, 64 bit duration.
+        mMehdDurationPosition = writer.position();
+        writer.putLong(0); // Fragment duration, set on stop.
+        writer.endBox(mehd);
+        for (Track track : mTracks) {
+            int trex = writer.startBox("trex");
+            writer.putInt(0);
+            writer.putInt(track.mTrackId);
+            writer.putInt(1); // Sample description index.
+            writer.putInt(0); // Default sample duration.
+            writer.putInt(0); // Default sample size.
+            writer.putInt(0); // Default sample flags.
+            writer.endBox(trex);
+        }
+        writer.endBox(mvex);
+
+        if (mLocation != null) {
+            int udta = writer.startBox("udta");
+            byte[] location = mLocation.getBytes(Charset.forName("US-ASCII"));
+            int xyz = writer.startBox(new byte[]{(byte) 0xA9, 'x', 'y', 'z'});
+            writer.putShort(location.length);
+            writer.putShort(0x15C7); // Language code.
+            writer.putBytes(location);
+            writer.endBox(xyz);
+            writer.endBox(udta);
+        }
+
+        writer.endBox(moov);
+    }
+
+    private void writeTrackBox(@NonNull BoxWriter writer, @NonNull Track track) {
+        int trak = writer.startBox("trak");
+
+        int tkhd = writer.startBox("tkhd");
+        writer.putInt(0x7); // Enabled, in movie and in preview.
+        writer.putInt(0); // Creation time.
+        writer.putInt(0); // Modification time.
+        writer.putInt(track.mTrackId);
+        writer.putInt(0);
+        writer.putInt(0); // Duration, given by the fragments.
+        writer.putZeros(8);
+        writer.putShort(0); // Layer.
+        writer.putShort(0); // Alternate group.
+        writer.putShort(track.mIsVideo ? 0 : 0x0100); // Volume.
+        writer.putShort(0);
+        writeMatrix(writer, track.mIsVideo ? mOrientationDegrees : 0);
+        writer.putInt(track.mIsVideo ? getInteger(track, MediaFormat.KEY_WIDTH) << 16 : 0);
+        writer.putInt(track.mIsVideo ? getInteger(track, MediaFormat.KEY_HEIGHT) << 16 : 0);
+        writer.endBox(tkhd);
+
+        int mdia = writer.startBox("mdia");
+        int mdhd = writer.startBox("mdhd");
+        writer.putInt(0);
+        writer.putInt(0); // Creation time.
+        writer.putInt(0); // Modification time.
+        writer.putInt(track.mTimescale);
+        writer.putInt(0); // Duration, given by the fragments.
+        writer.putShort(0x55C4); // Language "und".
+        writer.putShort(0);
+        writer.endBox(mdhd);
+
+        int hdlr = writer.startBox("hdlr");
+        writer.putInt(0);
+        writer.putInt(0);
+        writer.putFourCc(track.mIsVideo ? "vide" : "soun");
+        writer.putZeros(12);
+        writer.putBytes((track.mIsVideo ? "VideoHandle\0" : "SoundHandle\0")
+                .getBytes(Charset.forName("US-ASCII")));
+        writer.endBox(hdlr);
+
+        int minf = writer.startBox("minf");
+        if (track.mIsVideo) {
+            int vmhd = writer.startBox("vmhd");
+            writer.putInt(1);
+            writer.putZeros(8); // Graphics mode and color.
+            writer.endBox(vmhd);
+        } else {
+            int smhd = writer.startBox("smhd");
+            writer.putInt(0);
+            writer.putInt(0); // Balance.
+            writer.endBox(smhd);
+        }
+        int dinf = writer.startBox("dinf");
+        int dref = writer.startBox("dref");
+        writer.putInt(0);
+        writer.putInt(1);
+        int url = writer.startBox("url ");
+        writer.putInt(1); // The data is in the same file.
+        writer.endBox(url);
+        writer.endBox(dref);
+        writer.endBox(dinf);
+
+        int stbl = writer.startBox("stbl");
+        int stsd = writer.startBox("stsd");
+        writer.putInt(0);
+        writer.putInt(1);
+        if (track.mIsVideo) {
+            writeAvcSampleEntry(writer, track);
+        } else {
+            writeAacSampleEntry(writer, track);
+        }
+        writer.endBox(stsd);
+        // The sample tables are empty, the samples are described by the fragments.
+        for (String type : new String[]{"stts", "stsc", "stco"}) {
+            int box = writer.startBox(type);
+            writer.putInt(0);
+            writer.putInt(0);
+            writer.endBox(box);
+        }
+        int stsz = writer.startBox("stsz");
+        writer.putInt(0);
+        writer.putInt(0);
+        writer.putInt(0);
+        writer.endBox(stsz);
+        writer.endBox(stbl);
+
+        writer.endBox(minf);
+        writer.endBox(mdia);
+        writer.endBox(trak);
+    }
+
+    private void writeAvcSampleEntry(@NonNull BoxWriter writer, @NonNull Track track) {
+        List<ByteBuffer> sps = new ArrayList<>();
+        List<ByteBuffer> pps = new ArrayList<>();
+        for (String key : new String[]{"csd-0", "csd-1"}) {
+            ByteBuffer csd = track.mFormat.getByteBuffer(key);
+            if (csd != null) {
+                splitParameterSets(csd.duplicate(), sps, pps);
+            }
+        }
+        checkArgument(!sps.isEmpty() && !pps.isEmpty(), "Missing SPS or PPS.");
+
+        int avc1 = writer.startBox("avc1");
+        writer.putZeros(6);
+        writer.putShort(1); // Data reference index.
+        writer.putZeros(16);
+        writer.putShort(getInteger(track, MediaFormat.KEY_WIDTH));
+        writer.putShort(getInteger(track, MediaFormat.KEY_HEIGHT));
+        writer.putInt(0x00480000); // 72 dpi.
+        writer.putInt(0x00480000);
+        writer.putInt(0);
+        writer.putShort(1); // Frame count.
+        writer.putZeros(32); // Compressor name.
+        writer.putShort(0x0018); // Depth.
+        writer.putShort(0xFFFF);
+
+        int avcC = writer.startBox("avcC");
+        ByteBuffer firstSps = sps.get(0);
+        writer.putByte(1); // Version.
+        writer.putByte(firstSps.get(firstSps.position() + 1)); // Profile.
+        writer.putByte(firstSps.get(firstSps.position() + 2)); // Profile compatibility.
+        writer.putByte(firstSps.get(firstSps.position() + 3)); // Level.
+        writer.putByte(0xFF); // 4 byte NAL unit lengths.
+        writer.putByte(0xE0 | sps.size());
+        for (ByteBuffer parameterSet : sps) {
+            writer.putShort(parameterSet.remaining());
+            writer.putBytes(parameterSet);
+        }
+        writer.putByte(pps.size());
+        for (ByteBuffer parameterSet : pps) {
+            writer.putShort(parameterSet.remaining());
+            writer.putBytes(parameterSet);
+        }
+        writer.endBox(avcC);
+        writer.endBox(avc1);
+    }
+
+    private static void splitParameterSets(@NonNull ByteBuffer csd, @NonNull List<ByteBuffer> sps,
+            @NonNull List<ByteBuffer> pps) {
+        int end = csd.limit();
+        int start = findStartCode(csd, csd.position(), end);
+        while (start < end) {
+            int nalStart = start + getStartCodeLength(csd, start);
+            int nalEnd = findStartCode(csd, nalStart, end);
+            if (nalStart < nalEnd) {
+                ByteBuffer nal = csd.duplicate();
+                nal.limit(nalEnd);
+                nal.position(nalStart);
+                int type = nal.get(nalStart) & 0x1F;
+                if (type == NAL_TYPE_SPS) {
+                    sps.add(nal);
+                } else if (type == NAL_TYPE_PPS) {
+                    pps.add(nal);
+                }
+            }
+            start = nalEnd;
+        }
+    }
+
+    private void writeAacSampleEntry(@NonNull BoxWriter writer, @NonNull Track track) {
+        ByteBuffer audioSpecificConfig = track.mFormat.getByteBuffer("csd-0").duplicate();
+        int bitrate = track.mFormat.containsKey(MediaFormat.KEY_BIT_RATE)
+                ? track.mFormat.getInteger(MediaFormat.KEY_BIT_RATE) : 0;
+
+        int mp4a = writer.startBox("mp4a");
+        writer.putZeros(6);
+        writer.putShort(1); // Data reference index.
+        writer.putZeros(8);
+        writer.putShort(getInteger(track, MediaFormat.KEY_CHANNEL_COUNT));
+        writer.putShort(16); // Sample size.
+        writer.putInt(0);
+        // Sample rate, as a 16.16 fixed point number. Rates that don't fit are written as 0, the
+        // actual rate is in the media header timescale and the audio specific config.
+        writer.putInt(track.mTimescale <= 0xFFFF ? track.mTimescale << 16 : 0);
+
+        int esds = writer.startBox("esds");
+        writer.putInt(0);
+        int decoderSpecificInfoSize = audioSpecificConfig.remaining();
+        int decoderConfigSize = 13 + 5 + decoderSpecificInfoSize;
+        // ES descriptor, with 4 byte sizes.
+        writer.putDescriptorHeader(0x03, 3 + 5 + decoderConfigSize + 5 + 1);
+        writer.putShort(track.mTrackId);
+        writer.putByte(0);
+        // Decoder config descriptor.
+        writer.putDescriptorHeader(0x04, decoderConfigSize);
+        writer.putByte(0x40); // MPEG-4 audio.
+        writer.putByte(0x15); // Audio stream.
+        writer.putByte(0);
+        writer.putShort(0); // Buffer size.
+        writer.putInt(bitrate); // Max bitrate.
+        writer.putInt(bitrate); // Average bitrate.
+        // Decoder specific info.
+        writer.putDescriptorHeader(0x05, decoderSpecificInfoSize);
+        writer.putBytes(audioSpecificConfig);
+        // SL config descriptor.
+        writer.putDescriptorHeader(0x06, 1);
+        writer.putByte(0x02);
+        writer.endBox(esds);
+        writer.endBox(mp4a);
+    }
+
+    private static int getInteger(@NonNull Track track, @NonNull String key) {
+        return track.mFormat.getInteger(key);
+    }
+
+    private static void writeMatrix(@NonNull BoxWriter writer, int degrees) {
+        int one = 0x00010000;
+        int a = 0;
+        int b = 0;
+        switch (degrees) {
+            case 0:
+                a = one;
+                break;
+            case 90:
+                b = one;
+                break;
+            case 180:
+                a = -one;
+                break;
+            case 270:
+                b = -one;
+                break;
+        }
+        writer.putInt(a);
+        writer.putInt(b);
+        writer.putInt(0);
+        writer.putInt(-b);
+        writer.putInt(a);
+        writer.putInt(0);
+        writer.putInt(0);
+        writer.putInt(0);
+        writer.putInt(0x40000000);
+    }
+
+    // ===== Boxes =====
+
+    @NonNull
+    static byte[] fourCc(@NonNull String type) {
+        return type.getBytes(Charset.forName("US-ASCII"));
+    }
+
+    private static int startBox(@NonNull ByteBuffer buffer, @NonNull String type) {
+        int start = buffer.position();
+        buffer.putInt(0).put(fourCc(type));
+        return start;
+    }
+
+    private static void endBox(@NonNull ByteBuffer buffer, int start) {
+        buffer.putInt(start, buffer.position() - start);
+    }
+
+    /**
+     * Writes boxes to a growing buffer.
+     */
+    private static final class BoxWriter {
+        private ByteBuffer mBuffer;
+
+        BoxWriter(int initialCapacity) {
+            mBuffer = ByteBuffer.allocate(initialCapacity);
+        }
+
+        int position() {
+            return mBuffer.position();
+        }
+
+        int startBox(@NonNull String type) {
+            return startBox(fourCc(type));
+        }
+
+        int startBox(@NonNull byte[] type) {
+            int start = position();
+            putInt(0);
+            putBytes(type);
+            return start;
+        }
+
+        void endBox(int start) {
+            mBuffer.putInt(start, position() - start);
+        }
+
+        void putDescriptorHeader(int tag, int size) {
+            putByte(tag);
+            putByte(0x80 | (size >> 21 & 0x7F));
+            putByte(0x80 | (size >> 14 & 0x7F));
+            putByte(0x80 | (size >> 7 & 0x7F));
+            putByte(size & 0x7F);
+        }
+
+        void putFourCc(@NonNull String type) {
+            putBytes(fourCc(type));
+        }
+
+        void putByte(int value) {
+            ensureCapacity(1);
+            mBuffer.put((byte) value);
+        }
+
+        void putShort(int value) {
+            ensureCapacity(2);
+            mBuffer.putShort((short) value);
+        }
+
+        void putInt(int value) {
+            ensureCapacity(4);
+            mBuffer.putInt(value);
+        }
+
+        void putLong(long value) {
+            ensureCapacity(8);
+            mBuffer.putLong(value);
+        }
+
+        void putZeros(int count) {
+            ensureCapacity(count);
+            for (int i = 0; i < count; i++) {
+                mBuffer.put((byte) 0);
+            }
+        }
+
+        void putBytes(@NonNull byte[] bytes) {
+            ensureCapacity(bytes.length);
+            mBuffer.put(bytes);
+        }
+
+        void putBytes(@NonNull ByteBuffer bytes) {
+            ensureCapacity(bytes.remaining());
+            mBuffer.put(bytes.duplicate());
+        }
+
+        @NonNull
+        ByteBuffer toByteBuffer() {
+            ByteBuffer result = mBuffer.duplicate();
+            result.flip();
+            return result;
+        }
+
+        private void ensureCapacity(int size) {
+            if (mBuffer.remaining() < size) {
+                ByteBuffer buffer = ByteBuffer.allocate(
+                        Math.max(mBuffer.capacity() * 2, mBuffer.position() + size));
+                mBuffer.flip();
+                buffer.put(mBuffer);
+                mBuffer = buffer;
+            }
+        }
+    }
+
+    private static final class Track {
+        final int mTrackId;
+        @NonNull
+        final MediaFormat mFormat;
+        final boolean mIsVideo;
+        final int mTimescale;
+
+        // Duration of the last sample, used when the next one is not known yet.
+        int mLastDuration;
+        long mLastTicks;
+        // Index of the last sample in the current fragment, or -1 if there is none.
+        int mLastSampleIndex = -1;
+        long mFragmentStartTicks;
+        long mEndTicks;
+
+        Track(int trackId, @NonNull MediaFormat format, boolean isVideo, int timescale,
+                int defaultDuration) {
+            mTrackId = trackId;
+            mFormat = format;
+            mIsVideo = isVideo;
+            mTimescale = timescale;
+            mLastDuration = defaultDuration;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.camera.video.internal.muxer;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RequiresApi;
+import androidx.camera.video.internal.compat.Api26Impl;
+
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link Muxer} backed by {@link MediaMuxer}.
+ */
+@RequiresApi(21) // TODO(b/200306659): Remove and replace with annotation on package-info.java
+public final class MediaMuxerWrapper implements Muxer {
+
+    /** Creates {@link MediaMuxerWrapper} instances. */
+    public static final MuxerFactory FACTORY = new MuxerFactory() {
+        @NonNull
+        @Override
+        public Muxer create(@NonNull String path, int muxerOutputFormat) throws IOException {
+            return new MediaMuxerWrapper(new MediaMuxer(path, muxerOutputFormat));
+        }
+
+        @RequiresApi(26)
+        @NonNull
+        @Override
+        public Muxer create(@NonNull FileDescriptor fileDescriptor, int muxerOutputFormat)
+                throws IOException {
+            return new MediaMuxerWrapper(
+                    Api26Impl.createMediaMuxer(fileDescriptor, muxerOutputFormat));
+        }
+    };
+
+    private final MediaMuxer mMediaMuxer;
+
+    private MediaMuxerWrapper(@NonNull MediaMuxer mediaMuxer) {
+        mMediaMuxer = mediaMuxer;
+    }
+
+    @Override
+    public int addTrack(@NonNull MediaFormat format) {
+        return mMediaMuxer.addTrack(format);
+    }
+
+    @Override
+    public void setOrientationHint(int degrees) {
+        mMediaMuxer.setOrientationHint(degrees);
+    }
+
+    @Override
+    public void setLocation(float latitude, float longitude) {
+        mMediaMuxer.setLocation(latitude, longitude);
+    }
+
+    @Override
+    public void start() {
+        mMediaMuxer.start();
+    }
+
+    @Override
+    public void writeSampleData(int trackIndex, @NonNull ByteBuffer byteBuffer,
+            @NonNull MediaCodec.BufferInfo bufferInfo) {
+        mMediaMuxer.writeSampleData(trackIndex, byteBuffer, bufferInfo);
+    }
+
+    @Override
+    public void stop() {
+        mMediaMuxer.stop();
+    }
+
+    @Override
+    public void release() {
+        mMediaMuxer.release();
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.camera.video.internal.muxer;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RequiresApi;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Muxes encoded audio and video samples into a container file.
+ *
+ * <p>The contract follows {@link android.media.MediaMuxer}: the tracks, orientation and
+ * location are set before {@link #start()}, then samples are written until {@link #stop()}.
+ * Errors are reported with {@link IllegalStateException} and {@link IllegalArgumentException}.
+ * Implementations are not thread safe.
+ */
+@RequiresApi(21) // TODO(b/200306659): Remove and replace with annotation on package-info.java
+public interface Muxer {
+
+    /**
+     * Adds a track with the given format.
+     *
+     * @return the index of the track, to be passed to {@link #writeSampleData}.
+     * @throws IllegalArgumentException if the format is not supported.
+     */
+    int addTrack(@NonNull MediaFormat format);
+
+    /**
+     * Sets the orientation hint of the video, one of 0, 90, 180 or 270 degrees.
+     */
+    void setOrientationHint(int degrees);
+
+    /**
+     * Sets the location where the video was recorded.
+     */
+    void setLocation(float latitude, float longitude);
+
+    /**
+     * Starts the muxer. Must be called after all the tracks are added.
+     */
+    void start();
+
+    /**
+     * Writes an encoded sample to the given track.
+     *
+     * <p>The buffer is not retained after this call returns, so it can be returned to the
+     * encoder right away.
+     */
+    void writeSampleData(int trackIndex, @NonNull ByteBuffer byteBuffer,
+            @NonNull MediaCodec.BufferInfo bufferInfo);
+
+    /**
+     * Stops the muxer and finalizes the output.
+     */
+    void stop();
+
+    /**
+     * Releases the resources of the muxer.
+     */
+    void release();
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.camera.video.internal.muxer;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RequiresApi;
+
+import java.io.FileDescriptor;
+import java.io.IOException;
+
+/**
+ * Creates the {@link Muxer} of a recording.
+ */
+@RequiresApi(21) // TODO(b/200306659): Remove and replace with annotation on package-info.java
+public interface MuxerFactory {
+
+    /**
+     * Creates a {@link Muxer} writing to a file path.
+     *
+     * @param path              the path of the output file.
+     * @param muxerOutputFormat one of the {@link android.media.MediaMuxer.OutputFormat} values.
+     */
+    @NonNull
+    Muxer create(@NonNull String path, int muxerOutputFormat) throws IOException;
+
+    /**
+     * Creates a {@link Muxer} writing to a file descriptor.
+     *
+     * <p>The file descriptor can be closed by the caller once this method returns.
+     *
+     * @param fileDescriptor    the output file descriptor, opened for read and write.
+     * @param muxerOutputFormat one of the {@link android.media.MediaMuxer.OutputFormat} values.
+     */
+    @RequiresApi(26)
+    @NonNull
+    Muxer create(@NonNull FileDescriptor fileDescriptor, int muxerOutputFormat)
+            throws IOException;
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package androidx.camera.video.internal
+
+import android.os.Build
+import com.google.common.truth.Truth.assertThat
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+import org.robolectric.annotation.internal.DoNotInstrument
+
+// 16 bit mono at 1 kHz, so a frame is 2 bytes and lasts 1 ms.
+private const val BYTES_PER_FRAME = 2
+private const val SAMPLE_RATE = 1000
+private const val CHUNK_SIZE = 8
+private const val CHUNK_DURATION_US = 4000L
+
+@RunWith(RobolectricTestRunner::class)
+@DoNotInstrument
+@Config(minSdk = Build.VERSION_CODES.LOLLIPOP)
+class AudioChunkRingBufferTest {
+
+    private val ringBuffer = AudioChunkRingBuffer(3, CHUNK_SIZE, BYTES_PER_FRAME, SAMPLE_RATE)
+
+    @Test
+    fun drainTo_copiesConsecutiveChunksIntoOneBuffer() {
+        writeChunk(value = 1, timestampUs = 0)
+        writeChunk(value = 2, timestampUs = CHUNK_DURATION_US)
+
+        val destination = ByteBuffer.allocate(100)
+        val timestampUs = ringBuffer.timestampUs
+        val length = ringBuffer.drainTo(destination)
+
+        assertThat(timestampUs).isEqualTo(0)
+        assertThat(length).isEqualTo(2 * CHUNK_SIZE)
+        assertThat(destination.array().copyOf(length).toList())
+            .isEqualTo(List(CHUNK_SIZE) { 1.toByte() } + List(CHUNK_SIZE) { 2.toByte() })
+        assertThat(ringBuffer.isEmpty).isTrue()
+    }
+
+    @Test
+    fun drainTo_keepsRemainingFramesOfPartiallyCopiedChunk() {
+        writeChunk(value = 1, timestampUs = 0)
+
+        // Room for 2 frames and a half.
+        val length = ringBuffer.drainTo(ByteBuffer.allocate(5))
+
+        assertThat(length).isEqualTo(4)
+        assertThat(ringBuffer.isEmpty).isFalse()
+        assertThat(ringBuffer.timestampUs).isEqualTo(2000)
+        assertThat(ringBuffer.drainTo(ByteBuffer.allocate(100))).isEqualTo(4)
+    }
+
+    @Test
+    fun drainTo_stopsAtGapInTimestamps() {
+        writeChunk(value = 1, timestampUs = 0)
+        writeChunk(value = 2, timestampUs = 10 * CHUNK_DURATION_US)
+
+        assertThat(ringBuffer.drainTo(ByteBuffer.allocate(100))).isEqualTo(CHUNK_SIZE)
+        assertThat(ringBuffer.timestampUs).isEqualTo(10 * CHUNK_DURATION_US)
+    }
+
+    @Test
+    fun obtainChunk_dropsOldestChunkWhenFull() {
+        for (i in 0 until 4) {
+            writeChunk(value = i, timestampUs = i * CHUNK_DURATION_US)
+        }
+
+        assertThat(ringBuffer.droppedChunkCount).isEqualTo(1)
+        assertThat(ringBuffer.timestampUs).isEqualTo(CHUNK_DURATION_US)
+        val destination = ByteBuffer.allocate(100)
+        assertThat(ringBuffer.drainTo(destination)).isEqualTo(3 * CHUNK_SIZE)
+        assertThat(destination.get(0)).isEqualTo(1.toByte())
+    }
+
+    @Test
+    fun clear_dropsAllChunks() {
+        writeChunk(value = 1, timestampUs = 0)
+
+        ringBuffer.clear()
+
+        assertThat(ringBuffer.isEmpty).isTrue()
+        assertThat(ringBuffer.drainTo(ByteBuffer.allocate(100))).isEqualTo(0)
+    }
+
+    @Test
+    fun computeMaxAmplitude_returnsNormalizedPeak() {
+        val audioData = ByteBuffer.allocate(8).order(ByteOrder.nativeOrder())
+        audioData.asShortBuffer().put(shortArrayOf(100, -16384, 8192, 0))
+
+        assertThat(AudioSource.computeMaxAmplitude(audioData, 8)).isEqualTo(0.5)
+        assertThat(AudioSource.computeMaxAmplitude(ByteBuffer.allocate(8), 8)).isEqualTo(0.0)
+    }
+
+    private fun writeChunk(value: Int, timestampUs: Long) {
+        val chunk = ringBuffer.obtainChunk()
+        for (i in 0 until CHUNK_SIZE) {
+            chunk.put(i, value.toByte())
+        }
+        ringBuffer.commitChunk(CHUNK_SIZE, timestampUs)
+    }
+}
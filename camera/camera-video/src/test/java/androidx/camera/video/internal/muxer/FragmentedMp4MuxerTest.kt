@@ -0,0 +1,214 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package androidx.camera.video.internal.muxer
+
+import android.media.MediaCodec
+import android.media.MediaFormat
+import android.os.Build
+import com.google.common.truth.Truth.assertThat
+import java.io.File
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import org.junit.After
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+import org.robolectric.annotation.internal.DoNotInstrument
+
+private const val FRAME_RATE = 30
+private val SPS = byteArrayOf(0, 0, 0, 1, 0x67, 0x42, 0x00, 0x1E, 0x01)
+private val PPS = byteArrayOf(0, 0, 0, 1, 0x68, 0x05)
+private val AUDIO_SPECIFIC_CONFIG = byteArrayOf(0x12, 0x08)
+
+@RunWith(RobolectricTestRunner::class)
+@DoNotInstrument
+@Config(minSdk = Build.VERSION_CODES.LOLLIPOP)
+class FragmentedMp4MuxerTest {
+
+    @get:Rule
+    val temporaryFolder = TemporaryFolder()
+
+    private lateinit var file: File
+    private lateinit var muxer: FragmentedMp4Muxer
+    private var videoTrack = -1
+    private var audioTrack = -1
+
+    @Before
+    fun setUp() {
+        file = temporaryFolder.newFile("video.mp4")
+        val output = RandomAccessFile(file, "rw")
+        muxer = FragmentedMp4Muxer(output.channel)
+        videoTrack = muxer.addTrack(createVideoFormat())
+        audioTrack = muxer.addTrack(createAudioFormat())
+    }
+
+    @After
+    fun tearDown() {
+        muxer.release()
+    }
+
+    @Test
+    fun writesMovieHeaderThenFragments() {
+        muxer.start()
+        writeVideo(frameCount = 10)
+        muxer.stop()
+        muxer.release()
+
+        assertThat(readTopLevelBoxes().map { it.type })
+            .containsExactly("ftyp", "moov", "moof", "free", "mdat").inOrder()
+    }
+
+    @Test
+    fun fragmentsStartOnVideoKeyFrames() {
+        muxer.start()
+        // A key frame every second.
+        writeVideo(frameCount = 3 * FRAME_RATE, keyFrameInterval = FRAME_RATE)
+        muxer.stop()
+        muxer.release()
+
+        assertThat(readTopLevelBoxes().count { it.type == "moof" }).isEqualTo(3)
+    }
+
+    @Test
+    fun fragmentIsClosedWhenSampleCountIsReached() {
+        muxer.start()
+        writeVideo(frameCount = FragmentedMp4Muxer.MAX_SAMPLES_PER_FRAGMENT + 1)
+        muxer.stop()
+        muxer.release()
+
+        assertThat(readTopLevelBoxes().count { it.type == "moof" }).isEqualTo(2)
+    }
+
+    @Test
+    fun startCodesAreReplacedWithLengths() {
+        muxer.start()
+        writeSample(
+            videoTrack,
+            byteArrayOf(0, 0, 0, 1, 0x65, 1, 2, 3, 0, 0, 1, 0x06, 4),
+            timeUs = 0,
+            isKeyFrame = true
+        )
+        muxer.stop()
+        muxer.release()
+
+        val mdat = readTopLevelBoxes().single { it.type == "mdat" }
+        assertThat(mdat.payload).isEqualTo(
+            byteArrayOf(0, 0, 0, 4, 0x65, 1, 2, 3, 0, 0, 0, 2, 0x06, 4)
+        )
+    }
+
+    @Test
+    fun audioSamplesAreWrittenUnchanged() {
+        muxer.start()
+        writeSample(videoTrack, byteArrayOf(0, 0, 0, 1, 0x65, 1), timeUs = 0, isKeyFrame = true)
+        writeSample(audioTrack, byteArrayOf(7, 8, 9), timeUs = 0, isKeyFrame = false)
+        muxer.stop()
+        muxer.release()
+
+        val mdat = readTopLevelBoxes().single { it.type == "mdat" }
+        assertThat(mdat.payload).isEqualTo(byteArrayOf(0, 0, 0, 2, 0x65, 1, 7, 8, 9))
+    }
+
+    @Test
+    fun incompleteFragmentIsCoveredByFreeBox() {
+        muxer.start()
+        writeVideo(frameCount = FRAME_RATE + 10, keyFrameInterval = FRAME_RATE)
+        // Release without stopping, as if the recording was interrupted.
+        muxer.release()
+
+        val boxes = readTopLevelBoxes()
+        assertThat(boxes.map { it.type })
+            .containsExactly("ftyp", "moov", "moof", "free", "mdat", "free").inOrder()
+        assertThat(boxes.last().declaredSize).isEqualTo(0)
+    }
+
+    @Test
+    fun audioSampleRateTooLargeForSampleEntryIsWrittenAsZero() {
+        val muxer = FragmentedMp4Muxer(RandomAccessFile(file, "rw").channel)
+        muxer.addTrack(createVideoFormat())
+        muxer.addTrack(createAudioFormat(sampleRate = 96000))
+        muxer.start()
+        muxer.stop()
+        muxer.release()
+
+        val moov = readTopLevelBoxes().single { it.type == "moov" }.payload
+        val mp4a = String(moov, Charsets.US_ASCII).indexOf("mp4a")
+        // The sample rate follows the reserved fields, channel count and sample size.
+        assertThat(ByteBuffer.wrap(moov, mp4a + 4 + 24, 4).int).isEqualTo(0)
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun addTrack_throwsForUnsupportedMimeType() {
+        val muxer = FragmentedMp4Muxer(RandomAccessFile(file, "rw").channel)
+        muxer.addTrack(MediaFormat.createVideoFormat(MediaFormat.MIMETYPE_VIDEO_HEVC, 640, 480))
+    }
+
+    @Test(expected = IllegalStateException::class)
+    fun writeSampleData_throwsBeforeStart() {
+        writeSample(videoTrack, byteArrayOf(0, 0, 1, 0x65), timeUs = 0, isKeyFrame = true)
+    }
+
+    private fun writeVideo(frameCount: Int, keyFrameInterval: Int = Int.MAX_VALUE) {
+        for (i in 0 until frameCount) {
+            writeSample(
+                videoTrack,
+                byteArrayOf(0, 0, 0, 1, 0x41, i.toByte()),
+                timeUs = i * 1_000_000L / FRAME_RATE,
+                isKeyFrame = i % keyFrameInterval == 0
+            )
+        }
+    }
+
+    private fun writeSample(track: Int, data: ByteArray, timeUs: Long, isKeyFrame: Boolean) {
+        val buffer = ByteBuffer.allocateDirect(data.size).put(data)
+        buffer.flip()
+        val bufferInfo = MediaCodec.BufferInfo().apply {
+            set(0, data.size, timeUs, if (isKeyFrame) MediaCodec.BUFFER_FLAG_KEY_FRAME else 0)
+        }
+        muxer.writeSampleData(track, buffer, bufferInfo)
+    }
+
+    private fun readTopLevelBoxes(): List<Box> {
+        val bytes = ByteBuffer.wrap(file.readBytes())
+        val boxes = mutableListOf<Box>()
+        while (bytes.remaining() >= 8) {
+            val start = bytes.position()
+            val declaredSize = bytes.int
+            val type = String(ByteArray(4).also { bytes.get(it) }, Charsets.US_ASCII)
+            val size = if (declaredSize == 0) bytes.limit() - start else declaredSize
+            val payload = ByteArray(size - 8).also { bytes.get(it) }
+            boxes.add(Box(type, declaredSize, payload))
+        }
+        return boxes
+    }
+
+    private fun createVideoFormat() =
+        MediaFormat.createVideoFormat(MediaFormat.MIMETYPE_VIDEO_AVC, 640, 480).apply {
+            setByteBuffer("csd-0", ByteBuffer.wrap(SPS))
+            setByteBuffer("csd-1", ByteBuffer.wrap(PPS))
+        }
+
+    private fun createAudioFormat(sampleRate: Int = 44100) =
+        MediaFormat.createAudioFormat(MediaFormat.MIMETYPE_AUDIO_AAC, sampleRate, 1).apply {
+            setByteBuffer("csd-0", ByteBuffer.wrap(AUDIO_SPECIFIC_CONFIG))
+        }
+
+    private class Box(val type: String, val declaredSize: Int, val payload: ByteArray)
+}
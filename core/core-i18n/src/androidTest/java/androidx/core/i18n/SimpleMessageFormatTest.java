@@ -17,6 +17,7 @@ package androidx.core.i18n;
 
 import android.content.Context;
 
+import androidx.core.i18n.messageformat_icu.text.MessagePattern;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import androidx.test.filters.SmallTest;
 import androidx.test.platform.app.InstrumentationRegistry;
@@ -153,4 +154,43 @@ public class SimpleMessageFormatTest {
         Assert.assertEquals("11", "11th floor",
                 MessageFormat.format(appContext, msg, ImmutableMap.of("num", 11)));
     }
+
+    @Test @SmallTest
+    public void testCachedPatternWithDifferentLocales() {
+        final String msg = "{num,plural,one{# file}other{# files}}";
+        Assert.assertEquals("1 file",
+                MessageFormat.format(appContext, Locale.US, msg, ImmutableMap.of("num", 1)));
+        Assert.assertEquals("1.234 files",
+                MessageFormat.format(appContext, Locale.GERMANY, msg,
+                        ImmutableMap.of("num", 1234)));
+        Assert.assertEquals("1,234 files",
+                MessageFormat.format(appContext, Locale.US, msg, ImmutableMap.of("num", 1234)));
+    }
+
+    @Test @SmallTest
+    public void testCachedPatternWithDifferentApostropheModes() {
+        final String msg = "it's '{0}' {0}";
+        final androidx.core.i18n.messageformat_icu.simple.MessageFormat required =
+                new androidx.core.i18n.messageformat_icu.simple.MessageFormat(appContext, "",
+                        Locale.US);
+        required.applyPattern(msg, MessagePattern.ApostropheMode.DOUBLE_REQUIRED);
+        final androidx.core.i18n.messageformat_icu.simple.MessageFormat optional =
+                new androidx.core.i18n.messageformat_icu.simple.MessageFormat(appContext, msg,
+                        Locale.US);
+
+        Assert.assertEquals("its x {0}",
+                required.format(new Object[] {"x"}, new StringBuilder()).toString());
+        Assert.assertEquals("it's {0} x",
+                optional.format(new Object[] {"x"}, new StringBuilder()).toString());
+    }
+
+    @Test @SmallTest
+    public void testFormatToStringBuilder() {
+        final androidx.core.i18n.messageformat_icu.simple.MessageFormat format =
+                new androidx.core.i18n.messageformat_icu.simple.MessageFormat(appContext,
+                        "Going to {place}", Locale.US);
+        final StringBuilder result = new StringBuilder("> ");
+        format.format(ImmutableMap.<String, Object>of("place", "Germany"), result);
+        Assert.assertEquals("> Going to Germany", result.toString());
+    }
 }
@@ -38,9 +38,8 @@ class MessageFormat private constructor() {
             msg: String,
             namedArguments: Map<String, Any>
         ): String {
-            val result: StringBuffer = StringBuffer()
-            return MessageFormat(context, msg, locale)
-                .format(namedArguments, result, null).toString()
+            // Reuses the parsed pattern and a per-thread StringBuilder across calls.
+            return MessageFormat.format(context, locale, msg, namedArguments)
         }
 
         /**
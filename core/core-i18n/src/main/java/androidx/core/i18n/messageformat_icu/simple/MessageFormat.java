@@ -425,11 +425,9 @@ public class MessageFormat extends Format {
      */
     public void applyPattern(String pttrn) {
         try {
-            if (msgPattern == null) {
-                msgPattern = new MessagePattern(pttrn);
-            } else {
-                msgPattern.parse(pttrn);
-            }
+            // Parsed patterns are frozen and shared with other MessageFormat instances.
+            msgPattern = MessagePatternCache.get(pttrn,
+                    msgPattern == null ? DEFAULT_APOS_MODE : msgPattern.getApostropheMode());
             // Cache the formats that are explicitly mentioned in the message pattern.
             cacheExplicitFormats();
         } catch(RuntimeException e) {
@@ -454,10 +452,8 @@ public class MessageFormat extends Format {
      * icu_annot::stable ICU 4.8
      */
     public void applyPattern(String pattern, MessagePattern.ApostropheMode aposMode) {
-        if (msgPattern == null) {
+        if (msgPattern == null || aposMode != msgPattern.getApostropheMode()) {
             msgPattern = new MessagePattern(aposMode);
-        } else if (aposMode != msgPattern.getApostropheMode()) {
-            msgPattern.clearPatternAndSetApostropheMode(aposMode);
         }
         applyPattern(pattern);
     }
@@ -953,6 +949,49 @@ public class MessageFormat extends Format {
         return result;
     }
 
+    /**
+     * Formats an array of objects and appends the <code>MessageFormat</code>'s
+     * pattern, with arguments replaced by the formatted objects, to the
+     * provided <code>StringBuilder</code>.
+     * <p>
+     * Same as {@link #format(Object[], StringBuffer, FieldPosition)}, but avoids the
+     * synchronization of <code>StringBuffer</code>, and the builder can be reused
+     * across calls.
+     *
+     * @param arguments an array of objects to be formatted and substituted.
+     * @param result where text is appended.
+     * @throws IllegalArgumentException if a value in the
+     *         <code>arguments</code> array is not of the type
+     *         expected by the corresponding argument or custom Format object.
+     * @throws IllegalArgumentException if this format uses named arguments
+     * @return the passed-in StringBuilder
+     */
+    public final StringBuilder format(Object[] arguments, StringBuilder result) {
+        format(arguments, null, new AppendableWrapper(result), null);
+        return result;
+    }
+
+    /**
+     * Formats a map of objects and appends the <code>MessageFormat</code>'s
+     * pattern, with arguments replaced by the formatted objects, to the
+     * provided <code>StringBuilder</code>.
+     * <p>
+     * Same as {@link #format(Map, StringBuffer, FieldPosition)}, but avoids the
+     * synchronization of <code>StringBuffer</code>, and the builder can be reused
+     * across calls.
+     *
+     * @param arguments a map of objects to be formatted and substituted.
+     * @param result where text is appended.
+     * @throws IllegalArgumentException if a value in the
+     *         <code>arguments</code> array is not of the type
+     *         expected by the corresponding argument or custom Format object.
+     * @return the passed-in StringBuilder
+     */
+    public final StringBuilder format(Map<String, Object> arguments, StringBuilder result) {
+        format(null, arguments, new AppendableWrapper(result), null);
+        return result;
+    }
+
     /**
      * Creates a MessageFormat with the given pattern and uses it
      * to format the given arguments. This is equivalent to
@@ -971,7 +1010,12 @@ public class MessageFormat extends Format {
      */
     public static String format(Context context, String pattern, Object... arguments) {
         MessageFormat temp = new MessageFormat(context, pattern);
-        return temp.format(arguments);
+        StringBuilder result = obtainStringBuilder();
+        try {
+            return temp.format(arguments, result).toString();
+        } finally {
+            recycleStringBuilder(result);
+        }
     }
 
     /**
@@ -988,10 +1032,60 @@ public class MessageFormat extends Format {
      * icu_annot::stable ICU 3.8
      */
     public static String format(Context context, String pattern, Map<String, Object> arguments) {
-        MessageFormat temp = new MessageFormat(context, pattern);
-        return temp.format(arguments);
+        return format(context, Locale.getDefault(), pattern, arguments);
+    }
+
+    /**
+     * Creates a MessageFormat for the given locale and pattern and uses it to
+     * format the given arguments. The pattern must identify arguments
+     * by name instead of by number.
+     * <p>
+     * The parsed pattern is cached, so repeatedly formatting the same pattern
+     * only pays for the formatting itself.
+     *
+     * @throws IllegalArgumentException if the pattern is invalid
+     * @throws IllegalArgumentException if a value in the
+     *         <code>arguments</code> array is not of the type
+     *         expected by the corresponding argument or custom Format object.
+     * @see #format(Context, String, Map)
+     */
+    public static String format(Context context, Locale locale, String pattern,
+            Map<String, Object> arguments) {
+        MessageFormat temp = new MessageFormat(context, pattern, locale);
+        StringBuilder result = obtainStringBuilder();
+        try {
+            return temp.format(arguments, result).toString();
+        } finally {
+            recycleStringBuilder(result);
+        }
     }
 
+    /**
+     * Returns an empty builder, reusing the one of the current thread if it is not in use.
+     * Formatting an argument can format another message on the same thread, which then gets
+     * a new builder.
+     */
+    private static StringBuilder obtainStringBuilder() {
+        StringBuilder result = sStringBuilder.get();
+        if (result == null) {
+            return new StringBuilder();
+        }
+        sStringBuilder.set(null);
+        result.setLength(0);
+        return result;
+    }
+
+    private static void recycleStringBuilder(StringBuilder result) {
+        // Don't hold on to the memory of unusually long messages.
+        if (result.capacity() <= MAX_RECYCLED_STRING_BUILDER_CAPACITY) {
+            sStringBuilder.set(result);
+        }
+    }
+
+    private static final int MAX_RECYCLED_STRING_BUILDER_CAPACITY = 1024;
+
+    private static final ThreadLocal<StringBuilder> sStringBuilder = new ThreadLocal<>();
+
     /**
      * {icu_annot::icu} Returns true if this MessageFormat uses named arguments,
      * and false otherwise.  See class description.
@@ -2087,7 +2181,8 @@ public class MessageFormat extends Format {
 
     private void resetPattern() {
         if (msgPattern != null) {
-            msgPattern.clear();
+            // The shared, cached patterns are frozen.
+            msgPattern = new MessagePattern(msgPattern.getApostropheMode());
         }
         if (cachedFormatters != null) {
             cachedFormatters.clear();
@@ -2095,6 +2190,9 @@ public class MessageFormat extends Format {
         customFormatArgStarts = null;
     }
 
+    private static final MessagePattern.ApostropheMode DEFAULT_APOS_MODE =
+            new MessagePattern().getApostropheMode();
+
     private static final String[] typeList =
         { "number", "date", "time", "spellout", "ordinal", "duration" };
     private static final int
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package androidx.core.i18n.messageformat_icu.simple;
+
+import androidx.annotation.NonNull;
+import androidx.core.i18n.messageformat_icu.text.MessagePattern;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded, thread-safe cache of parsed message patterns.
+ *
+ * <p>Parsing is the most expensive part of creating a {@link MessageFormat}, and applications
+ * tend to format the same few patterns over and over again (for example on every bind of a list
+ * item). The cached {@link MessagePattern}s are frozen, so they can be shared by all the
+ * {@link MessageFormat} instances, on any thread.
+ */
+final class MessagePatternCache {
+    /** Maximum number of patterns kept, the least recently used ones are evicted first. */
+    private static final int MAX_SIZE = 256;
+
+    private static final Map<Key, MessagePattern> sCache =
+            new LinkedHashMap<Key, MessagePattern>(16, 0.75f, /* accessOrder= */ true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, MessagePattern> eldest) {
+                    return size() > MAX_SIZE;
+                }
+            };
+
+    private MessagePatternCache() {
+    }
+
+    /**
+     * Returns the frozen, parsed form of the pattern.
+     *
+     * @throws IllegalArgumentException if the pattern is invalid
+     */
+    @NonNull
+    static MessagePattern get(@NonNull String pattern,
+            @NonNull MessagePattern.ApostropheMode aposMode) {
+        final Key key = new Key(pattern, aposMode);
+        MessagePattern msgPattern;
+        synchronized (sCache) {
+            msgPattern = sCache.get(key);
+        }
+        if (msgPattern != null) {
+            return msgPattern;
+        }
+        // Parse outside of the lock, two threads racing on the same new pattern only waste
+        // one parse.
+        msgPattern = new MessagePattern(aposMode).parse(pattern).freeze();
+        synchronized (sCache) {
+            sCache.put(key, msgPattern);
+        }
+        return msgPattern;
+    }
+
+    private static final class Key {
+        private final String mPattern;
+        private final MessagePattern.ApostropheMode mAposMode;
+
+        Key(String pattern, MessagePattern.ApostropheMode aposMode) {
+            mPattern = pattern;
+            mAposMode = aposMode;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            final Key key = (Key) other;
+            return mAposMode == key.mAposMode && mPattern.equals(key.mPattern);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * mPattern.hashCode() + mAposMode.hashCode();
+        }
+    }
+}
@@ -14,6 +14,7 @@ import java.util.Map;
 import java.util.MissingResourceException;
 import java.util.ResourceBundle;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import androidx.annotation.RestrictTo;
 import androidx.core.i18n.messageformat_icu.simple.PluralRules.PluralType;
@@ -32,6 +33,11 @@ public class PluralRulesLoader extends PluralRules.Factory {
     // lazy init, use getLocaleIdToRulesIdMap to access
     private Map<String, String> localeIdToCardinalRulesId;
     private Map<String, String> localeIdToOrdinalRulesId;
+    // Resolved rules per language, so that repeated lookups for the same locale don't lock.
+    private final ConcurrentHashMap<String, PluralRules> languageToCardinalRules =
+            new ConcurrentHashMap<String, PluralRules>();
+    private final ConcurrentHashMap<String, PluralRules> languageToOrdinalRules =
+            new ConcurrentHashMap<String, PluralRules>();
 
     /**
      * Access through singleton.
@@ -166,14 +172,24 @@ public class PluralRulesLoader extends PluralRules.Factory {
      */
     @Override
     public PluralRules forLocale(Locale locale, PluralType type) {
+        // getRulesIdForLocale only depends on the language.
+        Map<String, PluralRules> cache =
+                (type == PluralType.CARDINAL) ? languageToCardinalRules : languageToOrdinalRules;
+        String lang = locale.getLanguage();
+        PluralRules rules = cache.get(lang);
+        if (rules != null) {
+            return rules;
+        }
         String rulesId = getRulesIdForLocale(locale, type);
         if (rulesId == null || rulesId.trim().length() == 0) {
-            return PluralRules.DEFAULT;
-        }
-        PluralRules rules = getRulesForRulesId(rulesId);
-        if (rules == null) {
             rules = PluralRules.DEFAULT;
+        } else {
+            rules = getRulesForRulesId(rulesId);
+            if (rules == null) {
+                rules = PluralRules.DEFAULT;
+            }
         }
+        cache.put(lang, rules);
         return rules;
     }
 
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package androidx.emoji2.text;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import androidx.annotation.NonNull;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SdkSuppress;
+import androidx.test.filters.SmallTest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+@SdkSuppress(minSdkVersion = 19)
+public class GlyphAvailabilityCacheTest {
+
+    private File mCacheFile;
+
+    @Before
+    public void setup() {
+        mCacheFile = new File(ApplicationProvider.getApplicationContext().getCacheDir(),
+                "glyph_cache_test");
+        mCacheFile.delete();
+    }
+
+    @After
+    public void teardown() {
+        mCacheFile.delete();
+    }
+
+    @Test
+    public void warmUp_computesAndPersists() {
+        final CountingGlyphChecker checker = new CountingGlyphChecker();
+        final EmojiMetadata[] metadata = createMetadata(10);
+
+        GlyphAvailabilityCache.warmUp(metadata, "key", checker, mCacheFile);
+
+        assertEquals(10, checker.mCount);
+        assertTrue(mCacheFile.exists());
+        for (int i = 0; i < metadata.length; i++) {
+            assertEquals(expected(i), metadata[i].getHasGlyph());
+        }
+    }
+
+    @Test
+    public void warmUp_readsPersistedValuesWithoutChecking() {
+        GlyphAvailabilityCache.warmUp(createMetadata(10), "key", new CountingGlyphChecker(),
+                mCacheFile);
+
+        final CountingGlyphChecker checker = new CountingGlyphChecker();
+        final EmojiMetadata[] metadata = createMetadata(10);
+        GlyphAvailabilityCache.warmUp(metadata, "key", checker, mCacheFile);
+
+        assertEquals(0, checker.mCount);
+        for (int i = 0; i < metadata.length; i++) {
+            assertEquals(expected(i), metadata[i].getHasGlyph());
+        }
+    }
+
+    @Test
+    public void warmUp_doesNotOverrideKnownValues() {
+        final CountingGlyphChecker checker = new CountingGlyphChecker();
+        final EmojiMetadata[] metadata = createMetadata(3);
+        metadata[1].setHasGlyph(true);
+
+        GlyphAvailabilityCache.warmUp(metadata, "key", checker, null);
+
+        assertEquals(2, checker.mCount);
+        assertEquals(EmojiMetadata.HAS_GLYPH_EXISTS, metadata[1].getHasGlyph());
+    }
+
+    @Test
+    public void warmUp_withoutKey_doesNotPersist() {
+        final CountingGlyphChecker checker = new CountingGlyphChecker();
+        final EmojiMetadata[] metadata = createMetadata(10);
+
+        GlyphAvailabilityCache.warmUp(metadata, GlyphAvailabilityCache.createKey(null), checker,
+                mCacheFile);
+
+        assertEquals(10, checker.mCount);
+        assertFalse(mCacheFile.exists());
+        for (int i = 0; i < metadata.length; i++) {
+            assertEquals(expected(i), metadata[i].getHasGlyph());
+        }
+    }
+
+    @Test
+    public void read_withDifferentKey_returnsNull() {
+        GlyphAvailabilityCache.write(mCacheFile, "key", 10, new byte[2]);
+        assertNull(GlyphAvailabilityCache.read(mCacheFile, "otherKey", 10));
+    }
+
+    @Test
+    public void read_withDifferentCount_returnsNull() {
+        GlyphAvailabilityCache.write(mCacheFile, "key", 10, new byte[2]);
+        assertNull(GlyphAvailabilityCache.read(mCacheFile, "key", 11));
+    }
+
+    private static int expected(int index) {
+        return index % 2 == 0 ? EmojiMetadata.HAS_GLYPH_EXISTS : EmojiMetadata.HAS_GLYPH_ABSENT;
+    }
+
+    private static EmojiMetadata[] createMetadata(int count) {
+        final EmojiMetadata[] metadata = new EmojiMetadata[count];
+        for (int i = 0; i < count; i++) {
+            // the checker below uses the codepoint to decide if the glyph exists
+            metadata[i] = new TestEmojiMetadata(new int[]{0x1F600 + i});
+        }
+        return metadata;
+    }
+
+    private static class CountingGlyphChecker implements EmojiCompat.GlyphChecker {
+        int mCount;
+
+        @Override
+        public boolean hasGlyph(@NonNull CharSequence charSequence, int start, int end,
+                int sdkAdded) {
+            mCount++;
+            return (Character.codePointAt(charSequence, start) - 0x1F600) % 2 == 0;
+        }
+    }
+}
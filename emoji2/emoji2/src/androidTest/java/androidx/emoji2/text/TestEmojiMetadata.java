@@ -60,6 +60,11 @@ public class TestEmojiMetadata extends EmojiMetadata {
         return mCompatAdded;
     }
 
+    @Override
+    public short getSdkAdded() {
+        return 0;
+    }
+
     @Override
     public boolean isDefaultEmoji() {
         return true;
@@ -46,6 +46,7 @@ import androidx.annotation.RestrictTo;
 import androidx.collection.ArraySet;
 import androidx.core.util.Preconditions;
 
+import java.io.File;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.util.ArrayList;
@@ -53,6 +54,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -418,6 +420,18 @@ public class EmojiCompat {
     @SuppressWarnings("WeakerAccess") /* synthetic access */
     private final GlyphChecker mGlyphChecker;
 
+    /**
+     * @see Config#setGlyphCachePrecompute(Executor, File)
+     */
+    @SuppressWarnings("WeakerAccess") /* synthetic access */
+    final @Nullable Executor mGlyphCacheExecutor;
+
+    /**
+     * @see Config#setGlyphCachePrecompute(Executor, File)
+     */
+    @SuppressWarnings("WeakerAccess") /* synthetic access */
+    final @Nullable File mGlyphCacheFile;
+
     private static final String NOT_INITIALIZED_ERROR_TEXT = "EmojiCompat is not initialized.\n"
             + "\n"
             + "You must initialize EmojiCompat prior to referencing the EmojiCompat instance.\n"
@@ -467,6 +481,8 @@ public class EmojiCompat {
         mMetadataLoader = config.mMetadataLoader;
         mMetadataLoadStrategy = config.mMetadataLoadStrategy;
         mGlyphChecker = config.mGlyphChecker;
+        mGlyphCacheExecutor = config.mGlyphCacheExecutor;
+        mGlyphCacheFile = config.mGlyphCacheFile;
         mMainHandler = new Handler(Looper.getMainLooper());
         mInitCallbacks = new ArraySet<>();
         if (config.mInitCallbacks != null && !config.mInitCallbacks.isEmpty()) {
@@ -1304,6 +1320,12 @@ public class EmojiCompat {
         @SuppressWarnings("WeakerAccess") /* synthetic access */
         @NonNull
         GlyphChecker mGlyphChecker = new DefaultGlyphChecker();
+        @SuppressWarnings("WeakerAccess") /* synthetic access */
+        @Nullable
+        Executor mGlyphCacheExecutor;
+        @SuppressWarnings("WeakerAccess") /* synthetic access */
+        @Nullable
+        File mGlyphCacheFile;
 
         /**
          * Default constructor.
@@ -1500,6 +1522,30 @@ public class EmojiCompat {
             return this;
         }
 
+        /**
+         * Precomputes whether the system can render each emoji in the metadata once it is
+         * loaded, instead of calling the {@link GlyphChecker} lazily the first time an emoji is
+         * processed. The precompute runs on {@code executor} after
+         * {@link InitCallback#onInitialized()} is dispatched, so it does not delay
+         * initialization; emojis processed before it completes are still checked lazily.
+         * <p/>
+         * When {@code cacheFile} is non-null the results are persisted to it and reused on
+         * subsequent loads, as long as the emoji font and the OS build did not change. The file
+         * should be in a location that is not backed up, such as
+         * {@link Context#getNoBackupFilesDir()}.
+         *
+         * @param executor executor to run the precompute on, or {@code null} to disable it
+         * @param cacheFile file used to persist the results, or {@code null} to always compute
+         *                  them
+         */
+        @NonNull
+        public Config setGlyphCachePrecompute(@Nullable Executor executor,
+                @Nullable File cacheFile) {
+            mGlyphCacheExecutor = executor;
+            mGlyphCacheFile = cacheFile;
+            return this;
+        }
+
         /**
          * Returns the {@link MetadataRepoLoader}.
          */
@@ -1659,6 +1705,15 @@ public class EmojiCompat {
                     mEmojiCompat.mEmojiAsDefaultStyleExceptions);
 
             mEmojiCompat.onMetadataLoadSuccess();
+
+            final Executor glyphCacheExecutor = mEmojiCompat.mGlyphCacheExecutor;
+            if (glyphCacheExecutor != null) {
+                final String key = GlyphAvailabilityCache.createKey(
+                        metadataRepo.getMetadataList().sourceSha());
+                glyphCacheExecutor.execute(() -> GlyphAvailabilityCache.warmUp(
+                        metadataRepo.getMetadataArray(), key, mEmojiCompat.mGlyphChecker,
+                        mEmojiCompat.mGlyphCacheFile));
+            }
         }
 
         @Override
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.emoji2.text;
+
+import android.os.Build;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+import androidx.core.os.TraceCompat;
+import androidx.core.util.AtomicFile;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Precomputes {@link EmojiMetadata#getHasGlyph()} for every emoji in a {@link MetadataRepo} so
+ * that the first rendering of an emoji does not pay for a {@link EmojiCompat.GlyphChecker} call
+ * on the UI thread.
+ * <p/>
+ * The results are stored as a bitmap in a file keyed by the metadata source sha and the OS build,
+ * so that subsequent cold starts only need to read a few hundred bytes instead of measuring every
+ * emoji again. A key mismatch (e.g. new emoji font or OS update) discards the file. Fonts
+ * without a source sha can't be told apart, so their results are not persisted.
+ */
+@RequiresApi(19)
+class GlyphAvailabilityCache {
+    private static final String TAG = "GlyphAvailabilityCache";
+    private static final String S_TRACE_WARM_UP = "EmojiCompat.GlyphAvailabilityCache.warmUp";
+
+    /**
+     * Version of the cache file format, increment when the layout of the file changes.
+     */
+    @VisibleForTesting
+    static final int FILE_VERSION = 1;
+
+    private GlyphAvailabilityCache() { /* can't instantiate */ }
+
+    /**
+     * Fills in the glyph availability of all {@code metadata} entries, either from
+     * {@code cacheFile} or by calling {@code glyphChecker} for each entry. Entries that already
+     * have a known value are not overwritten.
+     *
+     * @param metadata all emoji metadata in the repo, in metadata list order
+     * @param key identifies the font and OS the cached values were computed for, the cache file
+     *            is not used if {@code null}
+     * @param glyphChecker checker used when there is no valid cache
+     * @param cacheFile file to read the cache from and to persist it to, may be {@code null}
+     */
+    @WorkerThread
+    static void warmUp(@NonNull EmojiMetadata[] metadata, @Nullable String key,
+            @NonNull EmojiCompat.GlyphChecker glyphChecker, @Nullable File cacheFile) {
+        if (key == null) {
+            cacheFile = null;
+        }
+        try {
+            TraceCompat.beginSection(S_TRACE_WARM_UP);
+            if (cacheFile != null) {
+                final byte[] bits = read(cacheFile, key, metadata.length);
+                if (bits != null) {
+                    apply(metadata, bits);
+                    return;
+                }
+            }
+
+            final byte[] bits = compute(metadata, glyphChecker);
+            if (cacheFile != null) {
+                write(cacheFile, key, metadata.length, bits);
+            }
+        } finally {
+            TraceCompat.endSection();
+        }
+    }
+
+    /**
+     * @return key identifying the emoji font with {@code sourceSha} on the current OS build, or
+     * {@code null} if there is no sha to identify the font with
+     */
+    @Nullable
+    static String createKey(@Nullable String sourceSha) {
+        if (sourceSha == null) {
+            return null;
+        }
+        return sourceSha + "/" + Build.VERSION.SDK_INT + "/" + Build.FINGERPRINT;
+    }
+
+    @NonNull
+    @VisibleForTesting
+    static byte[] compute(@NonNull EmojiMetadata[] metadata,
+            @NonNull EmojiCompat.GlyphChecker glyphChecker) {
+        final byte[] bits = new byte[bitmapSize(metadata.length)];
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < metadata.length; i++) {
+            final EmojiMetadata item = metadata[i];
+            if (item.getHasGlyph() == EmojiMetadata.HAS_GLYPH_UNKNOWN) {
+                builder.setLength(0);
+                final int codepointsLength = item.getCodepointsLength();
+                for (int j = 0; j < codepointsLength; j++) {
+                    builder.appendCodePoint(item.getCodepointAt(j));
+                }
+                item.setHasGlyph(glyphChecker.hasGlyph(builder, 0, builder.length(),
+                        item.getSdkAdded()));
+            }
+            if (item.getHasGlyph() == EmojiMetadata.HAS_GLYPH_EXISTS) {
+                bits[i >> 3] |= (byte) (1 << (i & 7));
+            }
+        }
+        return bits;
+    }
+
+    @VisibleForTesting
+    static void apply(@NonNull EmojiMetadata[] metadata, @NonNull byte[] bits) {
+        for (int i = 0; i < metadata.length; i++) {
+            final EmojiMetadata item = metadata[i];
+            if (item.getHasGlyph() == EmojiMetadata.HAS_GLYPH_UNKNOWN) {
+                item.setHasGlyph((bits[i >> 3] & (1 << (i & 7))) != 0);
+            }
+        }
+    }
+
+    /**
+     * @return the stored bitmap, or {@code null} if the file is missing, corrupt or was written
+     * for a different key or metadata size
+     */
+    @Nullable
+    @VisibleForTesting
+    static byte[] read(@NonNull File cacheFile, @NonNull String key, int count) {
+        if (!cacheFile.exists()) {
+            return null;
+        }
+        final AtomicFile atomicFile = new AtomicFile(cacheFile);
+        try (FileInputStream fis = atomicFile.openRead();
+             DataInputStream in = new DataInputStream(fis)) {
+            if (in.readInt() != FILE_VERSION
+                    || !key.equals(in.readUTF())
+                    || in.readInt() != count) {
+                return null;
+            }
+            final byte[] bits = new byte[bitmapSize(count)];
+            in.readFully(bits);
+            return bits;
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to read glyph cache", e);
+            return null;
+        }
+    }
+
+    @VisibleForTesting
+    static void write(@NonNull File cacheFile, @NonNull String key, int count,
+            @NonNull byte[] bits) {
+        final AtomicFile atomicFile = new AtomicFile(cacheFile);
+        FileOutputStream fos = null;
+        try {
+            fos = atomicFile.startWrite();
+            final DataOutputStream out = new DataOutputStream(fos);
+            out.writeInt(FILE_VERSION);
+            out.writeUTF(key);
+            out.writeInt(count);
+            out.write(bits);
+            out.flush();
+            atomicFile.finishWrite(fos);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write glyph cache", e);
+            if (fos != null) {
+                atomicFile.failWrite(fos);
+            }
+        }
+    }
+
+    private static int bitmapSize(int count) {
+        return (count + 7) >> 3;
+    }
+}
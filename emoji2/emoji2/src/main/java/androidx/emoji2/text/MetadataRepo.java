@@ -55,6 +55,11 @@ public final class MetadataRepo {
      */
     private final @NonNull char[] mEmojiCharArray;
 
+    /**
+     * All EmojiMetadata's in the order of {@link #mMetadataList}.
+     */
+    private final @NonNull EmojiMetadata[] mMetadataArray;
+
     /**
      * Empty root node of the trie.
      */
@@ -77,6 +82,7 @@ public final class MetadataRepo {
         mMetadataList = metadataList;
         mRootNode = new Node(DEFAULT_ROOT_SIZE);
         mEmojiCharArray = new char[mMetadataList.listLength() * 2];
+        mMetadataArray = new EmojiMetadata[mMetadataList.listLength()];
         constructIndex(mMetadataList);
     }
 
@@ -164,6 +170,7 @@ public final class MetadataRepo {
             //chars wide
             //noinspection ResultOfMethodCallIgnored
             Character.toChars(metadata.getId(), mEmojiCharArray, i * 2);
+            mMetadataArray[i] = metadata;
             put(metadata);
         }
     }
@@ -212,6 +219,15 @@ public final class MetadataRepo {
         return mMetadataList;
     }
 
+    /**
+     * @hide
+     */
+    @NonNull
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    EmojiMetadata[] getMetadataArray() {
+        return mMetadataArray;
+    }
+
     /**
      * Add an EmojiMetadata to the index.
      *
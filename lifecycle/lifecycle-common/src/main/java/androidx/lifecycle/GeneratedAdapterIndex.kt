@@ -0,0 +1,52 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package androidx.lifecycle
+
+import androidx.annotation.RestrictTo
+
+/**
+ * An index of the [GeneratedAdapter]s of a package, generated by lifecycle-compiler when the
+ * `lifecycle.generateAdapterIndex` annotation processor option is enabled.
+ *
+ * Implementations are discovered through [java.util.ServiceLoader], which lets [Lifecycling]
+ * create adapters without probing for `_LifecycleAdapter` classes by name or looking up their
+ * constructors reflectively.
+ *
+ * @hide
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP_PREFIX)
+public interface GeneratedAdapterIndex {
+    /**
+     * Returns the factory of the adapter generated for exactly the given observer class, or
+     * `null` if this index doesn't contain one.
+     *
+     * @param observerClass The class declaring the [OnLifecycleEvent] methods
+     */
+    public fun getAdapterFactory(observerClass: Class<*>): GeneratedAdapterFactory?
+}
+
+/**
+ * Creates the [GeneratedAdapter] of an observer class.
+ *
+ * @hide
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP_PREFIX)
+public fun interface GeneratedAdapterFactory {
+    /**
+     * @param receiver The observer, an instance of the class the adapter was generated for
+     */
+    public fun create(receiver: Any): GeneratedAdapter
+}
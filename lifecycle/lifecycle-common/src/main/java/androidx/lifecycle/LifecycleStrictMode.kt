@@ -0,0 +1,100 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package androidx.lifecycle
+
+/**
+ * Lets apps verify that none of their [LifecycleObserver]s rely on reflection.
+ *
+ * Observers using the deprecated [OnLifecycleEvent] annotation are dispatched to either through
+ * the adapters generated by lifecycle-compiler or, when there are none, by scanning the observer
+ * class for annotated methods and invoking them reflectively, which is slow the first time an
+ * observer class is used.
+ *
+ * Once strict mode is enabled, adapters are only looked up in the indexes generated by
+ * lifecycle-compiler with the `lifecycle.generateAdapterIndex` option, and observers that would
+ * need reflection are reported instead of being dispatched to. Every observer class needs its own
+ * indexed adapter: a subclass without one is reported, together with each of its supertypes
+ * without one, even if a supertype has an indexed adapter. Observers implementing
+ * [DefaultLifecycleObserver] or [LifecycleEventObserver] are never affected.
+ *
+ * The indexes are also used when strict mode is disabled, in which case the adapters that aren't
+ * indexed are still found by name.
+ *
+ * Strict mode should be enabled before any observer is added, typically in
+ * `Application.onCreate`.
+ */
+public object LifecycleStrictMode {
+    @Volatile
+    private var enabled = false
+
+    @Volatile
+    private var listener: OnViolationListener? = null
+
+    /**
+     * Enables strict mode.
+     *
+     * @param listener Notified of the observers that would need reflection, which then don't
+     * receive any lifecycle event. When `null`, adding such an observer throws an
+     * [IllegalStateException] instead.
+     */
+    @JvmStatic
+    @JvmOverloads
+    public fun enable(listener: OnViolationListener? = null) {
+        this.listener = listener
+        enabled = true
+        Lifecycling.clearCaches()
+    }
+
+    /**
+     * Disables strict mode, letting observers fall back to reflection again.
+     */
+    @JvmStatic
+    public fun disable() {
+        enabled = false
+        listener = null
+        Lifecycling.clearCaches()
+    }
+
+    /**
+     * Returns `true` if strict mode is enabled.
+     */
+    @JvmStatic
+    public fun isEnabled(): Boolean = enabled
+
+    internal fun onViolation(observerClass: Class<*>) {
+        val listener = listener
+        if (listener == null) {
+            throw IllegalStateException(
+                "${observerClass.name} can only receive lifecycle events through reflection. " +
+                    "Implement DefaultLifecycleObserver or LifecycleEventObserver, or generate " +
+                    "its adapter with lifecycle-compiler and the lifecycle.generateAdapterIndex " +
+                    "option."
+            )
+        }
+        listener.onViolation(observerClass)
+    }
+
+    /**
+     * Notified of the observers that can't receive lifecycle events without reflection.
+     */
+    public fun interface OnViolationListener {
+        /**
+         * @param observerClass The class of the observer that was added, or one of its
+         * supertypes, that has no indexed adapter
+         */
+        public fun onViolation(observerClass: Class<*>)
+    }
+}
@@ -18,6 +18,7 @@ package androidx.lifecycle
 import androidx.annotation.RestrictTo
 import java.lang.reflect.Constructor
 import java.lang.reflect.InvocationTargetException
+import java.util.ServiceLoader
 
 /**
  * Internal class to handle lifecycle conversion etc.
@@ -29,8 +30,11 @@ public object Lifecycling {
     private const val REFLECTIVE_CALLBACK = 1
     private const val GENERATED_CALLBACK = 2
     private val callbackCache: MutableMap<Class<*>, Int> = HashMap()
-    private val classToAdapters: MutableMap<Class<*>, List<Constructor<out GeneratedAdapter>>> =
-        HashMap()
+    private val classToAdapters: MutableMap<Class<*>, List<GeneratedAdapterFactory>> = HashMap()
+
+    // Loaded when the first observer needing an adapter is added, so that apps without such
+    // observers don't pay for the ServiceLoader lookup
+    private val adapterIndexes: List<GeneratedAdapterIndex> by lazy { loadAdapterIndexes() }
 
     @JvmStatic
     @Suppress("DEPRECATION")
@@ -52,33 +56,92 @@ public object Lifecycling {
         val klass: Class<*> = `object`.javaClass
         val type = getObserverConstructorType(klass)
         if (type == GENERATED_CALLBACK) {
-            val constructors = classToAdapters[klass]!!
-            if (constructors.size == 1) {
-                val generatedAdapter = createGeneratedAdapter(
-                    constructors[0], `object`
-                )
-                return SingleGeneratedAdapterObserver(generatedAdapter)
+            val factories = classToAdapters[klass]!!
+            if (factories.size == 1) {
+                return SingleGeneratedAdapterObserver(factories[0].create(`object`))
             }
-            val adapters: Array<GeneratedAdapter> = Array(constructors.size) { i ->
-                createGeneratedAdapter(constructors[i], `object`)
+            val adapters: Array<GeneratedAdapter> = Array(factories.size) { i ->
+                factories[i].create(`object`)
             }
             return CompositeGeneratedAdaptersObserver(adapters)
         }
+        if (LifecycleStrictMode.isEnabled()) {
+            val unindexedClasses = LinkedHashSet<Class<*>>()
+            collectUnindexedClasses(klass, unindexedClasses)
+            for (unindexedClass in unindexedClasses) {
+                LifecycleStrictMode.onViolation(unindexedClass)
+            }
+            // The listener was notified, the observer doesn't receive any event.
+            return LifecycleEventObserver { _, _ -> }
+        }
         return ReflectiveGenericLifecycleObserver(`object`)
     }
 
-    private fun createGeneratedAdapter(
-        constructor: Constructor<out GeneratedAdapter>,
-        `object`: Any
-    ): GeneratedAdapter {
-        return try {
-            constructor.newInstance(`object`)
-        } catch (e: IllegalAccessException) {
-            throw RuntimeException(e)
-        } catch (e: InstantiationException) {
-            throw RuntimeException(e)
-        } catch (e: InvocationTargetException) {
-            throw RuntimeException(e)
+    /**
+     * Drops the resolved observer types, so that they are resolved again according to the
+     * current [LifecycleStrictMode].
+     */
+    internal fun clearCaches() {
+        callbackCache.clear()
+        classToAdapters.clear()
+    }
+
+    private fun loadAdapterIndexes(): List<GeneratedAdapterIndex> {
+        // Use the ServiceLoader.load(Class, ClassLoader) form with the interface's class loader,
+        // so that R8 can replace the lookup with direct instantiations of the indexes.
+        return ServiceLoader.load(
+            GeneratedAdapterIndex::class.java,
+            GeneratedAdapterIndex::class.java.classLoader
+        ).iterator().asSequence().toList()
+    }
+
+    private fun indexedAdapterFactory(klass: Class<*>): GeneratedAdapterFactory? {
+        for (index in adapterIndexes) {
+            val factory = index.getAdapterFactory(klass)
+            if (factory != null) {
+                return factory
+            }
+        }
+        return null
+    }
+
+    /**
+     * Collects the observer class and its [LifecycleObserver] supertypes that have no indexed
+     * adapter. Supertypes of an indexed class are covered by its adapter.
+     */
+    private fun collectUnindexedClasses(klass: Class<*>, out: MutableSet<Class<*>>) {
+        if (klass == LifecycleObserver::class.java || indexedAdapterFactory(klass) != null) {
+            return
+        }
+        out.add(klass)
+        val superclass = klass.superclass
+        if (isLifecycleParent(superclass)) {
+            collectUnindexedClasses(superclass, out)
+        }
+        for (intrface in klass.interfaces) {
+            if (isLifecycleParent(intrface)) {
+                collectUnindexedClasses(intrface, out)
+            }
+        }
+    }
+
+    private fun generatedAdapterFactory(klass: Class<*>): GeneratedAdapterFactory? {
+        val indexedFactory = indexedAdapterFactory(klass)
+        if (indexedFactory != null || LifecycleStrictMode.isEnabled()) {
+            return indexedFactory
+        }
+        // Adapters generated without the index are only found by probing their names
+        val constructor = generatedConstructor(klass) ?: return null
+        return GeneratedAdapterFactory { receiver ->
+            try {
+                constructor.newInstance(receiver)
+            } catch (e: IllegalAccessException) {
+                throw RuntimeException(e)
+            } catch (e: InstantiationException) {
+                throw RuntimeException(e)
+            } catch (e: InvocationTargetException) {
+                throw RuntimeException(e)
+            }
         }
     }
 
@@ -125,23 +188,29 @@ public object Lifecycling {
         if (klass.canonicalName == null) {
             return REFLECTIVE_CALLBACK
         }
-        val constructor = generatedConstructor(klass)
-        if (constructor != null) {
-            classToAdapters[klass] = listOf(constructor)
+        val factory = generatedAdapterFactory(klass)
+        if (factory != null) {
+            classToAdapters[klass] = listOf(factory)
             return GENERATED_CALLBACK
         }
+        // In strict mode, a class without an indexed adapter is not composed from the adapters
+        // of its supertypes, as checking that it declares no OnLifecycleEvent methods itself
+        // requires reflection.
+        if (LifecycleStrictMode.isEnabled()) {
+            return REFLECTIVE_CALLBACK
+        }
         @Suppress("DEPRECATION")
         val hasLifecycleMethods = ClassesInfoCache.sInstance.hasLifecycleMethods(klass)
         if (hasLifecycleMethods) {
             return REFLECTIVE_CALLBACK
         }
         val superclass = klass.superclass
-        var adapterConstructors: MutableList<Constructor<out GeneratedAdapter>>? = null
+        var adapterFactories: MutableList<GeneratedAdapterFactory>? = null
         if (isLifecycleParent(superclass)) {
             if (getObserverConstructorType(superclass) == REFLECTIVE_CALLBACK) {
                 return REFLECTIVE_CALLBACK
             }
-            adapterConstructors = ArrayList(
+            adapterFactories = ArrayList(
                 classToAdapters[superclass]!!
             )
         }
@@ -152,13 +221,13 @@ public object Lifecycling {
             if (getObserverConstructorType(intrface) == REFLECTIVE_CALLBACK) {
                 return REFLECTIVE_CALLBACK
             }
-            if (adapterConstructors == null) {
-                adapterConstructors = ArrayList()
+            if (adapterFactories == null) {
+                adapterFactories = ArrayList()
             }
-            adapterConstructors.addAll(classToAdapters[intrface]!!)
+            adapterFactories.addAll(classToAdapters[intrface]!!)
         }
-        if (adapterConstructors != null) {
-            classToAdapters[klass] = adapterConstructors
+        if (adapterFactories != null) {
+            classToAdapters[klass] = adapterFactories
             return GENERATED_CALLBACK
         }
         return REFLECTIVE_CALLBACK
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package androidx.lifecycle;
+
+import static androidx.lifecycle.Lifecycling.lifecycleEventObserver;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.observers.Base;
+import androidx.lifecycle.observers.DerivedSequence1;
+import androidx.lifecycle.observers.DerivedSequence2;
+import androidx.lifecycle.observers.DerivedWithNewMethods;
+import androidx.lifecycle.observers.IndexOnlyObserver;
+import androidx.lifecycle.observers.InterfaceImpl1;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+@SuppressWarnings("deprecation")
+@RunWith(JUnit4.class)
+public class LifecycleStrictModeTest {
+
+    private final List<Class<?>> mViolations = new ArrayList<>();
+
+    private final LifecycleStrictMode.OnViolationListener mListener =
+            new LifecycleStrictMode.OnViolationListener() {
+                @Override
+                public void onViolation(@NonNull Class<?> observerClass) {
+                    mViolations.add(observerClass);
+                }
+            };
+
+    @After
+    public void disableStrictMode() {
+        LifecycleStrictMode.disable();
+    }
+
+    @Test
+    public void indexedAdapter() {
+        LifecycleStrictMode.enable(mListener);
+        LifecycleEventObserver callback = lifecycleEventObserver(new Base());
+        assertThat(callback, instanceOf(SingleGeneratedAdapterObserver.class));
+        assertThat(mViolations.isEmpty(), is(true));
+    }
+
+    @Test
+    public void indexedAdapterWithoutStrictMode() {
+        // IndexOnlyObserver has no adapter under the name probed by reflection
+        LifecycleEventObserver callback = lifecycleEventObserver(new IndexOnlyObserver());
+        assertThat(callback, instanceOf(SingleGeneratedAdapterObserver.class));
+    }
+
+    @Test
+    public void subclassOfIndexedClassIsReported() {
+        LifecycleStrictMode.enable(mListener);
+        // Base is indexed, but the methods of the subclass would be skipped by its adapter
+        LifecycleEventObserver callback = lifecycleEventObserver(new DerivedWithNewMethods());
+        assertThat(callback, not(instanceOf(SingleGeneratedAdapterObserver.class)));
+        assertThat(mViolations,
+                is(Collections.<Class<?>>singletonList(DerivedWithNewMethods.class)));
+    }
+
+    @Test
+    public void everyUnindexedClassOfHierarchyIsReported() {
+        LifecycleStrictMode.enable(mListener);
+        lifecycleEventObserver(new DerivedSequence2());
+        assertThat(mViolations, is(Arrays.<Class<?>>asList(
+                DerivedSequence2.class, DerivedSequence1.class)));
+    }
+
+    @Test
+    public void reflectiveObserverIsReported() {
+        LifecycleStrictMode.enable(mListener);
+        LifecycleEventObserver callback = lifecycleEventObserver(new AnnotatedObserver());
+        assertThat(callback, not(instanceOf(ReflectiveGenericLifecycleObserver.class)));
+        assertThat(mViolations,
+                is(Collections.<Class<?>>singletonList(AnnotatedObserver.class)));
+        // does not dispatch to the observer
+        callback.onStateChanged(new LifecyclingTest.DefaultLifecycleOwner(),
+                Lifecycle.Event.ON_CREATE);
+    }
+
+    @Test
+    public void adapterNamesAreNotProbed() {
+        LifecycleStrictMode.enable(mListener);
+        // Interface1_LifecycleAdapter exists, but isn't indexed
+        lifecycleEventObserver(new InterfaceImpl1());
+        assertThat(mViolations, is(Collections.<Class<?>>singletonList(InterfaceImpl1.class)));
+    }
+
+    @Test
+    public void reflectiveObserverThrowsWithoutListener() {
+        LifecycleStrictMode.enable();
+        try {
+            lifecycleEventObserver(new AnnotatedObserver());
+            fail("Adding a reflective observer in strict mode should throw");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void disable() {
+        LifecycleStrictMode.enable(mListener);
+        lifecycleEventObserver(new InterfaceImpl1());
+        LifecycleStrictMode.disable();
+        LifecycleEventObserver callback = lifecycleEventObserver(new InterfaceImpl1());
+        assertThat(callback, instanceOf(SingleGeneratedAdapterObserver.class));
+        assertThat(mViolations.size(), is(1));
+    }
+
+    static class AnnotatedObserver implements LifecycleObserver {
+        @OnLifecycleEvent(Lifecycle.Event.ON_CREATE)
+        void onCreate() {
+            throw new IllegalStateException("Must not be called in strict mode");
+        }
+    }
+}
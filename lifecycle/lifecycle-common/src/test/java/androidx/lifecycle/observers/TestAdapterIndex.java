@@ -0,0 +1,64 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package androidx.lifecycle.observers;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.GeneratedAdapter;
+import androidx.lifecycle.GeneratedAdapterFactory;
+import androidx.lifecycle.GeneratedAdapterIndex;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleOwner;
+import androidx.lifecycle.MethodCallsLogger;
+
+/**
+ * Stands in for the index generated by lifecycle-compiler, only {@link Base} and
+ * {@link IndexOnlyObserver} are indexed.
+ */
+public final class TestAdapterIndex implements GeneratedAdapterIndex {
+    @Nullable
+    @Override
+    public GeneratedAdapterFactory getAdapterFactory(@NonNull Class<?> observerClass) {
+        switch (observerClass.getName()) {
+            case "androidx.lifecycle.observers.Base":
+                return new GeneratedAdapterFactory() {
+                    @NonNull
+                    @Override
+                    public GeneratedAdapter create(@NonNull Object receiver) {
+                        return new Base_LifecycleAdapter((Base) receiver);
+                    }
+                };
+            case "androidx.lifecycle.observers.IndexOnlyObserver":
+                return new GeneratedAdapterFactory() {
+                    @NonNull
+                    @Override
+                    public GeneratedAdapter create(@NonNull Object receiver) {
+                        return new GeneratedAdapter() {
+                            @Override
+                            public void callMethods(@NonNull LifecycleOwner source,
+                                    @NonNull Lifecycle.Event event, boolean onAny,
+                                    @Nullable MethodCallsLogger logger) {
+                            }
+                        };
+                    }
+                };
+            default:
+                return null;
+        }
+    }
+}
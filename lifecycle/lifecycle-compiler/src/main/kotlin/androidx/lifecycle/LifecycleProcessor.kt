@@ -16,6 +16,7 @@
 
 package androidx.lifecycle
 
+import androidx.lifecycle.model.AdapterClass
 import javax.annotation.processing.AbstractProcessor
 import javax.annotation.processing.RoundEnvironment
 import javax.annotation.processing.SupportedAnnotationTypes
@@ -24,16 +25,48 @@ import javax.lang.model.element.TypeElement
 
 @SupportedAnnotationTypes("androidx.lifecycle.OnLifecycleEvent")
 class LifecycleProcessor : AbstractProcessor() {
+    // The adapters of all the rounds, for the index written once processing is over.
+    private val indexedAdapters = mutableListOf<AdapterClass>()
+
     override fun process(
         annotations: MutableSet<out TypeElement>,
         roundEnv: RoundEnvironment
     ): Boolean {
         val input = collectAndVerifyInput(processingEnv, roundEnv)
-        writeModels(transformToOutput(processingEnv, input), processingEnv)
+        val adapters = transformToOutput(processingEnv, input)
+        writeModels(adapters, processingEnv)
+        if (isAdapterIndexEnabled()) {
+            indexedAdapters.addAll(adapters)
+            if (roundEnv.processingOver()) {
+                writeAdapterIndexes(indexedAdapters, processingEnv)
+                indexedAdapters.clear()
+            }
+        }
         return true
     }
 
+    override fun getSupportedOptions(): Set<String> {
+        // The index depends on all the observers of the module, which makes the processor
+        // aggregating instead of isolating for Gradle incremental compilation.
+        val incrementalType = if (isInitialized() && isAdapterIndexEnabled()) {
+            "org.gradle.annotation.processing.aggregating"
+        } else {
+            "org.gradle.annotation.processing.isolating"
+        }
+        return setOf(OPTION_GENERATE_ADAPTER_INDEX, incrementalType)
+    }
+
+    private fun isAdapterIndexEnabled(): Boolean {
+        return processingEnv.options[OPTION_GENERATE_ADAPTER_INDEX]?.toBoolean() == true
+    }
+
     override fun getSupportedSourceVersion(): SourceVersion {
         return SourceVersion.latest()
     }
 }
+
+/**
+ * When `true`, also generates an index of the adapters that lets the runtime find them without
+ * reflection, see [LifecycleStrictMode].
+ */
+const val OPTION_GENERATE_ADAPTER_INDEX = "lifecycle.generateAdapterIndex"
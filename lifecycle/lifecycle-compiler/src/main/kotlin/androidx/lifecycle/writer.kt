@@ -25,10 +25,13 @@ import com.squareup.javapoet.FieldSpec
 import com.squareup.javapoet.JavaFile
 import com.squareup.javapoet.MethodSpec
 import com.squareup.javapoet.ParameterSpec
+import com.squareup.javapoet.ParameterizedTypeName
 import com.squareup.javapoet.TypeName
 import com.squareup.javapoet.TypeSpec
+import com.squareup.javapoet.WildcardTypeName
 import javax.annotation.processing.ProcessingEnvironment
 import javax.lang.model.element.Modifier
+import java.security.MessageDigest
 import javax.lang.model.element.TypeElement
 import javax.tools.StandardLocation
 
@@ -36,6 +39,22 @@ fun writeModels(infos: List<AdapterClass>, processingEnv: ProcessingEnvironment)
     infos.forEach({ writeAdapter(it, processingEnv) })
 }
 
+/**
+ * Writes one [GeneratedAdapterIndex] per package of the given adapters, and lists them in the
+ * `META-INF/services` file read by [Lifecycling].
+ */
+fun writeAdapterIndexes(infos: List<AdapterClass>, processingEnv: ProcessingEnvironment) {
+    if (infos.isEmpty()) {
+        return
+    }
+    val indexNames = infos.groupBy { it.type.getPackageQName() }.map { (packageName, adapters) ->
+        writeAdapterIndex(packageName, adapters, processingEnv)
+    }.sorted()
+    val path = "META-INF/services/${GeneratedAdapterIndex::class.java.name}"
+    val out = processingEnv.filer.createResource(StandardLocation.CLASS_OUTPUT, "", path)
+    out.openWriter().use { writer -> indexNames.forEach { writer.write("$it\n") } }
+}
+
 private val GENERATED_PACKAGE = "javax.annotation"
 private val GENERATED_NAME = "Generated"
 private val LIFECYCLE_EVENT = Lifecycle.Event::class.java
@@ -156,6 +175,77 @@ private fun addGeneratedAnnotationIfAvailable(
     }
 }
 
+private fun writeAdapterIndex(
+    packageName: String,
+    adapters: List<AdapterClass>,
+    processingEnv: ProcessingEnvironment
+): String {
+    val entries = adapters.map {
+        processingEnv.elementUtils.getBinaryName(it.type).toString() to it
+    }.sortedBy { it.first }
+    // The index of each module gets a distinct name, even when the modules share packages.
+    val digest = MessageDigest.getInstance("SHA-256")
+        .digest(entries.joinToString(",") { it.first }.toByteArray())
+    val indexName = "LifecycleAdapterIndex_" +
+        digest.take(8).joinToString("") { String.format("%02x", it) }
+
+    val classParam = ParameterSpec.builder(
+        ParameterizedTypeName.get(
+            ClassName.get(Class::class.java),
+            WildcardTypeName.subtypeOf(Any::class.java)
+        ),
+        "observerClass"
+    ).build()
+    val factoryType = ClassName.get(GeneratedAdapterFactory::class.java)
+    val getAdapterFactory = MethodSpec.methodBuilder("getAdapterFactory")
+        .returns(factoryType)
+        .addParameter(classParam)
+        .addModifiers(Modifier.PUBLIC)
+        .addAnnotation(Override::class.java)
+        .apply {
+            beginControlFlow("switch ($N.getName())", classParam)
+            entries.forEach { (binaryName, adapter) ->
+                val receiverParam = ParameterSpec.builder(
+                    ClassName.get(Any::class.java), "receiver"
+                ).build()
+                val create = MethodSpec.methodBuilder("create")
+                    .returns(ClassName.get(GeneratedAdapter::class.java))
+                    .addParameter(receiverParam)
+                    .addModifiers(Modifier.PUBLIC)
+                    .addAnnotation(Override::class.java)
+                    .addStatement(
+                        "return new $T(($T) $N)",
+                        ClassName.get(packageName, getAdapterName(adapter.type)),
+                        ClassName.get(adapter.type),
+                        receiverParam
+                    )
+                    .build()
+                val factory = TypeSpec.anonymousClassBuilder("")
+                    .addSuperinterface(factoryType)
+                    .addMethod(create)
+                    .build()
+                addCode("case $S:\n", binaryName)
+                addStatement("$>return $L$<", factory)
+            }
+            addCode("default:\n")
+            addStatement("$>return null$<")
+            endControlFlow()
+        }
+        .build()
+
+    val indexTypeSpecBuilder = TypeSpec.classBuilder(indexName)
+        .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+        .addSuperinterface(ClassName.get(GeneratedAdapterIndex::class.java))
+        .addMethod(getAdapterFactory)
+    adapters.forEach { indexTypeSpecBuilder.addOriginatingElement(it.type) }
+
+    addGeneratedAnnotationIfAvailable(indexTypeSpecBuilder, processingEnv)
+
+    JavaFile.builder(packageName, indexTypeSpecBuilder.build())
+        .build().writeTo(processingEnv.filer)
+    return if (packageName.isEmpty()) indexName else "$packageName.$indexName"
+}
+
 private fun generateKeepRule(type: TypeElement, processingEnv: ProcessingEnvironment) {
     val adapterClass = type.getPackageQName() + "." + getAdapterName(type)
     val observerClass = type.toString()
@@ -114,6 +114,26 @@ class ValidCasesTest {
             .and().generatesProGuardRule("bar.DifferentPackagesDerived2.pro")
     }
 
+    @Test
+    fun testAdapterIndex() {
+        JavaSourcesSubject.assertThat(load("foo.OnAnyMethod", ""))
+            .withCompilerOptions("-A$OPTION_GENERATE_ADAPTER_INDEX=true")
+            .processedWith(LifecycleProcessor())
+            .compilesWithoutError().and().generatesSources(
+                load("foo.OnAnyMethod_LifecycleAdapter", "expected"),
+                load("foo.LifecycleAdapterIndex_6796539ae41ae076", "expected")
+            ).and().generatesFileNamed(
+                StandardLocation.CLASS_OUTPUT, "",
+                "META-INF/services/androidx.lifecycle.GeneratedAdapterIndex"
+            )
+    }
+
+    @Test
+    fun testNoAdapterIndexByDefault() {
+        val compileTester = processClass("foo.OnAnyMethod").compilesWithoutError()
+        doesntGenerateClass(compileTester, "foo", "LifecycleAdapterIndex_6796539ae41ae076")
+    }
+
     private fun <T> CompileTester.GeneratedPredicateClause<T>.generatesProGuardRule(name: String):
         CompileTester.SuccessfulFileClause<T> {
             return generatesFileNamed(StandardLocation.CLASS_OUTPUT, "", "META-INF/proguard/$name")
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package foo;
+
+import androidx.lifecycle.GeneratedAdapter;
+import androidx.lifecycle.GeneratedAdapterFactory;
+import androidx.lifecycle.GeneratedAdapterIndex;
+import java.lang.Class;
+import java.lang.Object;
+import java.lang.Override;
+import javax.annotation.Generated;
+
+@Generated("androidx.lifecycle.LifecycleProcessor")
+public final class LifecycleAdapterIndex_6796539ae41ae076 implements GeneratedAdapterIndex {
+  @Override
+  public GeneratedAdapterFactory getAdapterFactory(Class<?> observerClass) {
+    switch (observerClass.getName()) {
+      case "foo.OnAnyMethod":
+        return new GeneratedAdapterFactory() {
+          @Override
+          public GeneratedAdapter create(Object receiver) {
+            return new OnAnyMethod_LifecycleAdapter((OnAnyMethod) receiver);
+          }
+        };
+      default:
+        return null;
+    }
+  }
+}
@@ -78,6 +78,13 @@ public abstract class LiveData<T> {
     volatile Object mPendingData = NOT_SET;
     private int mVersion;
 
+    // whether setValue leaves the dispatch to LiveDataBatch
+    private boolean mCoalescing;
+    // whether the current value is waiting to be dispatched by LiveDataBatch
+    private boolean mDispatchPending;
+    private long mDispatchCount;
+    private long mCoalescedCount;
+
     private boolean mDispatchingValue;
     @SuppressWarnings("FieldCanBeLocal")
     private boolean mDispatchInvalidated;
@@ -130,6 +137,7 @@ public abstract class LiveData<T> {
             return;
         }
         observer.mLastVersion = mVersion;
+        mDispatchCount++;
         observer.mObserver.onChanged((T) mData);
     }
 
@@ -306,9 +314,66 @@ public abstract class LiveData<T> {
         assertMainThread("setValue");
         mVersion++;
         mData = value;
+        if (mCoalescing || LiveDataBatch.isBatching()) {
+            if (mDispatchPending) {
+                mCoalescedCount++;
+            } else {
+                mDispatchPending = true;
+                LiveDataBatch.enqueue(this, mCoalescing);
+            }
+            return;
+        }
         dispatchingValue(null);
     }
 
+    void dispatchPendingValue() {
+        if (mDispatchPending) {
+            mDispatchPending = false;
+            dispatchingValue(null);
+        }
+    }
+
+    /**
+     * Enables or disables coalescing: when enabled, setting the value doesn't notify the
+     * observers right away but on the next frame, once, with the latest value. Values set in a
+     * {@link LiveDataBatch} are coalesced whether this is enabled or not.
+     * <p>
+     * Observers becoming active still receive the current value immediately.
+     *
+     * @param enabled {@code true} to coalesce the values set until the next frame
+     */
+    @MainThread
+    public void setCoalescingEnabled(boolean enabled) {
+        assertMainThread("setCoalescingEnabled");
+        mCoalescing = enabled;
+    }
+
+    /**
+     * Returns {@code true} if values are coalesced until the next frame.
+     *
+     * @see #setCoalescingEnabled(boolean)
+     */
+    public boolean isCoalescingEnabled() {
+        return mCoalescing;
+    }
+
+    /**
+     * Returns the number of times an observer of this LiveData was notified of a value.
+     */
+    @MainThread
+    public long getDispatchCount() {
+        return mDispatchCount;
+    }
+
+    /**
+     * Returns the number of values that were replaced by a newer value before being dispatched,
+     * when coalescing or in a {@link LiveDataBatch}.
+     */
+    @MainThread
+    public long getCoalescedCount() {
+        return mCoalescedCount;
+    }
+
     /**
      * Returns the current value.
      * Note that calling this method on a background thread does not guarantee that the latest
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package androidx.lifecycle;
+
+import android.os.Build;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.RequiresApi;
+import androidx.arch.core.executor.ArchTaskExecutor;
+
+import java.util.ArrayList;
+
+/**
+ * Coalesces the dispatch of {@link LiveData} values.
+ * <p>
+ * Between {@link #begin()} and {@link #end()}, setting the value of any {@link LiveData} only
+ * updates it: its observers are notified once the outermost batch ends, and only once with the
+ * latest value, however many times the value was set in the meantime. {@link LiveData}s set by
+ * observers while the batch is dispatched, like a {@code MediatorLiveData} updated by several of
+ * its sources, are dispatched in the same pass and also only once.
+ * <pre class="prettyprint">
+ * LiveDataBatch.run(() -&gt; {
+ *     first.setValue(1);
+ *     second.setValue(2);
+ *     first.setValue(3); // observers of first only receive 3
+ * });
+ * </pre>
+ * {@link LiveData}s with {@link LiveData#setCoalescingEnabled(boolean) coalescing} enabled are
+ * batched the same way outside of an explicit batch, until the next frame. Values their observers
+ * set on other {@link LiveData}s are only deferred if those have coalescing enabled too.
+ * <p>
+ * If an observer throws while a batch is dispatched, the {@link LiveData}s that were not
+ * dispatched yet are dispatched on the next frame.
+ */
+public final class LiveDataBatch {
+    private static int sDepth;
+    private static boolean sDispatching;
+    // true while dispatching the values of an explicit batch, as opposed to a frame
+    private static boolean sDispatchingBatch;
+    private static boolean sFrameDispatchScheduled;
+    private static final ArrayList<LiveData<?>> sPending = new ArrayList<>();
+
+    private static final Runnable sFrameDispatch = new Runnable() {
+        @Override
+        public void run() {
+            sFrameDispatchScheduled = false;
+            dispatchPending(false);
+        }
+    };
+
+    private LiveDataBatch() {
+    }
+
+    /**
+     * Starts a batch, which must be ended by a call to {@link #end()}. Batches can be nested.
+     */
+    @MainThread
+    public static void begin() {
+        LiveData.assertMainThread("begin");
+        sDepth++;
+    }
+
+    /**
+     * Ends the batch started by the matching {@link #begin()}. Ending the outermost batch
+     * notifies the observers of the {@link LiveData}s set during the batch.
+     *
+     * @throws IllegalStateException if there is no batch to end
+     */
+    @MainThread
+    public static void end() {
+        LiveData.assertMainThread("end");
+        if (sDepth == 0) {
+            throw new IllegalStateException("end() called without a matching begin()");
+        }
+        if (--sDepth == 0) {
+            dispatchPending(true);
+        }
+    }
+
+    /**
+     * Runs the given block in a batch.
+     *
+     * @param block The code setting the values to coalesce
+     */
+    @MainThread
+    public static void run(@NonNull Runnable block) {
+        begin();
+        try {
+            block.run();
+        } finally {
+            end();
+        }
+    }
+
+    /**
+     * Returns {@code true} if the values set now are dispatched later, by an explicit batch.
+     * Values of {@link LiveData}s without coalescing set while dispatching on a frame are
+     * dispatched right away.
+     */
+    static boolean isBatching() {
+        return sDepth > 0 || sDispatchingBatch;
+    }
+
+    /**
+     * Adds a {@link LiveData} whose value must be dispatched by the batch.
+     *
+     * @param scheduleFrame {@code true} to dispatch on the next frame when not in a batch
+     */
+    static void enqueue(@NonNull LiveData<?> liveData, boolean scheduleFrame) {
+        sPending.add(liveData);
+        if (scheduleFrame && !isBatching() && !sDispatching) {
+            scheduleFrameDispatch();
+        }
+    }
+
+    private static void scheduleFrameDispatch() {
+        if (sFrameDispatchScheduled) {
+            return;
+        }
+        sFrameDispatchScheduled = true;
+        if (Build.VERSION.SDK_INT >= 16 && Looper.getMainLooper() != null
+                && Looper.getMainLooper().getThread() == Thread.currentThread()) {
+            Api16Impl.postFrameCallback(sFrameDispatch);
+        } else {
+            ArchTaskExecutor.getInstance().postToMainThread(sFrameDispatch);
+        }
+    }
+
+    private static void dispatchPending(boolean batch) {
+        if (sDispatching) {
+            return;
+        }
+        sDispatching = true;
+        sDispatchingBatch = batch;
+        int i = 0;
+        try {
+            // The list grows while dispatching when observers set values.
+            for (; i < sPending.size(); i++) {
+                sPending.get(i).dispatchPendingValue();
+            }
+        } finally {
+            // If an observer threw, the LiveDatas after the one it observes stay queued and are
+            // dispatched on the next frame.
+            sPending.subList(0, Math.min(i + 1, sPending.size())).clear();
+            sDispatching = false;
+            sDispatchingBatch = false;
+            if (!sPending.isEmpty()) {
+                scheduleFrameDispatch();
+            }
+        }
+    }
+
+    @RequiresApi(16)
+    static class Api16Impl {
+        private Api16Impl() {
+            // This class is not instantiable.
+        }
+
+        static void postFrameCallback(@NonNull final Runnable runnable) {
+            Choreographer.getInstance().postFrameCallback(new Choreographer.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    runnable.run();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package androidx.lifecycle;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+import androidx.annotation.NonNull;
+import androidx.arch.core.executor.ArchTaskExecutor;
+import androidx.arch.core.executor.TaskExecutor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+@RunWith(JUnit4.class)
+public class LiveDataBatchTest {
+
+    private final List<Runnable> mMainThreadTasks = new ArrayList<>();
+    private final List<Integer> mValues = new ArrayList<>();
+    private MutableLiveData<Integer> mLiveData;
+
+    @Before
+    public void setup() {
+        ArchTaskExecutor.getInstance().setDelegate(new TaskExecutor() {
+            @Override
+            public void executeOnDiskIO(@NonNull Runnable runnable) {
+                runnable.run();
+            }
+
+            @Override
+            public void postToMainThread(@NonNull Runnable runnable) {
+                mMainThreadTasks.add(runnable);
+            }
+
+            @Override
+            public boolean isMainThread() {
+                return true;
+            }
+        });
+        mLiveData = new MutableLiveData<>();
+        mLiveData.observeForever(new Observer<Integer>() {
+            @Override
+            public void onChanged(Integer value) {
+                mValues.add(value);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        ArchTaskExecutor.getInstance().setDelegate(null);
+    }
+
+    @Test
+    public void withoutBatch() {
+        mLiveData.setValue(1);
+        mLiveData.setValue(2);
+        assertThat(mValues, is(Arrays.asList(1, 2)));
+        assertThat(mLiveData.getDispatchCount(), is(2L));
+        assertThat(mLiveData.getCoalescedCount(), is(0L));
+    }
+
+    @Test
+    public void batch() {
+        LiveDataBatch.run(new Runnable() {
+            @Override
+            public void run() {
+                mLiveData.setValue(1);
+                mLiveData.setValue(2);
+                mLiveData.setValue(3);
+                assertThat(mValues.isEmpty(), is(true));
+            }
+        });
+        assertThat(mValues, is(Collections.singletonList(3)));
+        assertThat(mLiveData.getDispatchCount(), is(1L));
+        assertThat(mLiveData.getCoalescedCount(), is(2L));
+    }
+
+    @Test
+    public void nestedBatch() {
+        LiveDataBatch.begin();
+        LiveDataBatch.begin();
+        mLiveData.setValue(1);
+        LiveDataBatch.end();
+        assertThat(mValues.isEmpty(), is(true));
+        mLiveData.setValue(2);
+        LiveDataBatch.end();
+        assertThat(mValues, is(Collections.singletonList(2)));
+    }
+
+    @Test
+    public void observerSettingValueDuringBatchDispatch() {
+        final MutableLiveData<Integer> doubled = new MutableLiveData<>();
+        final List<Integer> doubledValues = new ArrayList<>();
+        mLiveData.observeForever(new Observer<Integer>() {
+            @Override
+            public void onChanged(Integer value) {
+                doubled.setValue(value * 2);
+                doubled.setValue(value * 2);
+            }
+        });
+        doubled.observeForever(new Observer<Integer>() {
+            @Override
+            public void onChanged(Integer value) {
+                doubledValues.add(value);
+            }
+        });
+        LiveDataBatch.begin();
+        mLiveData.setValue(1);
+        LiveDataBatch.end();
+        assertThat(doubledValues, is(Collections.singletonList(2)));
+        assertThat(doubled.getCoalescedCount(), is(1L));
+    }
+
+    @Test
+    public void endWithoutBegin() {
+        try {
+            LiveDataBatch.end();
+            fail("end() without begin() should throw");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void coalescing() {
+        mLiveData.setCoalescingEnabled(true);
+        mLiveData.setValue(1);
+        mLiveData.setValue(2);
+        assertThat(mValues.isEmpty(), is(true));
+        assertThat(mMainThreadTasks.size(), is(1));
+
+        mMainThreadTasks.remove(0).run();
+        assertThat(mValues, is(Collections.singletonList(2)));
+
+        mLiveData.setValue(3);
+        assertThat(mMainThreadTasks.size(), is(1));
+        mMainThreadTasks.remove(0).run();
+        assertThat(mValues, is(Arrays.asList(2, 3)));
+        assertThat(mLiveData.getCoalescedCount(), is(1L));
+    }
+
+    @Test
+    public void frameDispatchOnlyDefersCoalescingLiveData() {
+        final MutableLiveData<Integer> other = new MutableLiveData<>();
+        final List<Integer> otherValues = new ArrayList<>();
+        other.observeForever(new Observer<Integer>() {
+            @Override
+            public void onChanged(Integer value) {
+                otherValues.add(value);
+            }
+        });
+        mLiveData.observeForever(new Observer<Integer>() {
+            @Override
+            public void onChanged(Integer value) {
+                other.setValue(value);
+                // other did not opt into coalescing, so it is dispatched right away
+                assertThat(otherValues, is(Collections.singletonList(value)));
+            }
+        });
+        mLiveData.setCoalescingEnabled(true);
+        mLiveData.setValue(1);
+
+        mMainThreadTasks.remove(0).run();
+        assertThat(otherValues, is(Collections.singletonList(1)));
+        assertThat(mMainThreadTasks.isEmpty(), is(true));
+    }
+
+    @Test
+    public void throwingObserverKeepsRemainingValuesQueued() {
+        final MutableLiveData<Integer> throwing = new MutableLiveData<>();
+        throwing.observeForever(new Observer<Integer>() {
+            @Override
+            public void onChanged(Integer value) {
+                throw new UnsupportedOperationException();
+            }
+        });
+        LiveDataBatch.begin();
+        throwing.setValue(1);
+        mLiveData.setValue(2);
+        try {
+            LiveDataBatch.end();
+            fail("the exception of the observer should be thrown");
+        } catch (UnsupportedOperationException expected) {
+        }
+        assertThat(mValues.isEmpty(), is(true));
+
+        assertThat(mMainThreadTasks.size(), is(1));
+        mMainThreadTasks.remove(0).run();
+        assertThat(mValues, is(Collections.singletonList(2)));
+    }
+
+    @Test
+    public void coalescingNewObserverReceivesLatestValue() {
+        mLiveData.setCoalescingEnabled(true);
+        mLiveData.setValue(1);
+        final List<Integer> values = new ArrayList<>();
+        mLiveData.observeForever(new Observer<Integer>() {
+            @Override
+            public void onChanged(Integer value) {
+                values.add(value);
+            }
+        });
+        assertThat(values, is(Collections.singletonList(1)));
+
+        mMainThreadTasks.remove(0).run();
+        assertThat(values, is(Collections.singletonList(1)));
+        assertThat(mValues, is(Collections.singletonList(1)));
+    }
+}
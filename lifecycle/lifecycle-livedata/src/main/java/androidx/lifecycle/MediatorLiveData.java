@@ -62,6 +62,11 @@ import java.util.Map;
  *      }
  * });
  * </pre>
+ * <p>
+ * When several sources are updated at once, enable
+ * {@link #setCoalescingEnabled(boolean) coalescing} or update them in a {@link LiveDataBatch}:
+ * the observers of this {@code MediatorLiveData} are then notified once, with the latest value,
+ * instead of once per source update.
  *
  * @param <T> The type of data hold by this instance
  */
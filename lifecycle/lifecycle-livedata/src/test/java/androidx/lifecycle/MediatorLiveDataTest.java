@@ -41,6 +41,10 @@ import org.junit.rules.ExpectedException;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 @SuppressWarnings("unchecked")
 @RunWith(JUnit4.class)
 public class MediatorLiveDataTest {
@@ -87,6 +91,38 @@ public class MediatorLiveDataTest {
         assertThat(mediator.getValue()).isEqualTo("value");
     }
 
+    @Test
+    public void testBatchedSourcesDispatchOnce() {
+        final MutableLiveData<String> source1 = new MutableLiveData<>();
+        final MutableLiveData<String> source2 = new MutableLiveData<>();
+        Observer<String> forward = new Observer<String>() {
+            @Override
+            public void onChanged(String value) {
+                mMediator.setValue(value);
+            }
+        };
+        mMediator.addSource(source1, forward);
+        mMediator.addSource(source2, forward);
+        final List<String> values = new ArrayList<>();
+        mMediator.observeForever(new Observer<String>() {
+            @Override
+            public void onChanged(String value) {
+                values.add(value);
+            }
+        });
+        LiveDataBatch.run(new Runnable() {
+            @Override
+            public void run() {
+                source1.setValue("a");
+                source2.setValue("b");
+                source1.setValue("c");
+            }
+        });
+        // the sources are dispatched in the order they were first set, source2 last
+        assertThat(values, is(Collections.singletonList("b")));
+        assertThat(mMediator.getCoalescedCount(), is(1L));
+    }
+
     @Test
     public void testSingleDelivery() {
         Observer observer = mock(Observer.class);
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package androidx.media2.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Bitmap;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests {@link BitmapTransferCache}.
+ */
+@RunWith(AndroidJUnit4.class)
+@SmallTest
+public class BitmapTransferCacheTest {
+
+    @Test
+    public void encode_sendsBitmapOnlyOnce() {
+        BitmapTransferCache.Sender sender = new BitmapTransferCache.Sender(2);
+        Bitmap bitmap = createBitmap(0xFF0000FF);
+
+        MediaItem first = sender.encode(createMediaItem("first", bitmap));
+        MediaItem second = sender.encode(createMediaItem("second", bitmap));
+
+        assertNotNull(first.getMetadata().getBitmap(MediaMetadata.METADATA_KEY_ART));
+        assertNull(second.getMetadata().getBitmap(MediaMetadata.METADATA_KEY_ART));
+        assertEquals("second",
+                second.getMetadata().getString(MediaMetadata.METADATA_KEY_MEDIA_ID));
+    }
+
+    @Test
+    public void encode_identifiesBitmapsByContent() {
+        BitmapTransferCache.Sender sender = new BitmapTransferCache.Sender(2);
+        Bitmap bitmap = createBitmap(0xFF0000FF);
+        Bitmap sameContent = createBitmap(0xFF0000FF);
+        Bitmap lastPixelChanged = createBitmap(0xFF0000FF);
+        lastPixelChanged.setPixel(3, 3, 0xFF00FF00);
+
+        sender.encode(createMediaItem("first", bitmap));
+        MediaItem second = sender.encode(createMediaItem("second", sameContent));
+        MediaItem third = sender.encode(createMediaItem("third", lastPixelChanged));
+
+        assertNull(second.getMetadata().getBitmap(MediaMetadata.METADATA_KEY_ART));
+        assertNotNull(third.getMetadata().getBitmap(MediaMetadata.METADATA_KEY_ART));
+    }
+
+    @Test
+    public void decode_restoresBitmapsSentBefore() {
+        BitmapTransferCache.Sender sender = new BitmapTransferCache.Sender(2);
+        BitmapTransferCache.Receiver receiver = new BitmapTransferCache.Receiver(2);
+        Bitmap bitmap = createBitmap(0xFF00FF00);
+
+        MediaItem first = sender.encode(createMediaItem("first", bitmap));
+        MediaItem second = sender.encode(createMediaItem("second", bitmap));
+
+        assertTrue(receiver.decode(first));
+        assertTrue(receiver.decode(second));
+        Bitmap received = first.getMetadata().getBitmap(MediaMetadata.METADATA_KEY_ART);
+        assertNotNull(received);
+        assertSame(received, second.getMetadata().getBitmap(MediaMetadata.METADATA_KEY_ART));
+        assertTrue(bitmap.sameAs(received));
+    }
+
+    @Test
+    public void decode_withoutBitmapSentBefore_returnsFalse() {
+        BitmapTransferCache.Sender sender = new BitmapTransferCache.Sender(2);
+        BitmapTransferCache.Receiver receiver = new BitmapTransferCache.Receiver(2);
+        Bitmap bitmap = createBitmap(0xFFFF0000);
+
+        sender.encode(createMediaItem("first", bitmap));
+        MediaItem second = sender.encode(createMediaItem("second", bitmap));
+
+        assertFalse(receiver.decode(second));
+        assertNull(second.getMetadata().getBitmap(MediaMetadata.METADATA_KEY_ART));
+    }
+
+    @Test
+    public void encode_afterEviction_sendsBitmapAgain() {
+        BitmapTransferCache.Sender sender = new BitmapTransferCache.Sender(1);
+        BitmapTransferCache.Receiver receiver = new BitmapTransferCache.Receiver(1);
+        Bitmap first = createBitmap(0xFF000000);
+        Bitmap second = createBitmap(0xFFFFFFFF);
+
+        MediaItem item1 = sender.encode(createMediaItem("item1", first));
+        MediaItem item2 = sender.encode(createMediaItem("item2", second));
+        MediaItem item3 = sender.encode(createMediaItem("item3", first));
+
+        assertNotNull(item3.getMetadata().getBitmap(MediaMetadata.METADATA_KEY_ART));
+        assertTrue(receiver.decode(item1));
+        assertTrue(receiver.decode(item2));
+        assertTrue(receiver.decode(item3));
+    }
+
+    @Test
+    public void clear_sendsBitmapAgain() {
+        BitmapTransferCache.Sender sender = new BitmapTransferCache.Sender(2);
+        BitmapTransferCache.Receiver receiver = new BitmapTransferCache.Receiver(2);
+        Bitmap bitmap = createBitmap(0xFF123456);
+
+        assertTrue(receiver.decode(sender.encode(createMediaItem("first", bitmap))));
+        sender.clear();
+        receiver.clear();
+        MediaItem second = sender.encode(createMediaItem("second", bitmap));
+
+        assertTrue(receiver.decode(second));
+        assertNotNull(second.getMetadata().getBitmap(MediaMetadata.METADATA_KEY_ART));
+    }
+
+    @Test
+    public void decode_itemWithoutHashes_isUnchanged() {
+        BitmapTransferCache.Receiver receiver = new BitmapTransferCache.Receiver(2);
+        MediaItem item = createMediaItem("item", createBitmap(0xFF654321));
+        MediaMetadata metadata = item.getMetadata();
+
+        assertTrue(receiver.decode(item));
+        assertSame(metadata, item.getMetadata());
+    }
+
+    private static Bitmap createBitmap(int color) {
+        Bitmap bitmap = Bitmap.createBitmap(4, 4, Bitmap.Config.ARGB_8888);
+        bitmap.eraseColor(color);
+        return bitmap;
+    }
+
+    private static MediaItem createMediaItem(String mediaId, Bitmap art) {
+        return new MediaItem.Builder()
+                .setMetadata(new MediaMetadata.Builder()
+                        .putString(MediaMetadata.METADATA_KEY_MEDIA_ID, mediaId)
+                        .putBitmap(MediaMetadata.METADATA_KEY_ART, art)
+                        .build())
+                .build();
+    }
+}
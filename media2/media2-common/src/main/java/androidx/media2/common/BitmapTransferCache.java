@@ -0,0 +1,288 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.media2.common;
+
+import static androidx.annotation.RestrictTo.Scope.LIBRARY_GROUP;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.os.Bundle;
+import android.util.Log;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+import androidx.collection.LruCache;
+import androidx.core.graphics.BitmapCompat;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Avoids sending the same {@link MediaMetadata} bitmaps to another process again and again.
+ * <p>
+ * The sender and the receiver of the media items each keep a {@link Sender} and a
+ * {@link Receiver} with the same capacity. Each bitmap is identified by the hash of its content.
+ * A bitmap is sent once with its hash, and the following media items only have the hash while
+ * it's in the cache. Both caches see the same bitmaps in the same order, so they evict the same
+ * ones as long as every media item encoded by the sender is decoded by the receiver in order.
+ * When that can't be guaranteed, e.g. a transaction failed, both caches have to be cleared.
+ * <p>
+ * The hashes are stored in the metadata bundle, so the parceled format of {@link MediaMetadata}
+ * doesn't change.
+ *
+ * @hide
+ */
+@RestrictTo(LIBRARY_GROUP)
+public final class BitmapTransferCache {
+    private static final String TAG = "BitmapTransferCache";
+
+    /** Default number of bitmaps to keep. */
+    public static final int DEFAULT_CAPACITY = 32;
+
+    // Prefix of the metadata keys for the hashes of the bitmaps.
+    static final String HASH_KEY_PREFIX = "androidx.media2.common.BitmapTransferCache.HASH:";
+
+    // Bitmaps larger than this are moved to shared memory once, rather than being copied to
+    // the shared memory for each parceling.
+    private static final int SHARED_MEMORY_THRESHOLD_BYTES = 16 * 1024;
+
+    @GuardedBy("sBitmapInfos")
+    private static final Map<Bitmap, BitmapInfo> sBitmapInfos = new WeakHashMap<>();
+
+    private BitmapTransferCache() {
+    }
+
+    /**
+     * Encodes the media items to send.
+     */
+    public static final class Sender {
+        private final LruCache<String, Boolean> mSentHashes;
+
+        public Sender(int capacity) {
+            mSentHashes = new LruCache<>(capacity);
+        }
+
+        /**
+         * Returns the media item to send instead of {@code item}. The bitmaps that were sent
+         * before are replaced with their hashes.
+         */
+        @NonNull
+        @SuppressWarnings("deprecation")
+        public synchronized MediaItem encode(@NonNull MediaItem item) {
+            MediaMetadata metadata = item.getMetadata();
+            if (metadata == null) {
+                return item;
+            }
+            List<String> bitmapKeys = getBitmapKeys(metadata.mBundle);
+            if (bitmapKeys.isEmpty()) {
+                return item;
+            }
+            Bundle bundle = new Bundle(metadata.mBundle);
+            for (String key : bitmapKeys) {
+                Bitmap bitmap = (Bitmap) bundle.getParcelable(key);
+                BitmapInfo info = getBitmapInfo(bitmap);
+                if (info == null) {
+                    continue;
+                }
+                bundle.putString(HASH_KEY_PREFIX + key, info.mHash);
+                if (mSentHashes.get(info.mHash) != null) {
+                    bundle.remove(key);
+                } else {
+                    mSentHashes.put(info.mHash, true);
+                    if (info.mSharedBitmap != null) {
+                        bundle.putParcelable(key, info.mSharedBitmap);
+                    }
+                }
+            }
+            return new MediaItem(new MediaMetadata(bundle), item.getStartPosition(),
+                    item.getEndPosition());
+        }
+
+        /** Forgets the sent bitmaps, e.g. when the receiver is reset. */
+        public synchronized void clear() {
+            mSentHashes.evictAll();
+        }
+    }
+
+    /**
+     * Decodes the received media items.
+     */
+    public static final class Receiver {
+        private final LruCache<String, Bitmap> mBitmaps;
+
+        public Receiver(int capacity) {
+            mBitmaps = new LruCache<>(capacity);
+        }
+
+        /**
+         * Puts the bitmaps back to the metadata of the received {@code item}.
+         *
+         * @return {@code false} if a bitmap isn't in the cache, in which case the sender should be
+         *         reset with {@link Sender#clear()} along with this.
+         */
+        @SuppressWarnings("deprecation")
+        public synchronized boolean decode(@Nullable MediaItem item) {
+            MediaMetadata metadata = item == null ? null : item.getMetadata();
+            if (metadata == null) {
+                return true;
+            }
+            List<String> hashKeys = new ArrayList<>();
+            for (String key : metadata.mBundle.keySet()) {
+                if (key.startsWith(HASH_KEY_PREFIX)) {
+                    hashKeys.add(key);
+                }
+            }
+            if (hashKeys.isEmpty()) {
+                return true;
+            }
+            Collections.sort(hashKeys);
+            boolean hasAllBitmaps = true;
+            Bundle bundle = new Bundle(metadata.mBundle);
+            for (String hashKey : hashKeys) {
+                String key = hashKey.substring(HASH_KEY_PREFIX.length());
+                String hash = bundle.getString(hashKey);
+                bundle.remove(hashKey);
+                if (hash == null) {
+                    continue;
+                }
+                Bitmap bitmap = bundle.getParcelable(key);
+                if (bitmap != null) {
+                    mBitmaps.put(hash, bitmap);
+                    continue;
+                }
+                bitmap = mBitmaps.get(hash);
+                if (bitmap != null) {
+                    bundle.putParcelable(key, bitmap);
+                } else {
+                    hasAllBitmaps = false;
+                }
+            }
+            item.setMetadata(new MediaMetadata(bundle));
+            return hasAllBitmaps;
+        }
+
+        /** Forgets the received bitmaps. */
+        public synchronized void clear() {
+            mBitmaps.evictAll();
+        }
+    }
+
+    @NonNull
+    @SuppressWarnings("deprecation")
+    private static List<String> getBitmapKeys(@NonNull Bundle bundle) {
+        List<String> keys = new ArrayList<>();
+        for (String key : bundle.keySet()) {
+            if (bundle.get(key) instanceof Bitmap) {
+                keys.add(key);
+            }
+        }
+        // Sorted to match the order of the receiver.
+        Collections.sort(keys);
+        return keys;
+    }
+
+    @Nullable
+    private static BitmapInfo getBitmapInfo(@NonNull Bitmap bitmap) {
+        int generationId = bitmap.getGenerationId();
+        synchronized (sBitmapInfos) {
+            BitmapInfo info = sBitmapInfos.get(bitmap);
+            if (info != null && info.mGenerationId == generationId) {
+                return info;
+            }
+        }
+        String hash = computeHash(bitmap);
+        if (hash == null) {
+            return null;
+        }
+        Bitmap sharedBitmap = null;
+        int sizeInBytes = BitmapCompat.getAllocationByteCount(bitmap);
+        // Larger bitmaps are scaled down when parceled, which copies them anyway.
+        if (Build.VERSION.SDK_INT >= 31 && sizeInBytes > SHARED_MEMORY_THRESHOLD_BYTES
+                && sizeInBytes <= MediaMetadata.BitmapEntry.BITMAP_SIZE_LIMIT_IN_BYTES) {
+            sharedBitmap = ClassVerificationHelper.Bitmap.Api31.asShared(bitmap);
+            if (sharedBitmap == bitmap) {
+                // Already in the shared memory. Also avoids referencing the weak key strongly.
+                sharedBitmap = null;
+            }
+        }
+        BitmapInfo info = new BitmapInfo(generationId, hash, sharedBitmap);
+        synchronized (sBitmapInfos) {
+            sBitmapInfos.put(bitmap, info);
+        }
+        return info;
+    }
+
+    // Digests the pixels row by row, so the hash doesn't need a heap copy of the whole bitmap.
+    @Nullable
+    private static String computeHash(@NonNull Bitmap bitmap) {
+        if (bitmap.isRecycled()) {
+            return null;
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            int width = bitmap.getWidth();
+            int height = bitmap.getHeight();
+            ByteBuffer header = ByteBuffer.allocate(12);
+            header.putInt(width);
+            header.putInt(height);
+            header.putInt(bitmap.getConfig() == null ? -1 : bitmap.getConfig().ordinal());
+            digest.update(header.array());
+            int[] row = new int[width];
+            ByteBuffer rowBytes = ByteBuffer.allocate(width * 4);
+            IntBuffer rowInts = rowBytes.asIntBuffer();
+            for (int y = 0; y < height; y++) {
+                bitmap.getPixels(row, 0, width, 0, y, width, 1);
+                rowInts.clear();
+                rowInts.put(row);
+                digest.update(rowBytes.array(), 0, rowBytes.capacity());
+            }
+            StringBuilder hash = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hash.append(Character.forDigit((b >> 4) & 0xF, 16));
+                hash.append(Character.forDigit(b & 0xF, 16));
+            }
+            return hash.toString();
+        } catch (NoSuchAlgorithmException | RuntimeException e) {
+            Log.w(TAG, "Failed to compute the hash of a bitmap", e);
+            return null;
+        }
+    }
+
+    private static final class BitmapInfo {
+        final int mGenerationId;
+        @NonNull
+        final String mHash;
+        // Copy of the bitmap in the shared memory, if any.
+        @Nullable
+        final Bitmap mSharedBitmap;
+
+        BitmapInfo(int generationId, @NonNull String hash, @Nullable Bitmap sharedBitmap) {
+            mGenerationId = generationId;
+            mHash = hash;
+            mSharedBitmap = sharedBitmap;
+        }
+    }
+}
@@ -52,6 +52,27 @@ public final class ClassVerificationHelper {
         private AudioManager() {}
     }
 
+    /** Helper class for {@link android.graphics.Bitmap}. */
+    public static final class Bitmap {
+
+        /** Helper methods for {@link android.graphics.Bitmap} APIs added in API level 31. */
+        @RequiresApi(31)
+        public static final class Api31 {
+
+            /** Helper method to call {@link android.graphics.Bitmap#asShared()}. */
+            @DoNotInline
+            @NonNull
+            public static android.graphics.Bitmap asShared(
+                    @NonNull android.graphics.Bitmap bitmap) {
+                return bitmap.asShared();
+            }
+
+            private Api31() {}
+        }
+
+        private Bitmap() {}
+    }
+
     /** Helper class for {@link android.os.HandlerThread}. */
     public static final class HandlerThread {
 
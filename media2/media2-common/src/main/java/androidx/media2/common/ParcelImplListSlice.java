@@ -52,6 +52,7 @@ public class ParcelImplListSlice implements Parcelable {
     private static final int INLINE_COUNT_LIMIT = 1;
 
     final List<ParcelImpl> mList;
+    private boolean mIsTruncated;
 
     public ParcelImplListSlice(@NonNull List<ParcelImpl> list) {
         if (list == null) {
@@ -102,6 +103,7 @@ public class ParcelImplListSlice implements Parcelable {
                 } catch (RemoteException e) {
                     Log.w(TAG, "Failure retrieving array; only received " + i + " of " + itemCount,
                             e);
+                    mIsTruncated = true;
                     return;
                 }
                 while (i < itemCount && reply.readInt() != 0) {
@@ -125,6 +127,14 @@ public class ParcelImplListSlice implements Parcelable {
         return mList;
     }
 
+    /**
+     * Returns whether some items couldn't be retrieved from the sender, so {@link #getList()}
+     * only has the leading part of the list that was sent.
+     */
+    public boolean isTruncated() {
+        return mIsTruncated;
+    }
+
     /**
      * Write this to another Parcel. Note that this discards the internal Parcel
      * and should not be used anymore. This is so we can pass this to a Binder
@@ -30,6 +30,7 @@ import static org.junit.Assert.assertTrue;
 import android.app.PendingIntent;
 import android.content.Context;
 import android.content.Intent;
+import android.graphics.Bitmap;
 import android.media.AudioManager;
 import android.media.MediaFormat;
 import android.net.Uri;
@@ -44,8 +45,10 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.media.AudioAttributesCompat;
 import androidx.media.VolumeProviderCompat;
+import androidx.media2.common.BitmapTransferCache;
 import androidx.media2.common.MediaItem;
 import androidx.media2.common.MediaMetadata;
+import androidx.media2.common.MediaParcelUtils;
 import androidx.media2.common.Rating;
 import androidx.media2.common.SessionPlayer;
 import androidx.media2.common.SessionPlayer.TrackInfo;
@@ -318,6 +321,103 @@ public class MediaControllerTest extends MediaSessionTestBase {
         }
     }
 
+    @Test
+    public void windowedPlaylist_ignoresItemsFetchedBeforePlaylistChange() throws Exception {
+        final List<MediaItem> oldPlaylist = TestUtils.createMediaItems(10);
+        mPlayer.mPlaylist = oldPlaylist;
+        final CountDownLatch connectedLatch = new CountDownLatch(1);
+        final CountDownLatch playlistChangedLatch = new CountDownLatch(1);
+        final MediaController controller = new MediaController.Builder(mContext)
+                .setSessionToken(mSession.getToken())
+                .setPlaylistCacheSize(8)
+                .setControllerCallback(sHandlerExecutor, new ControllerCallback() {
+                    @Override
+                    public void onConnected(@NonNull MediaController controller,
+                            @NonNull SessionCommandGroup allowedCommands) {
+                        connectedLatch.countDown();
+                    }
+
+                    @Override
+                    public void onPlaylistChanged(@NonNull MediaController controller,
+                            @Nullable List<MediaItem> list, @Nullable MediaMetadata metadata) {
+                        playlistChangedLatch.countDown();
+                    }
+                })
+                .build();
+        try {
+            assertTrue(connectedLatch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+
+            final List<MediaItem> newPlaylist = TestUtils.createMediaItems(10);
+            mPlayer.mPlaylist = newPlaylist;
+            mPlayer.notifyPlaylistChanged();
+            assertTrue(playlistChangedLatch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+            new PollingCheck(TIMEOUT_MS) {
+                @Override
+                protected boolean check() {
+                    return controller.getPlaylistItem(0) == newPlaylist.get(0);
+                }
+            }.run();
+
+            // A window requested before the playlist change arrives late.
+            MediaControllerImplBase impl = (MediaControllerImplBase) controller.getImpl();
+            impl.mControllerStub.onPlaylistItems(/* seq= */ 0, /* version= */ 0,
+                    /* fromIndex= */ 0, MediaUtils.convertMediaItemListToParcelImplListSlice(
+                            oldPlaylist.subList(0, 4)));
+
+            assertSame(newPlaylist.get(0), controller.getPlaylistItem(0));
+        } finally {
+            controller.close();
+        }
+    }
+
+    @Test
+    public void missingBitmap_resyncsCurrentMediaItemWithBitmap() throws Exception {
+        final Bitmap art = Bitmap.createBitmap(4, 4, Bitmap.Config.ARGB_8888);
+        art.eraseColor(0xFF0000FF);
+        mPlayer.mCurrentMediaItem = createMediaItemWithArt(art);
+        final CountDownLatch connectedLatch = new CountDownLatch(1);
+        final CountDownLatch artReceivedLatch = new CountDownLatch(1);
+        final MediaController controller = new MediaController.Builder(mContext)
+                .setSessionToken(mSession.getToken())
+                .setControllerCallback(sHandlerExecutor, new ControllerCallback() {
+                    @Override
+                    public void onConnected(@NonNull MediaController controller,
+                            @NonNull SessionCommandGroup allowedCommands) {
+                        connectedLatch.countDown();
+                    }
+
+                    @Override
+                    public void onCurrentMediaItemChanged(@NonNull MediaController controller,
+                            @Nullable MediaItem item) {
+                        if (item != null && item.getMetadata() != null && item.getMetadata()
+                                .getBitmap(MediaMetadata.METADATA_KEY_ART) != null) {
+                            artReceivedLatch.countDown();
+                        }
+                    }
+                })
+                .build();
+        try {
+            assertTrue(connectedLatch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+
+            // The item only refers to a bitmap that the controller has never received.
+            BitmapTransferCache.Sender sender =
+                    new BitmapTransferCache.Sender(BitmapTransferCache.DEFAULT_CAPACITY);
+            sender.encode(createMediaItemWithArt(art));
+            MediaItem reference = sender.encode(createMediaItemWithArt(art));
+            assertNull(reference.getMetadata().getBitmap(MediaMetadata.METADATA_KEY_ART));
+            MediaControllerImplBase impl = (MediaControllerImplBase) controller.getImpl();
+            impl.mControllerStub.onCurrentMediaItemChanged(/* seq= */ 0,
+                    MediaParcelUtils.toParcelable(reference), /* currentIdx= */ 0,
+                    /* previousIdx= */ -1, /* nextIdx= */ -1);
+
+            assertTrue(artReceivedLatch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+            assertNotNull(controller.getCurrentMediaItem().getMetadata()
+                    .getBitmap(MediaMetadata.METADATA_KEY_ART));
+        } finally {
+            controller.close();
+        }
+    }
+
     @Test
     public void setMediaItem() throws Exception {
         String mediaId = "testSetMediaItem";
@@ -1686,6 +1786,15 @@ public class MediaControllerTest extends MediaSessionTestBase {
         setRunnableForOnCustomCommand(mController, null);
     }
 
+    private static MediaItem createMediaItemWithArt(Bitmap art) {
+        return new MediaItem.Builder()
+                .setMetadata(new MediaMetadata.Builder()
+                        .putString(MediaMetadata.METADATA_KEY_MEDIA_ID, "itemWithArt")
+                        .putBitmap(MediaMetadata.METADATA_KEY_ART, art)
+                        .build())
+                .build();
+    }
+
     // TODO(jaewan): Add  test for service connect rejection, when we differentiate session
     //               active/inactive and connection accept/refuse
 
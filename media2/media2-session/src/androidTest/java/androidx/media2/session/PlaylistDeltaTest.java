@@ -0,0 +1,141 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.media2.session;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import androidx.media2.common.MediaItem;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests {@link PlaylistDelta}.
+ */
+@RunWith(AndroidJUnit4.class)
+@SmallTest
+public class PlaylistDeltaTest extends MediaTestBase {
+    @Test
+    public void compute_withSamePlaylist_returnsEmptyDelta() {
+        List<MediaItem> playlist = TestUtils.createMediaItems(5);
+
+        PlaylistDelta delta = PlaylistDelta.compute(playlist, new ArrayList<>(playlist));
+
+        assertNotNull(delta);
+        assertEquals(0, delta.getOperations().length);
+        assertEquals(0, delta.getInsertedItems().size());
+    }
+
+    @Test
+    public void compute_withInsertedItem() {
+        List<MediaItem> oldPlaylist = TestUtils.createMediaItems(10);
+        List<MediaItem> newPlaylist = new ArrayList<>(oldPlaylist);
+        MediaItem item = TestUtils.createMediaItem("inserted");
+        newPlaylist.add(3, item);
+
+        PlaylistDelta delta = PlaylistDelta.compute(oldPlaylist, newPlaylist);
+
+        assertNotNull(delta);
+        assertArrayEquals(new int[] {PlaylistDelta.OP_REPLACE_RANGE, 3, 0, 1},
+                delta.getOperations());
+        assertEquals(Collections.singletonList(item), delta.getInsertedItems());
+        assertApplies(oldPlaylist, newPlaylist, delta);
+    }
+
+    @Test
+    public void compute_withRemovedItems() {
+        List<MediaItem> oldPlaylist = TestUtils.createMediaItems(10);
+        List<MediaItem> newPlaylist = new ArrayList<>(oldPlaylist);
+        newPlaylist.subList(8, 10).clear();
+
+        PlaylistDelta delta = PlaylistDelta.compute(oldPlaylist, newPlaylist);
+
+        assertNotNull(delta);
+        assertArrayEquals(new int[] {PlaylistDelta.OP_REPLACE_RANGE, 8, 2, 0},
+                delta.getOperations());
+        assertApplies(oldPlaylist, newPlaylist, delta);
+    }
+
+    @Test
+    public void compute_withMovedItem() {
+        List<MediaItem> oldPlaylist = TestUtils.createMediaItems(10);
+        List<MediaItem> forward = new ArrayList<>(oldPlaylist);
+        forward.add(7, forward.remove(2));
+        List<MediaItem> backward = new ArrayList<>(oldPlaylist);
+        backward.add(1, backward.remove(6));
+
+        PlaylistDelta forwardDelta = PlaylistDelta.compute(oldPlaylist, forward);
+        PlaylistDelta backwardDelta = PlaylistDelta.compute(oldPlaylist, backward);
+
+        assertNotNull(forwardDelta);
+        assertArrayEquals(new int[] {PlaylistDelta.OP_MOVE, 2, 7}, forwardDelta.getOperations());
+        assertApplies(oldPlaylist, forward, forwardDelta);
+        assertNotNull(backwardDelta);
+        assertArrayEquals(new int[] {PlaylistDelta.OP_MOVE, 6, 1}, backwardDelta.getOperations());
+        assertApplies(oldPlaylist, backward, backwardDelta);
+    }
+
+    @Test
+    public void compute_withMostlyNewPlaylist_returnsNull() {
+        List<MediaItem> oldPlaylist = TestUtils.createMediaItems(4);
+        List<MediaItem> newPlaylist = TestUtils.createMediaItems(4);
+
+        assertNull(PlaylistDelta.compute(oldPlaylist, newPlaylist));
+        assertNull(PlaylistDelta.compute(null, newPlaylist));
+        assertNull(PlaylistDelta.compute(oldPlaylist, null));
+    }
+
+    @Test
+    public void replaceItem() {
+        List<MediaItem> oldPlaylist = TestUtils.createMediaItems(5);
+        List<MediaItem> newPlaylist = new ArrayList<>(oldPlaylist);
+        newPlaylist.set(2, TestUtils.createMediaItem("replaced"));
+
+        assertApplies(oldPlaylist, newPlaylist,
+                PlaylistDelta.replaceItem(2, newPlaylist.get(2)));
+    }
+
+    @Test
+    public void apply_withInvalidOperations_returnsNull() {
+        List<MediaItem> playlist = TestUtils.createMediaItems(3);
+        List<MediaItem> noItems = Collections.emptyList();
+
+        assertNull(PlaylistDelta.apply(playlist,
+                new int[] {PlaylistDelta.OP_REPLACE_RANGE, 2, 2, 0}, noItems));
+        assertNull(PlaylistDelta.apply(playlist,
+                new int[] {PlaylistDelta.OP_REPLACE_RANGE, 0, 0, 1}, noItems));
+        assertNull(PlaylistDelta.apply(playlist, new int[] {PlaylistDelta.OP_MOVE, 0, 3},
+                noItems));
+        assertNull(PlaylistDelta.apply(playlist, new int[] {PlaylistDelta.OP_MOVE, 0}, noItems));
+        assertNull(PlaylistDelta.apply(playlist, new int[] {-1}, noItems));
+    }
+
+    private static void assertApplies(List<MediaItem> oldPlaylist, List<MediaItem> newPlaylist,
+            PlaylistDelta delta) {
+        assertEquals(newPlaylist, PlaylistDelta.apply(oldPlaylist, delta.getOperations(),
+                delta.getInsertedItems()));
+    }
+}
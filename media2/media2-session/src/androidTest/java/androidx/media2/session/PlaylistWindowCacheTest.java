@@ -0,0 +1,167 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.media2.session;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import androidx.media2.common.MediaItem;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests {@link PlaylistWindowCache}.
+ */
+@RunWith(AndroidJUnit4.class)
+@SmallTest
+public class PlaylistWindowCacheTest extends MediaTestBase {
+    @Test
+    public void obtainWindowToFetch_returnsAlignedWindowOnce() {
+        PlaylistWindowCache cache = new PlaylistWindowCache(8);
+        cache.reset(0, 100);
+
+        assertEquals(4, cache.getWindowSize());
+        assertEquals(8, cache.obtainWindowToFetch(10));
+        assertEquals(-1, cache.obtainWindowToFetch(9));
+        assertEquals(-1, cache.obtainWindowToFetch(100));
+        assertEquals(-1, cache.obtainWindowToFetch(-1));
+    }
+
+    @Test
+    public void putItems_makesItemsAvailable() {
+        PlaylistWindowCache cache = new PlaylistWindowCache(8);
+        cache.reset(0, 10);
+        List<MediaItem> items = TestUtils.createMediaItems(4);
+
+        cache.putItems(0, cache.obtainWindowToFetch(8), items);
+
+        assertSame(items.get(0), cache.getItem(8));
+        assertSame(items.get(1), cache.getItem(9));
+        // Items out of the playlist are ignored.
+        assertNull(cache.getItem(10));
+        assertEquals(-1, cache.obtainWindowToFetch(8));
+    }
+
+    @Test
+    public void putItems_evictsLeastRecentlyUsedItems() {
+        PlaylistWindowCache cache = new PlaylistWindowCache(4);
+        cache.reset(0, 100);
+        List<MediaItem> items = TestUtils.createMediaItems(6);
+
+        cache.putItems(0, 0, items.subList(0, 2));
+        cache.putItems(0, 2, items.subList(2, 4));
+        cache.getItem(0);
+        cache.putItems(0, 4, items.subList(4, 6));
+
+        assertSame(items.get(0), cache.getItem(0));
+        assertNull(cache.getItem(1));
+        assertNull(cache.getItem(2));
+        assertSame(items.get(5), cache.getItem(5));
+    }
+
+    @Test
+    public void reset_forgetsItemsAndPendingWindows() {
+        PlaylistWindowCache cache = new PlaylistWindowCache(8);
+        cache.reset(0, 10);
+        cache.putItems(0, 0, Collections.singletonList(TestUtils.createMediaItem("item")));
+        cache.obtainWindowToFetch(4);
+
+        cache.reset(0, 5);
+
+        assertEquals(5, cache.getPlaylistSize());
+        assertNull(cache.getItem(0));
+        assertEquals(4, cache.obtainWindowToFetch(4));
+    }
+
+    @Test
+    public void putItems_ignoresItemsOfOtherPlaylistVersion() {
+        PlaylistWindowCache cache = new PlaylistWindowCache(8);
+        cache.reset(0, 10);
+        int windowStart = cache.obtainWindowToFetch(0);
+        cache.reset(1, 10);
+        assertEquals(windowStart, cache.obtainWindowToFetch(0));
+
+        // The window requested before the change arrives late.
+        assertFalse(cache.putItems(0, windowStart, TestUtils.createMediaItems(4)));
+
+        assertNull(cache.getItem(0));
+        // The window requested after the change is still pending.
+        assertEquals(-1, cache.obtainWindowToFetch(0));
+        assertTrue(cache.putItems(1, windowStart, TestUtils.createMediaItems(4)));
+        assertNotNull(cache.getItem(0));
+    }
+
+    @Test
+    public void applyDelta_movesCachedItems() {
+        PlaylistWindowCache cache = new PlaylistWindowCache(8);
+        cache.reset(0, 10);
+        List<MediaItem> items = TestUtils.createMediaItems(8);
+        cache.putItems(0, 0, items.subList(0, 4));
+        cache.putItems(0, 4, items.subList(4, 8));
+
+        // Replaces the items 1 and 2 with three items, then moves the item 0 to the end.
+        assertTrue(cache.applyDelta(1, new int[] {
+                PlaylistDelta.OP_REPLACE_RANGE, 1, 2, 3,
+                PlaylistDelta.OP_MOVE, 0, 10}, 11));
+
+        assertEquals(1, cache.getPlaylistVersion());
+        assertEquals(11, cache.getPlaylistSize());
+        assertNull(cache.getItem(0));
+        assertNull(cache.getItem(2));
+        assertSame(items.get(3), cache.getItem(3));
+        assertSame(items.get(7), cache.getItem(7));
+        assertSame(items.get(0), cache.getItem(10));
+    }
+
+    @Test
+    public void applyDelta_keepsCacheWhenDeltaDoesNotApply() {
+        PlaylistWindowCache cache = new PlaylistWindowCache(8);
+        cache.reset(0, 10);
+        MediaItem item = TestUtils.createMediaItem("item");
+        cache.putItems(0, 0, Collections.singletonList(item));
+
+        // Skips a version.
+        assertFalse(cache.applyDelta(2, new int[] {PlaylistDelta.OP_MOVE, 0, 1}, 10));
+        // Doesn't match the size.
+        assertFalse(cache.applyDelta(1, new int[] {PlaylistDelta.OP_MOVE, 0, 1}, 9));
+        // Out of the playlist.
+        assertFalse(cache.applyDelta(1, new int[] {PlaylistDelta.OP_REPLACE_RANGE, 8, 4, 2}, 8));
+
+        assertEquals(0, cache.getPlaylistVersion());
+        assertSame(item, cache.getItem(0));
+    }
+
+    @Test
+    public void obtainWindowsToPrefetch_coversItemsAroundIndex() {
+        PlaylistWindowCache cache = new PlaylistWindowCache(8);
+        cache.reset(0, 100);
+
+        assertEquals(Arrays.asList(8, 4), cache.obtainWindowsToPrefetch(9));
+        assertEquals(Collections.singletonList(12), cache.obtainWindowsToPrefetch(11));
+    }
+}
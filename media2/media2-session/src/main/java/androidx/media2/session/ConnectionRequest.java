@@ -39,17 +39,21 @@ class ConnectionRequest implements VersionedParcelable {
     int mPid;
     @ParcelField(3)
     Bundle mConnectionHints;
+    @ParcelField(4)
+    boolean mIsPlaylistWindowed;
 
     // For versioned parcelable.
     ConnectionRequest() {
         // no-op
     }
 
-    ConnectionRequest(String packageName, int pid, @Nullable Bundle connectionHints) {
+    ConnectionRequest(String packageName, int pid, @Nullable Bundle connectionHints,
+            boolean isPlaylistWindowed) {
         mVersion = MediaUtils.CURRENT_VERSION;
         mPackageName = packageName;
         mPid = pid;
         mConnectionHints = connectionHints;
+        mIsPlaylistWindowed = isPlaylistWindowed;
     }
 
     public String getPackageName() {
@@ -67,4 +71,12 @@ class ConnectionRequest implements VersionedParcelable {
     public Bundle getConnectionHints() {
         return mConnectionHints;
     }
+
+    /**
+     * Returns whether the controller fetches the playlist items by windows rather than receiving
+     * the whole playlist.
+     */
+    public boolean isPlaylistWindowed() {
+        return mIsPlaylistWindowed;
+    }
 }
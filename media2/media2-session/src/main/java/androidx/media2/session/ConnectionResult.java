@@ -107,6 +107,10 @@ class ConnectionResult extends CustomVersionedParcelable {
     MediaMetadata mPlaylistMetadata;
     @ParcelField(26)
     int mBufferingState;
+    @ParcelField(27)
+    boolean mIsPlaylistWindowed;
+    @ParcelField(28)
+    int mPlaylistSize;
 
     // For versioned parcelable
     ConnectionResult() {
@@ -115,7 +119,7 @@ class ConnectionResult extends CustomVersionedParcelable {
 
     ConnectionResult(@NonNull MediaSessionStub sessionStub,
             @NonNull MediaSession.MediaSessionImpl sessionImpl,
-            @NonNull SessionCommandGroup allowedCommands) {
+            @NonNull SessionCommandGroup allowedCommands, boolean isPlaylistWindowed) {
         mSessionStub = sessionStub;
         mPlayerState = sessionImpl.getPlayerState();
         mCurrentMediaItem = sessionImpl.getCurrentMediaItem();
@@ -139,7 +143,14 @@ class ConnectionResult extends CustomVersionedParcelable {
         mSelectedMetadataTrack = sessionImpl.getSelectedTrack(TrackInfo.MEDIA_TRACK_TYPE_METADATA);
         if (allowedCommands.hasCommand(SessionCommand.COMMAND_CODE_PLAYER_GET_PLAYLIST)) {
             List<MediaItem> playlist = sessionImpl.getPlaylist();
-            mPlaylistSlice = MediaUtils.convertMediaItemListToParcelImplListSlice(playlist);
+            if (isPlaylistWindowed) {
+                // The controller fetches the items when needed.
+                mIsPlaylistWindowed = true;
+                mPlaylistSize = playlist == null ? 0 : playlist.size();
+                mPlaylistSlice = null;
+            } else {
+                mPlaylistSlice = MediaUtils.convertMediaItemListToParcelImplListSlice(playlist);
+            }
         } else {
             mPlaylistSlice = null;
         }
@@ -203,6 +214,14 @@ class ConnectionResult extends CustomVersionedParcelable {
         return mPlaylistSlice;
     }
 
+    public boolean isPlaylistWindowed() {
+        return mIsPlaylistWindowed;
+    }
+
+    public int getPlaylistSize() {
+        return mPlaylistSize;
+    }
+
     public SessionCommandGroup getAllowedCommands() {
         return mAllowedCommands;
     }
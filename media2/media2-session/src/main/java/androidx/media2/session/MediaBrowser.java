@@ -84,14 +84,14 @@ public class MediaBrowser extends MediaController {
      */
     MediaBrowser(@NonNull Context context, @NonNull SessionToken token,
             @Nullable Bundle connectionHints, @Nullable Executor executor,
-            @Nullable BrowserCallback callback) {
-        super(context, token, connectionHints, executor, callback);
+            @Nullable BrowserCallback callback, int playlistCacheSize) {
+        super(context, token, connectionHints, executor, callback, playlistCacheSize);
     }
 
     MediaBrowser(@NonNull Context context, @NonNull MediaSessionCompat.Token token,
             @Nullable Bundle connectionHints, @Nullable Executor executor,
-            @Nullable BrowserCallback callback) {
-        super(context, token, connectionHints, executor, callback);
+            @Nullable BrowserCallback callback, int playlistCacheSize) {
+        super(context, token, connectionHints, executor, callback, playlistCacheSize);
     }
 
     @Override
@@ -334,6 +334,12 @@ public class MediaBrowser extends MediaController {
             return super.setConnectionHints(connectionHints);
         }
 
+        @Override
+        @NonNull
+        public Builder setPlaylistCacheSize(@IntRange(from = 1) int cacheSize) {
+            return super.setPlaylistCacheSize(cacheSize);
+        }
+
         /**
          * Builds a {@link MediaBrowser}.
          *
@@ -350,10 +356,10 @@ public class MediaBrowser extends MediaController {
             }
             if (mToken != null) {
                 return new MediaBrowser(mContext, mToken, mConnectionHints,
-                        mCallbackExecutor, (BrowserCallback) mCallback);
+                        mCallbackExecutor, (BrowserCallback) mCallback, mPlaylistCacheSize);
             } else {
                 return new MediaBrowser(mContext, mCompatToken, mConnectionHints,
-                        mCallbackExecutor, (BrowserCallback) mCallback);
+                        mCallbackExecutor, (BrowserCallback) mCallback, mPlaylistCacheSize);
             }
         }
     }
@@ -195,6 +195,8 @@ public class MediaController implements Closeable {
 
     final ControllerCallback mPrimaryCallback;
     final Executor mPrimaryCallbackExecutor;
+    // Non-zero if the playlist items are fetched by windows. See Builder#setPlaylistCacheSize.
+    final int mPlaylistCacheSize;
 
     @GuardedBy("mLock")
     private final List<Pair<ControllerCallback, Executor>> mExtraControllerCallbacks =
@@ -210,10 +212,11 @@ public class MediaController implements Closeable {
      * @param token token to connect to
      * @param executor executor to run callbacks on
      * @param callback controller callback to receive changes in
+     * @param playlistCacheSize number of playlist items to keep, or 0 to get the whole playlist
      */
     MediaController(@NonNull final Context context, @NonNull final SessionToken token,
             @Nullable Bundle connectionHints, @Nullable Executor executor,
-            @Nullable ControllerCallback callback) {
+            @Nullable ControllerCallback callback, int playlistCacheSize) {
         if (context == null) {
             throw new NullPointerException("context shouldn't be null");
         }
@@ -222,6 +225,7 @@ public class MediaController implements Closeable {
         }
         mPrimaryCallback = callback;
         mPrimaryCallbackExecutor = executor;
+        mPlaylistCacheSize = playlistCacheSize;
         synchronized (mLock) {
             mImpl = createImpl(context, token, connectionHints);
         }
@@ -234,10 +238,11 @@ public class MediaController implements Closeable {
      * @param token token to connect to
      * @param executor executor to run callbacks on
      * @param callback controller callback to receive changes in
+     * @param playlistCacheSize number of playlist items to keep, or 0 to get the whole playlist
      */
     MediaController(@NonNull final Context context, @NonNull final MediaSessionCompat.Token token,
             @Nullable final Bundle connectionHints, @Nullable final Executor executor,
-            @Nullable final ControllerCallback callback) {
+            @Nullable final ControllerCallback callback, int playlistCacheSize) {
         if (context == null) {
             throw new NullPointerException("context shouldn't be null");
         }
@@ -246,6 +251,7 @@ public class MediaController implements Closeable {
         }
         mPrimaryCallback = callback;
         mPrimaryCallbackExecutor = executor;
+        mPlaylistCacheSize = playlistCacheSize;
         SessionToken.createSessionToken(context, token, (compatToken, sessionToken) -> {
             boolean closed;
             synchronized (mLock) {
@@ -762,8 +768,9 @@ public class MediaController implements Closeable {
      * {@link #setPlaylist(List, MediaMetadata)} depending on the {@link SessionPlayer}
      * implementation.
      *
-     * @return playlist, or {@code null} if the playlist hasn't been set or the controller isn't
-     *         connected
+     * @return playlist, or {@code null} if the playlist hasn't been set, the controller isn't
+     *         connected, or the playlist items are fetched on demand
+     * @see Builder#setPlaylistCacheSize(int)
      * @see SessionCommand#COMMAND_CODE_PLAYER_GET_PLAYLIST
      */
     @Nullable
@@ -771,6 +778,40 @@ public class MediaController implements Closeable {
         return isConnected() ? getImpl().getPlaylist() : null;
     }
 
+    /**
+     * Gets the number of items in the playlist of the {@link SessionPlayer} associated with the
+     * connected {@link MediaSession}.
+     *
+     * @return the number of items, or {@code 0} if the playlist hasn't been set or the
+     *         controller isn't connected
+     * @see #getPlaylistItem(int)
+     * @see SessionCommand#COMMAND_CODE_PLAYER_GET_PLAYLIST
+     */
+    @IntRange(from = 0)
+    public int getPlaylistSize() {
+        return isConnected() ? getImpl().getPlaylistSize() : 0;
+    }
+
+    /**
+     * Gets the item at the index of the playlist of the {@link SessionPlayer} associated with the
+     * connected {@link MediaSession}.
+     * <p>
+     * If the controller was built with {@link Builder#setPlaylistCacheSize(int)}, this returns
+     * {@code null} for the items that haven't been fetched yet, and requests the session for
+     * them. {@link ControllerCallback#onPlaylistItemsLoaded} would be called when they're
+     * fetched.
+     *
+     * @param index index of the item in the playlist
+     * @return the item, or {@code null} if the index is out of the playlist, the item hasn't been
+     *         fetched yet, or the controller isn't connected
+     * @see #getPlaylistSize()
+     * @see SessionCommand#COMMAND_CODE_PLAYER_GET_PLAYLIST
+     */
+    @Nullable
+    public MediaItem getPlaylistItem(@IntRange(from = 0) int index) {
+        return isConnected() ? getImpl().getPlaylistItem(index) : null;
+    }
+
     /**
      * Requests that the {@link SessionPlayer} associated with the connected {@link MediaSession}
      * sets the playlist with the list of media IDs. Use this, {@link #setMediaUri}, or
@@ -1577,6 +1618,9 @@ public class MediaController implements Closeable {
                 @Nullable Bundle args);
         @Nullable
         List<MediaItem> getPlaylist();
+        int getPlaylistSize();
+        @Nullable
+        MediaItem getPlaylistItem(int index);
         ListenableFuture<SessionResult> setPlaylist(@NonNull List<String> list,
                 @Nullable MediaMetadata metadata);
         ListenableFuture<SessionResult> setMediaItem(@NonNull String mediaId);
@@ -1664,6 +1708,12 @@ public class MediaController implements Closeable {
             return super.setControllerCallback(executor, callback);
         }
 
+        @Override
+        @NonNull
+        public Builder setPlaylistCacheSize(@IntRange(from = 1) int cacheSize) {
+            return super.setPlaylistCacheSize(cacheSize);
+        }
+
         /**
          * Builds a {@link MediaController}.
          *
@@ -1679,10 +1729,10 @@ public class MediaController implements Closeable {
             }
             if (mToken != null) {
                 return new MediaController(mContext, mToken, mConnectionHints,
-                        mCallbackExecutor, mCallback);
+                        mCallbackExecutor, mCallback, mPlaylistCacheSize);
             } else {
                 return new MediaController(mContext, mCompatToken, mConnectionHints,
-                        mCallbackExecutor, mCallback);
+                        mCallbackExecutor, mCallback, mPlaylistCacheSize);
             }
         }
     }
@@ -1714,6 +1764,7 @@ public class MediaController implements Closeable {
         Bundle mConnectionHints;
         Executor mCallbackExecutor;
         ControllerCallback mCallback;
+        int mPlaylistCacheSize;
 
         /**
          * Creates a builder for {@link MediaController}.
@@ -1844,6 +1895,34 @@ public class MediaController implements Closeable {
             return (U) this;
         }
 
+        /**
+         * Makes the controller fetch the playlist items from the session when they're needed,
+         * rather than receiving the whole playlist whenever it changes. Useful for controllers
+         * that only show a few items of a long playlist, as the memory used for the playlist
+         * stays bounded.
+         * <p>
+         * The controller keeps up to {@code cacheSize} of the recently used items, and fetches
+         * the items around the current media item in advance. Use
+         * {@link MediaController#getPlaylistSize()} and
+         * {@link MediaController#getPlaylistItem(int)} to access the playlist.
+         * {@link MediaController#getPlaylist()} returns {@code null} while connected to a session
+         * that supports this.
+         *
+         * @param cacheSize maximum number of playlist items to keep
+         * @return the Builder to allow chaining
+         * @throws IllegalArgumentException if the {@code cacheSize} isn't positive
+         * @see ControllerCallback#onPlaylistItemsLoaded
+         */
+        @NonNull
+        @SuppressWarnings("unchecked")
+        U setPlaylistCacheSize(@IntRange(from = 1) int cacheSize) {
+            if (cacheSize <= 0) {
+                throw new IllegalArgumentException("cacheSize should be positive");
+            }
+            mPlaylistCacheSize = cacheSize;
+            return (U) this;
+        }
+
         @NonNull
         abstract T build();
     }
@@ -2007,7 +2086,7 @@ public class MediaController implements Closeable {
          * When it's called, current, previous, and next media item indices may need to be updated.
          *
          * @param controller the controller for this event
-         * @param list new playlist
+         * @param list new playlist, or {@code null} if the playlist items are fetched on demand
          * @param metadata new metadata
          * @see #getPlaylist()
          * @see #getPlaylistMetadata()
@@ -2024,6 +2103,20 @@ public class MediaController implements Closeable {
         public void onPlaylistMetadataChanged(@NonNull MediaController controller,
                 @Nullable MediaMetadata metadata) {}
 
+        /**
+         * Called when playlist items are fetched from the session, for the controllers built with
+         * {@link Builder#setPlaylistCacheSize(int)}.
+         * <p>
+         * The {@code list} of {@link #onPlaylistChanged} is {@code null} for such controllers.
+         * Use {@link MediaController#getPlaylistItem(int)} to get the fetched items.
+         *
+         * @param controller the controller for this event
+         * @param fromIndex index of the first fetched item, inclusive
+         * @param toIndex index of the last fetched item, exclusive
+         */
+        public void onPlaylistItemsLoaded(@NonNull MediaController controller,
+                @IntRange(from = 0) int fromIndex, @IntRange(from = 0) int toIndex) {}
+
         /**
          * Called when the shuffle mode is changed.
          *
@@ -104,6 +104,9 @@ class MediaControllerImplBase implements MediaControllerImpl {
     static final String TAG = "MC2ImplBase";
     static final boolean DEBUG = Log.isLoggable(TAG, Log.DEBUG);
 
+    // Playlist version when there's no playlist that the next playlist delta can be applied to.
+    private static final int PLAYLIST_VERSION_NONE = -1;
+
     @SuppressWarnings("WeakerAccess") /* synthetic access */
     final MediaController mInstance;
     private final Context mContext;
@@ -124,6 +127,14 @@ class MediaControllerImplBase implements MediaControllerImpl {
     @GuardedBy("mLock")
     private List<MediaItem> mPlaylist;
     @GuardedBy("mLock")
+    private int mPlaylistVersion = PLAYLIST_VERSION_NONE;
+    @GuardedBy("mLock")
+    private boolean mIsPlaylistResyncRequested;
+    // Non-null if the playlist items are fetched by windows rather than sent in full.
+    @GuardedBy("mLock")
+    @Nullable
+    private PlaylistWindowCache mPlaylistWindowCache;
+    @GuardedBy("mLock")
     private MediaMetadata mPlaylistMetadata;
     @GuardedBy("mLock")
     private @RepeatMode int mRepeatMode;
@@ -526,6 +537,71 @@ class MediaControllerImplBase implements MediaControllerImpl {
         }
     }
 
+    @Override
+    public int getPlaylistSize() {
+        synchronized (mLock) {
+            if (mPlaylistWindowCache != null) {
+                return mPlaylistWindowCache.getPlaylistSize();
+            }
+            return mPlaylist == null ? 0 : mPlaylist.size();
+        }
+    }
+
+    @Override
+    @Nullable
+    public MediaItem getPlaylistItem(int index) {
+        int windowStart;
+        synchronized (mLock) {
+            if (mPlaylistWindowCache == null) {
+                return (mPlaylist == null || index < 0 || index >= mPlaylist.size())
+                        ? null : mPlaylist.get(index);
+            }
+            MediaItem item = mPlaylistWindowCache.getItem(index);
+            if (item != null) {
+                return item;
+            }
+            windowStart = mPlaylistWindowCache.obtainWindowToFetch(index);
+        }
+        if (windowStart >= 0) {
+            requestPlaylistWindow(windowStart);
+        }
+        return null;
+    }
+
+    private void requestPlaylistWindow(int fromIndex) {
+        IMediaSession iSession = getSessionInterfaceIfAble(
+                SessionCommand.COMMAND_CODE_PLAYER_GET_PLAYLIST);
+        int windowSize;
+        int playlistVersion;
+        synchronized (mLock) {
+            if (iSession == null || mPlaylistWindowCache == null) {
+                return;
+            }
+            windowSize = mPlaylistWindowCache.getWindowSize();
+            playlistVersion = mPlaylistWindowCache.getPlaylistVersion();
+        }
+        try {
+            iSession.getPlaylistItems(mControllerStub,
+                    mSequencedFutureManager.obtainNextSequenceNumber(), playlistVersion,
+                    fromIndex, fromIndex + windowSize);
+        } catch (RemoteException e) {
+            Log.w(TAG, "Failed to request the playlist items", e);
+        }
+    }
+
+    private void prefetchPlaylistWindows(int currentMediaItemIndex) {
+        List<Integer> windowStarts;
+        synchronized (mLock) {
+            if (mPlaylistWindowCache == null) {
+                return;
+            }
+            windowStarts = mPlaylistWindowCache.obtainWindowsToPrefetch(currentMediaItemIndex);
+        }
+        for (int i = 0; i < windowStarts.size(); i++) {
+            requestPlaylistWindow(windowStarts.get(i));
+        }
+    }
+
     @Override
     public ListenableFuture<SessionResult> setPlaylist(@NonNull final List<String> list,
             @Nullable final MediaMetadata metadata) {
@@ -850,7 +926,8 @@ class MediaControllerImplBase implements MediaControllerImpl {
         IMediaSession iSession = IMediaSession.Stub.asInterface((IBinder) mToken.getBinder());
         int seq = mSequencedFutureManager.obtainNextSequenceNumber();
         ConnectionRequest request =
-                new ConnectionRequest(mContext.getPackageName(), Process.myPid(), connectionHints);
+                new ConnectionRequest(mContext.getPackageName(), Process.myPid(), connectionHints,
+                        mInstance.mPlaylistCacheSize > 0);
         try {
             iSession.connect(mControllerStub, seq, MediaParcelUtils.toParcelable(request));
         } catch (RemoteException e) {
@@ -896,6 +973,9 @@ class MediaControllerImplBase implements MediaControllerImpl {
                     && currentMediaItemIndex < mPlaylist.size()) {
                 mPlaylist.set(currentMediaItemIndex, item);
             }
+            if (mPlaylistWindowCache != null) {
+                mPlaylistWindowCache.putItem(currentMediaItemIndex, item);
+            }
             // Reset position to zero as a stopgap. media2-session 1.0.x didn't notify new position
             // when current item changes.
             mPositionEventTimeMs = SystemClock.elapsedRealtime();
@@ -910,6 +990,7 @@ class MediaControllerImplBase implements MediaControllerImpl {
                 callback.onCurrentMediaItemChanged(mInstance, item);
             }
         });
+        prefetchPlaylistWindows(currentMediaItemIndex);
     }
 
     void notifyPlayerStateChanges(long eventTimeMs, long positionMs, final int state) {
@@ -967,8 +1048,60 @@ class MediaControllerImplBase implements MediaControllerImpl {
 
     void notifyPlaylistChanges(final List<MediaItem> playlist, final MediaMetadata metadata,
             int currentMediaItemIndex, int previousMediaItemIndex, int nextMediaItemIndex) {
+        notifyPlaylistChanges(/* playlistVersion= */ 0, playlist, metadata, currentMediaItemIndex,
+                previousMediaItemIndex, nextMediaItemIndex);
+    }
+
+    void notifyPlaylistDelta(int playlistVersion, @NonNull int[] operations,
+            @Nullable List<MediaItem> insertedItems, final MediaMetadata metadata,
+            int currentMediaItemIndex, int previousMediaItemIndex, int nextMediaItemIndex) {
+        List<MediaItem> playlist = null;
+        synchronized (mLock) {
+            if (mPlaylist != null && mPlaylistVersion != PLAYLIST_VERSION_NONE
+                    && playlistVersion == mPlaylistVersion + 1) {
+                playlist = PlaylistDelta.apply(mPlaylist, operations, insertedItems == null
+                        ? Collections.<MediaItem>emptyList() : insertedItems);
+            }
+        }
+        if (playlist == null) {
+            // Missed a change. Ignore deltas until the session sends the whole playlist.
+            requestPlaylistResync();
+            return;
+        }
+        notifyPlaylistChanges(playlistVersion, playlist, metadata, currentMediaItemIndex,
+                previousMediaItemIndex, nextMediaItemIndex);
+    }
+
+    /**
+     * Asks the session to send the whole playlist and the current media item again, e.g. when a
+     * playlist delta or a bitmap sent before is missing.
+     */
+    void requestPlaylistResync() {
+        synchronized (mLock) {
+            mPlaylistVersion = PLAYLIST_VERSION_NONE;
+            if (mIsPlaylistResyncRequested) {
+                return;
+            }
+            mIsPlaylistResyncRequested = true;
+        }
+        IMediaSession iSession = mISession;
+        if (iSession != null) {
+            try {
+                iSession.requestPlaylistResync(mControllerStub,
+                        mSequencedFutureManager.obtainNextSequenceNumber());
+            } catch (RemoteException e) {
+                Log.w(TAG, "Failed to request the playlist", e);
+            }
+        }
+    }
+
+    private void notifyPlaylistChanges(int playlistVersion, final List<MediaItem> playlist,
+            final MediaMetadata metadata, int currentMediaItemIndex, int previousMediaItemIndex,
+            int nextMediaItemIndex) {
         synchronized (mLock) {
             mPlaylist = playlist;
+            mPlaylistVersion = playlistVersion;
+            mIsPlaylistResyncRequested = false;
             mPlaylistMetadata = metadata;
             mCurrentMediaItemIndex = currentMediaItemIndex;
             mPreviousMediaItemIndex = previousMediaItemIndex;
@@ -989,9 +1122,67 @@ class MediaControllerImplBase implements MediaControllerImpl {
         });
     }
 
+    void notifyPlaylistSizeChanged(int playlistVersion, int size, @Nullable int[] operations,
+            final MediaMetadata metadata, int currentMediaItemIndex, int previousMediaItemIndex,
+            int nextMediaItemIndex) {
+        synchronized (mLock) {
+            if (mPlaylistWindowCache == null) {
+                return;
+            }
+            // Keep the cached items that are still in the playlist, if the change is known.
+            if (operations == null
+                    || !mPlaylistWindowCache.applyDelta(playlistVersion, operations, size)) {
+                mPlaylistWindowCache.reset(playlistVersion, size);
+            }
+            mIsPlaylistResyncRequested = false;
+            mPlaylistMetadata = metadata;
+            mCurrentMediaItemIndex = currentMediaItemIndex;
+            mPreviousMediaItemIndex = previousMediaItemIndex;
+            mNextMediaItemIndex = nextMediaItemIndex;
+            mPlaylistWindowCache.putItem(currentMediaItemIndex, mCurrentMediaItem);
+        }
+        mInstance.notifyAllControllerCallbacks(new ControllerCallbackRunnable() {
+            @Override
+            public void run(@NonNull ControllerCallback callback) {
+                if (!mInstance.isConnected()) {
+                    return;
+                }
+                callback.onPlaylistChanged(mInstance, null, metadata);
+            }
+        });
+        prefetchPlaylistWindows(currentMediaItemIndex);
+    }
+
+    void notifyPlaylistItems(int playlistVersion, final int fromIndex,
+            @NonNull List<MediaItem> items) {
+        final int toIndex;
+        synchronized (mLock) {
+            // Items fetched before the playlist changed are at the indices of the previous one.
+            if (mPlaylistWindowCache == null
+                    || !mPlaylistWindowCache.putItems(playlistVersion, fromIndex, items)) {
+                return;
+            }
+            toIndex = Math.min(fromIndex + items.size(), mPlaylistWindowCache.getPlaylistSize());
+        }
+        if (toIndex <= fromIndex) {
+            return;
+        }
+        mInstance.notifyAllControllerCallbacks(new ControllerCallbackRunnable() {
+            @Override
+            public void run(@NonNull ControllerCallback callback) {
+                if (!mInstance.isConnected()) {
+                    return;
+                }
+                callback.onPlaylistItemsLoaded(mInstance, fromIndex, toIndex);
+            }
+        });
+    }
+
     void notifyPlaylistMetadataChanges(final MediaMetadata metadata) {
         synchronized (mLock) {
             mPlaylistMetadata = metadata;
+            // Sent instead of the playlist, if the controller isn't allowed to get the playlist.
+            mIsPlaylistResyncRequested = false;
         }
         mInstance.notifyAllControllerCallbacks(new ControllerCallbackRunnable() {
             @Override
@@ -1206,7 +1397,9 @@ class MediaControllerImplBase implements MediaControllerImpl {
             final TrackInfo selectedSubtitleTrack,
             final TrackInfo selectedMetadataTrack,
             final MediaMetadata playlistMetadata,
-            final int bufferingState) {
+            final int bufferingState,
+            final boolean isPlaylistWindowed,
+            final int playlistSize) {
         if (DEBUG) {
             Log.d(TAG, "onConnectedNotLocked sessionBinder=" + sessionBinder
                     + ", allowedCommands=" + allowedCommands);
@@ -1253,6 +1446,11 @@ class MediaControllerImplBase implements MediaControllerImpl {
                 mSelectedTracks.put(TrackInfo.MEDIA_TRACK_TYPE_METADATA, selectedMetadataTrack);
                 mPlaylistMetadata = playlistMetadata;
                 mBufferingState = bufferingState;
+                if (isPlaylistWindowed && mInstance.mPlaylistCacheSize > 0) {
+                    mPlaylistWindowCache = new PlaylistWindowCache(mInstance.mPlaylistCacheSize);
+                    mPlaylistWindowCache.reset(/* playlistVersion= */ 0, playlistSize);
+                    mPlaylistWindowCache.putItem(currentMediaItemIndex, currentMediaItem);
+                }
                 try {
                     // Implementation for the local binder is no-op,
                     // so can be used without worrying about deadlock.
@@ -1274,6 +1472,7 @@ class MediaControllerImplBase implements MediaControllerImpl {
                     callback.onConnected(mInstance, allowedCommands);
                 }
             });
+            prefetchPlaylistWindows(currentMediaItemIndex);
         } finally {
             if (close) {
                 // Trick to call release() without holding the lock, to prevent potential deadlock
@@ -1371,7 +1570,7 @@ class MediaControllerImplBase implements MediaControllerImpl {
                     return;
                 }
                 ConnectionRequest request = new ConnectionRequest(getContext().getPackageName(),
-                        Process.myPid(), mConnectionHints);
+                        Process.myPid(), mConnectionHints, mInstance.mPlaylistCacheSize > 0);
                 iService.connect(mControllerStub, MediaParcelUtils.toParcelable(request));
                 connectionRequested = true;
             } catch (RemoteException e) {
@@ -592,6 +592,30 @@ class MediaControllerImplLegacy implements MediaController.MediaControllerImpl {
         }
     }
 
+    @Override
+    public int getPlaylistSize() {
+        synchronized (mLock) {
+            if (!mConnected) {
+                Log.w(TAG, "Session isn't active", new IllegalStateException());
+                return 0;
+            }
+            return mPlaylist == null ? 0 : mPlaylist.size();
+        }
+    }
+
+    @Override
+    @Nullable
+    public MediaItem getPlaylistItem(int index) {
+        synchronized (mLock) {
+            if (!mConnected) {
+                Log.w(TAG, "Session isn't active", new IllegalStateException());
+                return null;
+            }
+            return (mPlaylist == null || index < 0 || index >= mPlaylist.size())
+                    ? null : mPlaylist.get(index);
+        }
+    }
+
     @Override
     public ListenableFuture<SessionResult> setPlaylist(@NonNull List<String> list,
             @Nullable MediaMetadata metadata) {
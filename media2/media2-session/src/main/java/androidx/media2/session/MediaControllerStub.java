@@ -21,6 +21,8 @@ import android.os.Bundle;
 import android.text.TextUtils;
 import android.util.Log;
 
+import androidx.annotation.Nullable;
+import androidx.media2.common.BitmapTransferCache;
 import androidx.media2.common.MediaItem;
 import androidx.media2.common.MediaMetadata;
 import androidx.media2.common.MediaParcelUtils;
@@ -41,9 +43,12 @@ class MediaControllerStub extends IMediaController.Stub {
     private static final boolean DEBUG = true; // TODO(jaewan): Change
 
     private final WeakReference<MediaControllerImplBase> mController;
+    // Mirrors the bitmaps that the session has sent, so the session can send references instead.
+    private final BitmapTransferCache.Receiver mBitmapReceiver;
 
     MediaControllerStub(MediaControllerImplBase controller) {
         mController = new WeakReference<>(controller);
+        mBitmapReceiver = new BitmapTransferCache.Receiver(BitmapTransferCache.DEFAULT_CAPACITY);
     }
 
     @Override
@@ -51,8 +56,12 @@ class MediaControllerStub extends IMediaController.Stub {
         if (sessionResult == null) {
             return;
         }
-        dispatchControllerTask(controller ->
-                controller.setFutureResult(seq, MediaParcelUtils.fromParcelable(sessionResult)));
+        dispatchControllerTask(new ControllerTask() {
+            @Override
+            public void run(MediaControllerImplBase controller) {
+                controller.setFutureResult(seq, MediaParcelUtils.fromParcelable(sessionResult));
+            }
+        });
     }
 
     @Override
@@ -60,8 +69,12 @@ class MediaControllerStub extends IMediaController.Stub {
         if (libraryResult == null) {
             return;
         }
-        dispatchBrowserTask(browser ->
-                browser.setFutureResult(seq, MediaParcelUtils.fromParcelable(libraryResult)));
+        dispatchBrowserTask(new BrowserTask() {
+            @Override
+            public void run(MediaBrowserImplBase browser) {
+                browser.setFutureResult(seq, MediaParcelUtils.fromParcelable(libraryResult));
+            }
+        });
     }
 
     @Override
@@ -70,11 +83,12 @@ class MediaControllerStub extends IMediaController.Stub {
         if (item == null) {
             return;
         }
+        final MediaItem itemObj = MediaParcelUtils.fromParcelable(item);
+        decodeBitmaps(itemObj);
         dispatchControllerTask(new ControllerTask() {
             @Override
             public void run(MediaControllerImplBase controller) {
-                controller.notifyCurrentMediaItemChanged(
-                        (MediaItem) MediaParcelUtils.fromParcelable(item), currentIdx, previousIdx,
+                controller.notifyCurrentMediaItemChanged(itemObj, currentIdx, previousIdx,
                         nextIdx);
             }
         });
@@ -108,10 +122,11 @@ class MediaControllerStub extends IMediaController.Stub {
         if (item == null) {
             return;
         }
+        final MediaItem itemObj = MediaParcelUtils.fromParcelable(item);
+        decodeBitmaps(itemObj);
         dispatchControllerTask(new ControllerTask() {
             @Override
             public void run(MediaControllerImplBase controller) {
-                MediaItem itemObj = MediaParcelUtils.fromParcelable(item);
                 if (itemObj == null) {
                     Log.w(TAG, "onBufferingStateChanged(): Ignoring null item");
                     return;
@@ -126,14 +141,16 @@ class MediaControllerStub extends IMediaController.Stub {
     public void onPlaylistChanged(int seq, final ParcelImplListSlice listSlice,
             final ParcelImpl metadata, final int currentIdx, final int previousIdx,
             final int nextIdx) {
+        // Decodes the bitmaps first, so they're kept in the same order as the session sent them.
+        final List<MediaItem> playlist =
+                MediaUtils.convertParcelImplListSliceToMediaItemList(listSlice);
+        decodeBitmaps(playlist, listSlice);
         if (metadata == null) {
             return;
         }
         dispatchControllerTask(new ControllerTask() {
             @Override
             public void run(MediaControllerImplBase controller) {
-                List<MediaItem> playlist =
-                        MediaUtils.convertParcelImplListSliceToMediaItemList(listSlice);
                 controller.notifyPlaylistChanges(playlist,
                         (MediaMetadata) MediaParcelUtils.fromParcelable(metadata), currentIdx,
                         previousIdx, nextIdx);
@@ -141,6 +158,65 @@ class MediaControllerStub extends IMediaController.Stub {
         });
     }
 
+    @Override
+    public void onPlaylistChangedDelta(int seq, final int version, final int[] operations,
+            final ParcelImplListSlice insertedItems, final ParcelImpl metadata,
+            final int currentIdx, final int previousIdx, final int nextIdx) {
+        final List<MediaItem> items =
+                MediaUtils.convertParcelImplListSliceToMediaItemList(insertedItems);
+        decodeBitmaps(items, insertedItems);
+        if (operations == null || metadata == null) {
+            return;
+        }
+        dispatchControllerTask(new ControllerTask() {
+            @Override
+            public void run(MediaControllerImplBase controller) {
+                controller.notifyPlaylistDelta(version, operations, items,
+                        (MediaMetadata) MediaParcelUtils.fromParcelable(metadata), currentIdx,
+                        previousIdx, nextIdx);
+            }
+        });
+    }
+
+    @Override
+    public void onPlaylistSizeChanged(int seq, final int version, final int size,
+            final int[] operations, final ParcelImpl metadata, final int currentIdx,
+            final int previousIdx, final int nextIdx) {
+        if (metadata == null) {
+            return;
+        }
+        dispatchControllerTask(new ControllerTask() {
+            @Override
+            public void run(MediaControllerImplBase controller) {
+                controller.notifyPlaylistSizeChanged(version, size, operations,
+                        (MediaMetadata) MediaParcelUtils.fromParcelable(metadata), currentIdx,
+                        previousIdx, nextIdx);
+            }
+        });
+    }
+
+    @Override
+    public void onPlaylistItems(int seq, final int version, final int fromIndex,
+            final ParcelImplListSlice items) {
+        if (items == null) {
+            return;
+        }
+        final List<MediaItem> itemList =
+                MediaUtils.convertParcelImplListSliceToMediaItemList(items);
+        decodeBitmaps(itemList, items);
+        dispatchControllerTask(new ControllerTask() {
+            @Override
+            public void run(MediaControllerImplBase controller) {
+                controller.notifyPlaylistItems(version, fromIndex, itemList);
+            }
+        });
+    }
+
+    @Override
+    public void onBitmapCacheReset(int seq) {
+        mBitmapReceiver.clear();
+    }
+
     @Override
     public void onPlaylistMetadataChanged(int seq, final ParcelImpl metadata)
             throws RuntimeException {
@@ -297,7 +373,8 @@ class MediaControllerStub extends IMediaController.Stub {
                     result.getTokenExtras(), result.getVideoSize(), result.getTracks(),
                     result.getSelectedVideoTrack(), result.getSelectedAudioTrack(),
                     result.getSelectedSubtitleTrack(), result.getSelectedMetadataTrack(),
-                    result.getPlaylistMetadata(), result.getBufferingState());
+                    result.getPlaylistMetadata(), result.getBufferingState(),
+                    result.isPlaylistWindowed(), result.getPlaylistSize());
         } finally {
             Binder.restoreCallingIdentity(token);
         }
@@ -490,6 +567,36 @@ class MediaControllerStub extends IMediaController.Stub {
         mController.clear();
     }
 
+    private void decodeBitmaps(@Nullable List<MediaItem> items,
+            @Nullable ParcelImplListSlice listSlice) {
+        if (items == null) {
+            return;
+        }
+        boolean isMissed = false;
+        for (int i = 0; i < items.size(); i++) {
+            isMissed |= !mBitmapReceiver.decode(items.get(i));
+        }
+        // The session encoded the items that weren't received, so the caches no longer match.
+        if (isMissed || (listSlice != null && listSlice.isTruncated())) {
+            requestPlaylistResync();
+        }
+    }
+
+    private void decodeBitmaps(@Nullable MediaItem item) {
+        if (!mBitmapReceiver.decode(item)) {
+            requestPlaylistResync();
+        }
+    }
+
+    private void requestPlaylistResync() {
+        dispatchControllerTask(new ControllerTask() {
+            @Override
+            public void run(MediaControllerImplBase controller) {
+                controller.requestPlaylistResync();
+            }
+        });
+    }
+
     private void dispatchControllerTask(ControllerTask task) {
         final long token = Binder.clearCallingIdentity();
         try {
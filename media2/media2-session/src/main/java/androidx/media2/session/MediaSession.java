@@ -451,12 +451,13 @@ public class MediaSession implements Closeable {
      * @param pid controller pid
      * @param uid controller uid
      * @param connectionHints controller connection hints
+     * @param isPlaylistWindowed whether the controller fetches the playlist items by windows
      */
     void handleControllerConnectionFromService(IMediaController controller,
             int controllerVersion, String packageName, int pid, int uid,
-            @Nullable Bundle connectionHints) {
+            @Nullable Bundle connectionHints, boolean isPlaylistWindowed) {
         mImpl.connectFromService(controller, controllerVersion, packageName, pid, uid,
-                connectionHints);
+                connectionHints, isPlaylistWindowed);
     }
 
     IBinder getLegacyBrowerServiceBinder() {
@@ -1210,6 +1211,12 @@ public class MediaSession implements Closeable {
                 int nextIdx) throws RemoteException;
         abstract void onPlaylistMetadataChanged(int seq, @Nullable MediaMetadata metadata)
                 throws RemoteException;
+        // Called when the metadata of the item at index changed, with the same playlist.
+        void onPlaylistItemMetadataChanged(int seq, @NonNull List<MediaItem> playlist, int index,
+                @Nullable MediaMetadata metadata, int currentIdx, int previousIdx, int nextIdx)
+                throws RemoteException {
+            onPlaylistChanged(seq, playlist, metadata, currentIdx, previousIdx, nextIdx);
+        }
         abstract void onShuffleModeChanged(int seq, @SessionPlayer.ShuffleMode int shuffleMode,
                 int currentIdx, int previousIdx, int nextIdx) throws RemoteException;
         abstract void onRepeatModeChanged(int seq, @SessionPlayer.RepeatMode int repeatMode,
@@ -1269,7 +1276,7 @@ public class MediaSession implements Closeable {
         PendingIntent getSessionActivity();
         IBinder getLegacyBrowserServiceBinder();
         void connectFromService(IMediaController caller, int controllerVersion, String packageName,
-                int pid, int uid, @Nullable Bundle connectionHints);
+                int pid, int uid, @Nullable Bundle connectionHints, boolean isPlaylistWindowed);
     }
 
     /**
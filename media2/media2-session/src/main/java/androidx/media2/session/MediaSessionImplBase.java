@@ -978,8 +978,10 @@ class MediaSessionImplBase implements MediaSession.MediaSessionImpl {
 
     @Override
     public void connectFromService(IMediaController caller, int controllerVersion,
-            String packageName, int pid, int uid, @Nullable Bundle connectionHints) {
-        mSessionStub.connect(caller, controllerVersion, packageName, pid, uid, connectionHints);
+            String packageName, int pid, int uid, @Nullable Bundle connectionHints,
+            boolean isPlaylistWindowed) {
+        mSessionStub.connect(caller, controllerVersion, packageName, pid, uid, connectionHints,
+                isPlaylistWindowed);
     }
 
     /**
@@ -1609,10 +1611,11 @@ class MediaSessionImplBase implements MediaSession.MediaSessionImpl {
             }
             for (int i = 0; i < list.size(); i++) {
                 if (item.equals(list.get(i))) {
+                    final int index = i;
                     session.dispatchRemoteControllerTaskWithoutReturn(new RemoteControllerTask() {
                         @Override
                         public void run(ControllerCb callback, int seq) throws RemoteException {
-                            callback.onPlaylistChanged(seq, list,
+                            callback.onPlaylistItemMetadataChanged(seq, list, index,
                                     session.getPlaylistMetadata(),
                                     session.getCurrentMediaItemIndex(),
                                     session.getPreviousMediaItemIndex(),
@@ -247,6 +247,8 @@ class MediaSessionServiceImplBase implements MediaSessionServiceImpl {
             final String packageName = connectionRequest == null ? null : request.getPackageName();
             final Bundle connectionHints = connectionRequest == null ? null :
                     request.getConnectionHints();
+            final boolean isPlaylistWindowed = connectionRequest != null
+                    && request.isPlaylistWindowed();
             final RemoteUserInfo remoteUserInfo = new RemoteUserInfo(packageName, pid, uid);
             final boolean isTrusted = mMediaSessionManager.isTrustedForMediaControl(remoteUserInfo);
             try {
@@ -293,7 +295,7 @@ class MediaSessionServiceImplBase implements MediaSessionServiceImpl {
 
                                 session.handleControllerConnectionFromService(caller,
                                         request.getVersion(), packageName,
-                                        pid, uid, connectionHints);
+                                        pid, uid, connectionHints, isPlaylistWindowed);
                             } catch (Exception e) {
                                 // Don't propagate exception in service to the controller.
                                 Log.w(TAG, "Failed to add a session to session service", e);
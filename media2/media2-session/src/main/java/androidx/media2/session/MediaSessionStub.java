@@ -35,10 +35,12 @@ import android.util.Log;
 import android.util.SparseArray;
 import android.view.Surface;
 
+import androidx.annotation.GuardedBy;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.core.util.ObjectsCompat;
 import androidx.media.MediaSessionManager;
+import androidx.media2.common.BitmapTransferCache;
 import androidx.media2.common.MediaItem;
 import androidx.media2.common.MediaMetadata;
 import androidx.media2.common.MediaParcelUtils;
@@ -318,12 +320,13 @@ class MediaSessionStub extends IMediaSession.Stub {
 
     void connect(final IMediaController caller, final int controllerVersion,
             final String callingPackage, final int pid, final int uid,
-            @Nullable Bundle connectionHints) {
+            @Nullable Bundle connectionHints, final boolean isPlaylistWindowed) {
         MediaSessionManager.RemoteUserInfo remoteUserInfo =
                 new MediaSessionManager.RemoteUserInfo(callingPackage, pid, uid);
         final ControllerInfo controllerInfo = new ControllerInfo(remoteUserInfo, controllerVersion,
                 mSessionManager.isTrustedForMediaControl(remoteUserInfo),
-                new Controller2Cb(caller), connectionHints);
+                new Controller2Cb(caller, controllerVersion, isPlaylistWindowed),
+                connectionHints);
         MediaSessionImpl sessionImpl = mSessionImpl.get();
         if (sessionImpl == null || sessionImpl.isClosed()) {
             return;
@@ -372,7 +375,12 @@ class MediaSessionStub extends IMediaSession.Stub {
                     //       because IMediaController is oneway (i.e. async call) and Stub will
                     //       use thread poll for incoming calls.
                     ConnectionResult state = new ConnectionResult(
-                            MediaSessionStub.this, sessionImpl, allowedCommands);
+                            MediaSessionStub.this, sessionImpl, allowedCommands,
+                            isPlaylistWindowed);
+                    if (state.isPlaylistWindowed()) {
+                        ((Controller2Cb) controllerInfo.getControllerCb())
+                                .setPlaylistWindowBase(sessionImpl.getPlaylist());
+                    }
 
                     // Double check if session is still there, because close() can be called in
                     // another thread.
@@ -442,7 +450,7 @@ class MediaSessionStub extends IMediaSession.Stub {
         final int pid = (callingPid != 0) ? callingPid : request.getPid();
         try {
             connect(caller, request.getVersion(), request.getPackageName(), pid, uid,
-                    request.getConnectionHints());
+                    request.getConnectionHints(), request.isPlaylistWindowed());
         } finally {
             Binder.restoreCallingIdentity(token);
         }
@@ -775,6 +783,99 @@ class MediaSessionStub extends IMediaSession.Stub {
                 });
     }
 
+    @Override
+    public void requestPlaylistResync(final IMediaController caller, final int seq) {
+        if (caller == null) {
+            return;
+        }
+        final long token = Binder.clearCallingIdentity();
+        try {
+            final MediaSessionImpl sessionImpl = mSessionImpl.get();
+            if (sessionImpl == null || sessionImpl.isClosed()) {
+                return;
+            }
+            final ControllerInfo controller = mConnectedControllersManager.getController(
+                    caller.asBinder());
+            if (controller == null) {
+                return;
+            }
+            sessionImpl.getCallbackExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (!mConnectedControllersManager.isConnected(controller)
+                            || !(controller.getControllerCb() instanceof Controller2Cb)) {
+                        return;
+                    }
+                    Controller2Cb controllerCb = (Controller2Cb) controller.getControllerCb();
+                    try {
+                        controllerCb.resetPlaylistDelta(seq);
+                        controllerCb.onPlaylistChanged(seq, sessionImpl.getPlaylist(),
+                                sessionImpl.getPlaylistMetadata(),
+                                sessionImpl.getCurrentMediaItemIndex(),
+                                sessionImpl.getPreviousMediaItemIndex(),
+                                sessionImpl.getNextMediaItemIndex());
+                        // The bitmaps of the current item were reset as well.
+                        MediaItem currentItem = sessionImpl.getCurrentMediaItem();
+                        if (currentItem != null) {
+                            controllerCb.onCurrentMediaItemChanged(seq, currentItem,
+                                    sessionImpl.getCurrentMediaItemIndex(),
+                                    sessionImpl.getPreviousMediaItemIndex(),
+                                    sessionImpl.getNextMediaItemIndex());
+                            controllerCb.onBufferingStateChanged(seq, currentItem,
+                                    sessionImpl.getBufferingState(),
+                                    sessionImpl.getBufferedPosition(),
+                                    SystemClock.elapsedRealtime(),
+                                    sessionImpl.getCurrentPosition());
+                        }
+                    } catch (RemoteException e) {
+                        Log.w(TAG, "Exception in " + controller.toString(), e);
+                    }
+                }
+            });
+        } finally {
+            Binder.restoreCallingIdentity(token);
+        }
+    }
+
+    @Override
+    public void getPlaylistItems(final IMediaController caller, final int seq,
+            final int playlistVersion, final int fromIndex, final int toIndex) {
+        if (caller == null) {
+            return;
+        }
+        final long token = Binder.clearCallingIdentity();
+        try {
+            final MediaSessionImpl sessionImpl = mSessionImpl.get();
+            if (sessionImpl == null || sessionImpl.isClosed()) {
+                return;
+            }
+            final ControllerInfo controller = mConnectedControllersManager.getController(
+                    caller.asBinder());
+            if (controller == null) {
+                return;
+            }
+            sessionImpl.getCallbackExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (!mConnectedControllersManager.isConnected(controller)
+                            || !(controller.getControllerCb() instanceof Controller2Cb)
+                            || !mConnectedControllersManager.isAllowedCommand(controller,
+                                    SessionCommand.COMMAND_CODE_PLAYER_GET_PLAYLIST)) {
+                        return;
+                    }
+                    try {
+                        ((Controller2Cb) controller.getControllerCb()).sendPlaylistWindow(seq,
+                                playlistVersion, fromIndex, toIndex);
+                    } catch (RemoteException e) {
+                        Log.w(TAG, "Exception in " + controller.toString(), e);
+                    }
+                }
+            });
+        } finally {
+            Binder.restoreCallingIdentity(token);
+        }
+    }
+
     @Override
     public void updatePlaylistMetadata(final IMediaController caller, int seq,
             final ParcelImpl metadata) {
@@ -1203,9 +1304,34 @@ class MediaSessionStub extends IMediaSession.Stub {
     final class Controller2Cb extends ControllerCb {
         // TODO: Drop 'Callback' from the name.
         private final IMediaController mIControllerCallback;
-
-        Controller2Cb(@NonNull IMediaController callback) {
+        private final int mControllerVersion;
+        // Whether the controller fetches the playlist items by windows.
+        private final boolean mIsPlaylistWindowed;
+        // Also keeps the media items encoded by mBitmapSender in the order they're sent.
+        private final Object mPlaylistLock = new Object();
+        // Null if the controller can't receive the references to the bitmaps sent before.
+        @GuardedBy("mPlaylistLock")
+        @Nullable
+        private final BitmapTransferCache.Sender mBitmapSender;
+
+        // Last playlist sent to the controller that the next playlist delta is computed from, or
+        // null if the next playlist should be sent in full. For a controller fetching the items
+        // by windows, the playlist that the windows are read from.
+        @GuardedBy("mPlaylistLock")
+        private List<MediaItem> mLastPlaylist;
+        // Version of mLastPlaylist, that the controller tags its requests for windows with.
+        @GuardedBy("mPlaylistLock")
+        private int mPlaylistVersion;
+
+        Controller2Cb(@NonNull IMediaController callback, int controllerVersion,
+                boolean isPlaylistWindowed) {
             mIControllerCallback = callback;
+            mControllerVersion = controllerVersion;
+            mIsPlaylistWindowed = isPlaylistWindowed && controllerVersion >= MediaUtils.VERSION_2;
+            // Bitmaps aren't copied within the same process.
+            mBitmapSender = controllerVersion >= MediaUtils.VERSION_3
+                    && !(callback.asBinder() instanceof Binder)
+                    ? new BitmapTransferCache.Sender(BitmapTransferCache.DEFAULT_CAPACITY) : null;
         }
 
         @NonNull
@@ -1345,8 +1471,15 @@ class MediaSessionStub extends IMediaSession.Stub {
         @Override
         void onBufferingStateChanged(int seq, @NonNull MediaItem item, int bufferingState,
                 long bufferedPositionMs, long eventTimeMs, long positionMs) throws RemoteException {
-            mIControllerCallback.onBufferingStateChanged(seq, MediaParcelUtils.toParcelable(item),
-                    bufferingState, bufferedPositionMs, eventTimeMs, positionMs);
+            synchronized (mPlaylistLock) {
+                try {
+                    mIControllerCallback.onBufferingStateChanged(seq, encodeItemLocked(item),
+                            bufferingState, bufferedPositionMs, eventTimeMs, positionMs);
+                } catch (RemoteException e) {
+                    resetBitmapsAfterFailureLocked(seq);
+                    throw e;
+                }
+            }
         }
 
         @Override
@@ -1358,8 +1491,15 @@ class MediaSessionStub extends IMediaSession.Stub {
         @Override
         void onCurrentMediaItemChanged(int seq, MediaItem item, int currentIdx, int previousIdx,
                 int nextIdx) throws RemoteException {
-            mIControllerCallback.onCurrentMediaItemChanged(seq, MediaParcelUtils.toParcelable(item),
-                    currentIdx, previousIdx, nextIdx);
+            synchronized (mPlaylistLock) {
+                try {
+                    mIControllerCallback.onCurrentMediaItemChanged(seq, encodeItemLocked(item),
+                            currentIdx, previousIdx, nextIdx);
+                } catch (RemoteException e) {
+                    resetBitmapsAfterFailureLocked(seq);
+                    throw e;
+                }
+            }
         }
 
         @Override
@@ -1367,11 +1507,20 @@ class MediaSessionStub extends IMediaSession.Stub {
                 int currentIdx, int previousIdx, int nextIdx) throws RemoteException {
             ControllerInfo controller = mConnectedControllersManager.getController(
                     getCallbackBinder());
-            if (mConnectedControllersManager.isAllowedCommand(controller,
+            if (mIsPlaylistWindowed && mConnectedControllersManager.isAllowedCommand(controller,
                     SessionCommand.COMMAND_CODE_PLAYER_GET_PLAYLIST)) {
-                mIControllerCallback.onPlaylistChanged(seq,
-                        MediaUtils.convertMediaItemListToParcelImplListSlice(playlist),
-                        MediaParcelUtils.toParcelable(metadata), currentIdx, previousIdx, nextIdx);
+                synchronized (mPlaylistLock) {
+                    sendPlaylistSizeLocked(seq, playlist,
+                            PlaylistDelta.compute(mLastPlaylist, playlist), metadata, currentIdx,
+                            previousIdx, nextIdx);
+                }
+            } else if (mConnectedControllersManager.isAllowedCommand(controller,
+                    SessionCommand.COMMAND_CODE_PLAYER_GET_PLAYLIST)) {
+                synchronized (mPlaylistLock) {
+                    sendPlaylistLocked(seq, playlist,
+                            PlaylistDelta.compute(mLastPlaylist, playlist), metadata, currentIdx,
+                            previousIdx, nextIdx);
+                }
             } else if (mConnectedControllersManager.isAllowedCommand(controller,
                     SessionCommand.COMMAND_CODE_PLAYER_GET_PLAYLIST_METADATA)) {
                 mIControllerCallback.onPlaylistMetadataChanged(seq,
@@ -1379,6 +1528,178 @@ class MediaSessionStub extends IMediaSession.Stub {
             }
         }
 
+        @Override
+        void onPlaylistItemMetadataChanged(int seq, @NonNull List<MediaItem> playlist, int index,
+                @Nullable MediaMetadata metadata, int currentIdx, int previousIdx, int nextIdx)
+                throws RemoteException {
+            ControllerInfo controller = mConnectedControllersManager.getController(
+                    getCallbackBinder());
+            if (!mConnectedControllersManager.isAllowedCommand(controller,
+                    SessionCommand.COMMAND_CODE_PLAYER_GET_PLAYLIST)) {
+                onPlaylistChanged(seq, playlist, metadata, currentIdx, previousIdx, nextIdx);
+                return;
+            }
+            if (mIsPlaylistWindowed) {
+                synchronized (mPlaylistLock) {
+                    if (index >= 0 && index < playlist.size()
+                            && ObjectsCompat.equals(mLastPlaylist, playlist)) {
+                        sendPlaylistItemsLocked(seq, index, playlist.subList(index, index + 1));
+                    } else {
+                        sendPlaylistSizeLocked(seq, playlist,
+                                PlaylistDelta.compute(mLastPlaylist, playlist), metadata,
+                                currentIdx, previousIdx, nextIdx);
+                    }
+                }
+                return;
+            }
+            synchronized (mPlaylistLock) {
+                // The item is changed in place, so it can't be found by comparing the playlists.
+                PlaylistDelta delta;
+                if (index >= 0 && index < playlist.size() && playlist.get(index) != null
+                        && ObjectsCompat.equals(mLastPlaylist, playlist)) {
+                    delta = PlaylistDelta.replaceItem(index, playlist.get(index));
+                } else {
+                    delta = PlaylistDelta.compute(mLastPlaylist, playlist);
+                }
+                sendPlaylistLocked(seq, playlist, delta, metadata, currentIdx, previousIdx,
+                        nextIdx);
+            }
+        }
+
+        /**
+         * Sets the playlist that the controller fetching the items by windows got the size of
+         * when it connected.
+         */
+        void setPlaylistWindowBase(@Nullable List<MediaItem> playlist) {
+            synchronized (mPlaylistLock) {
+                // Unless a change was already sent.
+                if (mPlaylistVersion == 0) {
+                    mLastPlaylist = playlist == null ? new ArrayList<MediaItem>()
+                            : new ArrayList<>(playlist);
+                }
+            }
+        }
+
+        /**
+         * Sends the items from {@code fromIndex} to {@code toIndex} of the last playlist sent to
+         * the controller, if the controller asked them for that version of the playlist.
+         * Otherwise the controller is already being told about the change, and will ask again.
+         */
+        void sendPlaylistWindow(int seq, int playlistVersion, int fromIndex, int toIndex)
+                throws RemoteException {
+            synchronized (mPlaylistLock) {
+                if (mLastPlaylist == null || playlistVersion != mPlaylistVersion) {
+                    return;
+                }
+                int size = mLastPlaylist.size();
+                int from = Math.max(0, Math.min(fromIndex, size));
+                int to = Math.max(from, Math.min(toIndex, size));
+                sendPlaylistItemsLocked(seq, from, mLastPlaylist.subList(from, to));
+            }
+        }
+
+        @GuardedBy("mPlaylistLock")
+        private void sendPlaylistItemsLocked(int seq, int fromIndex,
+                @NonNull List<MediaItem> items) throws RemoteException {
+            try {
+                mIControllerCallback.onPlaylistItems(seq, mPlaylistVersion, fromIndex,
+                        MediaUtils.convertMediaItemListToParcelImplListSlice(items,
+                                mBitmapSender));
+            } catch (RemoteException e) {
+                resetBitmapsAfterFailureLocked(seq);
+                throw e;
+            }
+        }
+
+        /**
+         * Tells the controller fetching the items by windows the new size of the playlist, and
+         * how to move the items it cached, if known.
+         */
+        @GuardedBy("mPlaylistLock")
+        private void sendPlaylistSizeLocked(int seq, @Nullable List<MediaItem> playlist,
+                @Nullable PlaylistDelta delta, @Nullable MediaMetadata metadata, int currentIdx,
+                int previousIdx, int nextIdx) throws RemoteException {
+            mPlaylistVersion++;
+            mLastPlaylist = playlist == null ? new ArrayList<MediaItem>()
+                    : new ArrayList<>(playlist);
+            mIControllerCallback.onPlaylistSizeChanged(seq, mPlaylistVersion,
+                    mLastPlaylist.size(), delta == null ? null : delta.getOperations(),
+                    MediaParcelUtils.toParcelable(metadata), currentIdx, previousIdx, nextIdx);
+        }
+
+        /**
+         * Makes the next playlist change be sent in full with all the bitmaps, e.g. when the
+         * controller lost track of the playlist deltas or the bitmaps.
+         */
+        void resetPlaylistDelta(int seq) throws RemoteException {
+            synchronized (mPlaylistLock) {
+                mLastPlaylist = null;
+                if (mBitmapSender != null) {
+                    mBitmapSender.clear();
+                    mIControllerCallback.onBitmapCacheReset(seq);
+                }
+            }
+        }
+
+        /**
+         * Forgets the bitmaps sent so far, and tells the controller to do the same. Called when
+         * sending encoded items failed, as the controller may not have received their bitmaps.
+         */
+        @GuardedBy("mPlaylistLock")
+        private void resetBitmapsAfterFailureLocked(int seq) {
+            if (mBitmapSender == null) {
+                return;
+            }
+            mBitmapSender.clear();
+            try {
+                mIControllerCallback.onBitmapCacheReset(seq);
+            } catch (RemoteException e) {
+                // The controller is gone, or will request a resync when it misses a bitmap.
+            }
+        }
+
+        @GuardedBy("mPlaylistLock")
+        @Nullable
+        private ParcelImpl encodeItemLocked(@Nullable MediaItem item) {
+            if (item != null && mBitmapSender != null) {
+                item = mBitmapSender.encode(item);
+            }
+            return MediaParcelUtils.toParcelable(item);
+        }
+
+        @GuardedBy("mPlaylistLock")
+        private void sendPlaylistLocked(int seq, @Nullable List<MediaItem> playlist,
+                @Nullable PlaylistDelta delta, @Nullable MediaMetadata metadata, int currentIdx,
+                int previousIdx, int nextIdx) throws RemoteException {
+            boolean supportsDelta = mControllerVersion >= MediaUtils.VERSION_1;
+            // Forget the base first, so the playlist is sent in full again if this fails.
+            mLastPlaylist = null;
+            try {
+                if (delta == null || !supportsDelta) {
+                    mIControllerCallback.onPlaylistChanged(seq,
+                            MediaUtils.convertMediaItemListToParcelImplListSlice(playlist,
+                                    mBitmapSender),
+                            MediaParcelUtils.toParcelable(metadata), currentIdx, previousIdx,
+                            nextIdx);
+                    mPlaylistVersion = 0;
+                } else {
+                    mIControllerCallback.onPlaylistChangedDelta(seq, mPlaylistVersion + 1,
+                            delta.getOperations(),
+                            MediaUtils.convertMediaItemListToParcelImplListSlice(
+                                    delta.getInsertedItems(), mBitmapSender),
+                            MediaParcelUtils.toParcelable(metadata), currentIdx, previousIdx,
+                            nextIdx);
+                    mPlaylistVersion++;
+                }
+            } catch (RemoteException e) {
+                resetBitmapsAfterFailureLocked(seq);
+                throw e;
+            }
+            if (supportsDelta && playlist != null) {
+                mLastPlaylist = new ArrayList<>(playlist);
+            }
+        }
+
         @Override
         void onPlaylistMetadataChanged(int seq, MediaMetadata metadata) throws RemoteException {
             ControllerInfo controller = mConnectedControllersManager.getController(
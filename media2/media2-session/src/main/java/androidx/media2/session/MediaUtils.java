@@ -68,6 +68,7 @@ import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
 import androidx.media.AudioAttributesCompat;
 import androidx.media.MediaBrowserServiceCompat.BrowserRoot;
+import androidx.media2.common.BitmapTransferCache;
 import androidx.media2.common.MediaItem;
 import androidx.media2.common.MediaMetadata;
 import androidx.media2.common.MediaParcelUtils;
@@ -111,8 +112,17 @@ public class MediaUtils {
     // Initial version for all Media2 APIs.
     public static final int VERSION_0 = 0;
 
+    // Adds playlist delta updates from the session to the controllers.
+    public static final int VERSION_1 = 1;
+
+    // Adds fetching the playlist items by windows for the controllers asking for it.
+    public static final int VERSION_2 = 2;
+
+    // Adds references to the bitmaps already sent to the controller.
+    public static final int VERSION_3 = 3;
+
     // Current version for all Media2 APIs.
-    public static final int CURRENT_VERSION = VERSION_0;
+    public static final int CURRENT_VERSION = VERSION_3;
 
     private static final Map<String, String> METADATA_COMPAT_KEY_TO_METADATA_KEY = new HashMap<>();
     private static final Map<String, String> METADATA_KEY_TO_METADATA_COMPAT_KEY = new HashMap<>();
@@ -694,13 +704,25 @@ public class MediaUtils {
      */
     public static ParcelImplListSlice convertMediaItemListToParcelImplListSlice(
             List<MediaItem> mediaItemList) {
+        return convertMediaItemListToParcelImplListSlice(mediaItemList, null);
+    }
+
+    /**
+     * Convert a list of {@link MediaItem} to a list of {@link ParcelImplListSlice}, replacing the
+     * bitmaps already sent with references if {@code bitmapSender} isn't {@code null}.
+     */
+    public static ParcelImplListSlice convertMediaItemListToParcelImplListSlice(
+            List<MediaItem> mediaItemList, @Nullable BitmapTransferCache.Sender bitmapSender) {
         if (mediaItemList == null) {
             return null;
         }
         List<ParcelImpl> itemParcelableList = new ArrayList<>();
         for (int i = 0; i < mediaItemList.size(); i++) {
-            final MediaItem item = mediaItemList.get(i);
+            MediaItem item = mediaItemList.get(i);
             if (item != null) {
+                if (bitmapSender != null) {
+                    item = bitmapSender.encode(item);
+                }
                 final ParcelImpl itemParcelImpl = MediaParcelUtils.toParcelable(item);
                 itemParcelableList.add(itemParcelImpl);
             }
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.media2.session;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.util.ObjectsCompat;
+import androidx.media2.common.MediaItem;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A change between two versions of a playlist, sent from a session to its controllers instead of
+ * the whole playlist.
+ *
+ * <p>The change is a sequence of operations, encoded as a flat array of ints so that it can be
+ * sent as is through binder:
+ * <ul>
+ *     <li>{@link #OP_REPLACE_RANGE}, fromIndex, removedCount, insertedCount: replaces
+ *     {@code removedCount} items from {@code fromIndex} with the next {@code insertedCount}
+ *     inserted items. Covers insertions, removals and replacements.
+ *     <li>{@link #OP_MOVE}, fromIndex, toIndex: moves the item at {@code fromIndex} to
+ *     {@code toIndex}.
+ * </ul>
+ */
+final class PlaylistDelta {
+    static final int OP_REPLACE_RANGE = 0;
+    static final int OP_MOVE = 1;
+
+    // A delta inserting more than this fraction of the new playlist isn't worth it.
+    private static final int MAX_INSERTED_ITEMS_DIVISOR = 2;
+
+    @NonNull
+    private final int[] mOperations;
+    @NonNull
+    private final List<MediaItem> mInsertedItems;
+
+    private PlaylistDelta(@NonNull int[] operations, @NonNull List<MediaItem> insertedItems) {
+        mOperations = operations;
+        mInsertedItems = insertedItems;
+    }
+
+    @NonNull
+    int[] getOperations() {
+        return mOperations;
+    }
+
+    @NonNull
+    List<MediaItem> getInsertedItems() {
+        return mInsertedItems;
+    }
+
+    /**
+     * Computes the delta from {@code oldList} to {@code newList}, in linear time.
+     *
+     * <p>Detects a single moved item, or a single range of changed items. Items are compared
+     * with {@link MediaItem#equals}, so an item whose metadata changed in place needs
+     * {@link #replaceItem} instead.
+     *
+     * @return the delta, or {@code null} if the whole playlist should be sent instead.
+     */
+    @Nullable
+    static PlaylistDelta compute(@Nullable List<MediaItem> oldList,
+            @Nullable List<MediaItem> newList) {
+        if (oldList == null || newList == null) {
+            return null;
+        }
+        // Null items aren't sent to controllers, which would shift the indices.
+        if (oldList.contains(null) || newList.contains(null)) {
+            return null;
+        }
+        int oldSize = oldList.size();
+        int newSize = newList.size();
+        int prefix = 0;
+        while (prefix < oldSize && prefix < newSize
+                && ObjectsCompat.equals(oldList.get(prefix), newList.get(prefix))) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < oldSize - prefix && suffix < newSize - prefix
+                && ObjectsCompat.equals(oldList.get(oldSize - 1 - suffix),
+                newList.get(newSize - 1 - suffix))) {
+            suffix++;
+        }
+        int removedCount = oldSize - prefix - suffix;
+        int insertedCount = newSize - prefix - suffix;
+        if (removedCount == 0 && insertedCount == 0) {
+            return new PlaylistDelta(new int[0], Collections.<MediaItem>emptyList());
+        }
+        if (removedCount == insertedCount && removedCount > 1) {
+            int last = prefix + removedCount - 1;
+            if (isShifted(oldList, prefix + 1, newList, prefix, removedCount - 1)
+                    && ObjectsCompat.equals(oldList.get(prefix), newList.get(last))) {
+                return new PlaylistDelta(new int[] {OP_MOVE, prefix, last},
+                        Collections.<MediaItem>emptyList());
+            }
+            if (isShifted(oldList, prefix, newList, prefix + 1, removedCount - 1)
+                    && ObjectsCompat.equals(oldList.get(last), newList.get(prefix))) {
+                return new PlaylistDelta(new int[] {OP_MOVE, last, prefix},
+                        Collections.<MediaItem>emptyList());
+            }
+        }
+        if (insertedCount > newSize / MAX_INSERTED_ITEMS_DIVISOR) {
+            return null;
+        }
+        return new PlaylistDelta(
+                new int[] {OP_REPLACE_RANGE, prefix, removedCount, insertedCount},
+                new ArrayList<>(newList.subList(prefix, prefix + insertedCount)));
+    }
+
+    /** Creates the delta replacing the item at {@code index}, e.g. when its metadata changed. */
+    @NonNull
+    static PlaylistDelta replaceItem(int index, @NonNull MediaItem item) {
+        return new PlaylistDelta(new int[] {OP_REPLACE_RANGE, index, 1, 1},
+                Collections.singletonList(item));
+    }
+
+    /**
+     * Applies the operations to a copy of {@code playlist}.
+     *
+     * @return the new playlist, or {@code null} if the operations don't apply to it.
+     */
+    @Nullable
+    static List<MediaItem> apply(@NonNull List<MediaItem> playlist, @NonNull int[] operations,
+            @NonNull List<MediaItem> insertedItems) {
+        List<MediaItem> result = new ArrayList<>(playlist);
+        int nextInsertedItem = 0;
+        int i = 0;
+        while (i < operations.length) {
+            switch (operations[i]) {
+                case OP_REPLACE_RANGE: {
+                    if (i + 3 >= operations.length) {
+                        return null;
+                    }
+                    int fromIndex = operations[i + 1];
+                    int removedCount = operations[i + 2];
+                    int insertedCount = operations[i + 3];
+                    if (fromIndex < 0 || removedCount < 0 || insertedCount < 0
+                            || fromIndex + removedCount > result.size()
+                            || nextInsertedItem + insertedCount > insertedItems.size()) {
+                        return null;
+                    }
+                    List<MediaItem> range = result.subList(fromIndex, fromIndex + removedCount);
+                    range.clear();
+                    range.addAll(insertedItems.subList(nextInsertedItem,
+                            nextInsertedItem + insertedCount));
+                    nextInsertedItem += insertedCount;
+                    i += 4;
+                    break;
+                }
+                case OP_MOVE: {
+                    if (i + 2 >= operations.length) {
+                        return null;
+                    }
+                    int fromIndex = operations[i + 1];
+                    int toIndex = operations[i + 2];
+                    if (fromIndex < 0 || fromIndex >= result.size() || toIndex < 0
+                            || toIndex >= result.size()) {
+                        return null;
+                    }
+                    result.add(toIndex, result.remove(fromIndex));
+                    i += 3;
+                    break;
+                }
+                default:
+                    return null;
+            }
+        }
+        return nextInsertedItem == insertedItems.size() ? result : null;
+    }
+
+    private static boolean isShifted(@NonNull List<MediaItem> oldList, int oldIndex,
+            @NonNull List<MediaItem> newList, int newIndex, int count) {
+        for (int i = 0; i < count; i++) {
+            if (!ObjectsCompat.equals(oldList.get(oldIndex + i), newList.get(newIndex + i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
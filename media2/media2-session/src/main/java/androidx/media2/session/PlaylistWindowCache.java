@@ -0,0 +1,229 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.media2.session;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.collection.LruCache;
+import androidx.media2.common.MediaItem;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the recently used items of a playlist whose items are fetched from the session by
+ * windows of consecutive indices, rather than sent in full.
+ * <p>
+ * Windows are aligned to the multiples of the window size, so that an index is always fetched
+ * with the same window. Each change of the playlist increments its version, which tags the
+ * windows fetched, so that a window fetched from a previous playlist isn't put at the indices of
+ * the current one. This class isn't thread safe.
+ */
+final class PlaylistWindowCache {
+    private static final int MAX_WINDOW_SIZE = 20;
+
+    private final int mWindowSize;
+    private final LruCache<Integer, MediaItem> mItems;
+    // Start indices of the windows requested but not fetched yet.
+    private final Set<Integer> mPendingWindows = new HashSet<>();
+    private int mPlaylistSize;
+    private int mPlaylistVersion;
+
+    PlaylistWindowCache(int cacheSize) {
+        if (cacheSize <= 0) {
+            throw new IllegalArgumentException("cacheSize should be positive");
+        }
+        mWindowSize = Math.max(1, Math.min(MAX_WINDOW_SIZE, cacheSize / 2));
+        mItems = new LruCache<>(cacheSize);
+    }
+
+    int getWindowSize() {
+        return mWindowSize;
+    }
+
+    int getPlaylistSize() {
+        return mPlaylistSize;
+    }
+
+    int getPlaylistVersion() {
+        return mPlaylistVersion;
+    }
+
+    /** Forgets all items, e.g. when the playlist is changed in a way the cache can't follow. */
+    void reset(int playlistVersion, int playlistSize) {
+        mPlaylistVersion = playlistVersion;
+        mPlaylistSize = Math.max(0, playlistSize);
+        mItems.evictAll();
+        mPendingWindows.clear();
+    }
+
+    /**
+     * Moves the cached items to their indices in the next version of the playlist, and forgets
+     * the removed ones. The windows being fetched are forgotten, since they're fetched from the
+     * previous version.
+     *
+     * @param operations the {@link PlaylistDelta} operations from the previous version.
+     * @return {@code false} if the operations don't apply to the playlist, in which case the
+     *         cache is unchanged.
+     */
+    boolean applyDelta(int playlistVersion, @NonNull int[] operations, int playlistSize) {
+        if (playlistVersion != mPlaylistVersion + 1) {
+            return false;
+        }
+        // Least recently used first.
+        Map<Integer, MediaItem> snapshot = mItems.snapshot();
+        List<Integer> indices = new ArrayList<>(snapshot.keySet());
+        int size = mPlaylistSize;
+        int i = 0;
+        while (i < operations.length) {
+            switch (operations[i]) {
+                case PlaylistDelta.OP_REPLACE_RANGE: {
+                    if (i + 3 >= operations.length) {
+                        return false;
+                    }
+                    int fromIndex = operations[i + 1];
+                    int removedCount = operations[i + 2];
+                    int insertedCount = operations[i + 3];
+                    if (fromIndex < 0 || removedCount < 0 || insertedCount < 0
+                            || fromIndex + removedCount > size) {
+                        return false;
+                    }
+                    for (int j = 0; j < indices.size(); j++) {
+                        Integer index = indices.get(j);
+                        if (index == null || index < fromIndex) {
+                            continue;
+                        }
+                        indices.set(j, index < fromIndex + removedCount
+                                ? null : index + insertedCount - removedCount);
+                    }
+                    size += insertedCount - removedCount;
+                    i += 4;
+                    break;
+                }
+                case PlaylistDelta.OP_MOVE: {
+                    if (i + 2 >= operations.length) {
+                        return false;
+                    }
+                    int fromIndex = operations[i + 1];
+                    int toIndex = operations[i + 2];
+                    if (fromIndex < 0 || fromIndex >= size || toIndex < 0 || toIndex >= size) {
+                        return false;
+                    }
+                    for (int j = 0; j < indices.size(); j++) {
+                        Integer index = indices.get(j);
+                        if (index == null) {
+                            continue;
+                        }
+                        if (index == fromIndex) {
+                            indices.set(j, toIndex);
+                        } else if (fromIndex < toIndex && index > fromIndex && index <= toIndex) {
+                            indices.set(j, index - 1);
+                        } else if (toIndex < fromIndex && index >= toIndex && index < fromIndex) {
+                            indices.set(j, index + 1);
+                        }
+                    }
+                    i += 3;
+                    break;
+                }
+                default:
+                    return false;
+            }
+        }
+        if (size != playlistSize) {
+            return false;
+        }
+        mPlaylistVersion = playlistVersion;
+        mPlaylistSize = playlistSize;
+        mItems.evictAll();
+        mPendingWindows.clear();
+        int j = 0;
+        for (MediaItem item : snapshot.values()) {
+            Integer index = indices.get(j++);
+            if (index != null) {
+                mItems.put(index, item);
+            }
+        }
+        return true;
+    }
+
+    @Nullable
+    MediaItem getItem(int index) {
+        return mItems.get(index);
+    }
+
+    void putItem(int index, @Nullable MediaItem item) {
+        if (index < 0 || index >= mPlaylistSize) {
+            return;
+        }
+        if (item == null) {
+            mItems.remove(index);
+        } else {
+            mItems.put(index, item);
+        }
+    }
+
+    /**
+     * Puts the items fetched from {@code fromIndex}, ignoring the ones out of the playlist.
+     *
+     * @return {@code false} if the items were fetched from another version of the playlist, in
+     *         which case they're ignored.
+     */
+    boolean putItems(int playlistVersion, int fromIndex, @NonNull List<MediaItem> items) {
+        if (playlistVersion != mPlaylistVersion) {
+            return false;
+        }
+        mPendingWindows.remove(fromIndex);
+        for (int i = 0; i < items.size(); i++) {
+            putItem(fromIndex + i, items.get(i));
+        }
+        return true;
+    }
+
+    /**
+     * Gets the start index of the window to fetch for {@code index}, and marks it as pending.
+     *
+     * @return the start index, or {@code -1} if the item is cached or already being fetched.
+     */
+    int obtainWindowToFetch(int index) {
+        if (index < 0 || index >= mPlaylistSize || mItems.get(index) != null) {
+            return -1;
+        }
+        int windowStart = index - index % mWindowSize;
+        return mPendingWindows.add(windowStart) ? windowStart : -1;
+    }
+
+    /**
+     * Gets the start indices of the windows to fetch so that the items within half a window
+     * around {@code index} are cached, and marks them as pending.
+     */
+    @NonNull
+    List<Integer> obtainWindowsToPrefetch(int index) {
+        List<Integer> windowStarts = new ArrayList<>();
+        int halfWindowSize = mWindowSize / 2;
+        int[] indices = {index, index - halfWindowSize, index + halfWindowSize};
+        for (int i : indices) {
+            int windowStart = obtainWindowToFetch(i);
+            if (windowStart >= 0) {
+                windowStarts.add(windowStart);
+            }
+        }
+        return windowStarts;
+    }
+}
@@ -20,8 +20,10 @@ import androidx.test.ext.junit.runners.AndroidJUnit4
 import androidx.test.filters.MediumTest
 import androidx.testutils.TestExecutor
 import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
 import org.junit.Assert.assertNotSame
 import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
 import org.junit.Assert.fail
 import org.junit.Test
 import org.junit.runner.RunWith
@@ -39,11 +41,12 @@ class AsyncListDifferTest {
     private val mBackgroundThread = TestExecutor()
 
     private fun createDiffer(
-        listUpdateCallback: ListUpdateCallback = IGNORE_CALLBACK
+        listUpdateCallback: ListUpdateCallback = IGNORE_CALLBACK,
+        diffCallback: DiffUtil.ItemCallback<String> = STRING_DIFF_CALLBACK
     ): AsyncListDiffer<String> {
         return AsyncListDiffer(
             listUpdateCallback,
-            AsyncDifferConfig.Builder(STRING_DIFF_CALLBACK)
+            AsyncDifferConfig.Builder(diffCallback)
                 .setMainThreadExecutor(mMainThread)
                 .setBackgroundThreadExecutor(mBackgroundThread)
                 .build()
@@ -346,6 +349,101 @@ class AsyncListDifferTest {
         verifyNoMoreInteractions(listener)
     }
 
+    @Test
+    fun queuedSupersededListIsSkipped() {
+        val diffedLists = mutableListOf<String>()
+        val differ = createDiffer(
+            diffCallback = object : DiffUtil.ItemCallback<String>() {
+                override fun areItemsTheSame(oldItem: String, newItem: String): Boolean {
+                    diffedLists.add(newItem)
+                    return oldItem == newItem
+                }
+
+                override fun areContentsTheSame(oldItem: String, newItem: String) =
+                    oldItem == newItem
+            }
+        )
+        val metrics = RecordingMetricsListener()
+        differ.addDiffMetricsListener(metrics)
+
+        differ.submitList(listOf("a", "b"))
+        differ.submitList(listOf("a", "c"))
+        differ.submitList(listOf("a", "d"))
+        drain()
+
+        assertEquals(listOf("a", "d"), differ.currentList)
+        // the diff against ["a", "c"] never ran
+        assertFalse(diffedLists.contains("c"))
+        assertEquals(listOf(Triple(2, 2, 0L)), metrics.dropped)
+        assertEquals(1, metrics.dispatched.size)
+    }
+
+    @Test
+    fun runningSupersededDiffIsAborted() {
+        lateinit var differ: AsyncListDiffer<String>
+        var supersededCalls = 0
+        val diffCallback = object : DiffUtil.ItemCallback<String>() {
+            override fun areItemsTheSame(oldItem: String, newItem: String): Boolean {
+                if (newItem.startsWith("b")) {
+                    if (supersededCalls++ == 0) {
+                        // a newer list arrives while this diff is running
+                        differ.submitList(listOf("z"))
+                    }
+                }
+                return oldItem == newItem
+            }
+
+            override fun areContentsTheSame(oldItem: String, newItem: String) =
+                oldItem == newItem
+        }
+        differ = createDiffer(diffCallback = diffCallback)
+        val metrics = RecordingMetricsListener()
+        differ.addDiffMetricsListener(metrics)
+
+        differ.submitList(List(1000) { "a$it" })
+        differ.submitList(List(1000) { "b$it" })
+        drain()
+
+        assertEquals(listOf("z"), differ.currentList)
+        assertTrue(supersededCalls < 64)
+        assertEquals(1, metrics.dropped.size)
+        assertEquals(1000, metrics.dropped[0].second)
+        assertEquals(1, metrics.dispatched.size)
+    }
+
+    @Test
+    fun diffMetricsListener_removed() {
+        val differ = createDiffer()
+        val metrics = RecordingMetricsListener()
+        differ.addDiffMetricsListener(metrics)
+        differ.removeDiffMetricsListener(metrics)
+
+        differ.submitList(listOf("a"))
+        differ.submitList(listOf("b"))
+        differ.submitList(listOf("c"))
+        drain()
+
+        assertEquals(0, metrics.dispatched.size)
+        assertEquals(0, metrics.dropped.size)
+    }
+
+    private class RecordingMetricsListener : AsyncListDiffer.DiffMetricsListener {
+        val dispatched = mutableListOf<Triple<Int, Int, Long>>()
+        val dropped = mutableListOf<Triple<Int, Int, Long>>()
+
+        override fun onDiffDispatched(oldListSize: Int, newListSize: Int, diffDurationNanos: Long) {
+            dispatched.add(Triple(oldListSize, newListSize, diffDurationNanos))
+        }
+
+        override fun onGenerationDropped(
+            oldListSize: Int,
+            newListSize: Int,
+            wastedDurationNanos: Long
+        ) {
+            dropped.add(Triple(oldListSize, newListSize, wastedDurationNanos))
+        }
+    }
+
     private fun drain() {
         var executed: Boolean
         do {
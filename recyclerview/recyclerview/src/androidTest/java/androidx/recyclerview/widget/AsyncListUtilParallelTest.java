@@ -0,0 +1,263 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package androidx.recyclerview.widget;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import androidx.annotation.NonNull;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.MediumTest;
+import androidx.test.rule.ActivityTestRule;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link AsyncListUtil} loading tiles on a fill data executor. The executor only
+ * queues the fill tasks so the test decides when each of them runs.
+ */
+@MediumTest
+@RunWith(AndroidJUnit4.class)
+public class AsyncListUtilParallelTest {
+    @Rule
+    public ActivityTestRule<TestActivity> mActivityRule =
+            new ActivityTestRule<>(TestActivity.class);
+
+    private static final int TILE_SIZE = 10;
+    private static final int ITEM_COUNT = 100;
+    private static final int VIEWPORT_SIZE = 25;
+    private static final long TIMEOUT_MS = 5000;
+    private static final long IDLE_TIMEOUT_MS = 200;
+
+    private final QueueExecutor mExecutor = new QueueExecutor();
+    private final TestDataCallback mDataCallback = new TestDataCallback();
+    private final TestViewCallback mViewCallback = new TestViewCallback();
+
+    AsyncListUtil<String> mAsyncListUtil;
+
+    @Test
+    public void startsUpToMaxParallelTiles() throws Throwable {
+        createAsyncListUtil(3);
+
+        // all visible tiles are handed to the executor before any of them is filled
+        Runnable first = mExecutor.next();
+        Runnable second = mExecutor.next();
+        Runnable third = mExecutor.next();
+        mExecutor.assertIdle();
+
+        third.run();
+        second.run();
+        first.run();
+        mExecutor.assertIdle();
+        assertEquals(Arrays.asList(20, 10, 0), mDataCallback.getFilledTiles());
+    }
+
+    @Test
+    public void defersTilesOverMaxParallelTiles() throws Throwable {
+        createAsyncListUtil(2);
+
+        Runnable first = mExecutor.next();
+        mExecutor.next();
+        mExecutor.assertIdle();
+
+        // finishing a tile frees a slot for the deferred one
+        first.run();
+        assertNotNull(mExecutor.next());
+        mExecutor.assertIdle();
+    }
+
+    @Test
+    public void startsVisibleTilesFirst() throws Throwable {
+        mViewCallback.mFirstVisibleItem = 40;
+        mViewCallback.mPreload = 20;
+        createAsyncListUtil(1);
+
+        mExecutor.runAll();
+        assertEquals(Arrays.asList(40, 50, 60, 70, 80, 30, 20), mDataCallback.getFilledTiles());
+    }
+
+    @Test
+    public void skipsTilesOutOfRange() throws Throwable {
+        createAsyncListUtil(2);
+
+        Runnable tile0 = mExecutor.next();
+        Runnable tile10 = mExecutor.next();
+        mExecutor.assertIdle();
+
+        scrollTo(70);
+        tile0.run();
+        // the slot freed by tile 0 goes to the new range, so the range update has been handled
+        Runnable tile70 = mExecutor.next();
+
+        tile10.run();
+        assertFalse(mDataCallback.getFilledTiles().contains(10));
+
+        tile70.run();
+        mExecutor.runAll();
+        List<Integer> filledTiles = mDataCallback.getFilledTiles();
+        assertTrue(filledTiles.containsAll(Arrays.asList(70, 80, 90)));
+        assertFalse(filledTiles.contains(10));
+        assertFalse(filledTiles.contains(20));
+    }
+
+    @Test
+    public void skipsTilesOfPreviousGeneration() throws Throwable {
+        createAsyncListUtil(1);
+
+        Runnable tile0 = mExecutor.next();
+        mActivityRule.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                mAsyncListUtil.refresh();
+            }
+        });
+        mDataCallback.waitForRefresh(2);
+
+        tile0.run();
+        assertTrue(mDataCallback.getFilledTiles().isEmpty());
+        // the refreshed generation loads the visible tiles again
+        mExecutor.runAll();
+        assertEquals(Arrays.asList(0, 10, 20), mDataCallback.getFilledTiles());
+    }
+
+    private void createAsyncListUtil(final int maxParallelTiles) throws Throwable {
+        mActivityRule.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                mAsyncListUtil = new AsyncListUtil<>(String.class, TILE_SIZE, mDataCallback,
+                        mViewCallback, mExecutor, maxParallelTiles);
+            }
+        });
+    }
+
+    private void scrollTo(final int position) throws Throwable {
+        mActivityRule.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                mViewCallback.mFirstVisibleItem = position;
+                mAsyncListUtil.onRangeChanged();
+            }
+        });
+    }
+
+    private static class QueueExecutor implements Executor {
+        private final BlockingQueue<Runnable> mTasks = new LinkedBlockingQueue<>();
+
+        @Override
+        public void execute(@NonNull Runnable command) {
+            mTasks.add(command);
+        }
+
+        Runnable next() throws InterruptedException {
+            Runnable task = mTasks.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            assertNotNull("timed out waiting for a fill task", task);
+            return task;
+        }
+
+        void assertIdle() throws InterruptedException {
+            assertNull("unexpected fill task",
+                    mTasks.poll(IDLE_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        }
+
+        void runAll() throws InterruptedException {
+            Runnable task;
+            while ((task = mTasks.poll(IDLE_TIMEOUT_MS, TimeUnit.MILLISECONDS)) != null) {
+                task.run();
+            }
+        }
+    }
+
+    private static class TestDataCallback extends AsyncListUtil.DataCallback<String> {
+        private final List<Integer> mFilledTiles = new ArrayList<>();
+        private int mRefreshCount;
+
+        @Override
+        public void fillData(@NonNull String[] data, int startPosition, int itemCount) {
+            for (int i = 0; i < itemCount; i++) {
+                data[i] = "item #" + (startPosition + i);
+            }
+            synchronized (this) {
+                mFilledTiles.add(startPosition);
+            }
+        }
+
+        @Override
+        public synchronized int refreshData() {
+            mRefreshCount++;
+            notifyAll();
+            return ITEM_COUNT;
+        }
+
+        @Override
+        public int getMaxCachedTiles() {
+            return ITEM_COUNT / TILE_SIZE;
+        }
+
+        synchronized List<Integer> getFilledTiles() {
+            return new ArrayList<>(mFilledTiles);
+        }
+
+        synchronized void waitForRefresh(int refreshCount) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+            while (mRefreshCount < refreshCount) {
+                long remaining = deadline - System.currentTimeMillis();
+                assertTrue("timed out waiting for refresh", remaining > 0);
+                wait(remaining);
+            }
+        }
+    }
+
+    private static class TestViewCallback extends AsyncListUtil.ViewCallback {
+        int mFirstVisibleItem;
+        int mPreload;
+
+        @Override
+        public void getItemRangeInto(@NonNull int[] outRange) {
+            outRange[0] = mFirstVisibleItem;
+            outRange[1] = Math.min(mFirstVisibleItem + VIEWPORT_SIZE, ITEM_COUNT) - 1;
+        }
+
+        @Override
+        public void extendRangeInto(@NonNull int[] range, @NonNull int[] outRange,
+                int scrollHint) {
+            outRange[0] = range[0] - mPreload;
+            outRange[1] = range[1] + mPreload;
+        }
+
+        @Override
+        public void onDataRefresh() {
+        }
+
+        @Override
+        public void onItemLoaded(int position) {
+        }
+    }
+}
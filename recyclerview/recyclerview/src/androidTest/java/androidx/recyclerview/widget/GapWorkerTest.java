@@ -21,8 +21,15 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
 import android.content.Context;
 import android.os.Build;
+import android.view.View;
+import android.view.ViewGroup;
 
 import androidx.test.core.app.ApplicationProvider;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
@@ -31,9 +38,13 @@ import androidx.test.filters.SmallTest;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 
 @SmallTest
 @RunWith(AndroidJUnit4.class)
@@ -182,4 +193,147 @@ public class GapWorkerTest {
             recyclerView.onDetachedFromWindow();
         }
     }
+
+    /**
+     * Lays out a vertical list of 100x100 items in a 100x300 RecyclerView, so that positions 0 to
+     * 2 are attached.
+     */
+    private RecyclerView createAttachedRecyclerView(boolean adaptivePrefetch) {
+        RecyclerView recyclerView = new RecyclerView(getContext()) {
+            @Override
+            public int getWindowVisibility() {
+                // Pretend to be visible to avoid being filtered out
+                return View.VISIBLE;
+            }
+        };
+        recyclerView.setAdaptivePrefetchEnabled(adaptivePrefetch);
+        recyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
+        @SuppressWarnings("unchecked")
+        RecyclerView.Adapter<RecyclerView.ViewHolder> mockAdapter =
+                mock(RecyclerView.Adapter.class);
+        when(mockAdapter.onCreateViewHolder(any(ViewGroup.class), anyInt()))
+                .thenAnswer(new Answer<RecyclerView.ViewHolder>() {
+                    @Override
+                    public RecyclerView.ViewHolder answer(InvocationOnMock invocation) {
+                        View view = new View(getContext());
+                        view.setMinimumWidth(100);
+                        view.setMinimumHeight(100);
+                        return new RecyclerView.ViewHolder(view) {};
+                    }
+                });
+        when(mockAdapter.getItemCount()).thenReturn(100);
+        recyclerView.setAdapter(mockAdapter);
+        recyclerView.onAttachedToWindow();
+        recyclerView.measure(
+                View.MeasureSpec.makeMeasureSpec(100, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(300, View.MeasureSpec.EXACTLY));
+        recyclerView.layout(0, 0, 100, 300);
+        return recyclerView;
+    }
+
+    private static List<Integer> collectPrefetchPositions(RecyclerView recyclerView,
+            int dx, int dy) {
+        GapWorker.LayoutPrefetchRegistryImpl registry = recyclerView.mPrefetchRegistry;
+        registry.setPrefetchVector(dx, dy);
+        registry.collectPrefetchPositionsFromView(recyclerView, false);
+        List<Integer> positions = new ArrayList<>();
+        for (int i = 0; i < registry.mCount; i++) {
+            positions.add(registry.mPrefetchArray[i * 2]);
+        }
+        return positions;
+    }
+
+    @SdkSuppress(minSdkVersion = Build.VERSION_CODES.LOLLIPOP)
+    @Test
+    public void adaptiveLookaheadDisabled() {
+        RecyclerView recyclerView = createAttachedRecyclerView(false);
+        try {
+            assertEquals(Collections.singletonList(3),
+                    collectPrefetchPositions(recyclerView, 0, 50));
+        } finally {
+            recyclerView.onDetachedFromWindow();
+        }
+    }
+
+    @SdkSuppress(minSdkVersion = Build.VERSION_CODES.LOLLIPOP)
+    @Test
+    public void adaptiveLookaheadDistance() {
+        RecyclerView recyclerView = createAttachedRecyclerView(true);
+        try {
+            // 50px per frame over 4 frames covers 2 items of 100px past position 3
+            assertEquals(Arrays.asList(3, 4, 5),
+                    collectPrefetchPositions(recyclerView, 0, 50));
+            int[] prefetchArray = recyclerView.mPrefetchRegistry.mPrefetchArray;
+            assertEquals(prefetchArray[1] + 100, prefetchArray[3]);
+            assertEquals(prefetchArray[1] + 200, prefetchArray[5]);
+            assertTrue(recyclerView.mRecycler.mViewCacheMax >= 3);
+
+            // scrolling up from the top has nothing to look ahead to
+            assertEquals(Collections.<Integer>emptyList(),
+                    collectPrefetchPositions(recyclerView, 0, -50));
+        } finally {
+            recyclerView.onDetachedFromWindow();
+        }
+    }
+
+    @SdkSuppress(minSdkVersion = Build.VERSION_CODES.LOLLIPOP)
+    @Test
+    public void adaptiveLookaheadCapped() {
+        RecyclerView recyclerView = createAttachedRecyclerView(true);
+        try {
+            List<Integer> positions = collectPrefetchPositions(recyclerView, 0, 1000);
+            assertEquals(1 + GapWorker.ADAPTIVE_MAX_LOOKAHEAD_ITEMS, positions.size());
+            for (int i = 0; i < positions.size(); i++) {
+                assertEquals(3 + i, (int) positions.get(i));
+            }
+        } finally {
+            recyclerView.onDetachedFromWindow();
+        }
+    }
+
+    @SdkSuppress(minSdkVersion = Build.VERSION_CODES.LOLLIPOP)
+    @Test
+    public void prefetchStatsHitAndWasted() {
+        RecyclerView recyclerView = createAttachedRecyclerView(true);
+        try {
+            recyclerView.mPrefetchRegistry.setPrefetchVector(0, 50);
+            recyclerView.mGapWorker.prefetch(RecyclerView.FOREVER_NS);
+            CacheUtils.verifyCacheContainsPrefetchedPositions(recyclerView, 3, 4, 5);
+            assertStats(recyclerView, 0, 0, 0);
+
+            // position 3 scrolls into view, and is taken from the cache without a bind
+            recyclerView.scrollBy(0, 100);
+            assertStats(recyclerView, 1, 0, 0);
+
+            // positions 4 and 5 are dropped without ever being laid out
+            recyclerView.mRecycler.recycleAndClearCachedViews();
+            assertStats(recyclerView, 1, 2, 0);
+        } finally {
+            recyclerView.onDetachedFromWindow();
+        }
+    }
+
+    @SdkSuppress(minSdkVersion = Build.VERSION_CODES.LOLLIPOP)
+    @Test
+    public void prefetchStatsMissedDeadline() {
+        RecyclerView recyclerView = createAttachedRecyclerView(true);
+        try {
+            recyclerView.mPrefetchRegistry.setPrefetchVector(0, 50);
+            // position 3 is immediate, so it's fetched regardless of the deadline. Positions 4
+            // and 5 can't be created before a deadline that has already passed.
+            recyclerView.mGapWorker.prefetch(1);
+            CacheUtils.verifyCacheContainsPositions(recyclerView, 3);
+            assertStats(recyclerView, 0, 0, 2);
+        } finally {
+            recyclerView.onDetachedFromWindow();
+        }
+    }
+
+    private static void assertStats(RecyclerView recyclerView, int hitCount, int wastedCount,
+            int missedDeadlineCount) {
+        RecyclerView.PrefetchStats stats = recyclerView.getPrefetchStats();
+        assertEquals(stats.toString(), hitCount, stats.getHitCount());
+        assertEquals(stats.toString(), wastedCount, stats.getWastedCount());
+        assertEquals(stats.toString(), missedDeadlineCount, stats.getMissedDeadlineCount());
+    }
 }
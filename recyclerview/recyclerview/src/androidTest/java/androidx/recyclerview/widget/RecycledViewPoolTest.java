@@ -21,8 +21,10 @@ import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.view.View;
 import android.view.ViewGroup;
@@ -138,6 +140,106 @@ public class RecycledViewPoolTest {
         assertThat(pool.getRecycledViewCount(1), is(equalTo(clears ? 0 : 1)));
     }
 
+    @Test
+    public void willBindInTime_adaptiveAccountsForExpensiveItems() {
+        RecyclerView.RecycledViewPool pool = new RecyclerView.RecycledViewPool();
+        pool.factorInBindTime(0, 8_000_000);
+        pool.factorInBindTime(0, 8_000_000);
+        for (int i = 0; i < 8; i++) {
+            pool.factorInBindTime(0, 100_000);
+        }
+
+        // running average has decayed below the deadline, the cost histogram tail hasn't
+        assertThat(pool.willBindInTime(0, 0, 2_000_000, false), is(true));
+        assertThat(pool.willBindInTime(0, 0, 2_000_000, true), is(false));
+    }
+
+    @Test
+    public void costHistogram() {
+        RecyclerView.RecycledViewPool.CostHistogram histogram =
+                new RecyclerView.RecycledViewPool.CostHistogram();
+        assertEquals(0, histogram.estimateNs(90));
+
+        for (int i = 0; i < 1000; i++) {
+            histogram.add(i % 2 == 0 ? 10_000 : 1_000_000);
+        }
+        // 10us falls in the first bucket, 1ms in [524us, 1048us)
+        assertThat(histogram.estimateNs(10) < 65_536, is(true));
+        assertThat(histogram.estimateNs(90) > 524_288, is(true));
+        assertThat(histogram.estimateNs(90) < 1_048_576, is(true));
+    }
+
+    @Test
+    public void autoSizing_followsPeakInUse() {
+        RecyclerView.RecycledViewPool pool = new RecyclerView.RecycledViewPool();
+        pool.setAutoSizingEnabled(true);
+        createAndRecycle(pool, 1, 10, 5_000_000);
+        createAndRecycle(pool, 2, 10, 100_000);
+
+        // expensive type keeps all of them, cheap type keeps half
+        assertEquals(10, pool.getRecycledViewCount(1));
+        assertEquals(5, pool.getRecycledViewCount(2));
+    }
+
+    @Test
+    public void autoSizing_maxRecycledViewsOptsOut() {
+        RecyclerView.RecycledViewPool pool = new RecyclerView.RecycledViewPool();
+        pool.setAutoSizingEnabled(true);
+        pool.setMaxRecycledViews(1, 2);
+        createAndRecycle(pool, 1, 10, 5_000_000);
+
+        assertEquals(2, pool.getRecycledViewCount(1));
+    }
+
+    @Test
+    public void onTrimMemory() {
+        RecyclerView.RecycledViewPool pool = new RecyclerView.RecycledViewPool();
+        pool.setAutoSizingEnabled(true);
+        createAndRecycle(pool, 1, 10, 5_000_000);
+        createAndRecycle(pool, 2, 10, 100_000);
+
+        pool.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE);
+        assertEquals(10, pool.getRecycledViewCount(1));
+        assertEquals(0, pool.getRecycledViewCount(2));
+
+        pool.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        assertEquals(5, pool.getRecycledViewCount(1));
+        // trimming is relative to the capacity, not to the current size
+        pool.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        assertEquals(5, pool.getRecycledViewCount(1));
+
+        pool.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND);
+        assertEquals(0, pool.size());
+    }
+
+    @Test
+    public void autoSizing_registersForTrimMemoryWhileAttached() {
+        RecyclerView.RecycledViewPool pool = new RecyclerView.RecycledViewPool();
+        pool.registerForTrimMemory(ApplicationProvider.getApplicationContext());
+        assertNull(pool.mTrimMemoryCallbacks);
+
+        // enabling auto sizing after a RecyclerView is attached registers the callbacks
+        pool.setAutoSizingEnabled(true);
+        assertNotNull(pool.mTrimMemoryCallbacks);
+
+        pool.setAutoSizingEnabled(false);
+        assertNull(pool.mTrimMemoryCallbacks);
+
+        pool.setAutoSizingEnabled(true);
+        pool.unregisterForTrimMemory();
+        assertNull(pool.mTrimMemoryCallbacks);
+    }
+
+    private void createAndRecycle(RecyclerView.RecycledViewPool pool, int viewType, int count,
+            long createTimeNs) {
+        for (int i = 0; i < count; i++) {
+            pool.factorInCreateTime(viewType, createTimeNs);
+        }
+        for (int i = 0; i < count; i++) {
+            pool.putRecycledView(makeHolder(viewType));
+        }
+    }
+
     private static class MockViewHolder extends RecyclerView.ViewHolder {
         MockViewHolder(Context context) {
             super(new View(context));
@@ -110,6 +110,14 @@ public class ThreadUtilTest {
                                 assertBackgroundThread();
                                 setResultData("recycleTile", data);
                             }
+
+                            @Override
+                            public void onTileFilled(int generation, TileList.Tile<Integer> data,
+                                    boolean filled, int scrollHint) {
+                                assertBackgroundThread();
+                                setResultData("onTileFilled", generation, data, filled,
+                                        scrollHint);
+                            }
                         });
             }
         });
@@ -177,6 +185,15 @@ public class ThreadUtilTest {
         assertThat(data, is(new Object[]{tile}));
     }
 
+    @Test
+    public void onTileFilled() throws InterruptedException {
+        initWait("onTileFilled");
+        TileList.Tile<Integer> tile = new TileList.Tile<Integer>(Integer.class, 10);
+        mBackgroundProxy.onTileFilled(3, tile, true, 2);
+        Object[] data = waitFor("onTileFilled");
+        assertThat(data, is(new Object[]{3, tile, true, 2}));
+    }
+
     private void assertMainThread() {
         assertThat(Looper.myLooper(), notNullValue());
         assertThat(Looper.myLooper(), sameInstance(Looper.getMainLooper()));
@@ -147,6 +147,56 @@ public class AsyncListDiffer<T> {
 
     private final List<ListListener<T>> mListeners = new CopyOnWriteArrayList<>();
 
+    /**
+     * Listener for the cost of the background diffs, e.g. to monitor how much work is wasted on
+     * lists that are replaced before they can be displayed.
+     * <p>
+     * All methods are called on the main thread.
+     */
+    public interface DiffMetricsListener {
+        /**
+         * Called after the diff of a submitted list was dispatched and the list became the
+         * current list.
+         *
+         * @param oldListSize Size of the list that was diffed against.
+         * @param newListSize Size of the submitted list.
+         * @param diffDurationNanos Time spent calculating the diff on the background thread.
+         */
+        void onDiffDispatched(int oldListSize, int newListSize, long diffDurationNanos);
+
+        /**
+         * Called when a submitted list is dropped because a newer list was submitted before its
+         * diff could be dispatched. The diff is skipped entirely if the newer list is submitted
+         * while it is still queued, and aborted if it is submitted while it is running.
+         *
+         * @param oldListSize Size of the list that would have been diffed against.
+         * @param newListSize Size of the dropped list.
+         * @param wastedDurationNanos Time spent on the diff before it was dropped, {@code 0} if
+         *                            the diff did not start.
+         */
+        void onGenerationDropped(int oldListSize, int newListSize, long wastedDurationNanos);
+    }
+
+    private final List<DiffMetricsListener> mMetricsListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Thrown from the diff callback to abort a background diff whose list was superseded.
+     */
+    private static class DiffCancelledException extends RuntimeException {
+        @NonNull
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            // only used for control flow, skip the cost of capturing the stack
+            return this;
+        }
+    }
+
+    /**
+     * Number of diff callback invocations between two checks of whether the list being diffed
+     * was superseded.
+     */
+    private static final int SUPERSEDED_CHECK_INTERVAL = 64;
+
     /**
      * Convenience for
      * {@code AsyncListDiffer(new AdapterListUpdateCallback(adapter),
@@ -196,9 +246,10 @@ public class AsyncListDiffer<T> {
     @NonNull
     private List<T> mReadOnlyList = Collections.emptyList();
 
-    // Max generation of currently scheduled runnable
+    // Max generation of currently scheduled runnable. Only written on the main thread, but read by
+    // running diffs to abort early once they are superseded.
     @SuppressWarnings("WeakerAccess") /* synthetic access */
-    int mMaxScheduledGeneration;
+    volatile int mMaxScheduledGeneration;
 
     /**
      * Get the current List - any diffing to present this list has already been computed and
@@ -242,6 +293,10 @@ public class AsyncListDiffer<T> {
      * The commit callback can be used to know when the List is committed, but note that it
      * may not be executed. If List B is submitted immediately after List A, and is
      * committed directly, the callback associated with List A will not be run.
+     * <p>
+     * Submitting a new List supersedes any List whose diff is still pending: a queued diff is
+     * skipped, and a running diff is aborted at the next check, so that rapidly changing data
+     * only pays for the diff of the latest List.
      *
      * @param newList The new List.
      * @param commitCallback Optional runnable that is executed when the List is committed, if
@@ -289,66 +344,37 @@ public class AsyncListDiffer<T> {
         mConfig.getBackgroundThreadExecutor().execute(new Runnable() {
             @Override
             public void run() {
-                final DiffUtil.DiffResult result = DiffUtil.calculateDiff(new DiffUtil.Callback() {
-                    @Override
-                    public int getOldListSize() {
-                        return oldList.size();
-                    }
-
-                    @Override
-                    public int getNewListSize() {
-                        return newList.size();
-                    }
-
-                    @Override
-                    public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
-                        T oldItem = oldList.get(oldItemPosition);
-                        T newItem = newList.get(newItemPosition);
-                        if (oldItem != null && newItem != null) {
-                            return mConfig.getDiffCallback().areItemsTheSame(oldItem, newItem);
-                        }
-                        // If both items are null we consider them the same.
-                        return oldItem == null && newItem == null;
-                    }
-
-                    @Override
-                    public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
-                        T oldItem = oldList.get(oldItemPosition);
-                        T newItem = newList.get(newItemPosition);
-                        if (oldItem != null && newItem != null) {
-                            return mConfig.getDiffCallback().areContentsTheSame(oldItem, newItem);
-                        }
-                        if (oldItem == null && newItem == null) {
-                            return true;
-                        }
-                        // There is an implementation bug if we reach this point. Per the docs, this
-                        // method should only be invoked when areItemsTheSame returns true. That
-                        // only occurs when both items are non-null or both are null and both of
-                        // those cases are handled above.
-                        throw new AssertionError();
-                    }
-
-                    @Nullable
-                    @Override
-                    public Object getChangePayload(int oldItemPosition, int newItemPosition) {
-                        T oldItem = oldList.get(oldItemPosition);
-                        T newItem = newList.get(newItemPosition);
-                        if (oldItem != null && newItem != null) {
-                            return mConfig.getDiffCallback().getChangePayload(oldItem, newItem);
-                        }
-                        // There is an implementation bug if we reach this point. Per the docs, this
-                        // method should only be invoked when areItemsTheSame returns true AND
-                        // areContentsTheSame returns false. That only occurs when both items are
-                        // non-null which is the only case handled above.
-                        throw new AssertionError();
-                    }
-                });
+                if (mMaxScheduledGeneration != runGeneration) {
+                    // A newer list was submitted while this one was queued. The newer list is
+                    // diffed against the same old list, so there is no need to diff this one.
+                    onGenerationDropped(oldList.size(), newList.size(), 0);
+                    return;
+                }
+                final long startNanos = System.nanoTime();
+                final DiffUtil.DiffResult result;
+                try {
+                    result = calculateDiff(oldList, newList, runGeneration);
+                } catch (DiffCancelledException e) {
+                    onGenerationDropped(oldList.size(), newList.size(),
+                            System.nanoTime() - startNanos);
+                    return;
+                }
+                final long diffDurationNanos = System.nanoTime() - startNanos;
 
                 mMainThreadExecutor.execute(new Runnable() {
                     @Override
                     public void run() {
                         if (mMaxScheduledGeneration == runGeneration) {
                             latchList(newList, result, commitCallback);
+                            for (DiffMetricsListener listener : mMetricsListeners) {
+                                listener.onDiffDispatched(oldList.size(), newList.size(),
+                                        diffDurationNanos);
+                            }
+                        } else {
+                            for (DiffMetricsListener listener : mMetricsListeners) {
+                                listener.onGenerationDropped(oldList.size(), newList.size(),
+                                        diffDurationNanos);
+                            }
                         }
                     }
                 });
@@ -356,6 +382,98 @@ public class AsyncListDiffer<T> {
         });
     }
 
+    /**
+     * Calculates the diff between the given lists, throwing {@link DiffCancelledException} if
+     * {@code runGeneration} is superseded while the diff is running.
+     */
+    @SuppressWarnings("WeakerAccess") /* synthetic access */
+    DiffUtil.DiffResult calculateDiff(@NonNull final List<T> oldList,
+            @NonNull final List<T> newList, final int runGeneration) {
+        return DiffUtil.calculateDiff(new DiffUtil.Callback() {
+            private int mCallsUntilCheck = SUPERSEDED_CHECK_INTERVAL;
+
+            private void checkNotSuperseded() {
+                if (--mCallsUntilCheck == 0) {
+                    mCallsUntilCheck = SUPERSEDED_CHECK_INTERVAL;
+                    if (mMaxScheduledGeneration != runGeneration) {
+                        throw new DiffCancelledException();
+                    }
+                }
+            }
+
+            @Override
+            public int getOldListSize() {
+                return oldList.size();
+            }
+
+            @Override
+            public int getNewListSize() {
+                return newList.size();
+            }
+
+            @Override
+            public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+                checkNotSuperseded();
+                T oldItem = oldList.get(oldItemPosition);
+                T newItem = newList.get(newItemPosition);
+                if (oldItem != null && newItem != null) {
+                    return mConfig.getDiffCallback().areItemsTheSame(oldItem, newItem);
+                }
+                // If both items are null we consider them the same.
+                return oldItem == null && newItem == null;
+            }
+
+            @Override
+            public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+                checkNotSuperseded();
+                T oldItem = oldList.get(oldItemPosition);
+                T newItem = newList.get(newItemPosition);
+                if (oldItem != null && newItem != null) {
+                    return mConfig.getDiffCallback().areContentsTheSame(oldItem, newItem);
+                }
+                if (oldItem == null && newItem == null) {
+                    return true;
+                }
+                // There is an implementation bug if we reach this point. Per the docs, this
+                // method should only be invoked when areItemsTheSame returns true. That
+                // only occurs when both items are non-null or both are null and both of
+                // those cases are handled above.
+                throw new AssertionError();
+            }
+
+            @Nullable
+            @Override
+            public Object getChangePayload(int oldItemPosition, int newItemPosition) {
+                T oldItem = oldList.get(oldItemPosition);
+                T newItem = newList.get(newItemPosition);
+                if (oldItem != null && newItem != null) {
+                    return mConfig.getDiffCallback().getChangePayload(oldItem, newItem);
+                }
+                // There is an implementation bug if we reach this point. Per the docs, this
+                // method should only be invoked when areItemsTheSame returns true AND
+                // areContentsTheSame returns false. That only occurs when both items are
+                // non-null which is the only case handled above.
+                throw new AssertionError();
+            }
+        });
+    }
+
+    @SuppressWarnings("WeakerAccess") /* synthetic access */
+    void onGenerationDropped(final int oldListSize, final int newListSize,
+            final long wastedDurationNanos) {
+        if (mMetricsListeners.isEmpty()) {
+            return;
+        }
+        mMainThreadExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (DiffMetricsListener listener : mMetricsListeners) {
+                    listener.onGenerationDropped(oldListSize, newListSize, wastedDurationNanos);
+                }
+            }
+        });
+    }
+
     @SuppressWarnings("WeakerAccess") /* synthetic access */
     void latchList(
             @NonNull List<T> newList,
@@ -402,4 +520,25 @@ public class AsyncListDiffer<T> {
     public void removeListListener(@NonNull ListListener<T> listener) {
         mListeners.remove(listener);
     }
+
+    /**
+     * Add a DiffMetricsListener to receive the timing of background diffs.
+     *
+     * @param listener Listener to receive metrics.
+     *
+     * @see #removeDiffMetricsListener(DiffMetricsListener)
+     */
+    public void addDiffMetricsListener(@NonNull DiffMetricsListener listener) {
+        mMetricsListeners.add(listener);
+    }
+
+    /**
+     * Remove a previously registered DiffMetricsListener.
+     *
+     * @param listener Previously registered listener.
+     * @see #addDiffMetricsListener(DiffMetricsListener)
+     */
+    public void removeDiffMetricsListener(@NonNull DiffMetricsListener listener) {
+        mMetricsListeners.remove(listener);
+    }
 }
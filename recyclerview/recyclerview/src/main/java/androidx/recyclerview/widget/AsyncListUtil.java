@@ -25,6 +25,8 @@ import androidx.annotation.Nullable;
 import androidx.annotation.UiThread;
 import androidx.annotation.WorkerThread;
 
+import java.util.concurrent.Executor;
+
 /**
  * A utility class that supports asynchronous content loading.
  * <p>
@@ -39,8 +41,10 @@ import androidx.annotation.WorkerThread;
  * {@link ViewCallback} when the data is loaded. It may load some extra items for smoother
  * scrolling.
  * <p>
- * Note that this class uses a single thread to load the data, so it suitable to load data from
- * secondary storage such as disk, but not from network.
+ * Note that by default this class uses a single thread to load the data, so it suitable to load
+ * data from secondary storage such as disk, but not from network. Use
+ * {@link #AsyncListUtil(Class, int, DataCallback, ViewCallback, Executor, int)} to load several
+ * tiles in parallel.
  * <p>
  * This class is designed to work with {@link RecyclerView}, but it does
  * not depend on it and can be used with other list views.
@@ -56,6 +60,10 @@ public class AsyncListUtil<T> {
     final DataCallback<T> mDataCallback;
     final ViewCallback mViewCallback;
 
+    @Nullable
+    final Executor mFillDataExecutor;
+    final int mMaxParallelTiles;
+
     final TileList<T> mTileList;
 
     final ThreadUtil.MainThreadCallback<T> mMainThreadProxy;
@@ -89,10 +97,46 @@ public class AsyncListUtil<T> {
      */
     public AsyncListUtil(@NonNull Class<T> klass, int tileSize,
             @NonNull DataCallback<T> dataCallback, @NonNull ViewCallback viewCallback) {
+        this(klass, tileSize, dataCallback, viewCallback, 1, null);
+    }
+
+    /**
+     * Creates an AsyncListUtil that loads up to {@code maxParallelTiles} tiles at the same time.
+     * <p>
+     * {@link DataCallback#fillData(Object[], int, int)} is called on {@code fillDataExecutor}
+     * and must support being called concurrently for different tiles. The other
+     * {@link DataCallback} methods are still called on a single background thread.
+     * <p>
+     * Tiles are started in order of their distance to the visible range. Tiles that fall out of
+     * the range returned by {@link ViewCallback#extendRangeInto(int[], int[], int)} before they
+     * started loading are skipped.
+     *
+     * @param klass Class of the data item.
+     * @param tileSize Number of item per chunk loaded at once.
+     * @param dataCallback Data access callback.
+     * @param viewCallback Callback for querying visible item range and update notifications.
+     * @param fillDataExecutor Executor to call {@link DataCallback#fillData} on.
+     * @param maxParallelTiles Maximum number of tiles handed to {@code fillDataExecutor} at the
+     *                         same time, must be at least 1.
+     */
+    public AsyncListUtil(@NonNull Class<T> klass, int tileSize,
+            @NonNull DataCallback<T> dataCallback, @NonNull ViewCallback viewCallback,
+            @NonNull Executor fillDataExecutor, int maxParallelTiles) {
+        this(klass, tileSize, dataCallback, viewCallback, maxParallelTiles, fillDataExecutor);
+    }
+
+    private AsyncListUtil(@NonNull Class<T> klass, int tileSize,
+            @NonNull DataCallback<T> dataCallback, @NonNull ViewCallback viewCallback,
+            int maxParallelTiles, @Nullable Executor fillDataExecutor) {
+        if (maxParallelTiles < 1) {
+            throw new IllegalArgumentException("maxParallelTiles must be at least 1");
+        }
         mTClass = klass;
         mTileSize = tileSize;
         mDataCallback = dataCallback;
         mViewCallback = viewCallback;
+        mFillDataExecutor = fillDataExecutor;
+        mMaxParallelTiles = maxParallelTiles;
 
         mTileList = new TileList<T>(mTileSize);
 
@@ -297,16 +341,25 @@ public class AsyncListUtil<T> {
 
         final SparseBooleanArray mLoadedTiles = new SparseBooleanArray();
 
-        private int mGeneration;
+        // Tiles handed to mFillDataExecutor, mapped to the generation they were requested for
+        final SparseIntArray mFillingTiles = new SparseIntArray();
+
+        // Tiles waiting for a free mFillDataExecutor slot, in request order
+        private int[] mDeferredTiles = new int[0];
+        private int mDeferredTileCount;
+
+        // Read from mFillDataExecutor threads to skip tiles that are no longer needed
+        private volatile int mGeneration;
         private int mItemCount;
 
-        private int mFirstRequiredTileStart;
-        private int mLastRequiredTileStart;
+        private volatile int mFirstRequiredTileStart;
+        private volatile int mLastRequiredTileStart;
 
         @Override
         public void refresh(int generation) {
             mGeneration = generation;
             mLoadedTiles.clear();
+            mDeferredTileCount = 0;
             mItemCount = mDataCallback.refreshData();
             mMainThreadProxy.updateItemCount(mGeneration, mItemCount);
         }
@@ -335,6 +388,7 @@ public class AsyncListUtil<T> {
 
             // All pending tile requests are removed by ThreadUtil at this point.
             // Re-request all required tiles in the most optimal order.
+            mDeferredTileCount = 0;
             if (scrollHint == ViewCallback.HINT_SCROLL_DESC) {
                 requestTiles(mFirstRequiredTileStart, lastVisibleTileStart, scrollHint, true);
                 requestTiles(lastVisibleTileStart + mTileSize, mLastRequiredTileStart, scrollHint,
@@ -369,6 +423,10 @@ public class AsyncListUtil<T> {
                 }
                 return;
             }
+            if (mFillDataExecutor != null) {
+                fillTileInParallel(position, scrollHint);
+                return;
+            }
             TileList.Tile<T> tile = acquireTile();
             tile.mStartPosition = position;
             tile.mItemCount = Math.min(mTileSize, mItemCount - tile.mStartPosition);
@@ -377,6 +435,88 @@ public class AsyncListUtil<T> {
             addTile(tile);
         }
 
+        private void fillTileInParallel(int position, int scrollHint) {
+            if (mFillingTiles.get(position, -1) == mGeneration) {
+                if (DEBUG) {
+                    log("already loading tile @%d", position);
+                }
+                return;
+            }
+            if (mFillingTiles.size() >= mMaxParallelTiles) {
+                deferTile(position);
+                return;
+            }
+            final TileList.Tile<T> tile = acquireTile();
+            tile.mStartPosition = position;
+            tile.mItemCount = Math.min(mTileSize, mItemCount - tile.mStartPosition);
+            final int generation = mGeneration;
+            mFillingTiles.put(position, generation);
+            mFillDataExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    boolean filled = false;
+                    if (generation == mGeneration && isTileRequired(tile.mStartPosition)) {
+                        mDataCallback.fillData(tile.mItems, tile.mStartPosition,
+                                tile.mItemCount);
+                        filled = true;
+                    }
+                    mBackgroundProxy.onTileFilled(generation, tile, filled, scrollHint);
+                }
+            });
+        }
+
+        @Override
+        public void onTileFilled(int generation, TileList.Tile<T> tile, boolean filled,
+                int scrollHint) {
+            final int position = tile.mStartPosition;
+            if (mFillingTiles.get(position, -1) == generation) {
+                mFillingTiles.delete(position);
+            }
+            if (!filled) {
+                // the items were not touched, no need to call recycleData on them
+                tile.mNext = mRecycledRoot;
+                mRecycledRoot = tile;
+                if (generation == mGeneration && isTileRequired(position)) {
+                    // the range changed back while the tile was waiting to be filled
+                    loadTile(position, scrollHint);
+                }
+            } else if (generation != mGeneration || isTileLoaded(position)) {
+                recycleTile(tile);
+            } else {
+                flushTileCache(scrollHint);
+                addTile(tile);
+            }
+
+            // start the next tiles in line, skipping those that went out of range
+            int index = 0;
+            while (index < mDeferredTileCount && mFillingTiles.size() < mMaxParallelTiles) {
+                final int deferred = mDeferredTiles[index++];
+                if (isTileRequired(deferred) && !isTileLoaded(deferred)) {
+                    fillTileInParallel(deferred, scrollHint);
+                }
+            }
+            mDeferredTileCount -= index;
+            System.arraycopy(mDeferredTiles, index, mDeferredTiles, 0, mDeferredTileCount);
+        }
+
+        private void deferTile(int position) {
+            for (int i = 0; i < mDeferredTileCount; i++) {
+                if (mDeferredTiles[i] == position) {
+                    return;
+                }
+            }
+            if (mDeferredTileCount == mDeferredTiles.length) {
+                final int[] deferredTiles = new int[Math.max(4, mDeferredTileCount * 2)];
+                System.arraycopy(mDeferredTiles, 0, deferredTiles, 0, mDeferredTileCount);
+                mDeferredTiles = deferredTiles;
+            }
+            mDeferredTiles[mDeferredTileCount++] = position;
+        }
+
+        private boolean isTileRequired(int position) {
+            return position >= mFirstRequiredTileStart && position <= mLastRequiredTileStart;
+        }
+
         @Override
         public void recycleTile(TileList.Tile<T> tile) {
             if (DEBUG) {
@@ -26,8 +26,12 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * DiffUtil is a utility class that calculates the difference between two lists and outputs a
@@ -61,6 +65,10 @@ import java.util.List;
  * the same constraint (e.g. a created timestamp for a list of posts), you can disable move
  * detection to improve performance.
  * <p>
+ * For very large lists, {@link #calculateDiff(KeyedCallback, boolean, Executor)} uses item keys
+ * to match the common prefix, suffix and unique items first, so that Myers' algorithm only runs
+ * on the small ranges in between, optionally in parallel, and detects moves through hash lookups.
+ * <p>
  * The actual runtime of the algorithm significantly depends on the number of changes in the list
  * and the cost of your comparison methods. Below are some average run times for reference:
  * (The test list is composed of random UUID Strings and the tests are run on Nexus 5X with M)
@@ -84,6 +92,12 @@ public class DiffUtil {
         // utility class, no instance.
     }
 
+    /**
+     * Ranges smaller than this are sent to Myers' algorithm directly instead of looking for
+     * unique anchors in them.
+     */
+    private static final int MIN_ANCHORED_RANGE_SIZE = 32;
+
     private static final Comparator<Diagonal> DIAGONAL_COMPARATOR = new Comparator<Diagonal>() {
         @Override
         public int compare(Diagonal o1, Diagonal o2) {
@@ -126,12 +140,6 @@ public class DiffUtil {
 
         final List<Diagonal> diagonals = new ArrayList<>();
 
-        // instead of a recursive implementation, we keep our own stack to avoid potential stack
-        // overflow exceptions
-        final List<Range> stack = new ArrayList<>();
-
-        stack.add(new Range(0, oldSize, 0, newSize));
-
         final int max = (oldSize + newSize + 1) / 2;
         // allocate forward and backward k-lines. K lines are diagonal lines in the matrix. (see the
         // paper for details)
@@ -139,6 +147,226 @@ public class DiffUtil {
         final CenteredArray forward = new CenteredArray(max * 2 + 1);
         final CenteredArray backward = new CenteredArray(max * 2 + 1);
 
+        findDiagonals(new Range(0, oldSize, 0, newSize), cb, forward, backward, diagonals);
+        // sort snakes
+        Collections.sort(diagonals, DIAGONAL_COMPARATOR);
+
+        return new DiffResult(cb, diagonals,
+                forward.backingData(), backward.backingData(),
+                detectMoves);
+    }
+
+    /**
+     * Calculates the list of update operations that can covert one list into the other one, using
+     * the item keys of the given {@link KeyedCallback} to split large lists into small
+     * independent ranges before running Myers' algorithm.
+     * <p>
+     * Common prefixes and suffixes are matched first. The remaining items are anchored on keys
+     * that occur exactly once in both lists (patience diff), and Myers' algorithm only runs on the
+     * gaps between those anchors. This keeps the memory proportional to the largest gap instead
+     * of the combined size of the lists, and makes the running time close to linear when most of
+     * the items are unique and unchanged, which is the common case for large feeds. The
+     * resulting edit script is always valid but might not be the minimal one that
+     * {@link #calculateDiff(Callback, boolean)} would find.
+     * <p>
+     * If {@code detectMoves} is {@code true}, moves are matched through a hash lookup on the item
+     * keys instead of the <code>O(N^2)</code> search, see {@link KeyedCallback}.
+     * <p>
+     * If an {@code executor} is provided, the gaps are diffed in parallel on it, with the calling
+     * thread taking part in the work, in which case the {@link KeyedCallback} must be safe to call
+     * from multiple threads at the same time.
+     *
+     * @param cb The callback that acts as a gateway to the backing list data
+     * @param detectMoves True if DiffUtil should try to detect moved items, false otherwise.
+     * @param executor Executor to diff independent ranges in parallel on, or {@code null} to
+     *                 calculate everything on the calling thread.
+     *
+     * @return A DiffResult that contains the information about the edit sequence to convert the
+     * old list into the new list.
+     */
+    @NonNull
+    public static DiffResult calculateDiff(@NonNull KeyedCallback cb, boolean detectMoves,
+            @Nullable Executor executor) {
+        final int oldSize = cb.getOldListSize();
+        final int newSize = cb.getNewListSize();
+
+        final List<Diagonal> diagonals = new ArrayList<>();
+        // ranges that could not be split any further and need to run through Myers' algorithm
+        final List<Range> gaps = new ArrayList<>();
+
+        final List<Range> stack = new ArrayList<>();
+        stack.add(new Range(0, oldSize, 0, newSize));
+        while (!stack.isEmpty()) {
+            final Range range = stack.remove(stack.size() - 1);
+            trimCommonEnds(range, cb, diagonals);
+            if (range.oldSize() == 0 || range.newSize() == 0) {
+                // only additions or removals left
+                continue;
+            }
+            if (range.oldSize() < MIN_ANCHORED_RANGE_SIZE
+                    || range.newSize() < MIN_ANCHORED_RANGE_SIZE
+                    || !splitOnUniqueAnchors(range, cb, diagonals, stack)) {
+                gaps.add(range);
+            }
+        }
+
+        if (executor == null || gaps.size() < 2) {
+            int maxGapSize = 0;
+            for (Range gap : gaps) {
+                maxGapSize = Math.max(maxGapSize, gap.oldSize() + gap.newSize());
+            }
+            final int max = (maxGapSize + 1) / 2;
+            final CenteredArray forward = new CenteredArray(max * 2 + 1);
+            final CenteredArray backward = new CenteredArray(max * 2 + 1);
+            for (Range gap : gaps) {
+                findDiagonals(gap, cb, forward, backward, diagonals);
+            }
+        } else {
+            diagonals.addAll(new ParallelGapDiffer(cb, gaps).run(executor));
+        }
+        // sort snakes
+        Collections.sort(diagonals, DIAGONAL_COMPARATOR);
+
+        return new DiffResult(cb, diagonals, new int[oldSize], new int[newSize], detectMoves);
+    }
+
+    /**
+     * Matches the common prefix and suffix of the given range, adding them as diagonals and
+     * shrinking the range to the part in between.
+     */
+    private static void trimCommonEnds(Range range, Callback cb, List<Diagonal> diagonals) {
+        int prefix = 0;
+        final int maxPrefix = Math.min(range.oldSize(), range.newSize());
+        while (prefix < maxPrefix
+                && cb.areItemsTheSame(range.oldListStart + prefix, range.newListStart + prefix)) {
+            prefix++;
+        }
+        if (prefix > 0) {
+            diagonals.add(new Diagonal(range.oldListStart, range.newListStart, prefix));
+            range.oldListStart += prefix;
+            range.newListStart += prefix;
+        }
+        int suffix = 0;
+        final int maxSuffix = Math.min(range.oldSize(), range.newSize());
+        while (suffix < maxSuffix
+                && cb.areItemsTheSame(range.oldListEnd - suffix - 1,
+                range.newListEnd - suffix - 1)) {
+            suffix++;
+        }
+        if (suffix > 0) {
+            range.oldListEnd -= suffix;
+            range.newListEnd -= suffix;
+            diagonals.add(new Diagonal(range.oldListEnd, range.newListEnd, suffix));
+        }
+    }
+
+    /**
+     * Finds the items whose keys occur exactly once in both halves of the range, picks the
+     * longest sequence of them that is in the same order in both lists and adds the gaps between
+     * them to the {@code stack}.
+     *
+     * @return false if there were no anchors, in which case the range is left untouched
+     */
+    private static boolean splitOnUniqueAnchors(Range range, KeyedCallback cb,
+            List<Diagonal> diagonals, List<Range> stack) {
+        // key -> [occurrences in old, occurrences in new, last old position, last new position]
+        final Map<Object, int[]> occurrences = new HashMap<>();
+        for (int x = range.oldListStart; x < range.oldListEnd; x++) {
+            final Object key = cb.getOldItemKey(x);
+            int[] entry = occurrences.get(key);
+            if (entry == null) {
+                entry = new int[4];
+                occurrences.put(key, entry);
+            }
+            entry[0]++;
+            entry[2] = x;
+        }
+        for (int y = range.newListStart; y < range.newListEnd; y++) {
+            final int[] entry = occurrences.get(cb.getNewItemKey(y));
+            if (entry != null) {
+                entry[1]++;
+                entry[3] = y;
+            }
+        }
+        // positions of the unique common items, in new list order
+        final int[] anchorOld = new int[range.newSize()];
+        final int[] anchorNew = new int[range.newSize()];
+        int anchorCount = 0;
+        for (int y = range.newListStart; y < range.newListEnd; y++) {
+            final int[] entry = occurrences.get(cb.getNewItemKey(y));
+            if (entry != null && entry[0] == 1 && entry[1] == 1
+                    && cb.areItemsTheSame(entry[2], y)) {
+                anchorOld[anchorCount] = entry[2];
+                anchorNew[anchorCount] = y;
+                anchorCount++;
+            }
+        }
+        if (anchorCount == 0) {
+            return false;
+        }
+
+        // longest increasing subsequence of old positions, via patience sorting
+        final int[] tails = new int[anchorCount];
+        final int[] previous = new int[anchorCount];
+        int length = 0;
+        for (int i = 0; i < anchorCount; i++) {
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                final int mid = (low + high) >>> 1;
+                if (anchorOld[tails[mid]] < anchorOld[i]) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            previous[i] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = i;
+            if (low == length) {
+                length++;
+            }
+        }
+
+        // walk the anchors backwards, merging contiguous anchors into a single diagonal
+        int gapOldEnd = range.oldListEnd;
+        int gapNewEnd = range.newListEnd;
+        int anchor = tails[length - 1];
+        while (anchor != -1) {
+            int x = anchorOld[anchor];
+            int y = anchorNew[anchor];
+            int size = 1;
+            anchor = previous[anchor];
+            while (anchor != -1 && anchorOld[anchor] == x - 1 && anchorNew[anchor] == y - 1) {
+                x--;
+                y--;
+                size++;
+                anchor = previous[anchor];
+            }
+            diagonals.add(new Diagonal(x, y, size));
+            stack.add(new Range(x + size, gapOldEnd, y + size, gapNewEnd));
+            gapOldEnd = x;
+            gapNewEnd = y;
+        }
+        stack.add(new Range(range.oldListStart, gapOldEnd, range.newListStart, gapNewEnd));
+        return true;
+    }
+
+    /**
+     * Runs Myers' algorithm on the given range and adds the diagonals it finds to
+     * {@code diagonals}. The k-line arrays must be large enough for the range.
+     */
+    private static void findDiagonals(
+            Range root,
+            Callback cb,
+            CenteredArray forward,
+            CenteredArray backward,
+            List<Diagonal> diagonals) {
+        // instead of a recursive implementation, we keep our own stack to avoid potential stack
+        // overflow exceptions
+        final List<Range> stack = new ArrayList<>();
+
+        stack.add(root);
+
         // We pool the ranges to avoid allocations for each recursive call.
         final List<Range> rangePool = new ArrayList<>();
         while (!stack.isEmpty()) {
@@ -171,12 +399,6 @@ public class DiffUtil {
             }
 
         }
-        // sort snakes
-        Collections.sort(diagonals, DIAGONAL_COMPARATOR);
-
-        return new DiffResult(cb, diagonals,
-                forward.backingData(), backward.backingData(),
-                detectMoves);
     }
 
     /**
@@ -469,6 +691,122 @@ public class DiffUtil {
         }
     }
 
+    /**
+     * A {@link Callback} that can also provide a key for each item, which allows
+     * {@link DiffUtil#calculateDiff(KeyedCallback, boolean, Executor)} to match items through hash
+     * lookups instead of pairwise comparisons.
+     * <p>
+     * The keys must be consistent with {@link #areItemsTheSame(int, int)}: an old and a new item
+     * must have {@link Object#equals(Object) equal} keys with the same
+     * {@link Object#hashCode() hash code} if and only if {@link #areItemsTheSame(int, int)}
+     * returns {@code true} for them. Item ids are usually a good choice.
+     */
+    public abstract static class KeyedCallback extends Callback {
+        /**
+         * Returns the key of the item at the given position in the old list.
+         *
+         * @param oldItemPosition The position of the item in the old list
+         * @return The key of the item, see {@link KeyedCallback}.
+         */
+        @Nullable
+        public abstract Object getOldItemKey(int oldItemPosition);
+
+        /**
+         * Returns the key of the item at the given position in the new list.
+         *
+         * @param newItemPosition The position of the item in the new list
+         * @return The key of the item, see {@link KeyedCallback}.
+         */
+        @Nullable
+        public abstract Object getNewItemKey(int newItemPosition);
+    }
+
+    /**
+     * Runs Myers' algorithm on independent ranges in parallel. The calling thread takes part in
+     * the work so that the diff completes even if the executor never runs the submitted tasks,
+     * e.g. when it is the single thread executor that called
+     * {@link DiffUtil#calculateDiff(KeyedCallback, boolean, Executor)}.
+     */
+    private static class ParallelGapDiffer implements Runnable {
+        private final Callback mCallback;
+        private final List<Range> mGaps;
+        private final AtomicInteger mNextGap = new AtomicInteger();
+        private final List<Diagonal> mDiagonals = new ArrayList<>();
+        private int mFinishedGaps;
+        private Throwable mFailure;
+
+        ParallelGapDiffer(Callback callback, List<Range> gaps) {
+            mCallback = callback;
+            mGaps = gaps;
+        }
+
+        List<Diagonal> run(Executor executor) {
+            // the largest gaps first so that they don't end up last on a single thread
+            Collections.sort(mGaps, new Comparator<Range>() {
+                @Override
+                public int compare(Range o1, Range o2) {
+                    return (o2.oldSize() + o2.newSize()) - (o1.oldSize() + o1.newSize());
+                }
+            });
+            final int helpers = Math.min(mGaps.size() - 1,
+                    Runtime.getRuntime().availableProcessors() - 1);
+            for (int i = 0; i < helpers; i++) {
+                executor.execute(this);
+            }
+            run();
+            synchronized (this) {
+                boolean interrupted = false;
+                while (mFinishedGaps < mGaps.size()) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+                if (mFailure instanceof RuntimeException) {
+                    throw (RuntimeException) mFailure;
+                } else if (mFailure instanceof Error) {
+                    throw (Error) mFailure;
+                }
+                return mDiagonals;
+            }
+        }
+
+        @Override
+        public void run() {
+            CenteredArray forward = null;
+            CenteredArray backward = null;
+            int index;
+            while ((index = mNextGap.getAndIncrement()) < mGaps.size()) {
+                final Range gap = mGaps.get(index);
+                final List<Diagonal> diagonals = new ArrayList<>();
+                Throwable failure = null;
+                try {
+                    final int max = (gap.oldSize() + gap.newSize() + 1) / 2;
+                    if (forward == null || forward.backingData().length < max * 2 + 1) {
+                        // gaps are sorted by size, so this only allocates for the first gap
+                        forward = new CenteredArray(max * 2 + 1);
+                        backward = new CenteredArray(max * 2 + 1);
+                    }
+                    findDiagonals(gap, mCallback, forward, backward, diagonals);
+                } catch (Throwable t) {
+                    failure = t;
+                }
+                synchronized (this) {
+                    mDiagonals.addAll(diagonals);
+                    if (failure != null && mFailure == null) {
+                        mFailure = failure;
+                    }
+                    mFinishedGaps++;
+                    notifyAll();
+                }
+            }
+        }
+    }
+
     /**
      * A diagonal is a match in the graph.
      * Rather than snakes, we only record the diagonals in the path.
@@ -707,9 +1045,62 @@ public class DiffUtil {
             }
             // now all matches are marked, lets look for moves
             if (mDetectMoves) {
-                // traverse each addition / removal from the end of the list, find matching
-                // addition removal from before
-                findMoveMatches();
+                if (mCallback instanceof KeyedCallback) {
+                    findMoveMatchesByKey((KeyedCallback) mCallback);
+                } else {
+                    // traverse each addition / removal from the end of the list, find matching
+                    // addition removal from before
+                    findMoveMatches();
+                }
+            }
+        }
+
+        /**
+         * Same as {@link #findMoveMatches()} but uses the item keys to find the matching addition
+         * of each removal in constant time instead of searching all additions.
+         */
+        private void findMoveMatchesByKey(KeyedCallback callback) {
+            // key -> positions of the additions with that key, in increasing order
+            final Map<Object, ArrayDeque<Integer>> additions = new HashMap<>();
+            int posY = 0;
+            for (Diagonal diagonal : mDiagonals) {
+                while (posY < diagonal.y) {
+                    if (mNewItemStatuses[posY] == 0) {
+                        final Object key = callback.getNewItemKey(posY);
+                        ArrayDeque<Integer> positions = additions.get(key);
+                        if (positions == null) {
+                            positions = new ArrayDeque<>();
+                            additions.put(key, positions);
+                        }
+                        positions.add(posY);
+                    }
+                    posY++;
+                }
+                posY = diagonal.endY();
+            }
+            if (additions.isEmpty()) {
+                return;
+            }
+            int posX = 0;
+            for (Diagonal diagonal : mDiagonals) {
+                while (posX < diagonal.x) {
+                    if (mOldItemStatuses[posX] == 0) {
+                        final ArrayDeque<Integer> positions =
+                                additions.get(callback.getOldItemKey(posX));
+                        if (positions != null && !positions.isEmpty()
+                                && callback.areItemsTheSame(posX, positions.peekFirst())) {
+                            final int matchY = positions.pollFirst();
+                            boolean contentsMatching = mCallback.areContentsTheSame(posX, matchY);
+                            final int changeFlag = contentsMatching ? FLAG_MOVED_NOT_CHANGED
+                                    : FLAG_MOVED_CHANGED;
+                            mOldItemStatuses[posX] = (matchY << FLAG_OFFSET) | changeFlag;
+                            mNewItemStatuses[matchY] = (posX << FLAG_OFFSET) | changeFlag;
+                        }
+                    }
+                    posX++;
+                }
+                // snap back for the next diagonal
+                posX = diagonal.endX();
             }
         }
 
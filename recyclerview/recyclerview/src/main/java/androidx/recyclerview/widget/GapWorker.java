@@ -31,6 +31,18 @@ final class GapWorker implements Runnable {
 
     static final ThreadLocal<GapWorker> sGapWorker = new ThreadLocal<>();
 
+    /**
+     * With adaptive prefetch, number of frames of scrolling at the current velocity to prefetch
+     * ahead of the positions requested by the LayoutManager.
+     */
+    static final int ADAPTIVE_LOOKAHEAD_FRAMES = 4;
+
+    /**
+     * With adaptive prefetch, upper bound on the number of extra positions prefetched ahead of
+     * the positions requested by the LayoutManager.
+     */
+    static final int ADAPTIVE_MAX_LOOKAHEAD_ITEMS = 8;
+
     ArrayList<RecyclerView> mRecyclerViews = new ArrayList<>();
     long mPostTimeNs;
     long mFrameIntervalNs;
@@ -70,6 +82,17 @@ final class GapWorker implements Runnable {
 
         int mCount;
 
+        /**
+         * True while GapWorker fetches a ViewHolder for this view, so that the Recycler can tell
+         * prefetch binds apart from layout binds.
+         */
+        boolean mPrefetching;
+
+        // Counters exposed via RecyclerView#getPrefetchStats()
+        int mHitCount;
+        int mWastedCount;
+        int mMissedDeadlineCount;
+
         void setPrefetchVector(int dx, int dy) {
             mPrefetchDx = dx;
             mPrefetchDy = dy;
@@ -96,14 +119,98 @@ final class GapWorker implements Runnable {
                     if (!view.hasPendingAdapterUpdates()) {
                         layout.collectAdjacentPrefetchPositions(mPrefetchDx, mPrefetchDy,
                                 view.mState, this);
+                        if (view.mAdaptivePrefetchEnabled) {
+                            addLookaheadPositions(view);
+                        }
                     }
                 }
 
-                if (mCount > layout.mPrefetchMaxCountObserved) {
-                    layout.mPrefetchMaxCountObserved = mCount;
-                    layout.mPrefetchMaxObservedInInitialPrefetch = nested;
-                    view.mRecycler.updateViewCacheSize();
+                updateMaxCountObserved(view, nested);
+            }
+        }
+
+        void updateMaxCountObserved(RecyclerView view, boolean nested) {
+            final RecyclerView.LayoutManager layout = view.mLayout;
+            if (mCount > layout.mPrefetchMaxCountObserved) {
+                layout.mPrefetchMaxCountObserved = mCount;
+                layout.mPrefetchMaxObservedInInitialPrefetch = nested;
+                view.mRecycler.updateViewCacheSize();
+            }
+        }
+
+        /**
+         * Extends the positions collected from the LayoutManager further in the scroll direction,
+         * by as many items as are expected to scroll into view over the next
+         * {@link #ADAPTIVE_LOOKAHEAD_FRAMES} frames at the current velocity.
+         */
+        private void addLookaheadPositions(RecyclerView view) {
+            final RecyclerView.LayoutManager layout = view.mLayout;
+            final int velocity = Math.abs(mPrefetchDx) + Math.abs(mPrefetchDy);
+            final int childCount = layout.getChildCount();
+            if (mCount == 0 || velocity == 0 || childCount == 0) {
+                return;
+            }
+
+            // measure how many pixels an item occupies along the scroll axis on average
+            final boolean vertical = Math.abs(mPrefetchDy) >= Math.abs(mPrefetchDx);
+            int minPosition = Integer.MAX_VALUE;
+            int maxPosition = Integer.MIN_VALUE;
+            int minEdge = Integer.MAX_VALUE;
+            int maxEdge = Integer.MIN_VALUE;
+            for (int i = 0; i < childCount; i++) {
+                final View child = layout.getChildAt(i);
+                final int position = layout.getPosition(child);
+                minPosition = Math.min(minPosition, position);
+                maxPosition = Math.max(maxPosition, position);
+                minEdge = Math.min(minEdge,
+                        vertical ? layout.getDecoratedTop(child) : layout.getDecoratedLeft(child));
+                maxEdge = Math.max(maxEdge, vertical
+                        ? layout.getDecoratedBottom(child) : layout.getDecoratedRight(child));
+            }
+            if (maxEdge <= minEdge) {
+                return;
+            }
+            final float pixelsPerItem = (float) (maxEdge - minEdge)
+                    / (maxPosition - minPosition + 1);
+
+            // find the furthest collected position, which must be outside of the attached range
+            int direction = 0;
+            int furthestPosition = -1;
+            int furthestDistance = 0;
+            for (int i = 0; i < mCount * 2; i += 2) {
+                final int position = mPrefetchArray[i];
+                final int positionDirection;
+                if (position > maxPosition) {
+                    positionDirection = 1;
+                } else if (position < minPosition) {
+                    positionDirection = -1;
+                } else {
+                    continue;
+                }
+                if (direction != 0 && direction != positionDirection) {
+                    // prefetching in both directions, nothing to extrapolate
+                    return;
+                }
+                direction = positionDirection;
+                if (furthestPosition == -1
+                        || (position - furthestPosition) * direction > 0) {
+                    furthestPosition = position;
+                    furthestDistance = mPrefetchArray[i + 1];
+                }
+            }
+            if (direction == 0) {
+                return;
+            }
+
+            final int lookaheadItems = Math.min(ADAPTIVE_MAX_LOOKAHEAD_ITEMS,
+                    (int) (velocity * ADAPTIVE_LOOKAHEAD_FRAMES / pixelsPerItem));
+            final int itemCount = view.mState.getItemCount();
+            for (int i = 1; i <= lookaheadItems; i++) {
+                final int position = furthestPosition + direction * i;
+                if (position < 0 || position >= itemCount) {
+                    break;
                 }
+                addPosition(position, furthestDistance + (int) (pixelsPerItem * i));
             }
         }
 
@@ -285,9 +392,14 @@ final class GapWorker implements Runnable {
         RecyclerView.ViewHolder holder;
         try {
             view.onEnterLayoutOrScroll();
+            view.mPrefetchRegistry.mPrefetching = true;
             holder = recycler.tryGetViewHolderForPositionByDeadline(
                     position, false, deadlineNs);
+            view.mPrefetchRegistry.mPrefetching = false;
 
+            if (holder == null || !holder.isBound()) {
+                view.mPrefetchRegistry.mMissedDeadlineCount++;
+            }
             if (holder != null) {
                 if (holder.isBound() && !holder.isInvalid()) {
                     // Only give the view a chance to go into the cache if binding succeeded
@@ -302,13 +414,14 @@ final class GapWorker implements Runnable {
                 }
             }
         } finally {
+            view.mPrefetchRegistry.mPrefetching = false;
             view.onExitLayoutOrScroll(false);
         }
         return holder;
     }
 
     private void prefetchInnerRecyclerViewWithDeadline(@Nullable RecyclerView innerView,
-            long deadlineNs) {
+            long deadlineNs, boolean adaptive) {
         if (innerView == null) {
             return;
         }
@@ -334,12 +447,47 @@ final class GapWorker implements Runnable {
                     final int innerPosition = innerPrefetchRegistry.mPrefetchArray[i];
                     prefetchPositionWithDeadline(innerView, innerPosition, deadlineNs);
                 }
+                if (adaptive) {
+                    prefetchAdditionalInnerPositions(innerView, deadlineNs);
+                }
             } finally {
                 TraceCompat.endSection();
             }
         }
     }
 
+    /**
+     * Continues the nested prefetch of {@code innerView} past its initial prefetch positions, as
+     * long as more than half a frame interval is left before the deadline. Prefetches up to as
+     * many items again as the LayoutManager initially requested.
+     */
+    private void prefetchAdditionalInnerPositions(RecyclerView innerView, long deadlineNs) {
+        final LayoutPrefetchRegistryImpl innerPrefetchRegistry = innerView.mPrefetchRegistry;
+        final int initialCount = innerPrefetchRegistry.mCount;
+        final int firstPosition = innerPrefetchRegistry.mPrefetchArray[0];
+        int lastPosition = innerPrefetchRegistry.mPrefetchArray[(initialCount - 1) * 2];
+        final int direction = firstPosition > lastPosition ? -1 : 1;
+        final int itemCount = innerView.mState.getItemCount();
+        for (int i = 0; i < initialCount; i++) {
+            if (deadlineNs - innerView.getNanoTime() < mFrameIntervalNs / 2) {
+                break;
+            }
+            final int position = lastPosition + direction;
+            if (position < 0 || position >= itemCount) {
+                break;
+            }
+            // register the position first, so that the view cache is large enough to keep it
+            innerPrefetchRegistry.addPosition(position, 0);
+            innerPrefetchRegistry.updateMaxCountObserved(innerView, true);
+            final RecyclerView.ViewHolder holder =
+                    prefetchPositionWithDeadline(innerView, position, deadlineNs);
+            if (holder == null || !holder.isBound()) {
+                break;
+            }
+            lastPosition = position;
+        }
+    }
+
     private void flushTaskWithDeadline(Task task, long deadlineNs) {
         long taskDeadlineNs = task.immediate ? RecyclerView.FOREVER_NS : deadlineNs;
         RecyclerView.ViewHolder holder = prefetchPositionWithDeadline(task.view,
@@ -348,7 +496,8 @@ final class GapWorker implements Runnable {
                 && holder.mNestedRecyclerView != null
                 && holder.isBound()
                 && !holder.isInvalid()) {
-            prefetchInnerRecyclerViewWithDeadline(holder.mNestedRecyclerView.get(), deadlineNs);
+            prefetchInnerRecyclerViewWithDeadline(holder.mNestedRecyclerView.get(), deadlineNs,
+                    task.view.mAdaptivePrefetchEnabled);
         }
     }
 
@@ -94,6 +94,7 @@ class MessageThreadUtil<T> implements ThreadUtil<T> {
             static final int UPDATE_RANGE = 2;
             static final int LOAD_TILE = 3;
             static final int RECYCLE_TILE = 4;
+            static final int TILE_FILLED = 5;
 
             @Override
             public void refresh(int generation) {
@@ -117,6 +118,13 @@ class MessageThreadUtil<T> implements ThreadUtil<T> {
                 sendMessage(SyncQueueItem.obtainMessage(RECYCLE_TILE, 0, tile));
             }
 
+            @Override
+            public void onTileFilled(int generation, TileList.Tile<T> tile, boolean filled,
+                    int scrollHint) {
+                sendMessage(SyncQueueItem.obtainMessage(TILE_FILLED, generation, scrollHint,
+                        filled ? 1 : 0, 0, 0, tile));
+            }
+
             private void sendMessage(SyncQueueItem msg) {
                 mQueue.sendMessage(msg);
                 maybeExecuteBackgroundRunnable();
@@ -160,6 +168,12 @@ class MessageThreadUtil<T> implements ThreadUtil<T> {
                                 TileList.Tile<T> tile = (TileList.Tile<T>) msg.data;
                                 callback.recycleTile(tile);
                                 break;
+                            case TILE_FILLED:
+                                @SuppressWarnings("unchecked")
+                                TileList.Tile<T> filledTile = (TileList.Tile<T>) msg.data;
+                                callback.onTileFilled(msg.arg1, filledTile, msg.arg3 != 0,
+                                        msg.arg2);
+                                break;
                             default:
                                 Log.e("ThreadUtil", "Unsupported message, what=" + msg.what);
                         }
@@ -25,7 +25,9 @@ import static androidx.core.view.ViewCompat.TYPE_TOUCH;
 
 import android.animation.LayoutTransition;
 import android.annotation.SuppressLint;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.content.res.Configuration;
 import android.content.res.Resources;
 import android.content.res.TypedArray;
 import android.database.Observable;
@@ -98,6 +100,7 @@ import java.util.Collections;
 import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A flexible view for providing a limited window into a large data set.
@@ -583,6 +586,7 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
     GapWorker mGapWorker;
     GapWorker.LayoutPrefetchRegistryImpl mPrefetchRegistry =
             ALLOW_THREAD_GAP_WORK ? new GapWorker.LayoutPrefetchRegistryImpl() : null;
+    boolean mAdaptivePrefetchEnabled;
 
     final State mState = new State();
 
@@ -1609,6 +1613,55 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
         mRecycler.setViewCacheExtension(extension);
     }
 
+    /**
+     * Enables adaptive scheduling of item prefetch for this RecyclerView.
+     *
+     * <p>By default, prefetch only fetches the items the {@link LayoutManager} expects to be
+     * needed in the next frame, and decides whether an item fits into the idle time before the
+     * next frame from the average create and bind time of its view type.</p>
+     *
+     * <p>When enabled, the cost of an item is estimated from a histogram of recent create and
+     * bind times per view type, so that rare expensive items don't make prefetch miss the frame.
+     * Prefetch also looks further ahead in the scroll direction, proportional to the scroll
+     * velocity, and fetches more items of nested RecyclerViews when the frame has idle time
+     * left. Items fetched this way are kept in the view cache, which grows accordingly.</p>
+     *
+     * <p>Use {@link #getPrefetchStats()} to measure the effect on a given list.</p>
+     *
+     * @param enabled True to enable adaptive prefetch scheduling, false to use the default
+     *                behavior.
+     * @see #isAdaptivePrefetchEnabled()
+     */
+    public void setAdaptivePrefetchEnabled(boolean enabled) {
+        mAdaptivePrefetchEnabled = enabled;
+    }
+
+    /**
+     * Returns whether adaptive prefetch scheduling is enabled for this RecyclerView.
+     *
+     * @return True if adaptive prefetch is enabled.
+     * @see #setAdaptivePrefetchEnabled(boolean)
+     */
+    public boolean isAdaptivePrefetchEnabled() {
+        return mAdaptivePrefetchEnabled;
+    }
+
+    /**
+     * Returns a snapshot of the prefetch counters of this RecyclerView. Counters are cumulative
+     * over the lifetime of the RecyclerView, compare two snapshots to measure a specific
+     * interaction such as a fling.
+     *
+     * @return Current prefetch counters.
+     */
+    @NonNull
+    public PrefetchStats getPrefetchStats() {
+        if (!ALLOW_THREAD_GAP_WORK) {
+            return new PrefetchStats(0, 0, 0);
+        }
+        return new PrefetchStats(mPrefetchRegistry.mHitCount, mPrefetchRegistry.mWastedCount,
+                mPrefetchRegistry.mMissedDeadlineCount);
+    }
+
     /**
      * Set the number of offscreen views to retain before adding them to the potentially shared
      * {@link #getRecycledViewPool() recycled view pool}.
@@ -6142,10 +6195,32 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
      * and use {@link RecyclerView#setRecycledViewPool(RecycledViewPool)}.
      * <p>
      * RecyclerView automatically creates a pool for itself if you don't provide one.
+     * <p>
+     * By default the pool holds up to 5 ViewHolders per view type, see
+     * {@link #setMaxRecycledViews(int, int)}. Pools shared by many RecyclerViews or used with many
+     * view types can instead {@link #setAutoSizingEnabled(boolean) size themselves} from the
+     * observed usage of each view type.
      */
     public static class RecycledViewPool {
         private static final int DEFAULT_MAX_SCRAP = 5;
 
+        /**
+         * Upper bound of the per type capacity when auto sizing is enabled.
+         */
+        static final int MAX_AUTO_SCRAP = 20;
+
+        /**
+         * View types that take longer than this to create keep as many ViewHolders as were ever
+         * in use at the same time when auto sizing is enabled, cheaper ones keep half as many.
+         */
+        static final long EXPENSIVE_CREATE_NS = TimeUnit.MILLISECONDS.toNanos(1);
+
+        /**
+         * Percentile of the create/bind cost histograms used to decide whether a prefetch fits
+         * into the remaining frame budget when adaptive prefetch is enabled.
+         */
+        static final int ADAPTIVE_COST_PERCENTILE = 90;
+
         /**
          * Tracks both pooled holders, as well as create/bind timing metadata for the given type.
          *
@@ -6165,6 +6240,75 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
             int mMaxScrap = DEFAULT_MAX_SCRAP;
             long mCreateRunningAverageNs = 0;
             long mBindRunningAverageNs = 0;
+            final CostHistogram mCreateCostHistogram = new CostHistogram();
+            final CostHistogram mBindCostHistogram = new CostHistogram();
+
+            /**
+             * True if {@link #mMaxScrap} was set by {@link #setMaxRecycledViews(int, int)}, which
+             * opts the type out of auto sizing.
+             */
+            boolean mMaxScrapSetByUser;
+
+            /**
+             * Approximate number of ViewHolders of this type handed out by the pool or created,
+             * and not yet returned. Holders that are dropped without being recycled are never
+             * subtracted, so this is decayed to the current value on trim.
+             */
+            int mInUseCount;
+            int mPeakInUseCount;
+        }
+
+        /**
+         * Decaying histogram of create or bind durations, used by adaptive prefetch to estimate
+         * the cost of an item from the tail of its distribution rather than from the running
+         * average, which hides the occasional expensive item that makes a prefetch miss the frame.
+         *
+         * Bucket 0 holds durations below {@code 1 << BUCKET_SHIFT} ns (~65us), each following
+         * bucket covers twice the range of the previous one.
+         */
+        static class CostHistogram {
+            private static final int BUCKET_SHIFT = 16;
+            private static final int BUCKET_COUNT = 16;
+            private static final int DECAY_THRESHOLD = 256;
+
+            final int[] mBuckets = new int[BUCKET_COUNT];
+            int mTotal;
+
+            void add(long durationNs) {
+                final int bucket = Math.min(BUCKET_COUNT - 1,
+                        64 - Long.numberOfLeadingZeros(durationNs >> BUCKET_SHIFT));
+                mBuckets[bucket]++;
+                mTotal++;
+                if (mTotal >= DECAY_THRESHOLD) {
+                    // halve all buckets so that the histogram follows changes in item cost
+                    mTotal = 0;
+                    for (int i = 0; i < BUCKET_COUNT; i++) {
+                        mBuckets[i] = (mBuckets[i] + 1) >> 1;
+                        mTotal += mBuckets[i];
+                    }
+                }
+            }
+
+            /**
+             * @return the estimated duration at the given percentile, or 0 if nothing has been
+             * recorded yet
+             */
+            long estimateNs(int percentile) {
+                if (mTotal == 0) {
+                    return 0;
+                }
+                final int target = (mTotal * percentile + 99) / 100;
+                int count = 0;
+                for (int i = 0; i < BUCKET_COUNT; i++) {
+                    count += mBuckets[i];
+                    if (count >= target) {
+                        // middle of the bucket's range
+                        final long upperNs = 1L << (BUCKET_SHIFT + i);
+                        return i == 0 ? upperNs / 2 : upperNs / 4 * 3;
+                    }
+                }
+                return 1L << (BUCKET_SHIFT + BUCKET_COUNT - 1);
+            }
         }
 
         SparseArray<ScrapData> mScrap = new SparseArray<>();
@@ -6197,6 +6341,16 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
         Set<Adapter<?>> mAttachedAdaptersForPoolingContainer =
                 Collections.newSetFromMap(new IdentityHashMap<>());
 
+        private boolean mAutoSizingEnabled;
+
+        /**
+         * Number of attached RecyclerViews using this pool. The memory trim callbacks are
+         * registered while this is greater than zero and auto sizing is enabled.
+         */
+        private int mTrimMemoryRegistrationCount;
+        private Context mTrimMemoryContext;
+        ComponentCallbacks2 mTrimMemoryCallbacks;
+
         /**
          * Discard all ViewHolders.
          */
@@ -6210,8 +6364,158 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
             }
         }
 
+        /**
+         * Enables sizing the pool from the observed usage of each view type, instead of holding
+         * up to 5 ViewHolders per type.
+         * <p>
+         * When enabled, the capacity of a view type follows the largest number of its ViewHolders
+         * that were in use at the same time across all RecyclerViews sharing this pool, up to
+         * 20. View types that are cheap to create keep half as many, since re-creating them
+         * costs less than holding on to them. View types configured with
+         * {@link #setMaxRecycledViews(int, int)} keep their configured capacity.
+         * <p>
+         * While auto sizing is enabled and one of its RecyclerViews is attached to a window, the
+         * pool is also registered for {@link ComponentCallbacks2#onTrimMemory(int)}, see
+         * {@link #onTrimMemory(int)}.
+         *
+         * @param enabled True to size the pool automatically.
+         * @see #isAutoSizingEnabled()
+         */
+        public void setAutoSizingEnabled(boolean enabled) {
+            mAutoSizingEnabled = enabled;
+            if (enabled) {
+                for (int i = 0; i < mScrap.size(); i++) {
+                    ScrapData scrapData = mScrap.valueAt(i);
+                    trimScrapHeap(scrapData, getMaxScrap(scrapData));
+                }
+            }
+            updateTrimMemoryCallbacks();
+        }
+
+        /**
+         * Returns whether the pool sizes itself from the observed usage of each view type.
+         *
+         * @return True if auto sizing is enabled.
+         * @see #setAutoSizingEnabled(boolean)
+         */
+        public boolean isAutoSizingEnabled() {
+            return mAutoSizingEnabled;
+        }
+
+        /**
+         * Releases pooled ViewHolders according to the memory trim level.
+         * <p>
+         * Pools with {@link #setAutoSizingEnabled(boolean) auto sizing} enabled receive this call
+         * automatically while one of their RecyclerViews is attached. Otherwise, it can be called
+         * from {@link ComponentCallbacks2#onTrimMemory(int)}.
+         * <p>
+         * While the app is in the foreground, moderate and low memory levels release cheap to
+         * create ViewHolders first and halve the rest. Critical levels, or any level while the
+         * app is in the background, release all pooled ViewHolders.
+         *
+         * @param level The trim level, as passed to {@link ComponentCallbacks2#onTrimMemory(int)}.
+         */
+        public void onTrimMemory(int level) {
+            if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                    || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+                clear();
+                // forget the peak usage, including holders that were dropped without being
+                // recycled, so that auto sizing starts over from the current usage
+                for (int i = 0; i < mScrap.size(); i++) {
+                    ScrapData scrapData = mScrap.valueAt(i);
+                    scrapData.mPeakInUseCount = scrapData.mInUseCount;
+                }
+            } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+                final boolean low = level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW;
+                for (int i = 0; i < mScrap.size(); i++) {
+                    ScrapData scrapData = mScrap.valueAt(i);
+                    if (scrapData.mCreateRunningAverageNs < EXPENSIVE_CREATE_NS) {
+                        trimScrapHeap(scrapData, 0);
+                    } else if (low) {
+                        // trim relative to the capacity so that repeated calls don't drain the
+                        // heap further
+                        trimScrapHeap(scrapData, getMaxScrap(scrapData) / 2);
+                    }
+                }
+            }
+        }
+
+        void registerForTrimMemory(@NonNull Context context) {
+            if (mTrimMemoryRegistrationCount++ == 0) {
+                mTrimMemoryContext = context.getApplicationContext();
+                updateTrimMemoryCallbacks();
+            }
+        }
+
+        void unregisterForTrimMemory() {
+            if (--mTrimMemoryRegistrationCount == 0) {
+                updateTrimMemoryCallbacks();
+                mTrimMemoryContext = null;
+            }
+        }
+
+        /**
+         * Registers or unregisters the memory trim callbacks, so that they are registered only
+         * while auto sizing is enabled and at least one RecyclerView using the pool is attached.
+         */
+        private void updateTrimMemoryCallbacks() {
+            final boolean register = mAutoSizingEnabled && mTrimMemoryRegistrationCount > 0;
+            if (register && mTrimMemoryCallbacks == null) {
+                mTrimMemoryCallbacks = new ComponentCallbacks2() {
+                    @Override
+                    public void onTrimMemory(int level) {
+                        RecycledViewPool.this.onTrimMemory(level);
+                    }
+
+                    @Override
+                    public void onConfigurationChanged(@NonNull Configuration newConfig) {
+                    }
+
+                    @Override
+                    public void onLowMemory() {
+                        clear();
+                    }
+                };
+                mTrimMemoryContext.registerComponentCallbacks(mTrimMemoryCallbacks);
+            } else if (!register && mTrimMemoryCallbacks != null) {
+                mTrimMemoryContext.unregisterComponentCallbacks(mTrimMemoryCallbacks);
+                mTrimMemoryCallbacks = null;
+            }
+        }
+
+        /**
+         * Returns the current capacity of the given type, taking auto sizing into account.
+         */
+        int getMaxScrap(ScrapData scrapData) {
+            if (!mAutoSizingEnabled || scrapData.mMaxScrapSetByUser) {
+                return scrapData.mMaxScrap;
+            }
+            int max = scrapData.mPeakInUseCount;
+            if (scrapData.mCreateRunningAverageNs < EXPENSIVE_CREATE_NS) {
+                max = (max + 1) / 2;
+            }
+            return Math.max(1, Math.min(MAX_AUTO_SCRAP, max));
+        }
+
+        private void trimScrapHeap(ScrapData scrapData, int max) {
+            final ArrayList<ViewHolder> scrapHeap = scrapData.mScrapHeap;
+            while (scrapHeap.size() > max) {
+                final ViewHolder scrap = scrapHeap.remove(scrapHeap.size() - 1);
+                PoolingContainer.callPoolingContainerOnRelease(scrap.itemView);
+            }
+        }
+
+        private static void onTakenFromPool(ScrapData scrapData) {
+            scrapData.mInUseCount++;
+            if (scrapData.mInUseCount > scrapData.mPeakInUseCount) {
+                scrapData.mPeakInUseCount = scrapData.mInUseCount;
+            }
+        }
+
         /**
          * Sets the maximum number of ViewHolders to hold in the pool before discarding.
+         * <p>
+         * This also opts the view type out of {@link #setAutoSizingEnabled(boolean) auto sizing}.
          *
          * @param viewType ViewHolder Type
          * @param max      Maximum number
@@ -6219,6 +6523,7 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
         public void setMaxRecycledViews(int viewType, int max) {
             ScrapData scrapData = getScrapDataForType(viewType);
             scrapData.mMaxScrap = max;
+            scrapData.mMaxScrapSetByUser = true;
             final ArrayList<ViewHolder> scrapHeap = scrapData.mScrapHeap;
             while (scrapHeap.size() > max) {
                 scrapHeap.remove(scrapHeap.size() - 1);
@@ -6247,6 +6552,7 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
                 final ArrayList<ViewHolder> scrapHeap = scrapData.mScrapHeap;
                 for (int i = scrapHeap.size() - 1; i >= 0; i--) {
                     if (!scrapHeap.get(i).isAttachedToTransitionOverlay()) {
+                        onTakenFromPool(scrapData);
                         return scrapHeap.remove(i);
                     }
                 }
@@ -6279,8 +6585,12 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
          */
         public void putRecycledView(ViewHolder scrap) {
             final int viewType = scrap.getItemViewType();
-            final ArrayList<ViewHolder> scrapHeap = getScrapDataForType(viewType).mScrapHeap;
-            if (mScrap.get(viewType).mMaxScrap <= scrapHeap.size()) {
+            final ScrapData scrapData = getScrapDataForType(viewType);
+            final ArrayList<ViewHolder> scrapHeap = scrapData.mScrapHeap;
+            if (scrapData.mInUseCount > 0) {
+                scrapData.mInUseCount--;
+            }
+            if (getMaxScrap(scrapData) <= scrapHeap.size()) {
                 PoolingContainer.callPoolingContainerOnRelease(scrap.itemView);
                 return;
             }
@@ -6302,21 +6612,43 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
             ScrapData scrapData = getScrapDataForType(viewType);
             scrapData.mCreateRunningAverageNs = runningAverage(
                     scrapData.mCreateRunningAverageNs, createTimeNs);
+            scrapData.mCreateCostHistogram.add(createTimeNs);
+            // a newly created holder is in use just like one taken from the pool
+            onTakenFromPool(scrapData);
         }
 
         void factorInBindTime(int viewType, long bindTimeNs) {
             ScrapData scrapData = getScrapDataForType(viewType);
             scrapData.mBindRunningAverageNs = runningAverage(
                     scrapData.mBindRunningAverageNs, bindTimeNs);
+            scrapData.mBindCostHistogram.add(bindTimeNs);
         }
 
         boolean willCreateInTime(int viewType, long approxCurrentNs, long deadlineNs) {
-            long expectedDurationNs = getScrapDataForType(viewType).mCreateRunningAverageNs;
+            return willCreateInTime(viewType, approxCurrentNs, deadlineNs, false);
+        }
+
+        boolean willCreateInTime(int viewType, long approxCurrentNs, long deadlineNs,
+                boolean adaptive) {
+            ScrapData scrapData = getScrapDataForType(viewType);
+            long expectedDurationNs = adaptive
+                    ? Math.max(scrapData.mCreateRunningAverageNs,
+                            scrapData.mCreateCostHistogram.estimateNs(ADAPTIVE_COST_PERCENTILE))
+                    : scrapData.mCreateRunningAverageNs;
             return expectedDurationNs == 0 || (approxCurrentNs + expectedDurationNs < deadlineNs);
         }
 
         boolean willBindInTime(int viewType, long approxCurrentNs, long deadlineNs) {
-            long expectedDurationNs = getScrapDataForType(viewType).mBindRunningAverageNs;
+            return willBindInTime(viewType, approxCurrentNs, deadlineNs, false);
+        }
+
+        boolean willBindInTime(int viewType, long approxCurrentNs, long deadlineNs,
+                boolean adaptive) {
+            ScrapData scrapData = getScrapDataForType(viewType);
+            long expectedDurationNs = adaptive
+                    ? Math.max(scrapData.mBindRunningAverageNs,
+                            scrapData.mBindCostHistogram.estimateNs(ADAPTIVE_COST_PERCENTILE))
+                    : scrapData.mBindRunningAverageNs;
             return expectedDurationNs == 0 || (approxCurrentNs + expectedDurationNs < deadlineNs);
         }
 
@@ -6483,6 +6815,12 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
 
         RecycledViewPool mRecyclerPool;
 
+        /**
+         * Pool registered for memory trim callbacks while attached, the pool only listens to them
+         * while {@link RecycledViewPool#setAutoSizingEnabled(boolean) auto sizing} is enabled.
+         */
+        private RecycledViewPool mTrimMemoryRegisteredPool;
+
         private ViewCacheExtension mViewCacheExtension;
 
         static final int DEFAULT_CACHE_SIZE = 2;
@@ -6580,14 +6918,17 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
             holder.mOwnerRecyclerView = RecyclerView.this;
             final int viewType = holder.getItemViewType();
             long startBindNs = getNanoTime();
-            if (deadlineNs != FOREVER_NS
-                    && !mRecyclerPool.willBindInTime(viewType, startBindNs, deadlineNs)) {
+            if (deadlineNs != FOREVER_NS && !mRecyclerPool.willBindInTime(viewType, startBindNs,
+                    deadlineNs, mAdaptivePrefetchEnabled)) {
                 // abort - we have a deadline we can't meet
                 return false;
             }
             mAdapter.bindViewHolder(holder, offsetPosition);
             long endBindNs = getNanoTime();
             mRecyclerPool.factorInBindTime(holder.getItemViewType(), endBindNs - startBindNs);
+            if (ALLOW_THREAD_GAP_WORK && mPrefetchRegistry.mPrefetching) {
+                holder.addFlags(ViewHolder.FLAG_PREFETCHED);
+            }
             attachAccessibilityDelegateOnBind(holder);
             if (mState.isPreLayout()) {
                 holder.mPreLayoutPosition = position;
@@ -6802,8 +7143,8 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
                 }
                 if (holder == null) {
                     long start = getNanoTime();
-                    if (deadlineNs != FOREVER_NS
-                            && !mRecyclerPool.willCreateInTime(type, start, deadlineNs)) {
+                    if (deadlineNs != FOREVER_NS && !mRecyclerPool.willCreateInTime(type, start,
+                            deadlineNs, mAdaptivePrefetchEnabled)) {
                         // abort - we have a deadline we can't meet
                         return null;
                     }
@@ -6867,6 +7208,17 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
             }
             rvLayoutParams.mViewHolder = holder;
             rvLayoutParams.mPendingInvalidate = fromScrapOrHiddenOrCache && bound;
+            if (ALLOW_THREAD_GAP_WORK && !dryRun && !mPrefetchRegistry.mPrefetching
+                    && holder.hasAnyOfTheFlags(ViewHolder.FLAG_PREFETCHED)) {
+                // a prefetched holder made it to layout, count it as a hit unless it had to be
+                // bound again
+                holder.setFlags(0, ViewHolder.FLAG_PREFETCHED);
+                if (bound) {
+                    mPrefetchRegistry.mWastedCount++;
+                } else {
+                    mPrefetchRegistry.mHitCount++;
+                }
+            }
             return holder;
         }
 
@@ -7113,6 +7465,10 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
             if (dispatchRecycled) {
                 dispatchViewRecycled(holder);
             }
+            if (ALLOW_THREAD_GAP_WORK && holder.hasAnyOfTheFlags(ViewHolder.FLAG_PREFETCHED)) {
+                // prefetched holder dropped before it was ever laid out
+                mPrefetchRegistry.mWastedCount++;
+            }
             holder.mBindingAdapter = null;
             holder.mOwnerRecyclerView = null;
             getRecycledViewPool().putRecycledView(holder);
@@ -7444,6 +7800,7 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
 
         void setRecycledViewPool(RecycledViewPool pool) {
             poolingContainerDetach(mAdapter);
+            unregisterPoolForTrimMemory();
             if (mRecyclerPool != null) {
                 mRecyclerPool.detach();
             }
@@ -7452,6 +7809,7 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
                 mRecyclerPool.attach();
             }
             maybeSendPoolingContainerAttach();
+            maybeRegisterPoolForTrimMemory();
         }
 
         private void maybeSendPoolingContainerAttach() {
@@ -7474,6 +7832,7 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
 
         void onAttachedToWindow() {
             maybeSendPoolingContainerAttach();
+            maybeRegisterPoolForTrimMemory();
         }
 
         void onDetachedFromWindow() {
@@ -7481,6 +7840,22 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
                 PoolingContainer.callPoolingContainerOnRelease(mCachedViews.get(i).itemView);
             }
             poolingContainerDetach(mAdapter);
+            unregisterPoolForTrimMemory();
+        }
+
+        private void maybeRegisterPoolForTrimMemory() {
+            if (mTrimMemoryRegisteredPool == null && mRecyclerPool != null
+                    && isAttachedToWindow()) {
+                mTrimMemoryRegisteredPool = mRecyclerPool;
+                mTrimMemoryRegisteredPool.registerForTrimMemory(getContext());
+            }
+        }
+
+        private void unregisterPoolForTrimMemory() {
+            if (mTrimMemoryRegisteredPool != null) {
+                mTrimMemoryRegisteredPool.unregisterForTrimMemory();
+                mTrimMemoryRegisteredPool = null;
+            }
         }
 
         RecycledViewPool getRecycledViewPool() {
@@ -7556,6 +7931,54 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
         }
     }
 
+    /**
+     * Snapshot of the item prefetch counters of a RecyclerView.
+     *
+     * @see RecyclerView#getPrefetchStats()
+     */
+    public static final class PrefetchStats {
+        private final int mHitCount;
+        private final int mWastedCount;
+        private final int mMissedDeadlineCount;
+
+        PrefetchStats(int hitCount, int wastedCount, int missedDeadlineCount) {
+            mHitCount = hitCount;
+            mWastedCount = wastedCount;
+            mMissedDeadlineCount = missedDeadlineCount;
+        }
+
+        /**
+         * Returns the number of prefetched items that were later used by a layout without having
+         * to be created or bound again.
+         */
+        public int getHitCount() {
+            return mHitCount;
+        }
+
+        /**
+         * Returns the number of prefetched items that were dropped to the
+         * {@link RecycledViewPool} before any layout used them.
+         */
+        public int getWastedCount() {
+            return mWastedCount;
+        }
+
+        /**
+         * Returns the number of prefetch attempts that were skipped or left unbound because the
+         * item was not expected to be created or bound before the next frame.
+         */
+        public int getMissedDeadlineCount() {
+            return mMissedDeadlineCount;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return "PrefetchStats{hits=" + mHitCount + ", wasted=" + mWastedCount
+                    + ", missedDeadlines=" + mMissedDeadlineCount + "}";
+        }
+    }
+
     /**
      * ViewCacheExtension is a helper class to provide an additional layer of view caching that can
      * be controlled by the developer.
@@ -11795,6 +12218,13 @@ public class RecyclerView extends ViewGroup implements ScrollingView,
          */
         static final int FLAG_BOUNCED_FROM_HIDDEN_LIST = 1 << 13;
 
+        /**
+         * Set when the ViewHolder was bound by {@link GapWorker} prefetch and has not been used by
+         * a layout yet. Used to count prefetch hits and wasted prefetches, see
+         * {@link RecyclerView#getPrefetchStats()}.
+         */
+        static final int FLAG_PREFETCHED = 1 << 14;
+
         int mFlags;
 
         private static final List<Object> FULLUPDATE_PAYLOADS = Collections.emptyList();
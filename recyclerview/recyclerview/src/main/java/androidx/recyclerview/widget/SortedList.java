@@ -37,6 +37,12 @@ import java.util.Comparator;
  * call appropriate methods while editing them to avoid data inconsistencies.
  * <p>
  * You can control the order of items and change notifications via the {@link Callback} parameter.
+ * If items can be ordered by a {@code long} key, use a {@link LongKeyCallback} so that lookups
+ * binary search the keys directly instead of calling {@link Callback#compare(Object, Object)}.
+ * <p>
+ * To add many items one by one, for example from a stream of updates, prefer
+ * {@link #addBuffered(Object)} inside {@link #beginBatchedUpdates()} and
+ * {@link #endBatchedUpdates()}, which merges all of them into the list in a single pass.
  */
 @SuppressWarnings("unchecked")
 public class SortedList<T> {
@@ -51,8 +57,32 @@ public class SortedList<T> {
     private static final int INSERTION = 1;
     private static final int DELETION = 1 << 1;
     private static final int LOOKUP = 1 << 2;
+
+    /**
+     * Number of consecutive old items merged by {@link #merge(Object[], int)} before it starts
+     * to gallop, i.e. to binary search for the end of the run of old items.
+     */
+    private static final int MIN_GALLOP = 7;
+
     T[] mData;
 
+    /**
+     * Sort keys of the items in {@link #mData} if the callback is a {@link LongKeyCallback}, or
+     * {@code null}. Only valid outside of mutation operations (addAll or replaceAll).
+     */
+    @Nullable
+    private long[] mKeys;
+
+    @Nullable
+    private final LongKeyCallback<T> mLongKeyCallback;
+
+    /**
+     * Items added with {@link #addBuffered(Object)} that have not been merged into the list yet.
+     */
+    @Nullable
+    private T[] mPendingAdds;
+    private int mPendingAddCount;
+
     /**
      * A reference to the previous set of data that is kept during a mutation operation (addAll or
      * replaceAll).
@@ -105,6 +135,14 @@ public class SortedList<T> {
         mData = (T[]) Array.newInstance(klass, initialCapacity);
         mCallback = callback;
         mSize = 0;
+        Callback<T> keyCallback = callback instanceof BatchedCallback
+                ? ((BatchedCallback<T>) callback).mWrappedCallback : callback;
+        if (keyCallback instanceof LongKeyCallback) {
+            mLongKeyCallback = (LongKeyCallback<T>) keyCallback;
+            mKeys = new long[initialCapacity];
+        } else {
+            mLongKeyCallback = null;
+        }
     }
 
     /**
@@ -143,9 +181,67 @@ public class SortedList<T> {
      */
     public int add(T item) {
         throwIfInMutationOperation();
+        flushPendingAdds();
         return add(item, true);
     }
 
+    /**
+     * Adds the given item to the list when the current batch of updates ends, see
+     * {@link #beginBatchedUpdates()}.
+     * <p>
+     * All items added this way are merged into the list in a single pass, like
+     * {@link #addAll(Object[])}, instead of shifting the backing array once per item. This makes
+     * adding many items one by one, e.g. from a stream of updates, much cheaper than
+     * {@link #add(Object)}.
+     * <p>
+     * Pending items are merged when {@link #endBatchedUpdates()} is called, or earlier when
+     * {@link #add(Object)}, {@link #addAll(Object[])} or {@link #remove(Object)} is called so
+     * that they apply in call order. Until then they are not visible to {@link #size()},
+     * {@link #get(int)} or {@link #indexOf(Object)}, and indices passed to the other methods
+     * refer to the list without them.
+     *
+     * @param item The item to be added into the list.
+     * @throws IllegalStateException if called outside of {@link #beginBatchedUpdates()} and
+     *                               {@link #endBatchedUpdates()}.
+     * @see #add(Object)
+     */
+    public void addBuffered(T item) {
+        throwIfInMutationOperation();
+        if (!(mCallback instanceof BatchedCallback)) {
+            throw new IllegalStateException("addBuffered must be called between "
+                    + "beginBatchedUpdates and endBatchedUpdates");
+        }
+        if (mPendingAdds == null) {
+            mPendingAdds = (T[]) Array.newInstance(mTClass, MIN_CAPACITY);
+        } else if (mPendingAddCount == mPendingAdds.length) {
+            T[] pendingAdds = (T[]) Array.newInstance(mTClass, mPendingAddCount * 2);
+            System.arraycopy(mPendingAdds, 0, pendingAdds, 0, mPendingAddCount);
+            mPendingAdds = pendingAdds;
+        }
+        mPendingAdds[mPendingAddCount++] = item;
+    }
+
+    /**
+     * Adds the given items, which must already be sorted according to
+     * {@link Callback#compare(Object, Object)}, to the list.
+     * <p>
+     * Equivalent to {@link #addAll(Object[], boolean)}, but skips sorting the input.
+     *
+     * @param items Array of sorted items to be added into the list.
+     * @param mayModifyInput If true, SortedList is allowed to modify and permanently reference the
+     *                       input array.
+     * @throws IllegalArgumentException if the items are not sorted.
+     * @see #addAll(Object[], boolean)
+     */
+    public void addAllSorted(@NonNull T[] items, boolean mayModifyInput) {
+        throwIfInMutationOperation();
+        flushPendingAdds();
+        if (items.length == 0) {
+            return;
+        }
+        addAllInternal(mayModifyInput ? items : copyArray(items), true);
+    }
+
     /**
      * Adds the given items to the list. Equivalent to calling {@link SortedList#add} in a loop,
      * except the callback events may be in a different order/granularity since addAll can batch
@@ -162,14 +258,15 @@ public class SortedList<T> {
      */
     public void addAll(@NonNull T[] items, boolean mayModifyInput) {
         throwIfInMutationOperation();
+        flushPendingAdds();
         if (items.length == 0) {
             return;
         }
 
         if (mayModifyInput) {
-            addAllInternal(items);
+            addAllInternal(items, false);
         } else {
-            addAllInternal(copyArray(items));
+            addAllInternal(copyArray(items), false);
         }
     }
 
@@ -217,6 +314,8 @@ public class SortedList<T> {
      */
     public void replaceAll(@NonNull T[] items, boolean mayModifyInput) {
         throwIfInMutationOperation();
+        // pending items would be replaced right away
+        discardPendingAdds();
 
         if (mayModifyInput) {
             replaceAllInternal(items);
@@ -250,22 +349,70 @@ public class SortedList<T> {
         replaceAll(items.toArray(copy), true);
     }
 
-    private void addAllInternal(T[] newItems) {
+    private void addAllInternal(T[] newItems, boolean sorted) {
         if (newItems.length < 1) {
             return;
         }
 
-        final int newSize = sortAndDedup(newItems);
+        final int newSize = sortAndDedup(newItems, sorted);
 
         if (mSize == 0) {
             mData = newItems;
             mSize = newSize;
+            if (mKeys != null) {
+                if (mKeys.length < newItems.length) {
+                    mKeys = new long[newItems.length];
+                }
+                putKeys(newItems, 0, 0, newSize);
+            }
             mCallback.onInserted(0, newSize);
         } else {
             merge(newItems, newSize);
         }
     }
 
+    /**
+     * Merges the items added with {@link #addBuffered(Object)} into the list.
+     */
+    private void flushPendingAdds() {
+        if (mPendingAddCount == 0) {
+            return;
+        }
+        final T[] pendingAdds = (T[]) Array.newInstance(mTClass, mPendingAddCount);
+        System.arraycopy(mPendingAdds, 0, pendingAdds, 0, mPendingAddCount);
+        discardPendingAdds();
+        addAllInternal(pendingAdds, false);
+    }
+
+    private void discardPendingAdds() {
+        if (mPendingAddCount != 0) {
+            Arrays.fill(mPendingAdds, 0, mPendingAddCount, null);
+            mPendingAddCount = 0;
+        }
+    }
+
+    /**
+     * Stores the sort keys of {@code count} items, starting at {@code from} in {@code items}, in
+     * {@link #mKeys} starting at {@code index}. Does nothing if there are no keys.
+     */
+    private void putKeys(T[] items, int from, int index, int count) {
+        if (mKeys == null) {
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            mKeys[index + i] = mLongKeyCallback.getSortKey(items[from + i]);
+        }
+    }
+
+    /**
+     * Copies the keys of old items that are kept by a merge. Does nothing if there are no keys.
+     */
+    private void copyKeys(@Nullable long[] oldKeys, int from, int index, int count) {
+        if (oldKeys != null) {
+            System.arraycopy(oldKeys, from, mKeys, index, count);
+        }
+    }
+
     private void replaceAllInternal(@NonNull T[] newData) {
         final boolean forceBatchedUpdates = !(mCallback instanceof BatchedCallback);
         if (forceBatchedUpdates) {
@@ -277,14 +424,19 @@ public class SortedList<T> {
         mOldData = mData;
 
         mNewDataStart = 0;
-        int newSize = sortAndDedup(newData);
+        int newSize = sortAndDedup(newData, false);
         mData = (T[]) Array.newInstance(mTClass, newSize);
+        // all items are taken from newData, so the old keys are not needed
+        if (mKeys != null && mKeys.length < newSize) {
+            mKeys = new long[newSize];
+        }
 
         while (mNewDataStart < newSize || mOldDataStart < mOldDataSize) {
             if (mOldDataStart >= mOldDataSize) {
                 int insertIndex = mNewDataStart;
                 int itemCount = newSize - mNewDataStart;
                 System.arraycopy(newData, insertIndex, mData, insertIndex, itemCount);
+                putKeys(newData, insertIndex, insertIndex, itemCount);
                 mNewDataStart += itemCount;
                 mSize += itemCount;
                 mCallback.onInserted(insertIndex, itemCount);
@@ -313,6 +465,7 @@ public class SortedList<T> {
                     replaceAllInsert(newItem);
                 } else {
                     mData[mNewDataStart] = newItem;
+                    putKeys(newData, mNewDataStart, mNewDataStart, 1);
                     mOldDataStart++;
                     mNewDataStart++;
                     if (!mCallback.areContentsTheSame(oldItem, newItem)) {
@@ -334,6 +487,9 @@ public class SortedList<T> {
 
     private void replaceAllInsert(T newItem) {
         mData[mNewDataStart] = newItem;
+        if (mKeys != null) {
+            mKeys[mNewDataStart] = mLongKeyCallback.getSortKey(newItem);
+        }
         mNewDataStart++;
         mSize++;
         mCallback.onInserted(mNewDataStart - 1, 1);
@@ -349,15 +505,19 @@ public class SortedList<T> {
      * Sorts and removes duplicate items, leaving only the last item from each group of "same"
      * items. Move the remaining items to the beginning of the array.
      *
+     * @param sorted True if the items are already sorted, in which case they are not sorted again
+     *               and their order is verified instead.
      * @return Number of deduplicated items at the beginning of the array.
      */
-    private int sortAndDedup(@NonNull T[] items) {
+    private int sortAndDedup(@NonNull T[] items, boolean sorted) {
         if (items.length == 0) {
             return 0;
         }
 
-        // Arrays.sort is stable.
-        Arrays.sort(items, mCallback);
+        if (!sorted) {
+            // Arrays.sort is stable.
+            Arrays.sort(items, mCallback);
+        }
 
         // Keep track of the range of equal items at the end of the output.
         // Start with the range containing just the first item.
@@ -368,6 +528,10 @@ public class SortedList<T> {
             T currentItem = items[i];
 
             int compare = mCallback.compare(items[rangeStart], currentItem);
+            if (sorted && compare > 0) {
+                throw new IllegalArgumentException("Items are not sorted, item at " + i
+                        + " is lower than the item at " + rangeStart);
+            }
 
             if (compare == 0) {
                 // The range of equal items continues, update it.
@@ -419,13 +583,21 @@ public class SortedList<T> {
         final int mergedCapacity = mSize + newDataSize + CAPACITY_GROWTH;
         mData = (T[]) Array.newInstance(mTClass, mergedCapacity);
         mNewDataStart = 0;
+        // keys of the old items are copied along with them, only new items need a key lookup
+        final long[] oldKeys = mKeys;
+        if (oldKeys != null) {
+            mKeys = new long[mergedCapacity];
+        }
 
         int newDataStart = 0;
+        // number of old items output in a row, used to decide when to gallop
+        int oldItemRun = 0;
         while (mOldDataStart < mOldDataSize || newDataStart < newDataSize) {
             if (mOldDataStart == mOldDataSize) {
                 // No more old items, copy the remaining new items.
                 int itemCount = newDataSize - newDataStart;
                 System.arraycopy(newData, newDataStart, mData, mNewDataStart, itemCount);
+                putKeys(newData, newDataStart, mNewDataStart, itemCount);
                 mNewDataStart += itemCount;
                 mSize += itemCount;
                 mCallback.onInserted(mNewDataStart - itemCount, itemCount);
@@ -436,6 +608,7 @@ public class SortedList<T> {
                 // No more new items, copy the remaining old items.
                 int itemCount = mOldDataSize - mOldDataStart;
                 System.arraycopy(mOldData, mOldDataStart, mData, mNewDataStart, itemCount);
+                copyKeys(oldKeys, mOldDataStart, mNewDataStart, itemCount);
                 mNewDataStart += itemCount;
                 break;
             }
@@ -445,22 +618,36 @@ public class SortedList<T> {
             int compare = mCallback.compare(oldItem, newItem);
             if (compare > 0) {
                 // New item is lower, output it.
+                putKeys(newData, newDataStart, mNewDataStart, 1);
                 mData[mNewDataStart++] = newItem;
                 mSize++;
                 newDataStart++;
+                oldItemRun = 0;
                 mCallback.onInserted(mNewDataStart - 1, 1);
             } else if (compare == 0 && mCallback.areItemsTheSame(oldItem, newItem)) {
                 // Items are the same. Output the new item, but consume both.
+                copyKeys(oldKeys, mOldDataStart, mNewDataStart, 1);
                 mData[mNewDataStart++] = newItem;
                 newDataStart++;
                 mOldDataStart++;
+                oldItemRun = 0;
                 if (!mCallback.areContentsTheSame(oldItem, newItem)) {
                     mCallback.onChanged(mNewDataStart - 1, 1,
                             mCallback.getChangePayload(oldItem, newItem));
                 }
+            } else if (compare < 0 && ++oldItemRun >= MIN_GALLOP) {
+                // Long run of old items, e.g. few new items merged into a large list. Find the
+                // end of the run of old items lower than the new item and copy it at once.
+                final int runEnd = gallopToFirstNotLower(newItem, mOldDataStart + 1);
+                final int itemCount = runEnd - mOldDataStart;
+                System.arraycopy(mOldData, mOldDataStart, mData, mNewDataStart, itemCount);
+                copyKeys(oldKeys, mOldDataStart, mNewDataStart, itemCount);
+                mNewDataStart += itemCount;
+                mOldDataStart = runEnd;
             } else {
                 // Old item is lower than or equal to (but not the same as the new). Output it.
                 // New item with the same sort order will be inserted later.
+                copyKeys(oldKeys, mOldDataStart, mNewDataStart, 1);
                 mData[mNewDataStart++] = oldItem;
                 mOldDataStart++;
             }
@@ -473,6 +660,33 @@ public class SortedList<T> {
         }
     }
 
+    /**
+     * Returns the index of the first item in {@link #mOldData}, at or after {@code start}, which
+     * is not lower than {@code item}. Searches exponentially growing ranges first, so that
+     * the cost is logarithmic in the distance to the result rather than in the size of the list.
+     */
+    private int gallopToFirstNotLower(T item, int start) {
+        int left = start;
+        int step = 1;
+        // find a range [left, right) that contains the result
+        int right = start;
+        while (right < mOldDataSize && mCallback.compare(mOldData[right], item) < 0) {
+            left = right + 1;
+            right += step;
+            step <<= 1;
+        }
+        right = Math.min(right, mOldDataSize);
+        while (left < right) {
+            final int middle = (left + right) >>> 1;
+            if (mCallback.compare(mOldData[middle], item) < 0) {
+                left = middle + 1;
+            } else {
+                right = middle;
+            }
+        }
+        return left;
+    }
+
     /**
      * Throws an exception if called while we are in the middle of a mutation operation (addAll or
      * replaceAll).
@@ -532,6 +746,7 @@ public class SortedList<T> {
      */
     public void endBatchedUpdates() {
         throwIfInMutationOperation();
+        flushPendingAdds();
         if (mCallback instanceof BatchedCallback) {
             ((BatchedCallback) mCallback).dispatchLastEvent();
         }
@@ -574,6 +789,7 @@ public class SortedList<T> {
      */
     public boolean remove(T item) {
         throwIfInMutationOperation();
+        flushPendingAdds();
         return remove(item, true);
     }
 
@@ -602,6 +818,9 @@ public class SortedList<T> {
 
     private void removeItemAtIndex(int index, boolean notify) {
         System.arraycopy(mData, index + 1, mData, index, mSize - index - 1);
+        if (mKeys != null) {
+            System.arraycopy(mKeys, index + 1, mKeys, index, mSize - index - 1);
+        }
         mSize--;
         mData[mSize] = null;
         if (notify) {
@@ -742,6 +961,9 @@ public class SortedList<T> {
     }
 
     private int findIndexOf(T item, T[] mData, int left, int right, int reason) {
+        if (mKeys != null && mOldData == null) {
+            return findIndexOfKey(item, left, right, reason);
+        }
         while (left < right) {
             final int middle = (left + right) / 2;
             T myItem = mData[middle];
@@ -766,6 +988,35 @@ public class SortedList<T> {
         return reason == INSERTION ? left : INVALID_POSITION;
     }
 
+    /**
+     * Same as {@link #findIndexOf(Object, Object[], int, int, int)}, but binary searches
+     * {@link #mKeys} instead of calling {@link Callback#compare(Object, Object)}.
+     */
+    private int findIndexOfKey(T item, int left, int right, int reason) {
+        final long key = mLongKeyCallback.getSortKey(item);
+        while (left < right) {
+            final int middle = (left + right) >>> 1;
+            final long myKey = mKeys[middle];
+            if (myKey < key) {
+                left = middle + 1;
+            } else if (myKey == key) {
+                if (mCallback.areItemsTheSame(mData[middle], item)) {
+                    return middle;
+                } else {
+                    int exact = linearEqualitySearch(item, middle, left, right);
+                    if (reason == INSERTION) {
+                        return exact == INVALID_POSITION ? middle : exact;
+                    } else {
+                        return exact;
+                    }
+                }
+            } else {
+                right = middle;
+            }
+        }
+        return reason == INSERTION ? left : INVALID_POSITION;
+    }
+
     private int linearEqualitySearch(T item, int middle, int left, int right) {
         // go left
         for (int next = middle - 1; next >= left; next--) {
@@ -796,6 +1047,18 @@ public class SortedList<T> {
             throw new IndexOutOfBoundsException(
                     "cannot add item to " + index + " because size is " + mSize);
         }
+        if (mKeys != null) {
+            final long key = mLongKeyCallback.getSortKey(item);
+            if (mSize == mKeys.length) {
+                long[] newKeys = new long[mKeys.length + CAPACITY_GROWTH];
+                System.arraycopy(mKeys, 0, newKeys, 0, index);
+                System.arraycopy(mKeys, index, newKeys, index + 1, mSize - index);
+                mKeys = newKeys;
+            } else {
+                System.arraycopy(mKeys, index, mKeys, index + 1, mSize - index);
+            }
+            mKeys[index] = key;
+        }
         if (mSize == mData.length) {
             // we are at the limit enlarge
             T[] newData = (T[]) Array.newInstance(mTClass, mData.length + CAPACITY_GROWTH);
@@ -822,6 +1085,7 @@ public class SortedList<T> {
      */
     public void clear() {
         throwIfInMutationOperation();
+        discardPendingAdds();
         if (mSize == 0) {
             return;
         }
@@ -924,6 +1188,35 @@ public class SortedList<T> {
         }
     }
 
+    /**
+     * A {@link Callback} for items that are ordered by a {@code long} sort key.
+     * <p>
+     * SortedList keeps the keys of its items in a primitive array and binary searches it directly,
+     * so that adding, removing or looking up an item calls {@link #getSortKey(Object)} once
+     * instead of calling {@link #compare(Object, Object)} for every step of the search.
+     * <p>
+     * The sort key of an item must not change while the item is in the list, use
+     * {@link SortedList#updateItemAt(int, Object)} with a new item instead.
+     */
+    public abstract static class LongKeyCallback<T2> extends Callback<T2> {
+
+        /**
+         * Returns the key that determines the position of the item in the list, items are
+         * sorted in ascending order of their keys.
+         *
+         * @param item The item to return the key for.
+         * @return The sort key of the item.
+         */
+        public abstract long getSortKey(T2 item);
+
+        @Override
+        public final int compare(T2 o1, T2 o2) {
+            final long key1 = getSortKey(o1);
+            final long key2 = getSortKey(o2);
+            return key1 < key2 ? -1 : (key1 == key2 ? 0 : 1);
+        }
+    }
+
     /**
      * A callback implementation that can batch notify events dispatched by the SortedList.
      * <p>
@@ -41,6 +41,13 @@ interface ThreadUtil<T> {
 
         @SuppressLint("UnknownNullness") // b/240775049: Cannot annotate properly
         void recycleTile(TileList.Tile<T> tile);
+
+        /**
+         * Called once a tile handed to a parallel fill executor was filled, or skipped because
+         * it was no longer needed.
+         */
+        @SuppressLint("UnknownNullness") // b/240775049: Cannot annotate properly
+        void onTileFilled(int generation, TileList.Tile<T> tile, boolean filled, int scrollHint);
     }
 
     MainThreadCallback<T> getMainThreadProxy(MainThreadCallback<T> callback);
@@ -31,6 +31,8 @@ import org.junit.runner.RunWith
 import org.junit.runners.JUnit4
 import java.util.Random
 import java.util.UUID
+import java.util.concurrent.Executor
+import java.util.concurrent.Executors
 
 @RunWith(JUnit4::class)
 class DiffUtilTest {
@@ -42,6 +44,8 @@ class DiffUtilTest {
         newList = after,
         assertCalls = true
     )
+    private var keyed = false
+    private var executor: Executor? = null
 
     init {
         Item.idCounter = 0
@@ -361,7 +365,79 @@ class DiffUtilTest {
         calculate().convertNewPositionToOld(2)
     }
 
-    private fun calculate() = DiffUtil.calculateDiff(callback, true)
+    private fun calculate() = if (keyed) {
+        DiffUtil.calculateDiff(KeyedItemListCallback(callback, before, after), true, executor)
+    } else {
+        DiffUtil.calculateDiff(callback, true)
+    }
+
+    @Test
+    fun keyed_noChange() {
+        keyed = true
+        initWithSize(100)
+        check()
+    }
+
+    @Test
+    fun keyed_changesInLargeList() {
+        keyed = true
+        initWithSize(500)
+        add(10)
+        delete(200)
+        move(5, 400)
+        move(450, 3)
+        update(300)
+        updateWithPayload(350)
+        duplicate(100, 0)
+        check()
+    }
+
+    @Test
+    fun keyed_noUniqueItems() {
+        keyed = true
+        before.addAll(List(50) { Item(false) })
+        repeat(2) { after.addAll(before) }
+        after.add(25, Item(true))
+        check()
+    }
+
+    @Test
+    fun keyed_parallel() {
+        keyed = true
+        val pool = Executors.newFixedThreadPool(3)
+        executor = pool
+        try {
+            initWithSize(1000)
+            for (i in 0 until 50) {
+                add(i * 19)
+                move(i * 17, 999 - i * 13)
+                delete(i * 11 + 5)
+                update(i * 7 + 3)
+            }
+            check()
+        } finally {
+            pool.shutdown()
+        }
+    }
+
+    @Test
+    fun keyed_parallelOnSameSingleThreadExecutor() {
+        keyed = true
+        val pool = Executors.newSingleThreadExecutor()
+        executor = pool
+        try {
+            initWithSize(1000)
+            for (i in 0 until 50) {
+                add(i * 19)
+                delete(i * 11 + 5)
+            }
+            // calculating from the only thread of the executor must not deadlock
+            val result = pool.submit<DiffUtil.DiffResult> { calculate() }.get()
+            assertEquals(applyUpdates(before, result), after)
+        } finally {
+            pool.shutdown()
+        }
+    }
 
     @Test
     fun duplicate() {
@@ -731,6 +807,29 @@ class DiffUtilTest {
         }
     }
 
+    private class KeyedItemListCallback(
+        private val delegate: ItemListCallback,
+        private val oldList: List<Item>,
+        private val newList: List<Item>
+    ) : DiffUtil.KeyedCallback() {
+        override fun getOldListSize() = delegate.oldListSize
+
+        override fun getNewListSize() = delegate.newListSize
+
+        override fun areItemsTheSame(oldItemIndex: Int, newItemIndex: Int) =
+            delegate.areItemsTheSame(oldItemIndex, newItemIndex)
+
+        override fun areContentsTheSame(oldItemIndex: Int, newItemIndex: Int) =
+            delegate.areContentsTheSame(oldItemIndex, newItemIndex)
+
+        override fun getChangePayload(oldItemIndex: Int, newItemIndex: Int) =
+            delegate.getChangePayload(oldItemIndex, newItemIndex)
+
+        override fun getOldItemKey(oldItemPosition: Int) = oldList[oldItemPosition].id
+
+        override fun getNewItemKey(newItemPosition: Int) = newList[newItemPosition].id
+    }
+
     companion object {
         private val sRand = Random(System.nanoTime())
     }
@@ -1495,6 +1495,171 @@ public class SortedListTest {
         assertTrue(mCallbackRunnables.isEmpty());
     }
 
+    @Test
+    public void addAll_fewItemsIntoLargeList_mergesInPlace() {
+        Item[] existing = new Item[100];
+        for (int i = 0; i < existing.length; i++) {
+            existing[i] = new Item(i * 2);
+        }
+        mList.addAll(existing);
+        mEvents.clear();
+
+        mList.addAll(new Item(31), new Item(151));
+
+        assertEquals(102, mList.size());
+        assertEquals(new Event(TYPE.ADD, 16, 1), mEvents.get(0));
+        assertEquals(new Event(TYPE.ADD, 77, 1), mEvents.get(1));
+        assertEquals(2, mEvents.size());
+        for (int i = 1; i < mList.size(); i++) {
+            assertTrue(mList.get(i - 1).cmpField < mList.get(i).cmpField);
+        }
+    }
+
+    @Test
+    public void addAllSorted_addsItems() {
+        mList.add(new Item(2));
+        mList.addAllSorted(createItemsFromInts(1, 3, 3, 5), false);
+
+        assertTrue(sortedListEquals(mList, createItemsFromInts(1, 2, 3, 5)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void addAllSorted_unsortedItems_throws() {
+        mList.addAllSorted(createItemsFromInts(3, 1, 2), false);
+    }
+
+    @Test
+    public void addBuffered_mergesOnEndBatchedUpdates() {
+        mList.add(new Item(5));
+        mEvents.clear();
+
+        mList.beginBatchedUpdates();
+        mList.addBuffered(new Item(3));
+        mList.addBuffered(new Item(1));
+        mList.addBuffered(new Item(4));
+        assertEquals(0, mEvents.size());
+        mList.endBatchedUpdates();
+
+        assertTrue(sortedListEquals(mList, createItemsFromInts(1, 3, 4, 5)));
+        assertEquals(new Event(TYPE.ADD, 0, 3), mEvents.get(0));
+        assertEquals(1, mEvents.size());
+    }
+
+    @Test
+    public void addBuffered_notVisibleToGetters() {
+        mList.add(new Item(3));
+        mEvents.clear();
+        mList.beginBatchedUpdates();
+        mList.addBuffered(new Item(2));
+        mList.addBuffered(new Item(1));
+
+        assertEquals(1, mList.size());
+        assertEquals(new Item(3), mList.get(0));
+        assertEquals(SortedList.INVALID_POSITION, mList.indexOf(new Item(2)));
+        mList.endBatchedUpdates();
+
+        assertTrue(sortedListEquals(mList, createItemsFromInts(1, 2, 3)));
+        assertEquals(new Event(TYPE.ADD, 0, 2), mEvents.get(0));
+        assertEquals(1, mEvents.size());
+    }
+
+    @Test
+    public void addBuffered_indicesReferToMergedItems() {
+        mList.addAll(createItemsFromInts(2, 4));
+        mList.beginBatchedUpdates();
+        mList.addBuffered(new Item(1));
+        mList.removeItemAt(0);
+        mList.endBatchedUpdates();
+
+        assertTrue(sortedListEquals(mList, createItemsFromInts(1, 4)));
+    }
+
+    @Test
+    public void addBuffered_mergedBeforeRemove() {
+        mList.beginBatchedUpdates();
+        mList.addBuffered(new Item(1));
+        assertTrue(mList.remove(new Item(1)));
+        mList.endBatchedUpdates();
+
+        assertEquals(0, mList.size());
+    }
+
+    @Test
+    public void addBuffered_discardedByClear() {
+        mList.beginBatchedUpdates();
+        mList.addBuffered(new Item(1));
+        mList.clear();
+        mList.endBatchedUpdates();
+
+        assertEquals(0, mList.size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void addBuffered_outsideOfBatchedUpdates_throws() {
+        mList.addBuffered(new Item(1));
+    }
+
+    @Test
+    public void longKeyCallback_keepsItemsSorted() {
+        final AtomicInteger compareCount = new AtomicInteger();
+        SortedList<Item> list = new SortedList<>(Item.class,
+                new SortedList.LongKeyCallback<Item>() {
+                    @Override
+                    public long getSortKey(Item item) {
+                        compareCount.incrementAndGet();
+                        return item.cmpField;
+                    }
+
+                    @Override
+                    public void onInserted(int position, int count) {
+                    }
+
+                    @Override
+                    public void onRemoved(int position, int count) {
+                    }
+
+                    @Override
+                    public void onMoved(int fromPosition, int toPosition) {
+                    }
+
+                    @Override
+                    public void onChanged(int position, int count) {
+                    }
+
+                    @Override
+                    public boolean areContentsTheSame(Item oldItem, Item newItem) {
+                        return oldItem.data == newItem.data;
+                    }
+
+                    @Override
+                    public boolean areItemsTheSame(Item item1, Item item2) {
+                        return item1.id == item2.id;
+                    }
+                });
+        list.addAll(createItemsFromInts(10, 0, 20));
+        list.add(new Item(15));
+        list.add(new Item(5));
+        list.remove(new Item(10));
+        list.beginBatchedUpdates();
+        list.addBuffered(new Item(25));
+        list.addBuffered(new Item(1));
+        list.endBatchedUpdates();
+
+        assertTrue(sortedListEquals(list, createItemsFromInts(0, 1, 5, 15, 20, 25)));
+
+        // a lookup reads the key of the searched item once, the others are cached
+        compareCount.set(0);
+        assertEquals(3, list.indexOf(new Item(15)));
+        assertEquals(1, compareCount.get());
+
+        // keys of the existing items are carried over by merges
+        list.addAllSorted(createItemsFromInts(2, 30), false);
+        assertTrue(sortedListEquals(list, createItemsFromInts(0, 1, 2, 5, 15, 20, 25, 30)));
+        for (int i = 0; i < list.size(); i++) {
+            assertEquals(i, list.indexOf(list.get(i)));
+        }
+    }
+
     private int size() {
         return mList.size();
     }
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package androidx.room.integration.testapp.paging;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+import androidx.room.RoomSQLiteQuery;
+import androidx.room.integration.testapp.test.TestDatabaseTest;
+import androidx.room.integration.testapp.test.TestUtil;
+import androidx.room.paging.KeysetDataSource;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.MediumTest;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+@MediumTest
+@RunWith(AndroidJUnit4.class)
+public class KeysetDataSourceTest extends TestDatabaseTest {
+
+    @After
+    public void teardown() {
+        mUserDao.deleteEverything();
+    }
+
+    private KeysetDataSource<Integer, Integer> loadUserIds(boolean descending) {
+        RoomSQLiteQuery query = RoomSQLiteQuery.acquire("SELECT * FROM User", 0);
+        return new KeysetDataSource<Integer, Integer>(mDatabase, query, "mId", descending,
+                false, "User") {
+            @NonNull
+            @Override
+            protected List<Integer> convertRows(@NonNull Cursor cursor) {
+                List<Integer> ids = new ArrayList<>();
+                int index = cursor.getColumnIndexOrThrow("mId");
+                while (cursor.moveToNext()) {
+                    ids.add(cursor.getInt(index));
+                }
+                return ids;
+            }
+
+            @NonNull
+            @Override
+            public Integer getKey(@NonNull Integer item) {
+                return item;
+            }
+        };
+    }
+
+    @Test
+    public void emptyPage() {
+        KeysetDataSource<Integer, Integer> dataSource = loadUserIds(false);
+        assertThat(dataSource.countItems(), is(0));
+        assertThat(dataSource.loadAfter(null, false, 10), is(Collections.<Integer>emptyList()));
+    }
+
+    @Test
+    public void loadFirst() {
+        createUsers(10);
+        KeysetDataSource<Integer, Integer> dataSource = loadUserIds(false);
+        assertThat(dataSource.loadAfter(null, false, 3), is(Arrays.asList(0, 1, 2)));
+    }
+
+    @Test
+    public void loadFromKey() {
+        createUsers(10);
+        KeysetDataSource<Integer, Integer> dataSource = loadUserIds(false);
+        assertThat(dataSource.loadAfter(4, true, 2), is(Arrays.asList(4, 5)));
+    }
+
+    @Test
+    public void loadAfter() {
+        createUsers(10);
+        KeysetDataSource<Integer, Integer> dataSource = loadUserIds(false);
+        assertThat(dataSource.loadAfter(4, false, 2), is(Arrays.asList(5, 6)));
+        assertThat(dataSource.loadAfter(8, false, 5), is(Collections.singletonList(9)));
+    }
+
+    @Test
+    public void loadBefore() {
+        createUsers(10);
+        KeysetDataSource<Integer, Integer> dataSource = loadUserIds(false);
+        assertThat(dataSource.loadBefore(4, 2), is(Arrays.asList(2, 3)));
+        assertThat(dataSource.loadBefore(1, 5), is(Collections.singletonList(0)));
+    }
+
+    @Test
+    public void descending() {
+        createUsers(10);
+        KeysetDataSource<Integer, Integer> dataSource = loadUserIds(true);
+        assertThat(dataSource.loadAfter(null, false, 2), is(Arrays.asList(9, 8)));
+        assertThat(dataSource.loadAfter(8, false, 2), is(Arrays.asList(7, 6)));
+        assertThat(dataSource.loadBefore(6, 2), is(Arrays.asList(8, 7)));
+    }
+
+    @Test
+    public void invalidatedByUpdate() {
+        createUsers(2);
+        KeysetDataSource<Integer, Integer> dataSource = loadUserIds(false);
+        assertThat(dataSource.isInvalid(), is(false));
+        mUserDao.insert(TestUtil.createUser(2));
+        assertThat(dataSource.isInvalid(), is(true));
+    }
+
+    private void createUsers(int count) {
+        for (int i = 0; i < count; i++) {
+            mUserDao.insert(TestUtil.createUser(i));
+        }
+    }
+}
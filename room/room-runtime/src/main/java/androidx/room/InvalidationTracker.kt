@@ -37,20 +37,23 @@ import java.util.Arrays
 import java.util.Locale
 import java.util.concurrent.Callable
 import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicIntegerArray
+import java.util.concurrent.atomic.AtomicLong
 
 /**
  * InvalidationTracker keeps a list of tables modified by queries and notifies its callbacks about
  * these tables.
  */
 // Some details on how the InvalidationTracker works:
-// * An in memory table is created with (table_id, invalidated) table_id is a hardcoded int from
-// initialization, while invalidated is a boolean bit to indicate if the table has been invalidated.
+// * An in memory table is created with (mask_index, invalidated_mask) rows. Each row keeps one bit
+// for each of 64 tables, so the table with the hardcoded int id from initialization is invalidated
+// when bit (id % 64) of the row (id / 64) is set. Usually there's only one row.
 // * ObservedTableTracker tracks list of tables we should be watching (e.g. adding triggers for).
 // * Before each beginTransaction, RoomDatabase invokes InvalidationTracker to sync trigger states.
 // * After each endTransaction, RoomDatabase invokes InvalidationTracker to refresh invalidated
 // tables.
 // * Each update (write operation) on one of the observed tables triggers an update into the
-// memory table table, flipping the invalidated flag ON.
+// memory table table, flipping the table's invalidated bit ON.
 // * When multi-instance invalidation is turned on, MultiInstanceInvalidationClient will be created.
 // It works as an Observer, and notifies other instances of table invalidation.
 open class InvalidationTracker @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP_PREFIX) constructor(
@@ -88,6 +91,30 @@ open class InvalidationTracker @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP_PREFIX
 
     private val trackerLock = Any()
 
+    private val refreshCounter = AtomicLong()
+
+    private val refreshTimeCounter = AtomicLong()
+
+    private val invalidationCounters = AtomicIntegerArray(tableNames.size)
+
+    /**
+     * Number of refreshes that checked the tables for updates.
+     *
+     * @hide
+     */
+    @get:RestrictTo(RestrictTo.Scope.LIBRARY_GROUP_PREFIX)
+    val refreshCount: Long
+        get() = refreshCounter.get()
+
+    /**
+     * Total time spent checking the tables for updates in the refreshes, in nanoseconds.
+     *
+     * @hide
+     */
+    @get:RestrictTo(RestrictTo.Scope.LIBRARY_GROUP_PREFIX)
+    val refreshTimeNanos: Long
+        get() = refreshTimeCounter.get()
+
     init {
         tableIdLookup = mutableMapOf()
         tablesNames = Array(tableNames.size) { id ->
@@ -156,6 +183,9 @@ open class InvalidationTracker @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP_PREFIX
             database.execSQL("PRAGMA temp_store = MEMORY;")
             database.execSQL("PRAGMA recursive_triggers='ON';")
             database.execSQL(CREATE_TRACKING_TABLE_SQL)
+            for (maskIndex in 0 until (tablesNames.size + Long.SIZE_BITS - 1) / Long.SIZE_BITS) {
+                database.execSQL("INSERT OR IGNORE INTO $UPDATE_TABLE_NAME VALUES($maskIndex, 0)")
+            }
             syncTriggers(database)
             cleanupStatement = database.compileStatement(RESET_UPDATED_TABLES_SQL)
             initialized = true
@@ -201,10 +231,9 @@ open class InvalidationTracker @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP_PREFIX
     }
 
     private fun startTrackingTable(db: SupportSQLiteDatabase, tableId: Int) {
-        db.execSQL(
-            "INSERT OR IGNORE INTO $UPDATE_TABLE_NAME VALUES($tableId, 0)"
-        )
         val tableName = tablesNames[tableId]
+        val maskIndex = tableId / Long.SIZE_BITS
+        val bit = "(1 << ${tableId % Long.SIZE_BITS})"
         for (trigger in TRIGGERS) {
             val sql = buildString {
                 append("CREATE TEMP TRIGGER IF NOT EXISTS ")
@@ -215,12 +244,14 @@ open class InvalidationTracker @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP_PREFIX
                 append(tableName)
                 append("` BEGIN UPDATE ")
                 append(UPDATE_TABLE_NAME)
-                append(" SET ").append(INVALIDATED_COLUMN_NAME)
-                append(" = 1")
-                append(" WHERE ").append(TABLE_ID_COLUMN_NAME)
-                append(" = ").append(tableId)
-                append(" AND ").append(INVALIDATED_COLUMN_NAME)
-                append(" = 0")
+                append(" SET ").append(INVALIDATED_MASK_COLUMN_NAME)
+                append(" = ").append(INVALIDATED_MASK_COLUMN_NAME)
+                append(" | ").append(bit)
+                append(" WHERE ").append(MASK_INDEX_COLUMN_NAME)
+                append(" = ").append(maskIndex)
+                append(" AND (").append(INVALIDATED_MASK_COLUMN_NAME)
+                append(" & ").append(bit)
+                append(") = 0")
                 append("; END")
             }
             db.execSQL(sql)
@@ -369,6 +400,7 @@ open class InvalidationTracker @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP_PREFIX
                     // This transaction has to be on the underlying DB rather than the RoomDatabase
                     // in order to avoid a recursive loop after endTransaction.
                     val db = database.openHelper.writableDatabase
+                    val startTimeNanos = System.nanoTime()
                     db.beginTransactionNonExclusive()
                     val invalidatedTableIds: Set<Int>
                     try {
@@ -377,6 +409,9 @@ open class InvalidationTracker @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP_PREFIX
                     } finally {
                         db.endTransaction()
                     }
+                    refreshCounter.incrementAndGet()
+                    refreshTimeCounter.addAndGet(System.nanoTime() - startTimeNanos)
+                    invalidatedTableIds.forEach { invalidationCounters.incrementAndGet(it) }
                     invalidatedTableIds
                 } catch (ex: IllegalStateException) {
                     // may happen if db is closed. just log.
@@ -409,7 +444,13 @@ open class InvalidationTracker @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP_PREFIX
             val invalidatedTableIds = buildSet {
                 database.query(SimpleSQLiteQuery(SELECT_UPDATED_TABLES_SQL)).useCursor { cursor ->
                     while (cursor.moveToNext()) {
-                        add(cursor.getInt(0))
+                        val firstTableId = cursor.getInt(0) * Long.SIZE_BITS
+                        val mask = cursor.getLong(1)
+                        for (bit in 0 until Long.SIZE_BITS) {
+                            if ((mask and (1L shl bit)) != 0L) {
+                                add(firstTableId + bit)
+                            }
+                        }
                     }
                 }
             }
@@ -456,6 +497,22 @@ open class InvalidationTracker @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP_PREFIX
         refreshRunnable.run()
     }
 
+    /**
+     * Returns how many refreshes have found the given table invalidated.
+     *
+     * If the table does not exist in the database, this method throws an
+     * [IllegalArgumentException].
+     *
+     * @param tableName The name of the table.
+     * @hide
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP_PREFIX)
+    fun getInvalidationCount(tableName: String): Int {
+        val tableId = tableIdLookup[tableName.lowercase(Locale.US)]
+            ?: throw IllegalArgumentException("There is no table with name $tableName")
+        return invalidationCounters.get(tableId)
+    }
+
     /**
      * Notifies all the registered [Observer]s of table changes.
      *
@@ -813,20 +870,20 @@ open class InvalidationTracker @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP_PREFIX
     companion object {
         private val TRIGGERS = arrayOf("UPDATE", "DELETE", "INSERT")
         private const val UPDATE_TABLE_NAME = "room_table_modification_log"
-        private const val TABLE_ID_COLUMN_NAME = "table_id"
-        private const val INVALIDATED_COLUMN_NAME = "invalidated"
+        private const val MASK_INDEX_COLUMN_NAME = "mask_index"
+        private const val INVALIDATED_MASK_COLUMN_NAME = "invalidated_mask"
         private const val CREATE_TRACKING_TABLE_SQL =
-            "CREATE TEMP TABLE $UPDATE_TABLE_NAME ($TABLE_ID_COLUMN_NAME INTEGER PRIMARY KEY, " +
-                "$INVALIDATED_COLUMN_NAME INTEGER NOT NULL DEFAULT 0)"
+            "CREATE TEMP TABLE $UPDATE_TABLE_NAME ($MASK_INDEX_COLUMN_NAME INTEGER PRIMARY KEY, " +
+                "$INVALIDATED_MASK_COLUMN_NAME INTEGER NOT NULL DEFAULT 0)"
 
         @VisibleForTesting
         internal const val RESET_UPDATED_TABLES_SQL =
-            "UPDATE $UPDATE_TABLE_NAME SET $INVALIDATED_COLUMN_NAME = 0 " +
-                "WHERE $INVALIDATED_COLUMN_NAME = 1"
+            "UPDATE $UPDATE_TABLE_NAME SET $INVALIDATED_MASK_COLUMN_NAME = 0 " +
+                "WHERE $INVALIDATED_MASK_COLUMN_NAME != 0"
 
         @VisibleForTesting
         internal const val SELECT_UPDATED_TABLES_SQL =
-            "SELECT * FROM $UPDATE_TABLE_NAME WHERE $INVALIDATED_COLUMN_NAME = 1;"
+            "SELECT * FROM $UPDATE_TABLE_NAME WHERE $INVALIDATED_MASK_COLUMN_NAME != 0;"
 
         internal fun getTriggerName(
             tableName: String,
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package androidx.room.paging;
+
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+import androidx.room.InvalidationTracker;
+import androidx.room.RoomDatabase;
+import androidx.room.RoomSQLiteQuery;
+import androidx.sqlite.db.SupportSQLiteQuery;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A data source implementation that pages the query by an indexed sort key rather than by
+ * Limit & Offset.
+ * <p>
+ * Each page is loaded with {@code WHERE key > ? ORDER BY key LIMIT ?} (or {@code <} for the
+ * previous page), so SQLite can seek to the page in the index instead of stepping over all the
+ * preceding rows as {@link LimitOffsetDataSource} does. The key column must be unique and
+ * indexed, e.g. the primary key, and the query must not have its own {@code LIMIT}. The key
+ * column decides the order of the items, overriding any {@code ORDER BY} of the query.
+ * <p>
+ * The number of items isn't counted while loading, so placeholders aren't supported.
+ * {@link #countItems()} can be called separately if the count is needed. The SQL of each kind of
+ * load is built once, so the compiled statements are reused from the connection's statement
+ * cache across loads.
+ *
+ * @param <K> Type of the key column. Must be a {@link Number}, {@link String} or
+ *            {@code byte[]}.
+ * @param <T> Data type returned by the data source.
+ *
+ * @hide
+ */
+@SuppressWarnings("deprecation")
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP_PREFIX)
+public abstract class KeysetDataSource<K, T> extends androidx.paging.ItemKeyedDataSource<K, T> {
+    private final RoomSQLiteQuery mSourceQuery;
+    private final String mCountQuery;
+    private final String mFirstQuery;
+    private final String mFromKeyQuery;
+    private final String mAfterKeyQuery;
+    private final String mBeforeKeyQuery;
+    private final RoomDatabase mDb;
+    @SuppressWarnings("FieldCanBeLocal")
+    private final InvalidationTracker.Observer mObserver;
+    private final boolean mInTransaction;
+
+    protected KeysetDataSource(
+            @NonNull RoomDatabase db,
+            @NonNull SupportSQLiteQuery query,
+            @NonNull String keyColumn,
+            boolean descending,
+            boolean inTransaction,
+            @NonNull String... tables) {
+        this(db, RoomSQLiteQuery.copyFrom(query), keyColumn, descending, inTransaction, tables);
+    }
+
+    protected KeysetDataSource(
+            @NonNull RoomDatabase db,
+            @NonNull RoomSQLiteQuery query,
+            @NonNull String keyColumn,
+            boolean descending,
+            boolean inTransaction,
+            @NonNull String... tables) {
+        mDb = db;
+        mSourceQuery = query;
+        mInTransaction = inTransaction;
+        final String source = "SELECT * FROM ( " + mSourceQuery.getSql() + " )";
+        final String key = "`" + keyColumn + "`";
+        final String forward = descending ? "DESC" : "ASC";
+        final String backward = descending ? "ASC" : "DESC";
+        final String after = descending ? " < ?" : " > ?";
+        final String before = descending ? " > ?" : " < ?";
+        mCountQuery = "SELECT COUNT(*) FROM ( " + mSourceQuery.getSql() + " )";
+        mFirstQuery = source + " ORDER BY " + key + " " + forward + " LIMIT ?";
+        mFromKeyQuery = source + " WHERE " + key + (descending ? " <= ?" : " >= ?")
+                + " ORDER BY " + key + " " + forward + " LIMIT ?";
+        mAfterKeyQuery = source + " WHERE " + key + after
+                + " ORDER BY " + key + " " + forward + " LIMIT ?";
+        mBeforeKeyQuery = source + " WHERE " + key + before
+                + " ORDER BY " + key + " " + backward + " LIMIT ?";
+        mObserver = new InvalidationTracker.Observer(tables) {
+            @Override
+            public void onInvalidated(@NonNull Set<String> tables) {
+                invalidate();
+            }
+        };
+        // Registers eagerly as Paging2 doesn't let the data source return invalidated data.
+        mDb.getInvalidationTracker().addWeakObserver(mObserver);
+    }
+
+    /**
+     * Count number of rows query can return. This scans all the rows, so it isn't called by the
+     * loads.
+     *
+     * @hide
+     */
+    @SuppressWarnings("WeakerAccess")
+    public int countItems() {
+        final RoomSQLiteQuery sqLiteQuery = RoomSQLiteQuery.acquire(mCountQuery,
+                mSourceQuery.getArgCount());
+        sqLiteQuery.copyArgumentsFrom(mSourceQuery);
+        Cursor cursor = mDb.query(sqLiteQuery);
+        try {
+            if (cursor.moveToFirst()) {
+                return cursor.getInt(0);
+            }
+            return 0;
+        } finally {
+            cursor.close();
+            sqLiteQuery.release();
+        }
+    }
+
+    @Override
+    public boolean isInvalid() {
+        mDb.getInvalidationTracker().refreshVersionsSync();
+        return super.isInvalid();
+    }
+
+    @NonNull
+    @SuppressWarnings("WeakerAccess")
+    protected abstract List<T> convertRows(@NonNull Cursor cursor);
+
+    @Override
+    public void loadInitial(@NonNull LoadInitialParams<K> params,
+            @NonNull LoadInitialCallback<T> callback) {
+        callback.onResult(loadAfter(params.requestedInitialKey, true, params.requestedLoadSize));
+    }
+
+    @Override
+    public void loadAfter(@NonNull LoadParams<K> params, @NonNull LoadCallback<T> callback) {
+        callback.onResult(loadAfter(params.key, false, params.requestedLoadSize));
+    }
+
+    @Override
+    public void loadBefore(@NonNull LoadParams<K> params, @NonNull LoadCallback<T> callback) {
+        callback.onResult(loadBefore(params.key, params.requestedLoadSize));
+    }
+
+    /**
+     * Return up to loadCount rows that come after the key, in the order of the key. The rows are
+     * loaded from the first row if the key is null.
+     *
+     * @hide
+     */
+    @NonNull
+    public List<T> loadAfter(@Nullable K key, boolean inclusive, int loadCount) {
+        final RoomSQLiteQuery sqLiteQuery;
+        if (key == null) {
+            sqLiteQuery = getSQLiteQuery(mFirstQuery, null, loadCount);
+        } else {
+            sqLiteQuery = getSQLiteQuery(inclusive ? mFromKeyQuery : mAfterKeyQuery, key,
+                    loadCount);
+        }
+        return query(sqLiteQuery);
+    }
+
+    /**
+     * Return up to loadCount rows that come right before the key, in the order of the key.
+     *
+     * @hide
+     */
+    @NonNull
+    public List<T> loadBefore(@NonNull K key, int loadCount) {
+        // The rows are queried backward from the key, so reverse them back.
+        List<T> rows = new ArrayList<>(query(getSQLiteQuery(mBeforeKeyQuery, key, loadCount)));
+        Collections.reverse(rows);
+        return rows;
+    }
+
+    private List<T> query(RoomSQLiteQuery sqLiteQuery) {
+        if (mInTransaction) {
+            mDb.beginTransaction();
+            Cursor cursor = null;
+            //noinspection TryFinallyCanBeTryWithResources
+            try {
+                cursor = mDb.query(sqLiteQuery);
+                List<T> rows = convertRows(cursor);
+                mDb.setTransactionSuccessful();
+                return rows;
+            } finally {
+                if (cursor != null) {
+                    cursor.close();
+                }
+                mDb.endTransaction();
+                sqLiteQuery.release();
+            }
+        } else {
+            Cursor cursor = mDb.query(sqLiteQuery);
+            //noinspection TryFinallyCanBeTryWithResources
+            try {
+                return convertRows(cursor);
+            } finally {
+                cursor.close();
+                sqLiteQuery.release();
+            }
+        }
+    }
+
+    private RoomSQLiteQuery getSQLiteQuery(String sql, @Nullable K key, int loadCount) {
+        final int keyArgCount = key == null ? 0 : 1;
+        final RoomSQLiteQuery sqLiteQuery = RoomSQLiteQuery.acquire(sql,
+                mSourceQuery.getArgCount() + keyArgCount + 1);
+        sqLiteQuery.copyArgumentsFrom(mSourceQuery);
+        if (key != null) {
+            bindKey(sqLiteQuery, sqLiteQuery.getArgCount() - 1, key);
+        }
+        sqLiteQuery.bindLong(sqLiteQuery.getArgCount(), loadCount);
+        return sqLiteQuery;
+    }
+
+    private static void bindKey(RoomSQLiteQuery sqLiteQuery, int index, Object key) {
+        if (key instanceof Long || key instanceof Integer || key instanceof Short
+                || key instanceof Byte) {
+            sqLiteQuery.bindLong(index, ((Number) key).longValue());
+        } else if (key instanceof Double || key instanceof Float) {
+            sqLiteQuery.bindDouble(index, ((Number) key).doubleValue());
+        } else if (key instanceof String) {
+            sqLiteQuery.bindString(index, (String) key);
+        } else if (key instanceof byte[]) {
+            sqLiteQuery.bindBlob(index, (byte[]) key);
+        } else {
+            throw new IllegalArgumentException("Unsupported key type: " + key.getClass());
+        }
+    }
+}
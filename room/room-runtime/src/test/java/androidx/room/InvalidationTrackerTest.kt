@@ -260,18 +260,17 @@ class InvalidationTrackerTest {
         var sqlCaptorValues: List<String>
         mTracker.addObserver(observer)
         var sqlArgCaptor: KArgumentCaptor<String> = argumentCaptor()
-        verify(mSqliteDb, times(4)).execSQL(sqlArgCaptor.capture())
+        verify(mSqliteDb, times(3)).execSQL(sqlArgCaptor.capture())
         sqlCaptorValues = sqlArgCaptor.allValues
-        assertThat(sqlCaptorValues[0])
-            .isEqualTo("INSERT OR IGNORE INTO room_table_modification_log VALUES(3, 0)")
         for (i in triggers.indices) {
-            assertThat(sqlCaptorValues[i + 1])
+            assertThat(sqlCaptorValues[i])
                 .isEqualTo(
                     "CREATE TEMP TRIGGER IF NOT EXISTS " +
                         "`room_table_modification_trigger_c_content_" + triggers[i] +
                         "` AFTER " + triggers[i] + " ON `c_content` BEGIN UPDATE " +
-                        "room_table_modification_log SET invalidated = 1 WHERE table_id = 3 " +
-                        "AND invalidated = 0; END"
+                        "room_table_modification_log SET invalidated_mask = " +
+                        "invalidated_mask | (1 << 3) WHERE mask_index = 0 " +
+                        "AND (invalidated_mask & (1 << 3)) = 0; END"
                 )
         }
         reset(mSqliteDb)
@@ -409,6 +408,58 @@ class InvalidationTrackerTest {
         }
     }
 
+    @Test
+    fun tableIdsBeyondFirstMask() {
+        val tableNames = Array(70) { "t$it" }
+        val tracker = InvalidationTracker(mRoomDatabase, *tableNames)
+        doReturn(mock<SupportSQLiteStatement>()).whenever(mSqliteDb)
+            .compileStatement(eq(InvalidationTracker.RESET_UPDATED_TABLES_SQL))
+        tracker.internalInit(mSqliteDb)
+        var sqlArgCaptor: KArgumentCaptor<String> = argumentCaptor()
+        verify(mSqliteDb, times(5)).execSQL(sqlArgCaptor.capture())
+        assertThat(sqlArgCaptor.allValues).containsAtLeast(
+            "INSERT OR IGNORE INTO room_table_modification_log VALUES(0, 0)",
+            "INSERT OR IGNORE INTO room_table_modification_log VALUES(1, 0)"
+        )
+        reset(mSqliteDb)
+
+        val observer = LatchObserver(1, "t65")
+        tracker.addObserver(observer)
+        sqlArgCaptor = argumentCaptor()
+        verify(mSqliteDb, times(3)).execSQL(sqlArgCaptor.capture())
+        assertThat(sqlArgCaptor.firstValue).endsWith(
+            "SET invalidated_mask = invalidated_mask | (1 << 1) WHERE mask_index = 1 " +
+                "AND (invalidated_mask & (1 << 1)) = 0; END"
+        )
+
+        setInvalidatedTables(1, 65)
+        tracker.refreshVersionsAsync()
+        drainTasks()
+        assertThat(observer.await()).isEqualTo(true)
+        assertThat(observer.invalidatedTables).containsExactly("t65")
+    }
+
+    @Test
+    fun refreshStats() {
+        val observer = LatchObserver(1, "a", "B")
+        mTracker.addObserver(observer)
+        setInvalidatedTables(0)
+        refreshSync()
+        assertThat(observer.await()).isEqualTo(true)
+        setInvalidatedTables(0, 1)
+        observer.reset(1)
+        refreshSync()
+        assertThat(observer.await()).isEqualTo(true)
+        assertThat(mTracker.refreshCount).isEqualTo(2)
+        assertThat(mTracker.refreshTimeNanos).isAtLeast(0)
+        assertThat(mTracker.getInvalidationCount("a")).isEqualTo(2)
+        assertThat(mTracker.getInvalidationCount("B")).isEqualTo(1)
+        assertThat(mTracker.getInvalidationCount("i")).isEqualTo(0)
+        assertFailsWith<IllegalArgumentException>(message = "There is no table with name x") {
+            mTracker.getInvalidationCount("x")
+        }
+    }
+
     @Test
     fun closedDbAfterOpen() {
         setInvalidatedTables(3, 1)
@@ -440,15 +491,28 @@ class InvalidationTrackerTest {
     }
 
     private fun createCursorWithValues(vararg tableIds: Int): Cursor {
+        // Each row has the mask index and the mask of the invalidated tables from that index.
+        val masks = sortedMapOf<Int, Long>()
+        tableIds.forEach { tableId ->
+            val maskIndex = tableId / Long.SIZE_BITS
+            masks[maskIndex] = (masks[maskIndex] ?: 0L) or (1L shl (tableId % Long.SIZE_BITS))
+        }
+        val rows = masks.entries.toList()
         val cursor: Cursor = mock()
         val index = AtomicInteger(-1)
-        whenever(cursor.moveToNext()).thenAnswer { index.addAndGet(1) < tableIds.size }
+        whenever(cursor.moveToNext()).thenAnswer { index.addAndGet(1) < rows.size }
         val intAnswer = Answer { invocation ->
-            // checkUpdatedTable only checks for column 0 (invalidated table id)
+            // checkUpdatedTable only checks for column 0 (mask index) as an int
             assert(invocation.arguments[0] as Int == 0)
-            tableIds[index.toInt()]
+            rows[index.toInt()].key
+        }
+        val longAnswer = Answer { invocation ->
+            // and column 1 (invalidated mask) as a long
+            assert(invocation.arguments[0] as Int == 1)
+            rows[index.toInt()].value
         }
         whenever(cursor.getInt(anyInt())).thenAnswer(intAnswer)
+        whenever(cursor.getLong(anyInt())).thenAnswer(longAnswer)
         return cursor
     }
 
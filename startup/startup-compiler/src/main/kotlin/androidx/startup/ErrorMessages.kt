@@ -0,0 +1,32 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.startup
+
+object ErrorMessages {
+    const val MULTIPLE_INDEXES = "only one class can be annotated with GenerateInitializerIndex"
+
+    fun notAnInitializer(name: String) =
+        "$name must be a non abstract class implementing Initializer"
+
+    fun notAccessible(name: String) =
+        "$name and its public no-argument constructor must be accessible from the index"
+
+    fun notIndexed(name: String) =
+        "$name must be annotated with IndexedInitializer to declare its dependencies"
+
+    fun cycle(name: String) = "Cannot index $name. Cycle detected."
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.startup
+
+import com.google.auto.common.MoreElements
+import javax.annotation.processing.AbstractProcessor
+import javax.annotation.processing.RoundEnvironment
+import javax.annotation.processing.SupportedAnnotationTypes
+import javax.lang.model.SourceVersion
+import javax.lang.model.element.TypeElement
+import javax.tools.Diagnostic
+
+/**
+ * Generates the `InitializerIndex` of the class annotated with `GenerateInitializerIndex`.
+ *
+ * The processor doesn't depend on startup-runtime, which is an Android library, so it refers to
+ * its classes by name.
+ */
+@SupportedAnnotationTypes(GENERATE_INITIALIZER_INDEX)
+class InitializerIndexProcessor : AbstractProcessor() {
+    // Only one index can be generated for the whole compilation.
+    private var annotatedType: TypeElement? = null
+
+    override fun process(
+        annotations: MutableSet<out TypeElement>,
+        roundEnv: RoundEnvironment
+    ): Boolean {
+        val annotation = processingEnv.elementUtils.getTypeElement(GENERATE_INITIALIZER_INDEX)
+            ?: return false
+        for (element in roundEnv.getElementsAnnotatedWith(annotation)) {
+            if (annotatedType != null) {
+                processingEnv.messager.printMessage(
+                    Diagnostic.Kind.ERROR, ErrorMessages.MULTIPLE_INDEXES, element
+                )
+                continue
+            }
+            val type = MoreElements.asType(element)
+            annotatedType = type
+            val index = collectIndex(processingEnv, type) ?: continue
+            writeInitializerIndex(index, processingEnv)
+        }
+        return true
+    }
+
+    override fun getSupportedSourceVersion(): SourceVersion {
+        return SourceVersion.latest()
+    }
+}
+
+const val GENERATE_INITIALIZER_INDEX = "androidx.startup.GenerateInitializerIndex"
+const val INDEXED_INITIALIZER = "androidx.startup.IndexedInitializer"
+const val INITIALIZER = "androidx.startup.Initializer"
+const val INITIALIZER_INDEX = "androidx.startup.InitializerIndex"
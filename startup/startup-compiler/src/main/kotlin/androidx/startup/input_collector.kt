@@ -0,0 +1,167 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.startup
+
+import com.google.auto.common.MoreElements
+import com.google.auto.common.MoreTypes
+import javax.annotation.processing.ProcessingEnvironment
+import javax.lang.model.element.AnnotationMirror
+import javax.lang.model.element.AnnotationValue
+import javax.lang.model.element.ElementKind
+import javax.lang.model.element.Modifier
+import javax.lang.model.element.NestingKind
+import javax.lang.model.element.TypeElement
+import javax.lang.model.type.TypeKind
+import javax.lang.model.type.TypeMirror
+import javax.lang.model.util.ElementFilter
+import javax.tools.Diagnostic
+
+/**
+ * An `Initializer` of the index.
+ *
+ * @property dependencies The positions of the direct dependencies in the index
+ */
+data class IndexEntry(
+    val type: TypeElement,
+    val isDiscovered: Boolean,
+    val dependencies: List<Int>
+)
+
+/**
+ * The initializers of the index in topological order, i.e. every entry comes after its
+ * dependencies.
+ */
+data class InitializerIndexModel(val annotatedType: TypeElement, val entries: List<IndexEntry>)
+
+/**
+ * Collects the initializers listed by the `GenerateInitializerIndex` annotation of the type and
+ * their transitive dependencies, or returns `null` after reporting errors if they can't be
+ * indexed.
+ */
+fun collectIndex(
+    processingEnv: ProcessingEnvironment,
+    annotatedType: TypeElement
+): InitializerIndexModel? {
+    val annotation = annotatedType.getAnnotationMirror(GENERATE_INITIALIZER_INDEX) ?: return null
+    val collector = IndexCollector(processingEnv, annotatedType)
+    val roots = annotation.getClassValues(processingEnv, "value")
+    for (root in roots) {
+        collector.visit(root, mutableSetOf())
+    }
+    if (collector.hasErrors) {
+        return null
+    }
+    val rootNames = roots.map { it.qualifiedName.toString() }.toSet()
+    val entries = collector.entries.map { (type, dependencies) ->
+        IndexEntry(type, type.qualifiedName.toString() in rootNames, dependencies)
+    }
+    return InitializerIndexModel(annotatedType, entries)
+}
+
+private class IndexCollector(
+    private val processingEnv: ProcessingEnvironment,
+    private val annotatedType: TypeElement
+) {
+    // The initializers in depth first post-order, with the positions of their dependencies.
+    val entries = mutableListOf<Pair<TypeElement, List<Int>>>()
+    private val positions = mutableMapOf<String, Int>()
+    var hasErrors = false
+        private set
+
+    private val initializerType: TypeMirror? = processingEnv.elementUtils
+        .getTypeElement(INITIALIZER)?.let { processingEnv.typeUtils.erasure(it.asType()) }
+
+    fun visit(type: TypeElement, visiting: MutableSet<String>): Int? {
+        val name = type.qualifiedName.toString()
+        positions[name]?.let { return it }
+        if (!visiting.add(name)) {
+            error(ErrorMessages.cycle(name))
+            return null
+        }
+        if (!validate(type, name)) {
+            return null
+        }
+        val annotation = type.getAnnotationMirror(INDEXED_INITIALIZER)
+        if (annotation == null) {
+            error(ErrorMessages.notIndexed(name))
+            return null
+        }
+        val dependencies = annotation.getClassValues(processingEnv, "dependencies").map {
+            visit(it, visiting) ?: return null
+        }
+        visiting.remove(name)
+        positions[name] = entries.size
+        entries.add(type to dependencies)
+        return entries.size - 1
+    }
+
+    private fun validate(type: TypeElement, name: String): Boolean {
+        val typeUtils = processingEnv.typeUtils
+        if (type.kind != ElementKind.CLASS || Modifier.ABSTRACT in type.modifiers ||
+            initializerType == null ||
+            !typeUtils.isAssignable(typeUtils.erasure(type.asType()), initializerType)
+        ) {
+            error(ErrorMessages.notAnInitializer(name))
+            return false
+        }
+        val hasConstructor = ElementFilter.constructorsIn(type.enclosedElements).any {
+            it.parameters.isEmpty() && Modifier.PUBLIC in it.modifiers
+        }
+        if (!hasConstructor || !type.isAccessible()) {
+            error(ErrorMessages.notAccessible(name))
+            return false
+        }
+        return true
+    }
+
+    private fun error(message: String) {
+        // The initializers are usually in libraries, so the errors are reported on the index.
+        processingEnv.messager.printMessage(Diagnostic.Kind.ERROR, message, annotatedType)
+        hasErrors = true
+    }
+}
+
+private fun TypeElement.isAccessible(): Boolean {
+    if (Modifier.PUBLIC !in modifiers) {
+        return false
+    }
+    return when (nestingKind) {
+        NestingKind.TOP_LEVEL -> true
+        NestingKind.MEMBER -> Modifier.STATIC in modifiers &&
+            MoreElements.asType(enclosingElement).isAccessible()
+        else -> false
+    }
+}
+
+private fun TypeElement.getAnnotationMirror(name: String): AnnotationMirror? {
+    return annotationMirrors.firstOrNull {
+        MoreElements.asType(it.annotationType.asElement()).qualifiedName.contentEquals(name)
+    }
+}
+
+private fun AnnotationMirror.getClassValues(
+    processingEnv: ProcessingEnvironment,
+    name: String
+): List<TypeElement> {
+    val value = processingEnv.elementUtils.getElementValuesWithDefaults(this).entries
+        .first { it.key.simpleName.contentEquals(name) }.value
+    @Suppress("UNCHECKED_CAST")
+    return (value.value as List<AnnotationValue>).mapNotNull {
+        val type = it.value as? TypeMirror
+        if (type?.kind == TypeKind.DECLARED) MoreTypes.asTypeElement(type) else null
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.startup
+
+import com.google.auto.common.MoreElements
+import com.squareup.javapoet.AnnotationSpec
+import com.squareup.javapoet.ArrayTypeName
+import com.squareup.javapoet.ClassName
+import com.squareup.javapoet.JavaFile
+import com.squareup.javapoet.MethodSpec
+import com.squareup.javapoet.ParameterSpec
+import com.squareup.javapoet.ParameterizedTypeName
+import com.squareup.javapoet.TypeName
+import com.squareup.javapoet.TypeSpec
+import com.squareup.javapoet.WildcardTypeName
+import javax.annotation.processing.ProcessingEnvironment
+import javax.lang.model.element.Modifier
+import javax.lang.model.element.TypeElement
+import javax.tools.StandardLocation
+
+private val GENERATED_PACKAGE = "javax.annotation"
+private val GENERATED_NAME = "Generated"
+
+private val T = "\$T"
+private val N = "\$N"
+private val L = "\$L"
+private val S = "\$S"
+
+private val INITIALIZER_TYPE: ClassName = ClassName.bestGuess(INITIALIZER)
+private val INITIALIZER_INDEX_TYPE: ClassName = ClassName.bestGuess(INITIALIZER_INDEX)
+
+// Initializer<?>
+private val ANY_INITIALIZER_TYPE: TypeName =
+    ParameterizedTypeName.get(INITIALIZER_TYPE, WildcardTypeName.subtypeOf(Any::class.java))
+
+// Class<? extends Initializer<?>>
+private val COMPONENT_TYPE: TypeName = ParameterizedTypeName.get(
+    ClassName.get(Class::class.java),
+    WildcardTypeName.subtypeOf(ANY_INITIALIZER_TYPE)
+)
+
+private val INDEX_PARAM: ParameterSpec = ParameterSpec.builder(TypeName.INT, "index").build()
+
+/**
+ * Writes the index next to the annotated type, and lists it in the `META-INF/services` file read
+ * by `AppInitializer`.
+ */
+fun writeInitializerIndex(index: InitializerIndexModel, processingEnv: ProcessingEnvironment) {
+    val packageName = MoreElements.getPackage(index.annotatedType).qualifiedName.toString()
+    val indexName = getIndexName(index.annotatedType)
+    val entries = index.entries
+
+    val getComponentCount = MethodSpec.methodBuilder("getComponentCount")
+        .returns(TypeName.INT)
+        .addModifiers(Modifier.PUBLIC)
+        .addAnnotation(Override::class.java)
+        .addStatement("return $L", entries.size)
+        .build()
+    val getComponent = indexSwitchMethod("getComponent", COMPONENT_TYPE) {
+        entries.forEachIndexed { i, entry ->
+            addCode("case $L:\n", i)
+            addStatement("$>return $T.class$<", ClassName.get(entry.type))
+        }
+        writeDefaultThrow()
+    }
+    val isDiscovered = indexSwitchMethod("isDiscovered", TypeName.BOOLEAN) {
+        if (entries.any { it.isDiscovered }) {
+            entries.forEachIndexed { i, entry ->
+                if (entry.isDiscovered) {
+                    addCode("case $L:\n", i)
+                }
+            }
+            addStatement("$>return true$<")
+        }
+        addCode("default:\n")
+        addStatement("$>return false$<")
+    }
+    val getDependencies = indexSwitchMethod(
+        "getDependencies", ArrayTypeName.of(TypeName.INT)
+    ) {
+        entries.forEachIndexed { i, entry ->
+            if (entry.dependencies.isNotEmpty()) {
+                addCode("case $L:\n", i)
+                addStatement(
+                    "$>return new int[] {$L}$<", entry.dependencies.joinToString(", ")
+                )
+            }
+        }
+        addCode("default:\n")
+        addStatement("$>return new int[0]$<")
+    }
+    val newInstance = indexSwitchMethod("newInstance", ANY_INITIALIZER_TYPE) {
+        entries.forEachIndexed { i, entry ->
+            addCode("case $L:\n", i)
+            addStatement("$>return new $T()$<", ClassName.get(entry.type))
+        }
+        writeDefaultThrow()
+    }
+
+    val indexTypeSpecBuilder = TypeSpec.classBuilder(indexName)
+        .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+        .superclass(INITIALIZER_INDEX_TYPE)
+        .addMethod(getComponentCount)
+        .addMethod(getComponent)
+        .addMethod(isDiscovered)
+        .addMethod(getDependencies)
+        .addMethod(newInstance)
+        .addOriginatingElement(index.annotatedType)
+    addGeneratedAnnotationIfAvailable(indexTypeSpecBuilder, processingEnv)
+
+    JavaFile.builder(packageName, indexTypeSpecBuilder.build())
+        .build().writeTo(processingEnv.filer)
+
+    val path = "META-INF/services/$INITIALIZER_INDEX"
+    val out = processingEnv.filer.createResource(
+        StandardLocation.CLASS_OUTPUT, "", path, index.annotatedType
+    )
+    val binaryName = if (packageName.isEmpty()) indexName else "$packageName.$indexName"
+    out.openWriter().use { it.write("$binaryName\n") }
+}
+
+private fun getIndexName(type: TypeElement): String {
+    val packageName = MoreElements.getPackage(type).qualifiedName.toString()
+    val qualifiedName = type.qualifiedName.toString()
+    val simpleNames = if (packageName.isEmpty()) {
+        qualifiedName
+    } else {
+        qualifiedName.substring(packageName.length + 1)
+    }
+    return simpleNames.replace('.', '_') + "_InitializerIndex"
+}
+
+private fun indexSwitchMethod(
+    name: String,
+    returnType: TypeName,
+    cases: MethodSpec.Builder.() -> Unit
+): MethodSpec {
+    return MethodSpec.methodBuilder(name)
+        .returns(returnType)
+        .addParameter(INDEX_PARAM)
+        .addModifiers(Modifier.PUBLIC)
+        .addAnnotation(Override::class.java)
+        .beginControlFlow("switch ($N)", INDEX_PARAM)
+        .apply(cases)
+        .endControlFlow()
+        .build()
+}
+
+private fun MethodSpec.Builder.writeDefaultThrow() {
+    addCode("default:\n")
+    addStatement(
+        "$>throw new $T($T.valueOf($N))$<",
+        ClassName.get(IndexOutOfBoundsException::class.java),
+        ClassName.get(String::class.java),
+        INDEX_PARAM
+    )
+}
+
+private fun addGeneratedAnnotationIfAvailable(
+    typeSpecBuilder: TypeSpec.Builder,
+    processingEnv: ProcessingEnvironment
+) {
+    val generatedAnnotationAvailable = processingEnv
+        .elementUtils
+        .getTypeElement(GENERATED_PACKAGE + "." + GENERATED_NAME) != null
+    if (generatedAnnotationAvailable) {
+        val generatedAnnotationSpec =
+            AnnotationSpec.builder(ClassName.get(GENERATED_PACKAGE, GENERATED_NAME)).addMember(
+                "value",
+                S,
+                InitializerIndexProcessor::class.java.canonicalName
+            ).build()
+        typeSpecBuilder.addAnnotation(generatedAnnotationSpec)
+    }
+}
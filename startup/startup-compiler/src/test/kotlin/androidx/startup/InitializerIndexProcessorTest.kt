@@ -0,0 +1,95 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.startup
+
+import com.google.testing.compile.CompileTester
+import com.google.testing.compile.JavaFileObjects
+import com.google.testing.compile.JavaSourcesSubject
+import java.io.File
+import java.nio.charset.Charset
+import javax.tools.JavaFileObject
+import javax.tools.StandardLocation
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.JUnit4
+
+@RunWith(JUnit4::class)
+class InitializerIndexProcessorTest {
+
+    @Test
+    fun testIndexInTopologicalOrder() {
+        process("foo.App")
+            .compilesWithoutError().and()
+            .generatesSources(load("foo.App_InitializerIndex", "expected"))
+            .and().generatesFileNamed(
+                StandardLocation.CLASS_OUTPUT, "",
+                "META-INF/services/androidx.startup.InitializerIndex"
+            )
+    }
+
+    @Test
+    fun testInitializerWithoutIndexedInitializer() {
+        process("foo.NotIndexedApp").failsToCompile()
+            .withErrorContaining(ErrorMessages.notIndexed("foo.NotIndexedInitializer"))
+    }
+
+    @Test
+    fun testCycle() {
+        process("foo.CyclicApp").failsToCompile()
+            .withErrorContaining(ErrorMessages.cycle("foo.CyclicInitializer"))
+    }
+
+    @Test
+    fun testInitializerWithoutPublicConstructor() {
+        process("foo.PrivateConstructorApp").failsToCompile()
+            .withErrorContaining(ErrorMessages.notAccessible("foo.PrivateConstructorInitializer"))
+    }
+
+    @Test
+    fun testOnlyOneIndex() {
+        JavaSourcesSubject.assertThat(load("foo.App", ""), *sources(), load("foo.CyclicApp", ""))
+            .processedWith(InitializerIndexProcessor())
+            .failsToCompile()
+            .withErrorContaining(ErrorMessages.MULTIPLE_INDEXES)
+    }
+
+    private fun process(className: String): CompileTester {
+        return JavaSourcesSubject.assertThat(load(className, ""), *sources())
+            .processedWith(InitializerIndexProcessor())
+    }
+
+    private fun sources(): Array<JavaFileObject> = listOf(
+        "android.content.Context",
+        "androidx.startup.GenerateInitializerIndex",
+        "androidx.startup.IndexedInitializer",
+        "androidx.startup.Initializer",
+        "androidx.startup.InitializerIndex",
+        "foo.CyclicInitializer",
+        "foo.FirstInitializer",
+        "foo.NotIndexedInitializer",
+        "foo.PrivateConstructorInitializer",
+        "foo.SecondInitializer",
+        "foo.ThirdInitializer"
+    ).map { load(it, "") }.toTypedArray()
+
+    private fun load(fullClassName: String, folder: String): JavaFileObject {
+        val folderPath = "src/test/test-data/${if (folder.isEmpty()) "" else "$folder/"}"
+        val code = File("$folderPath${fullClassName.split(".").last()}.java")
+            .readText(Charset.defaultCharset())
+        return JavaFileObjects.forSourceString(fullClassName, code)
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package foo;
+
+import android.content.Context;
+
+import androidx.startup.IndexedInitializer;
+import androidx.startup.Initializer;
+
+import java.util.Collections;
+import java.util.List;
+
+@IndexedInitializer(dependencies = CyclicInitializer.class)
+public class CyclicInitializer implements Initializer<String> {
+    @Override
+    public String create(Context context) {
+        return "cyclic";
+    }
+
+    @Override
+    public List<Class<? extends Initializer<?>>> dependencies() {
+        return Collections.<Class<? extends Initializer<?>>>singletonList(
+                CyclicInitializer.class);
+    }
+}
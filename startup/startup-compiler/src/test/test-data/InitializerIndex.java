@@ -0,0 +1,30 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.startup;
+
+// Stub of the startup-runtime class, which is an Android library.
+public abstract class InitializerIndex {
+    public abstract int getComponentCount();
+
+    public abstract Class<? extends Initializer<?>> getComponent(int index);
+
+    public abstract boolean isDiscovered(int index);
+
+    public abstract int[] getDependencies(int index);
+
+    public abstract Initializer<?> newInstance(int index);
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package foo;
+
+import androidx.startup.Initializer;
+import androidx.startup.InitializerIndex;
+import java.lang.Class;
+import java.lang.IndexOutOfBoundsException;
+import java.lang.Override;
+import java.lang.String;
+import javax.annotation.Generated;
+
+@Generated("androidx.startup.InitializerIndexProcessor")
+public final class App_InitializerIndex extends InitializerIndex {
+    @Override
+    public int getComponentCount() {
+        return 3;
+    }
+
+    @Override
+    public Class<? extends Initializer<?>> getComponent(int index) {
+        switch (index) {
+            case 0:
+                return FirstInitializer.class;
+            case 1:
+                return SecondInitializer.class;
+            case 2:
+                return ThirdInitializer.class;
+            default:
+                throw new IndexOutOfBoundsException(String.valueOf(index));
+        }
+    }
+
+    @Override
+    public boolean isDiscovered(int index) {
+        switch (index) {
+            case 0:
+            case 2:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public int[] getDependencies(int index) {
+        switch (index) {
+            case 1:
+                return new int[] {0};
+            case 2:
+                return new int[] {1, 0};
+            default:
+                return new int[0];
+        }
+    }
+
+    @Override
+    public Initializer<?> newInstance(int index) {
+        switch (index) {
+            case 0:
+                return new FirstInitializer();
+            case 1:
+                return new SecondInitializer();
+            case 2:
+                return new ThirdInitializer();
+            default:
+                throw new IndexOutOfBoundsException(String.valueOf(index));
+        }
+    }
+}
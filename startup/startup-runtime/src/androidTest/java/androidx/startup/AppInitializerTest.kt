@@ -23,6 +23,7 @@ import androidx.test.filters.MediumTest
 import org.hamcrest.CoreMatchers.`is`
 import org.hamcrest.CoreMatchers.containsString
 import org.hamcrest.MatcherAssert.assertThat
+import org.junit.Assert.assertNull
 import org.junit.Assert.assertTrue
 import org.junit.Assert.fail
 import org.junit.Before
@@ -75,4 +76,71 @@ class AppInitializerTest {
             assertThat(exception.localizedMessage, containsString("Cycle detected."))
         }
     }
+
+    @Test
+    fun initializerReturningNullIsCreatedOnce() {
+        val initializer = NullInitializer()
+        appInitializer.initialize(NullInitializer::class.java, initializer)
+        appInitializer.initialize(NullInitializer::class.java, initializer)
+        assertTrue(appInitializer.isInitialized(NullInitializer::class.java))
+        assertThat(initializer.mCreateCount, `is`(1))
+    }
+
+    @Test
+    fun initializationWithIndex() {
+        val index = TestInitializerIndex(dependencies = intArrayOf(0))
+        appInitializer.discoverAndInitialize(index)
+        assertThat(appInitializer.mInitialized.size, `is`(2))
+        assertTrue(appInitializer.mInitialized.containsKey(InitializerNoDependencies::class.java))
+        assertTrue(appInitializer.mInitialized.containsKey(InitializerWithDependency::class.java))
+        assertThat(appInitializer.mDiscovered.size, `is`(1))
+        assertTrue(appInitializer.isEagerlyInitialized(InitializerWithDependency::class.java))
+        // Every initializer is instantiated through the index, exactly once.
+        assertThat(index.instances, `is`(2))
+    }
+
+    @Test
+    fun initializationWithIndexNotInTopologicalOrder() {
+        try {
+            appInitializer.discoverAndInitialize(TestInitializerIndex(dependencies = intArrayOf(1)))
+            fail()
+        } catch (exception: StartupException) {
+            assertThat(exception.localizedMessage, containsString("topological order"))
+        }
+    }
+
+    @Test
+    fun noGeneratedIndex() {
+        assertNull(AppInitializer.loadInitializerIndex())
+    }
+
+    /**
+     * An index like the ones generated by startup-compiler, where [InitializerWithDependency]
+     * has the given dependencies.
+     */
+    private class TestInitializerIndex(private val dependencies: IntArray) : InitializerIndex() {
+        var instances = 0
+
+        override fun getComponentCount() = 2
+
+        override fun getComponent(index: Int): Class<out Initializer<*>> = when (index) {
+            0 -> InitializerNoDependencies::class.java
+            else -> InitializerWithDependency::class.java
+        }
+
+        override fun isDiscovered(index: Int) = index == 1
+
+        override fun getDependencies(index: Int) = when (index) {
+            0 -> IntArray(0)
+            else -> dependencies
+        }
+
+        override fun newInstance(index: Int): Initializer<*> {
+            instances++
+            return when (index) {
+                0 -> InitializerNoDependencies()
+                else -> InitializerWithDependency()
+            }
+        }
+    }
 }
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.startup
+
+import android.content.Context
+import android.os.Bundle
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.filters.MediumTest
+import org.hamcrest.CoreMatchers.`is`
+import org.hamcrest.CoreMatchers.containsString
+import org.hamcrest.MatcherAssert.assertThat
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Assert.fail
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.concurrent.thread
+
+@RunWith(AndroidJUnit4::class)
+@MediumTest
+class BackgroundInitializerTest {
+    class Background : BackgroundInitializer<Thread> {
+        override fun create(context: Context): Thread = Thread.currentThread()
+
+        override fun dependencies(): List<Class<out Initializer<*>>> = listOf()
+    }
+
+    class DependsOnBackground : Initializer<Thread> {
+        override fun create(context: Context): Thread {
+            // Dependencies are initialized first, even if they run on another thread.
+            val initializer = AppInitializer.getInstance(context)
+            assertTrue(initializer.mInitialized.containsKey(Background::class.java))
+            return Thread.currentThread()
+        }
+
+        override fun dependencies() = listOf(Background::class.java)
+    }
+
+    class Failing : BackgroundInitializer<Unit> {
+        override fun create(context: Context) {
+            throw IllegalStateException("Failing initializer")
+        }
+
+        override fun dependencies(): List<Class<out Initializer<*>>> = listOf()
+    }
+
+    class Blocking : BackgroundInitializer<Any> {
+        override fun create(context: Context): Any {
+            created.incrementAndGet()
+            started.countDown()
+            assertTrue(release.await(TIMEOUT_SECONDS, TimeUnit.SECONDS))
+            return Any()
+        }
+
+        override fun dependencies(): List<Class<out Initializer<*>>> = listOf()
+
+        companion object {
+            val created = AtomicInteger()
+            var started = CountDownLatch(1)
+            var release = CountDownLatch(1)
+        }
+    }
+
+    private lateinit var context: Context
+    private lateinit var appInitializer: AppInitializer
+
+    @Before
+    fun setUp() {
+        context = ApplicationProvider.getApplicationContext()
+        appInitializer = AppInitializer(context)
+        AppInitializer.setDelegate(appInitializer)
+    }
+
+    @Test
+    fun backgroundInitializerRunsOffCallingThread() {
+        val metadata = Bundle()
+        metadata.putString(DependsOnBackground::class.java.name, STARTUP)
+        appInitializer.discoverAndInitialize(metadata)
+
+        val callingThread = Thread.currentThread()
+        assertThat(appInitializer.mInitialized.size, `is`(2))
+        assertFalse(appInitializer.mInitialized[Background::class.java] === callingThread)
+        assertTrue(
+            appInitializer.mInitialized[DependsOnBackground::class.java] === callingThread
+        )
+    }
+
+    @Test
+    fun initializationTimeIsRecorded() {
+        assertEquals(-1, appInitializer.getInitializationTimeNanos(Background::class.java))
+
+        val metadata = Bundle()
+        metadata.putString(Background::class.java.name, STARTUP)
+        appInitializer.discoverAndInitialize(metadata)
+
+        assertTrue(appInitializer.getInitializationTimeNanos(Background::class.java) >= 0)
+    }
+
+    @Test
+    fun backgroundFailureIsReported() {
+        val metadata = Bundle()
+        metadata.putString(Failing::class.java.name, STARTUP)
+        try {
+            appInitializer.discoverAndInitialize(metadata)
+            fail()
+        } catch (exception: StartupException) {
+            assertThat(exception.localizedMessage, containsString("Failing initializer"))
+        }
+    }
+
+    @Test
+    fun concurrentInitializeComponentCreatesOnce() {
+        Blocking.created.set(0)
+        Blocking.started = CountDownLatch(1)
+        Blocking.release = CountDownLatch(1)
+        val metadata = Bundle()
+        metadata.putString(Blocking::class.java.name, STARTUP)
+        val eager = thread { appInitializer.discoverAndInitialize(metadata) }
+        assertTrue(Blocking.started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS))
+
+        // Requested while the eager initialization is still creating it.
+        var result: Any? = null
+        val lazy = thread { result = appInitializer.initializeComponent(Blocking::class.java) }
+        Blocking.release.countDown()
+        eager.join(TIMEOUT_SECONDS * 1000)
+        lazy.join(TIMEOUT_SECONDS * 1000)
+
+        assertEquals(1, Blocking.created.get())
+        assertTrue(result === appInitializer.mInitialized[Blocking::class.java])
+    }
+
+    companion object {
+        const val STARTUP = "androidx.startup"
+        const val TIMEOUT_SECONDS = 5L
+    }
+}
@@ -30,15 +30,20 @@ import androidx.tracing.Trace;
 
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.ServiceLoader;
 import java.util.Set;
 
 /**
  * An {@link AppInitializer} can be used to initialize all discovered
  * <code>ComponentInitializer</code>s. The discovery mechanism is via
  * <code>&lt;meta-data&gt;</code> entries in the merged
- * <code>AndroidManifest.xml</code>.
+ * <code>AndroidManifest.xml</code>, or the index generated for {@link GenerateInitializerIndex}.
+ * <p>
+ * Discovered {@link BackgroundInitializer}s are initialized concurrently on background threads,
+ * see {@link BackgroundInitializer}.
  */
 @SuppressWarnings("WeakerAccess")
 public final class AppInitializer {
@@ -62,6 +67,19 @@ public final class AppInitializer {
     @NonNull
     final Set<Class<? extends Initializer<?>>> mDiscovered;
 
+    /**
+     * The components being created by {@link #initialize(Class, Initializer)}, mapped to the
+     * thread creating them, guarded by sLock.
+     */
+    @NonNull
+    final Map<Class<?>, Thread> mInitializing;
+
+    /**
+     * The time spent in {@link Initializer#create(Context)} by component, guarded by sLock.
+     */
+    @NonNull
+    final Map<Class<?>, Long> mInitializationTimes;
+
     @NonNull
     final Context mContext;
 
@@ -74,6 +92,8 @@ public final class AppInitializer {
         mContext = context.getApplicationContext();
         mDiscovered = new HashSet<>();
         mInitialized = new HashMap<>();
+        mInitializing = new HashMap<>();
+        mInitializationTimes = new HashMap<>();
     }
 
     /**
@@ -128,6 +148,21 @@ public final class AppInitializer {
         return mDiscovered.contains(component);
     }
 
+    /**
+     * Returns the time spent initializing the {@link Initializer}, i.e. in its
+     * {@link Initializer#create(Context)} method, excluding its dependencies.
+     *
+     * @param component The {@link Initializer} class to check
+     * @return The initialization time in nanoseconds, or <code>-1</code> if the
+     * {@link Initializer} was not initialized yet.
+     */
+    public long getInitializationTimeNanos(@NonNull Class<? extends Initializer<?>> component) {
+        synchronized (sLock) {
+            Long time = mInitializationTimes.get(component);
+            return time == null ? -1 : time;
+        }
+    }
+
     @NonNull
     @SuppressWarnings({"unchecked", "TypeParameterUnusedInFormals"})
     <T> T doInitialize(@NonNull Class<? extends Initializer<?>> component) {
@@ -159,6 +194,7 @@ public final class AppInitializer {
                 throw new IllegalStateException(message);
             }
             Object result;
+            awaitInitializing(component);
             if (!mInitialized.containsKey(component)) {
                 initializing.add(component);
                 try {
@@ -174,13 +210,7 @@ public final class AppInitializer {
                             }
                         }
                     }
-                    if (StartupLogger.DEBUG) {
-                        StartupLogger.i(String.format("Initializing %s", component.getName()));
-                    }
-                    result = initializer.create(mContext);
-                    if (StartupLogger.DEBUG) {
-                        StartupLogger.i(String.format("Initialized %s", component.getName()));
-                    }
+                    result = create(component, initializer);
                     initializing.remove(component);
                     mInitialized.put(component, result);
                 } catch (Throwable throwable) {
@@ -195,11 +225,109 @@ public final class AppInitializer {
         }
     }
 
+    /**
+     * Initializes the component, whose dependencies must already be initialized. Does nothing if
+     * the component is already initialized, e.g. by a concurrent call to
+     * {@link #initializeComponent(Class)}.
+     * <p>
+     * Can be called from any thread.
+     */
+    void initialize(
+            @NonNull Class<? extends Initializer<?>> component,
+            @NonNull Initializer<?> initializer) {
+        synchronized (sLock) {
+            awaitInitializing(component);
+            if (mInitialized.containsKey(component)) {
+                return;
+            }
+            mInitializing.put(component, Thread.currentThread());
+        }
+        boolean isTracingEnabled = Trace.isEnabled();
+        Object result = null;
+        boolean isCreated = false;
+        try {
+            if (isTracingEnabled) {
+                Trace.beginSection(component.getSimpleName());
+            }
+            try {
+                result = create(component, initializer);
+                isCreated = true;
+            } catch (Throwable throwable) {
+                throw new StartupException(throwable);
+            }
+        } finally {
+            synchronized (sLock) {
+                mInitializing.remove(component);
+                // The result can be null, e.g. for an Initializer<Void>.
+                if (isCreated) {
+                    mInitialized.put(component, result);
+                }
+                sLock.notifyAll();
+            }
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * Waits until the component is no longer being created by
+     * {@link #initialize(Class, Initializer)} on another thread. Must be called with sLock held.
+     */
+    private void awaitInitializing(@NonNull Class<?> component) {
+        Thread thread;
+        while ((thread = mInitializing.get(component)) != null) {
+            if (thread == Thread.currentThread()) {
+                String message = String.format(
+                        "Cannot initialize %s. Cycle detected.", component.getName()
+                );
+                throw new IllegalStateException(message);
+            }
+            try {
+                sLock.wait();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new StartupException(exception);
+            }
+        }
+    }
+
+    boolean isInitialized(@NonNull Class<?> component) {
+        synchronized (sLock) {
+            return mInitialized.containsKey(component);
+        }
+    }
+
+    @Nullable
+    private Object create(
+            @NonNull Class<? extends Initializer<?>> component,
+            @NonNull Initializer<?> initializer) {
+        if (StartupLogger.DEBUG) {
+            StartupLogger.i(String.format("Initializing %s", component.getName()));
+        }
+        long start = System.nanoTime();
+        Object result = initializer.create(mContext);
+        long time = System.nanoTime() - start;
+        synchronized (sLock) {
+            mInitializationTimes.put(component, time);
+        }
+        if (StartupLogger.DEBUG) {
+            StartupLogger.i(String.format("Initialized %s in %d ns", component.getName(), time));
+        }
+        return result;
+    }
+
     @SuppressWarnings("deprecation")
     void discoverAndInitialize(
             @NonNull Class<? extends InitializationProvider> initializationProvider) {
         try {
             Trace.beginSection(SECTION_NAME);
+            if (initializationProvider == InitializationProvider.class) {
+                // The index replaces the metadata of the default provider only.
+                InitializerIndex index = loadInitializerIndex();
+                if (index != null) {
+                    discoverAndInitialize(index);
+                    return;
+                }
+            }
             ComponentName provider = new ComponentName(mContext, initializationProvider);
             ProviderInfo providerInfo = mContext.getPackageManager()
                     .getProviderInfo(provider, GET_META_DATA);
@@ -212,12 +340,50 @@ public final class AppInitializer {
         }
     }
 
+    /**
+     * @return The {@link InitializerIndex} generated for {@link GenerateInitializerIndex}, or
+     * <code>null</code> if the app has none.
+     */
+    @Nullable
+    static InitializerIndex loadInitializerIndex() {
+        // Use the ServiceLoader.load(Class, ClassLoader) form with the class loader of the index,
+        // so that R8 can replace the lookup with a direct instantiation of the index.
+        Iterator<InitializerIndex> indexes = ServiceLoader.load(
+                InitializerIndex.class, InitializerIndex.class.getClassLoader()).iterator();
+        if (!indexes.hasNext()) {
+            return null;
+        }
+        InitializerIndex index = indexes.next();
+        if (indexes.hasNext()) {
+            throw new StartupException(
+                    "Only one class can be annotated with @GenerateInitializerIndex.");
+        }
+        return index;
+    }
+
+    void discoverAndInitialize(@NonNull InitializerIndex index) {
+        int count = index.getComponentCount();
+        for (int i = 0; i < count; i++) {
+            if (index.isDiscovered(i)) {
+                Class<? extends Initializer<?>> component = index.getComponent(i);
+                mDiscovered.add(component);
+                if (StartupLogger.DEBUG) {
+                    StartupLogger.i(String.format("Discovered %s", component.getName()));
+                }
+            }
+        }
+        // Initialize only after discovery is complete. This way, the check for
+        // isEagerlyInitialized is correct.
+        InitializerGraph graph = new InitializerGraph(this);
+        graph.addAll(index);
+        graph.initialize();
+    }
+
     @SuppressWarnings("unchecked")
     void discoverAndInitialize(@Nullable Bundle metadata) {
         String startup = mContext.getString(R.string.androidx_startup);
         try {
             if (metadata != null) {
-                Set<Class<?>> initializing = new HashSet<>();
                 Set<String> keys = metadata.keySet();
                 for (String key : keys) {
                     String value = metadata.getString(key, null);
@@ -235,9 +401,11 @@ public final class AppInitializer {
                 }
                 // Initialize only after discovery is complete. This way, the check for
                 // isEagerlyInitialized is correct.
+                InitializerGraph graph = new InitializerGraph(this);
                 for (Class<? extends Initializer<?>> component : mDiscovered) {
-                    doInitialize(component, initializing);
+                    graph.add(component);
                 }
+                graph.initialize();
             }
         } catch (ClassNotFoundException exception) {
             throw new StartupException(exception);
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.startup;
+
+/**
+ * An {@link Initializer} that is safe to run on a background thread.
+ * <p>
+ * When eagerly initializing the {@link Initializer}s discovered in the
+ * <code>AndroidManifest.xml</code>, {@link AppInitializer} runs {@link BackgroundInitializer}s
+ * on a small pool of background threads, concurrently with any other {@link Initializer} whose
+ * {@link #dependencies()} have already been initialized. All other {@link Initializer}s still run
+ * on the main thread. Eager initialization only completes once every {@link Initializer} has been
+ * initialized, so the app observes the same state as with serial initialization.
+ * <p>
+ * Because of that, a {@link BackgroundInitializer} must declare everything it needs in
+ * {@link #dependencies()}, instead of relying on the order in which other {@link Initializer}s
+ * happen to be initialized.
+ *
+ * @param <T> The instance type being initialized
+ */
+public interface BackgroundInitializer<T> extends Initializer<T> {
+}
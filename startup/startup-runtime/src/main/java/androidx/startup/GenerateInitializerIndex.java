@@ -0,0 +1,48 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.startup;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Makes the startup-compiler annotation processor generate an index of the {@link Initializer}s
+ * to initialize at app startup.
+ * <p>
+ * When the app contains the index, {@link InitializationProvider} initializes the
+ * {@link Initializer}s listed here and their dependencies, and ignores the
+ * <code>&lt;meta-data&gt;</code> entries of the provider in the merged
+ * <code>AndroidManifest.xml</code>. This avoids reading them from the
+ * {@link android.content.pm.PackageManager} and instantiating the {@link Initializer}s through
+ * reflection. The initialization order is computed at build time from the
+ * {@link IndexedInitializer} annotations of the {@link Initializer}s.
+ * <p>
+ * At most one class of the app should be annotated.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface GenerateInitializerIndex {
+
+    /**
+     * @return The {@link Initializer}s to initialize at app startup, typically the ones declared
+     * in the <code>AndroidManifest.xml</code>. Each one must be annotated with
+     * {@link IndexedInitializer}.
+     */
+    Class<? extends Initializer<?>>[] value();
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.startup;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares the dependencies of an {@link Initializer} at build time, so that it can be part of
+ * the index generated for {@link GenerateInitializerIndex}.
+ * <p>
+ * The dependencies must be the same as the ones returned by
+ * {@link Initializer#dependencies()}, as the generated index initializes the
+ * {@link Initializer}s in the order computed from this annotation.
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface IndexedInitializer {
+
+    /**
+     * @return The {@link Initializer}s that the annotated {@link Initializer} depends on.
+     */
+    Class<? extends Initializer<?>>[] dependencies() default {};
+}
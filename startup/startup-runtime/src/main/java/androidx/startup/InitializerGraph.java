@@ -0,0 +1,283 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.startup;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The dependency graph of the {@link Initializer}s that are eagerly initialized by
+ * {@link AppInitializer}.
+ * <p>
+ * {@link BackgroundInitializer}s are initialized on a bounded pool of background threads as soon
+ * as their dependencies are initialized, all other {@link Initializer}s are initialized on the
+ * thread calling {@link #initialize()}. Without {@link BackgroundInitializer}s, the
+ * {@link Initializer}s are initialized in the same order as a depth first traversal would.
+ */
+final class InitializerGraph {
+
+    /**
+     * The maximum number of threads used to run {@link BackgroundInitializer}s.
+     */
+    private static final int MAX_BACKGROUND_THREADS = 4;
+
+    @NonNull
+    private final AppInitializer mAppInitializer;
+
+    @NonNull
+    private final Map<Class<?>, Node> mNodes;
+
+    /**
+     * The nodes in depth first post-order, i.e. every node comes after its dependencies.
+     */
+    @NonNull
+    private final List<Node> mOrder;
+
+    private int mBackgroundNodeCount;
+
+    InitializerGraph(@NonNull AppInitializer appInitializer) {
+        mAppInitializer = appInitializer;
+        mNodes = new HashMap<>();
+        mOrder = new ArrayList<>();
+    }
+
+    /**
+     * Adds the {@link Initializer} and, transitively, its dependencies to the graph. Components
+     * that are already initialized are skipped.
+     */
+    void add(@NonNull Class<? extends Initializer<?>> component) {
+        add(component, new HashSet<Class<?>>());
+    }
+
+    @Nullable
+    private Node add(@NonNull Class<? extends Initializer<?>> component,
+            @NonNull Set<Class<?>> visiting) {
+        if (visiting.contains(component)) {
+            String message = String.format(
+                    "Cannot initialize %s. Cycle detected.", component.getName()
+            );
+            throw new StartupException(message);
+        }
+        Node node = mNodes.get(component);
+        if (node != null || mAppInitializer.isInitialized(component)) {
+            return node;
+        }
+        visiting.add(component);
+        Initializer<?> initializer;
+        try {
+            initializer = (Initializer<?>) component.getDeclaredConstructor().newInstance();
+        } catch (Throwable throwable) {
+            throw new StartupException(throwable);
+        }
+        node = new Node(component, initializer);
+        for (Class<? extends Initializer<?>> dependency : initializer.dependencies()) {
+            Node dependencyNode = add(dependency, visiting);
+            if (dependencyNode != null) {
+                dependencyNode.mDependents.add(node);
+                node.mPendingDependencies++;
+            }
+        }
+        visiting.remove(component);
+        addNode(node);
+        return node;
+    }
+
+    /**
+     * Adds all the {@link Initializer}s of the index, using the order and the dependencies that
+     * were computed when the index was generated. Components that are already initialized are
+     * skipped.
+     */
+    void addAll(@NonNull InitializerIndex index) {
+        int count = index.getComponentCount();
+        Node[] nodes = new Node[count];
+        for (int i = 0; i < count; i++) {
+            Class<? extends Initializer<?>> component = index.getComponent(i);
+            if (mNodes.containsKey(component) || mAppInitializer.isInitialized(component)) {
+                nodes[i] = mNodes.get(component);
+                continue;
+            }
+            Node node = new Node(component, index.newInstance(i));
+            for (int dependency : index.getDependencies(i)) {
+                if (dependency >= i) {
+                    String message = String.format(
+                            "Cannot initialize %s. The index is not in topological order.",
+                            component.getName()
+                    );
+                    throw new StartupException(message);
+                }
+                Node dependencyNode = nodes[dependency];
+                if (dependencyNode != null) {
+                    dependencyNode.mDependents.add(node);
+                    node.mPendingDependencies++;
+                }
+            }
+            nodes[i] = node;
+            addNode(node);
+        }
+    }
+
+    private void addNode(@NonNull Node node) {
+        node.mOrder = mOrder.size();
+        mOrder.add(node);
+        mNodes.put(node.mComponent, node);
+        if (node.mBackground) {
+            mBackgroundNodeCount++;
+        }
+    }
+
+    /**
+     * Initializes all the {@link Initializer}s in the graph, and returns once they are all
+     * initialized.
+     */
+    void initialize() {
+        if (mBackgroundNodeCount == 0) {
+            for (Node node : mOrder) {
+                mAppInitializer.initialize(node.mComponent, node.mInitializer);
+            }
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(mBackgroundNodeCount, getBackgroundThreadCount()),
+                new StartupThreadFactory());
+        try {
+            initialize(executor);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private void initialize(@NonNull ExecutorService executor) {
+        // Only touched on the calling thread.
+        PriorityQueue<Node> ready = new PriorityQueue<>();
+        // Background nodes post themselves here once initialized, or their failure.
+        final LinkedBlockingQueue<Object> completed = new LinkedBlockingQueue<>();
+        for (Node node : mOrder) {
+            if (node.mPendingDependencies == 0) {
+                dispatch(node, ready, completed, executor);
+            }
+        }
+        int remaining = mOrder.size();
+        while (remaining > 0) {
+            Node node = ready.poll();
+            if (node != null) {
+                mAppInitializer.initialize(node.mComponent, node.mInitializer);
+            } else {
+                Object result;
+                try {
+                    result = completed.take();
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                    throw new StartupException(exception);
+                }
+                if (result instanceof StartupException) {
+                    throw (StartupException) result;
+                }
+                node = (Node) result;
+            }
+            remaining--;
+            for (Node dependent : node.mDependents) {
+                if (--dependent.mPendingDependencies == 0) {
+                    dispatch(dependent, ready, completed, executor);
+                }
+            }
+        }
+    }
+
+    private void dispatch(
+            @NonNull final Node node,
+            @NonNull PriorityQueue<Node> ready,
+            @NonNull final LinkedBlockingQueue<Object> completed,
+            @NonNull ExecutorService executor) {
+        if (!node.mBackground) {
+            ready.add(node);
+            return;
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    mAppInitializer.initialize(node.mComponent, node.mInitializer);
+                    completed.add(node);
+                } catch (StartupException exception) {
+                    completed.add(exception);
+                } catch (Throwable throwable) {
+                    completed.add(new StartupException(throwable));
+                }
+            }
+        });
+    }
+
+    private static int getBackgroundThreadCount() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        // Leave a core for the main thread.
+        return Math.max(1, Math.min(MAX_BACKGROUND_THREADS, processors - 1));
+    }
+
+    private static final class Node implements Comparable<Node> {
+        @NonNull
+        final Class<? extends Initializer<?>> mComponent;
+
+        @NonNull
+        final Initializer<?> mInitializer;
+
+        final boolean mBackground;
+
+        @NonNull
+        final List<Node> mDependents = new ArrayList<>();
+
+        int mPendingDependencies;
+
+        int mOrder;
+
+        Node(@NonNull Class<? extends Initializer<?>> component,
+                @NonNull Initializer<?> initializer) {
+            mComponent = component;
+            mInitializer = initializer;
+            mBackground = initializer instanceof BackgroundInitializer;
+        }
+
+        @Override
+        public int compareTo(Node other) {
+            return mOrder < other.mOrder ? -1 : (mOrder == other.mOrder ? 0 : 1);
+        }
+    }
+
+    private static final class StartupThreadFactory implements ThreadFactory {
+        private final AtomicInteger mThreadCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable,
+                    "androidx.startup-" + mThreadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.startup;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RestrictTo;
+
+/**
+ * An index of the {@link Initializer}s to initialize at startup, generated by startup-compiler
+ * for the class annotated with {@link GenerateInitializerIndex}.
+ * <p>
+ * Implementations are discovered through {@link java.util.ServiceLoader}. When the app contains
+ * one, {@link InitializationProvider} initializes the {@link Initializer}s it lists instead of
+ * reading the <code>&lt;meta-data&gt;</code> entries of the provider from the
+ * {@link android.content.pm.PackageManager}, and instantiates them through
+ * {@link #newInstance(int)} instead of reflection.
+ * <p>
+ * The index lists the {@link Initializer}s and all of their transitive dependencies in
+ * topological order, i.e. every {@link Initializer} comes after its dependencies.
+ *
+ * @hide
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP_PREFIX)
+public abstract class InitializerIndex {
+
+    /**
+     * @return The number of {@link Initializer}s in the index.
+     */
+    public abstract int getComponentCount();
+
+    /**
+     * @param index The position of the {@link Initializer} in topological order.
+     * @return The {@link Initializer} class at the given position.
+     */
+    @NonNull
+    public abstract Class<? extends Initializer<?>> getComponent(int index);
+
+    /**
+     * @param index The position of the {@link Initializer} in topological order.
+     * @return <code>true</code> if the {@link Initializer} is listed in
+     * {@link GenerateInitializerIndex}, as opposed to only being a dependency of another one.
+     */
+    public abstract boolean isDiscovered(int index);
+
+    /**
+     * @param index The position of the {@link Initializer} in topological order.
+     * @return The positions of the direct dependencies of the {@link Initializer}, which are all
+     * smaller than <code>index</code>.
+     */
+    @NonNull
+    public abstract int[] getDependencies(int index);
+
+    /**
+     * Creates the {@link Initializer} at the given position by calling its constructor directly.
+     *
+     * @param index The position of the {@link Initializer} in topological order.
+     * @return A new instance of the {@link Initializer} class at the given position.
+     */
+    @NonNull
+    public abstract Initializer<?> newInstance(int index);
+}